@@ -0,0 +1,67 @@
+package org.TransportModel.benchmarks;
+
+import org.TransportModel.Generation.Zone;
+import org.TransportModel.assignment.TrafficAssignment;
+import org.TransportModel.network.CompactGraph;
+import org.TransportModel.skim.SkimMatrix;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+///////////////////////////////////////////////////////////////////////////////////////////////////
+/** AssignmentBenchmark measures a fixed number of iterations of the traffic assignment on a grid
+ * network, for each direction rule */
+///////////////////////////////////////////////////////////////////////////////////////////////////
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class AssignmentBenchmark
+{
+    @Param({"200"})
+    public int gridSize;
+    @Param({"20"})
+    public int zonesPerSide;
+    @Param({"20"})
+    public int iterationsNbr;
+    @Param({"FRANK_WOLFE", "CONJUGATE_FRANK_WOLFE", "BICONJUGATE_FRANK_WOLFE"})
+    public TrafficAssignment.Algorithm algorithm;
+    private TrafficAssignment assignment;
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Builds the graph, the zones and their demand */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        CompactGraph graph = new CompactGraph(NetworkFixture.grid(this.gridSize, this.gridSize, 42));
+        List<Zone> zones = NetworkFixture.zones(this.gridSize, this.gridSize, this.zonesPerSide);
+        SkimMatrix demand = NetworkFixture.demand(zones, 20, 42);
+        this.assignment = new TrafficAssignment(graph, zones, demand);
+        this.assignment.setAlgorithm(this.algorithm);
+        this.assignment.setMaxIterations(this.iterationsNbr);
+        this.assignment.setTargetRelativeGap(0);
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /**                                         Benchmarks                                           */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    @Benchmark
+    public double assign()
+    {
+        this.assignment.run();
+        return this.assignment.getRelativeGap();
+    }
+}
@@ -0,0 +1,98 @@
+package org.TransportModel.benchmarks;
+
+import org.TransportModel.network.Network;
+import org.TransportModel.network.TopologyBuilder;
+import org.TransportModel.network.io.CoordinateTransformer;
+import org.TransportModel.network.io.NetworkReaderBDTOPO;
+import org.locationtech.jts.geom.Coordinate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.opengis.referencing.FactoryException;
+import org.opengis.referencing.operation.TransformException;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+///////////////////////////////////////////////////////////////////////////////////////////////////
+/** BDTOPOReaderBenchmark measures the conversion of the features of a synthetic BDTOPO road
+ * shapefile to links, sequentially and by parallel batches, and the Lambert-93 transform alone
+ * The read keeps a link per segment like the reader by default, the topology cleanup (snapping and
+ * chain contraction) being only measured with topology=true */
+///////////////////////////////////////////////////////////////////////////////////////////////////
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class BDTOPOReaderBenchmark
+{
+    @Param({"100", "300"})
+    public int gridSize;
+    @Param({"true", "false"})
+    public boolean parallel;
+    @Param({"false", "true"})
+    public boolean topology;
+    private final NetworkReaderBDTOPO reader = new NetworkReaderBDTOPO();
+    private File folder;
+    private String shpFilePath;
+    private CoordinateTransformer transformer;
+    private Coordinate[] lambertCoordinates;
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Writes the shapefile of a square grid of roads and draws the coordinates to transform */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, FactoryException
+    {
+        this.folder = Files.createTempDirectory("bdtopo-benchmark").toFile();
+        File shpFile = new File(this.folder, "TRONCON_DE_ROUTE.shp");
+        new ShapefileFixture(this.gridSize, this.gridSize, 42).write(shpFile);
+        this.shpFilePath = shpFile.getPath();
+        this.reader.setParallel(this.parallel);
+        this.reader.setTopologyBuilder(this.topology ? new TopologyBuilder() : null);
+        this.transformer = CoordinateTransformer.lambert93ToWGS84();
+        Random random = new Random(42);
+        this.lambertCoordinates = new Coordinate[1024];
+        for(int index = 0; index < this.lambertCoordinates.length; index++)
+            this.lambertCoordinates[index] = new Coordinate(ShapefileFixture.ORIGIN_X + random.nextDouble() * 30000,
+                    ShapefileFixture.ORIGIN_Y + random.nextDouble() * 30000);
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Deletes the shapefile */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException
+    {
+        BenchmarkFiles.delete(this.folder);
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /**                                         Benchmarks                                           */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    @Benchmark
+    public Network readBDTOPOFile() throws IOException
+    {
+        Network network = new Network();
+        this.reader.readBDTOPOFile(network, this.shpFilePath);
+        return network;
+    }
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public Coordinate[] transformCoordinates() throws TransformException
+    {
+        return this.transformer.transform(this.lambertCoordinates);
+    }
+}
@@ -0,0 +1,30 @@
+package org.TransportModel.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+///////////////////////////////////////////////////////////////////////////////////////////////////
+/** BenchmarkFiles cleans the temporary fixtures of the benchmarks */
+///////////////////////////////////////////////////////////////////////////////////////////////////
+public final class BenchmarkFiles
+{
+    private BenchmarkFiles(){}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Deletes a file, or a folder with everything in it
+     * @param file the file or folder to delete, nothing is done if it doesn't exist */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public static void delete(File file) throws IOException
+    {
+        if(!file.exists())
+            return;
+        try(Stream<Path> paths = Files.walk(file.toPath()))
+        {
+            for(Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator)
+                Files.delete(path);
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package org.TransportModel.benchmarks;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Random;
+
+///////////////////////////////////////////////////////////////////////////////////////////////////
+/** GTFSFixture writes a synthetic GTFS folder of configurable size, the same for the same seed
+ * Every trip of a route serves the stops of the route in the same order, as the route sections
+ * file requires, and some stop names are quoted with commas to go through the quoted fields */
+///////////////////////////////////////////////////////////////////////////////////////////////////
+public class GTFSFixture
+{
+    public static final double MIN_LON = 2.20, MAX_LON = 2.50, MIN_LAT = 48.75, MAX_LAT = 48.95;
+    private static final int[] ROUTE_TYPES = {0, 1, 2, 3, 3, 3};
+    private static final int FIRST_DEPARTURE_IN_S = 5 * 3600, HEADWAY_IN_S = 600;
+    private final int routesNbr, tripsPerRoute, stopsPerRoute, stopsNbr;
+    private final long seed;
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Sets the size of the fixture, the stops being shared by two routes on average
+     * @param routesNbr the number of routes
+     * @param tripsPerRoute the number of trips of every route
+     * @param stopsPerRoute the number of stops served by every trip
+     * @param seed the seed of the random positions, stops and times */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public GTFSFixture(int routesNbr, int tripsPerRoute, int stopsPerRoute, long seed)
+    {
+        this.routesNbr = routesNbr;
+        this.tripsPerRoute = tripsPerRoute;
+        this.stopsPerRoute = stopsPerRoute;
+        this.stopsNbr = Math.max(stopsPerRoute, routesNbr * stopsPerRoute / 2);
+        this.seed = seed;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /**                                          Getters                                             */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public int getStopsNbr(){return this.stopsNbr;}
+    public int getTripsNbr(){return this.routesNbr * this.tripsPerRoute;}
+    public int getStopTimesNbr(){return this.getTripsNbr() * this.stopsPerRoute;}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Writes stops, routes, trips, stop_times, pathways and transfers to a folder
+     * @param folder the folder receiving the files, created if needed */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public void write(File folder) throws IOException
+    {
+        if(!folder.isDirectory() && !folder.mkdirs())
+            throw new IOException("Can't create folder: " + folder);
+        Random random = new Random(this.seed);
+        double[] lons = new double[this.stopsNbr], lats = new double[this.stopsNbr];
+        for(int stop = 0; stop < this.stopsNbr; stop++)
+        {
+            lons[stop] = MIN_LON + random.nextDouble() * (MAX_LON - MIN_LON);
+            lats[stop] = MIN_LAT + random.nextDouble() * (MAX_LAT - MIN_LAT);
+        }
+        this.writeStops(new File(folder, "stops.txt"), lons, lats);
+        this.writeRoutes(new File(folder, "routes.txt"));
+        this.writeTrips(new File(folder, "trips.txt"));
+        this.writeStopTimes(new File(folder, "stop_times.txt"), random);
+        this.writePathways(new File(folder, "pathways.txt"), random);
+        this.writeTransfers(new File(folder, "transfers.txt"), lons, lats, random);
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Writes the stops with their random position */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private void writeStops(File file, double[] lons, double[] lats) throws IOException
+    {
+        try(BufferedWriter writer = new BufferedWriter(new FileWriter(file)))
+        {
+            writer.write("stop_id,stop_name,stop_lat,stop_lon,location_type\n");
+            for(int stop = 0; stop < this.stopsNbr; stop++)
+            {
+                String name = stop % 10 == 0 ? "\"Gare " + stop + ", quai \"\"A\"\"\"" : "Arret " + stop;
+                writer.write(stopId(stop) + "," + name + "," + String.format(Locale.ROOT, "%.6f,%.6f", lats[stop], lons[stop]) + ",0\n");
+            }
+        }
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Writes the routes, the route type cycling through tramway, subway, train and bus */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private void writeRoutes(File file) throws IOException
+    {
+        try(BufferedWriter writer = new BufferedWriter(new FileWriter(file)))
+        {
+            writer.write("route_id,agency_id,route_short_name,route_long_name,route_type\n");
+            for(int route = 0; route < this.routesNbr; route++)
+                writer.write(routeId(route) + ",AG," + route + ",Ligne " + route + "," + ROUTE_TYPES[route % ROUTE_TYPES.length] + "\n");
+        }
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Writes the trips of every route */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private void writeTrips(File file) throws IOException
+    {
+        try(BufferedWriter writer = new BufferedWriter(new FileWriter(file)))
+        {
+            writer.write("route_id,service_id,trip_id,trip_headsign,direction_id\n");
+            for(int route = 0; route < this.routesNbr; route++)
+                for(int trip = 0; trip < this.tripsPerRoute; trip++)
+                    writer.write(routeId(route) + ",S1," + tripId(route, trip) + ",Terminus " + route + ",0\n");
+        }
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Writes the stop times, every trip of a route serving the same stops with its own times
+     * The rows of a trip are written in stop sequence order */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private void writeStopTimes(File file, Random random) throws IOException
+    {
+        try(BufferedWriter writer = new BufferedWriter(new FileWriter(file), 1 << 16))
+        {
+            writer.write("trip_id,arrival_time,departure_time,stop_id,stop_sequence,pickup_type,drop_off_type\n");
+            int[] stops = new int[this.stopsPerRoute];
+            for(int route = 0; route < this.routesNbr; route++)
+            {
+                this.pickStops(stops, random);
+                for(int trip = 0; trip < this.tripsPerRoute; trip++)
+                {
+                    int timeInS = FIRST_DEPARTURE_IN_S + trip * HEADWAY_IN_S + random.nextInt(60);
+                    for(int sequence = 0; sequence < stops.length; sequence++)
+                    {
+                        String time = time(timeInS);
+                        writer.write(tripId(route, trip) + "," + time + "," + time + "," + stopId(stops[sequence]) + "," + (sequence + 1) + ",0,0\n");
+                        timeInS += 60 + random.nextInt(120);
+                    }
+                }
+            }
+        }
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Writes pathways between consecutive stops, one out of ten being one way */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private void writePathways(File file, Random random) throws IOException
+    {
+        try(BufferedWriter writer = new BufferedWriter(new FileWriter(file)))
+        {
+            writer.write("pathway_id,from_stop_id,to_stop_id,pathway_mode,is_bidirectional,length,traversal_time\n");
+            for(int stop = 0; stop + 1 < this.stopsNbr; stop += 4)
+            {
+                int lengthInM = 20 + random.nextInt(200);
+                writer.write("PW" + stop + "," + stopId(stop) + "," + stopId(stop + 1) + ",1," + (stop % 10 == 0 ? 0 : 1) + ","
+                        + lengthInM + "," + (lengthInM + random.nextInt(60)) + "\n");
+            }
+        }
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Writes transfers from every stop to a few random stops, timed with a walk at 1.2 m/s */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private void writeTransfers(File file, double[] lons, double[] lats, Random random) throws IOException
+    {
+        try(BufferedWriter writer = new BufferedWriter(new FileWriter(file)))
+        {
+            writer.write("from_stop_id,to_stop_id,transfer_type,min_transfer_time\n");
+            for(int stop = 0; stop < this.stopsNbr; stop++)
+                for(int transfer = 0; transfer < 2; transfer++)
+                {
+                    int toStop = random.nextInt(this.stopsNbr);
+                    if(toStop == stop)
+                        continue;
+                    double dx = (lons[toStop] - lons[stop]) * 73000, dy = (lats[toStop] - lats[stop]) * 111000;
+                    int timeInS = 60 + (int) (Math.sqrt(dx * dx + dy * dy) / 1.2);
+                    writer.write(stopId(stop) + "," + stopId(toStop) + ",2," + timeInS + "\n");
+                }
+        }
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Picks distinct random stops for a route */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private void pickStops(int[] stops, Random random)
+    {
+        HashSet<Integer> picked = new HashSet<>();
+        for(int index = 0; index < stops.length; index++)
+        {
+            int stop;
+            do stop = random.nextInt(this.stopsNbr);
+            while(!picked.add(stop));
+            stops[index] = stop;
+        }
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /**                                         Identifiers                                          */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public static String stopId(int stop){return "IDFM:" + stop;}
+    public static String routeId(int route){return "R" + route;}
+    public static String tripId(int route, int trip){return "T" + route + "_" + trip;}
+    private static String time(int timeInS){return String.format(Locale.ROOT, "%02d:%02d:%02d", timeInS / 3600, timeInS / 60 % 60, timeInS % 60);}
+}
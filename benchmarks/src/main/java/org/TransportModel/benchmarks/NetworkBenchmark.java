@@ -0,0 +1,108 @@
+package org.TransportModel.benchmarks;
+
+import org.TransportModel.network.CompactGraph;
+import org.TransportModel.network.Link;
+import org.TransportModel.network.Network;
+import org.TransportModel.network.Node;
+import org.TransportModel.network.io.NetworkSnapshot;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+///////////////////////////////////////////////////////////////////////////////////////////////////
+/** NetworkBenchmark measures the building of a large network link by link, its conversion to a
+ * compact graph and its binary snapshot */
+///////////////////////////////////////////////////////////////////////////////////////////////////
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class NetworkBenchmark
+{
+    @Param({"300", "1000"})
+    public int gridSize;
+    private List<Link> links;
+    private Network network;
+    private File snapshotFile;
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Creates the grid network, its links apart, and its snapshot */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    @Setup(Level.Trial)
+    public void setUp() throws IOException
+    {
+        this.network = NetworkFixture.grid(this.gridSize, this.gridSize, 42);
+        this.links = NetworkFixture.links(this.gridNodes(), this.gridSize, this.gridSize, new Random(42));
+        this.snapshotFile = Files.createTempFile("network-benchmark", ".snapshot").toFile();
+        NetworkSnapshot.write(this.network, this.snapshotFile, 0);
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Deletes the snapshot */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException
+    {
+        BenchmarkFiles.delete(this.snapshotFile);
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Returns the nodes of the network in grid order, a row after the other */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private Node[] gridNodes()
+    {
+        Node[] gridNodes = new Node[this.gridSize * this.gridSize];
+        for(int row = 0; row < this.gridSize; row++)
+            for(int column = 0; column < this.gridSize; column++)
+                gridNodes[row * this.gridSize + column] = this.network.getNode(column + "_" + row);
+        return gridNodes;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /**                                         Benchmarks                                           */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    @Benchmark
+    public Network addLinks()
+    {
+        Network network = new Network();
+        for(Link link : this.links)
+            network.addLink(link);
+        return network;
+    }
+    @Benchmark
+    public CompactGraph buildCompactGraph()
+    {
+        return new CompactGraph(this.network);
+    }
+    @Benchmark
+    public File writeSnapshot() throws IOException
+    {
+        NetworkSnapshot.write(this.network, this.snapshotFile, 0);
+        return this.snapshotFile;
+    }
+    @Benchmark
+    public Network readSnapshotNetwork() throws IOException
+    {
+        return NetworkSnapshot.readNetwork(this.snapshotFile);
+    }
+    @Benchmark
+    public CompactGraph readSnapshotGraph() throws IOException
+    {
+        return NetworkSnapshot.readGraph(this.snapshotFile);
+    }
+}
@@ -0,0 +1,118 @@
+package org.TransportModel.benchmarks;
+
+import org.TransportModel.Generation.Zone;
+import org.TransportModel.network.Link;
+import org.TransportModel.network.Network;
+import org.TransportModel.network.Node;
+import org.TransportModel.routing.GreatCircle;
+import org.TransportModel.skim.SkimMatrix;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Polygon;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+///////////////////////////////////////////////////////////////////////////////////////////////////
+/** NetworkFixture creates synthetic road networks and zones in WGS84, the same for the same seed
+ * The network is a jittered grid with missing links, one way links and a few fast links, so that
+ * the shortest paths aren't trivial */
+///////////////////////////////////////////////////////////////////////////////////////////////////
+public class NetworkFixture
+{
+    public static final double MIN_LON = 2.20, MIN_LAT = 48.70, LON_STEP = 0.002, LAT_STEP = 0.0015;
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Creates the nodes and links of a grid network
+     * @param columnsNbr the number of nodes from west to east
+     * @param rowsNbr the number of nodes from south to north
+     * @param seed the seed of the jitter and of the links
+     * @return a network with the nodes and links of the grid */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public static Network grid(int columnsNbr, int rowsNbr, long seed)
+    {
+        Random random = new Random(seed);
+        Network network = new Network(columnsNbr * rowsNbr, 2 * columnsNbr * rowsNbr);
+        Node[] nodes = new Node[columnsNbr * rowsNbr];
+        for(int row = 0; row < rowsNbr; row++)
+            for(int column = 0; column < columnsNbr; column++)
+            {
+                Coordinate coordinate = new Coordinate(MIN_LON + column * LON_STEP + random.nextDouble() * LON_STEP / 4,
+                        MIN_LAT + row * LAT_STEP + random.nextDouble() * LAT_STEP / 4);
+                nodes[row * columnsNbr + column] = new Node(column + "_" + row, coordinate);
+                network.addNode(nodes[row * columnsNbr + column]);
+            }
+        for(Link link : links(nodes, columnsNbr, rowsNbr, random))
+            network.addLink(link);
+        return network;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Creates the links of a grid between its nodes, without adding them to a network
+     * @param nodes the nodes of the grid, a row after the other */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public static List<Link> links(Node[] nodes, int columnsNbr, int rowsNbr, Random random)
+    {
+        List<Link> links = new ArrayList<>(2 * nodes.length);
+        for(int row = 0; row < rowsNbr; row++)
+            for(int column = 0; column < columnsNbr; column++)
+                for(int direction = 0; direction < 2; direction++)
+                {
+                    int toColumn = column + 1 - direction, toRow = row + direction;
+                    if(toColumn >= columnsNbr || toRow >= rowsNbr || random.nextDouble() < 0.1)
+                        continue;
+                    Node fromNode = nodes[row * columnsNbr + column], toNode = nodes[toRow * columnsNbr + toColumn];
+                    Coordinate from = fromNode.getCoordinate(), to = toNode.getCoordinate();
+                    double lengthInM = GreatCircle.distanceInM(from.x, from.y, to.x, to.y) * (1 + 0.3 * random.nextDouble());
+                    boolean bidirectional = random.nextDouble() < 0.8;
+                    if(!bidirectional && random.nextBoolean()) {
+                        Node node = fromNode;
+                        fromNode = toNode;
+                        toNode = node;
+                    }
+                    double speedInMS = random.nextDouble() < 0.1 ? 30 : random.nextBoolean() ? 8 : 14;
+                    links.add(new Link("L" + links.size(), fromNode, toNode, bidirectional, speedInMS, 1800, lengthInM));
+                }
+        return links;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Creates square zones tiling the area of a grid network
+     * @param columnsNbr the number of nodes of the grid from west to east
+     * @param rowsNbr the number of nodes of the grid from south to north
+     * @param zonesPerSide the number of zones on each side of the area
+     * @return the zones, a row after the other */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public static List<Zone> zones(int columnsNbr, int rowsNbr, int zonesPerSide)
+    {
+        GeometryFactory factory = new GeometryFactory();
+        double width = columnsNbr * LON_STEP / zonesPerSide, height = rowsNbr * LAT_STEP / zonesPerSide;
+        List<Zone> zones = new ArrayList<>(zonesPerSide * zonesPerSide);
+        for(int row = 0; row < zonesPerSide; row++)
+            for(int column = 0; column < zonesPerSide; column++)
+            {
+                double x = MIN_LON + column * width, y = MIN_LAT + row * height;
+                Polygon square = factory.createPolygon(new Coordinate[]{new Coordinate(x, y), new Coordinate(x + width, y),
+                        new Coordinate(x + width, y + height), new Coordinate(x, y + height), new Coordinate(x, y)});
+                zones.add(new Zone("Z" + column + "_" + row, factory.createMultiPolygon(new Polygon[]{square})));
+            }
+        return zones;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Creates a random demand between zones, without intrazonal trips
+     * @param zones the zones of the matrix, in row and column order
+     * @param maxTripsPerPair the highest number of vehicles per hour between two zones
+     * @param seed the seed of the random demand
+     * @return the demand matrix, in direct memory */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public static SkimMatrix demand(List<Zone> zones, double maxTripsPerPair, long seed)
+    {
+        Random random = new Random(seed);
+        List<String> zoneIds = new ArrayList<>(zones.size());
+        for(Zone zone : zones)
+            zoneIds.add(zone.getId());
+        SkimMatrix demand = SkimMatrix.allocateDirect(zoneIds);
+        for(int origin = 0; origin < zones.size(); origin++)
+            for(int destination = 0; destination < zones.size(); destination++)
+                demand.set(origin, destination, origin == destination ? 0 : (float) (random.nextDouble() * maxTripsPerPair));
+        return demand;
+    }
+}
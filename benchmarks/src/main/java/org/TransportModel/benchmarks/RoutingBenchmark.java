@@ -0,0 +1,124 @@
+package org.TransportModel.benchmarks;
+
+import org.TransportModel.network.CompactGraph;
+import org.TransportModel.routing.Path;
+import org.TransportModel.routing.Router;
+import org.TransportModel.routing.ch.CHPreprocessor;
+import org.TransportModel.routing.ch.CHRouter;
+import org.TransportModel.routing.ch.ContractionHierarchy;
+import org.TransportModel.skim.SkimBuilder;
+import org.TransportModel.skim.SkimMatrix;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+///////////////////////////////////////////////////////////////////////////////////////////////////
+/** RoutingBenchmark measures the shortest path searches on a grid network: one to all Dijkstra,
+ * point to point A*, contraction hierarchy preprocessing and queries, and a zone skim matrix.
+ * The queries are drawn once with a fixed seed and cycled through, so that every run asks the
+ * same questions */
+///////////////////////////////////////////////////////////////////////////////////////////////////
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class RoutingBenchmark
+{
+    private static final int QUERIES_NBR = 1024;
+    @Param({"200", "500"})
+    public int gridSize;
+    @Param({"20"})
+    public int zonesPerSide;
+    private CompactGraph graph;
+    private Router router;
+    private CHRouter chRouter;
+    private SkimBuilder skimBuilder;
+    private SkimMatrix skim;
+    private int[] sources, targets;
+    private int query;
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Builds the graph, its contraction hierarchy, the zones connectors, the matrix and the queries */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        this.graph = new CompactGraph(NetworkFixture.grid(this.gridSize, this.gridSize, 42));
+        this.router = new Router(this.graph);
+        this.chRouter = new CHRouter(new CHPreprocessor(this.graph).build());
+        this.skimBuilder = new SkimBuilder(this.router, NetworkFixture.zones(this.gridSize, this.gridSize, this.zonesPerSide));
+        this.skim = SkimMatrix.allocateDirect(this.skimBuilder.getZoneIds());
+        Random random = new Random(42);
+        this.sources = new int[QUERIES_NBR];
+        this.targets = new int[QUERIES_NBR];
+        for(int query = 0; query < QUERIES_NBR; query++)
+        {
+            this.sources[query] = random.nextInt(this.graph.getNodesNbr());
+            this.targets[query] = random.nextInt(this.graph.getNodesNbr());
+        }
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Returns the index of the next query */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private int nextQuery()
+    {
+        this.query = (this.query + 1) % QUERIES_NBR;
+        return this.query;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /**                                         Benchmarks                                           */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public double[] dijkstraOneToAll()
+    {
+        return this.router.getCosts(this.sources[this.nextQuery()]);
+    }
+    @Benchmark
+    public Path aStarPath()
+    {
+        int query = this.nextQuery();
+        return this.router.getPath(this.sources[query], this.targets[query]);
+    }
+    @Benchmark
+    public double chCost()
+    {
+        int query = this.nextQuery();
+        return this.chRouter.getCost(this.sources[query], this.targets[query]);
+    }
+    @Benchmark
+    public Path chPath()
+    {
+        int query = this.nextQuery();
+        return this.chRouter.getPath(this.sources[query], this.targets[query]);
+    }
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 3)
+    public ContractionHierarchy chPreprocessing()
+    {
+        return new CHPreprocessor(this.graph).build();
+    }
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public SkimMatrix skimMatrix()
+    {
+        this.skimBuilder.build(this.skim);
+        return this.skim;
+    }
+}
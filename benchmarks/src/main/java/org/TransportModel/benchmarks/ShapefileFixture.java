@@ -0,0 +1,112 @@
+package org.TransportModel.benchmarks;
+
+import org.geotools.data.FeatureWriter;
+import org.geotools.data.Transaction;
+import org.geotools.data.shapefile.ShapefileDataStore;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.geotools.referencing.CRS;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.MultiLineString;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.referencing.FactoryException;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+///////////////////////////////////////////////////////////////////////////////////////////////////
+/** ShapefileFixture writes a synthetic BDTOPO road shapefile, the same for the same seed
+ * The roads form a grid in Lambert-93 around Paris, each road being a bent line between two
+ * crossings, with the attributes read by NetworkReaderBDTOPO */
+///////////////////////////////////////////////////////////////////////////////////////////////////
+public class ShapefileFixture
+{
+    public static final double ORIGIN_X = 645000, ORIGIN_Y = 6855000, SPACING_IN_M = 120;
+    private static final String[] DIRECTIONS = {"Double sens", "Double sens", "Sens direct", "Sens inverse"};
+    private static final int[] SPEEDS_IN_KMH = {30, 30, 50, 50, 70, 90};
+    private final int columnsNbr, rowsNbr;
+    private final long seed;
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Sets the size of the grid, with about two roads by crossing
+     * @param columnsNbr the number of crossings from west to east
+     * @param rowsNbr the number of crossings from south to north
+     * @param seed the seed of the random bends and attributes */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public ShapefileFixture(int columnsNbr, int rowsNbr, long seed)
+    {
+        this.columnsNbr = columnsNbr;
+        this.rowsNbr = rowsNbr;
+        this.seed = seed;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /**                                          Getters                                             */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public int getRoadsNbr(){return (this.columnsNbr - 1) * this.rowsNbr + this.columnsNbr * (this.rowsNbr - 1);}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Writes the roads to a shapefile and its sidecar files
+     * @param shpFile the .shp file to create, its folder being created if needed */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public void write(File shpFile) throws IOException, FactoryException
+    {
+        File folder = shpFile.getAbsoluteFile().getParentFile();
+        if(!folder.isDirectory() && !folder.mkdirs())
+            throw new IOException("Can't create folder: " + folder);
+        SimpleFeatureTypeBuilder typeBuilder = new SimpleFeatureTypeBuilder();
+        typeBuilder.setName("TRONCON_DE_ROUTE");
+        typeBuilder.setCRS(CRS.decode("EPSG:2154"));
+        typeBuilder.add("the_geom", MultiLineString.class);
+        typeBuilder.add("ACCES_VL", String.class);
+        typeBuilder.add("NB_VOIES", Integer.class);
+        typeBuilder.add("VIT_MOY_VL", Integer.class);
+        typeBuilder.add("SENS", String.class);
+        SimpleFeatureType featureType = typeBuilder.buildFeatureType();
+        ShapefileDataStore dataStore = new ShapefileDataStore(shpFile.toURI().toURL());
+        try
+        {
+            dataStore.createSchema(featureType);
+            try(FeatureWriter<SimpleFeatureType,SimpleFeature> writer =
+                        dataStore.getFeatureWriterAppend(dataStore.getTypeNames()[0], Transaction.AUTO_COMMIT))
+            {
+                Random random = new Random(this.seed);
+                GeometryFactory factory = new GeometryFactory();
+                for(int column = 0; column < this.columnsNbr; column++)
+                    for(int row = 0; row < this.rowsNbr; row++)
+                    {
+                        if(column + 1 < this.columnsNbr)
+                            this.writeRoad(writer, factory, random, column, row, column + 1, row);
+                        if(row + 1 < this.rowsNbr)
+                            this.writeRoad(writer, factory, random, column, row, column, row + 1);
+                    }
+            }
+        }
+        finally {dataStore.dispose();}
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Writes the road between two crossings, one road out of twenty being closed to vehicles */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private void writeRoad(FeatureWriter<SimpleFeatureType,SimpleFeature> writer, GeometryFactory factory, Random random,
+                           int fromColumn, int fromRow, int toColumn, int toRow) throws IOException
+    {
+        Coordinate from = this.crossing(fromColumn, fromRow), to = this.crossing(toColumn, toRow);
+        Coordinate bend = new Coordinate((from.x + to.x) / 2 + (random.nextDouble() - 0.5) * SPACING_IN_M / 4,
+                (from.y + to.y) / 2 + (random.nextDouble() - 0.5) * SPACING_IN_M / 4);
+        LineString line = factory.createLineString(new Coordinate[]{from, bend, to});
+        SimpleFeature feature = writer.next();
+        feature.setDefaultGeometry(factory.createMultiLineString(new LineString[]{line}));
+        feature.setAttribute("ACCES_VL", random.nextInt(20) == 0 ? "Restreint aux ayants droit" : "Libre");
+        feature.setAttribute("NB_VOIES", 1 + random.nextInt(3));
+        feature.setAttribute("VIT_MOY_VL", SPEEDS_IN_KMH[random.nextInt(SPEEDS_IN_KMH.length)]);
+        feature.setAttribute("SENS", DIRECTIONS[random.nextInt(DIRECTIONS.length)]);
+        writer.write();
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Returns the Lambert-93 coordinate of a crossing, exact so that the roads share their ends */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private Coordinate crossing(int column, int row)
+    {
+        return new Coordinate(ORIGIN_X + column * SPACING_IN_M, ORIGIN_Y + row * SPACING_IN_M);
+    }
+}
@@ -0,0 +1,85 @@
+package org.TransportModel.benchmarks;
+
+import org.TransportModel.network.CompactGraph;
+import org.TransportModel.network.spatial.LinkIndex;
+import org.TransportModel.network.spatial.LinkSnap;
+import org.TransportModel.network.spatial.NodeIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+///////////////////////////////////////////////////////////////////////////////////////////////////
+/** SpatialIndexBenchmark measures the building of the node and link indices of a grid network and
+ * the bulk snapping of random points on them, the points being drawn once with a fixed seed */
+///////////////////////////////////////////////////////////////////////////////////////////////////
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class SpatialIndexBenchmark
+{
+    private static final double MAX_SNAP_DISTANCE_IN_M = 500;
+    @Param({"200", "500"})
+    public int gridSize;
+    @Param({"100000"})
+    public int pointsNbr;
+    private CompactGraph graph;
+    private NodeIndex nodeIndex;
+    private LinkIndex linkIndex;
+    private double[] xs, ys;
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Builds the graph, its indices and the points, spread over the extent of the grid */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        this.graph = new CompactGraph(NetworkFixture.grid(this.gridSize, this.gridSize, 42));
+        this.nodeIndex = new NodeIndex(this.graph);
+        this.linkIndex = new LinkIndex(this.graph);
+        Random random = new Random(42);
+        this.xs = new double[this.pointsNbr];
+        this.ys = new double[this.pointsNbr];
+        for(int point = 0; point < this.pointsNbr; point++)
+        {
+            this.xs[point] = NetworkFixture.MIN_LON + random.nextDouble() * this.gridSize * NetworkFixture.LON_STEP;
+            this.ys[point] = NetworkFixture.MIN_LAT + random.nextDouble() * this.gridSize * NetworkFixture.LAT_STEP;
+        }
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /**                                         Benchmarks                                           */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    @Benchmark
+    public NodeIndex buildNodeIndex()
+    {
+        return new NodeIndex(this.graph);
+    }
+    @Benchmark
+    public LinkIndex buildLinkIndex()
+    {
+        return new LinkIndex(this.graph);
+    }
+    @Benchmark
+    public int[] nearestNodes()
+    {
+        return this.nodeIndex.getNearestNodes(this.xs, this.ys);
+    }
+    @Benchmark
+    public LinkSnap[] snapToLinks()
+    {
+        return this.linkIndex.snap(this.xs, this.ys, MAX_SNAP_DISTANCE_IN_M);
+    }
+}
@@ -0,0 +1,127 @@
+package org.TransportModel.network.io;
+
+import org.TransportModel.benchmarks.BenchmarkFiles;
+import org.TransportModel.benchmarks.GTFSFixture;
+import org.TransportModel.network.Network;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+///////////////////////////////////////////////////////////////////////////////////////////////////
+/** GTFSReaderBenchmark measures the reading of every GTFS file and the creation of the route
+ * sections file on a synthetic GTFS folder. It is in the package of the reader to call its
+ * package-private steps one by one */
+///////////////////////////////////////////////////////////////////////////////////////////////////
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class GTFSReaderBenchmark
+{
+    @Param({"200", "2000"})
+    public int routesNbr;
+    @Param({"40"})
+    public int tripsPerRoute;
+    @Param({"25"})
+    public int stopsPerRoute;
+    private final NetworkReaderGTFS reader = new NetworkReaderGTFS();
+    private String folderPath;
+    private Network stopsNetwork;
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Writes the fixture with its route sections file, and reads the stops the links need */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    @Setup(Level.Trial)
+    public void setUp() throws IOException
+    {
+        File folder = Files.createTempDirectory("gtfs-benchmark").toFile();
+        new GTFSFixture(this.routesNbr, this.tripsPerRoute, this.stopsPerRoute, 42).write(folder);
+        this.folderPath = folder.getPath();
+        this.reader.createRouteSectionsFile(this.folderPath);
+        this.stopsNetwork = new Network();
+        this.reader.readStopFile(this.stopsNetwork, this.folderPath);
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Deletes the fixture */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException
+    {
+        BenchmarkFiles.delete(new File(this.folderPath));
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /**                                         Benchmarks                                           */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    @Benchmark
+    public Network readStops() throws IOException
+    {
+        Network network = new Network();
+        this.reader.readStopFile(network, this.folderPath);
+        return network;
+    }
+    @Benchmark
+    public Network readRouteSections() throws IOException
+    {
+        this.reader.readRouteSectionsFile(this.stopsNetwork, this.folderPath);
+        return this.stopsNetwork;
+    }
+    @Benchmark
+    public Network readPathways() throws IOException
+    {
+        this.reader.readPathwayFile(this.stopsNetwork, this.folderPath);
+        return this.stopsNetwork;
+    }
+    @Benchmark
+    public Network readTransfers() throws IOException
+    {
+        this.reader.readTransfersFile(this.stopsNetwork, this.folderPath);
+        return this.stopsNetwork;
+    }
+    @Benchmark
+    public HashMap<String,List<String>> readTrips() throws IOException
+    {
+        return this.reader.readTripsFile(this.folderPath);
+    }
+    @Benchmark
+    public HashMap<String,String> readRoutes() throws IOException
+    {
+        return this.reader.readRoutesFile(this.folderPath);
+    }
+    @Benchmark
+    public StopTimesTable readStopTimes() throws IOException
+    {
+        return StopTimesTable.read(Paths.get(this.folderPath, GTFS_FILES.STOP_TIMES));
+    }
+    @Benchmark
+    public String createRouteSectionsFile() throws IOException
+    {
+        this.reader.createRouteSectionsFile(this.folderPath);
+        return this.folderPath;
+    }
+    @Benchmark
+    public Network readGTFSFolder() throws IOException
+    {
+        Network network = new Network();
+        this.reader.readGTFSFolder(network, this.folderPath);
+        return network;
+    }
+}
@@ -1,4 +1,290 @@
 package org.TransportModel.GUI;
 
-public class AreaCanvas {
+import org.TransportModel.Generation.Area;
+import org.TransportModel.Generation.Zone;
+import org.TransportModel.network.CompactGraph;
+import org.TransportModel.network.Network;
+import org.TransportModel.network.spatial.NodeIndex;
+import org.TransportModel.network.spatial.PackedRTree;
+import org.TransportModel.routing.Router;
+import org.TransportModel.routing.SearchState;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Polygon;
+
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+///////////////////////////////////////////////////////////////////////////////////////////////////
+/** Représentation graphique des zones d'une aire sur un réseau
+ * Un clic sur une zone lance en arrière-plan le calcul des temps depuis son centre vers tout le
+ * réseau, affichés dans la couche de résultats au fur et à mesure : la recherche est refaite avec
+ * un budget de temps doublé à chaque étape, chaque étape étant publiée (environ deux fois le coût
+ * d'une seule recherche), et un nouveau clic abandonne le calcul en cours
+ * Les contours des zones sont lus une seule fois puis dessinés dans une image autour de la vue,
+ * redessinée au zoom ou quand la vue en sort : les repaint des tuiles et des résultats et les
+ * déplacements ne font que la copier */
+///////////////////////////////////////////////////////////////////////////////////////////////////
+public class AreaCanvas extends NetworkCanvas
+{
+    public static final double DEFAULT_MAX_TIME_IN_S = 3600;
+    private static final double FIRST_BUDGET_IN_S = 300;
+    private static final Color ZONE_COLOR = Color.GRAY, SELECTED_ZONE_COLOR = Color.WHITE;
+    private final Area area;
+    private final Router router;
+    private final ResultLayer timesLayer;
+    private final ExecutorService executor;
+    private NodeIndex nodeIndex;
+    private volatile Zone selectedZone;
+    private Future<?> computation;
+    //Contours des zones et leur image autour de la vue, avec la projection ax, ay, bx, by de son dessin
+    private ZoneOutlines outlines;
+    private BufferedImage zonesImage;
+    private double[] zonesView;
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Affiche un réseau et les zones d'une aire
+     * @param network le réseau à dessiner
+     * @param area les zones à dessiner et à sélectionner
+     * @param router le calcul des temps, sur le graphe du réseau */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public AreaCanvas(Network network, Area area, Router router)
+    {
+        super(network);
+        this.area = area;
+        this.router = router;
+        this.timesLayer = new ResultLayer(router.getGraph());
+        this.timesLayer.setRange(0, DEFAULT_MAX_TIME_IN_S);
+        this.setResultLayer(this.timesLayer);
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "area-times");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e){selectZone(e.getX(), e.getY());}
+        });
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /**                                          Getters                                             */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public Zone getSelectedZone(){return this.selectedZone;}
+    public ResultLayer getTimesLayer(){return this.timesLayer;}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /**                  Sélectionne la zone sous un pixel et lance le calcul de ses temps           */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private void selectZone(int screenX, int screenY)
+    {
+        if(!this.isViewReady())
+            return;
+        Zone zone = this.area.getZoneLocator().getZone(new Coordinate(this.toX(screenX), this.toY(screenY)));
+        if(zone != null)
+            this.selectZone(zone);
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Sélectionne une zone et lance en arrière-plan le calcul des temps depuis son centre */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public synchronized void selectZone(Zone zone)
+    {
+        this.selectedZone = zone;
+        if(this.computation != null)
+            this.computation.cancel(true);
+        this.computation = this.executor.submit(() -> this.computeTimes(zone));
+        this.repaint();
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Calcule les temps depuis le noeud le plus proche du centre d'une zone par budgets croissants,
+     * chaque lien prenant le temps de son noeud de départ */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private void computeTimes(Zone zone)
+    {
+        CompactGraph graph = this.router.getGraph();
+        if(this.nodeIndex == null) {
+            int modeMask = this.router.getModeMask();
+            this.nodeIndex = new NodeIndex(graph, node -> graph.hasOutArc(node, modeMask) && graph.hasInArc(node, modeMask));
+        }
+        Coordinate center = zone.getCenter();
+        int source = this.nodeIndex.getNearestNode(center.x, center.y);
+        if(source < 0)
+            return;
+        for(double budget = FIRST_BUDGET_IN_S; ; budget *= 2)
+        {
+            if(Thread.currentThread().isInterrupted())
+                return;
+            boolean last = budget >= DEFAULT_MAX_TIME_IN_S;
+            double maxCost = last ? Double.POSITIVE_INFINITY : budget;
+            SearchState state = this.router.search(source, maxCost);
+            double[] linkTimes = new double[graph.getLinksNbr()];
+            Arrays.fill(linkTimes, Double.NaN);
+            for(int arc = 0; arc < graph.getArcsNbr(); arc++)
+            {
+                double time = state.getDistance(graph.getArcTail(arc));
+                int link = graph.getArcLinkIndex(arc);
+                if(time <= maxCost && graph.isArcIn(arc, this.router.getModeMask()) && !(linkTimes[link] <= time))
+                    linkTimes[link] = time;
+            }
+            if(Thread.currentThread().isInterrupted())
+                return;
+            this.timesLayer.setValues(linkTimes);
+            if(last)
+                return;
+        }
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /**                                   PaintComponent                                             */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    @Override
+    public void paintComponent(Graphics g)
+    {
+        super.paintComponent(g);
+        if(!this.isViewReady())
+            return;
+        //Si zones ajoutées à l'aire : contours relus
+        if(this.outlines == null || this.outlines.indices.size() != this.area.getZones().size()) {
+            this.outlines = new ZoneOutlines(this.area.getZones().values());
+            this.zonesView = null;
+        }
+        //Projection des coordonnées à l'écran : x écran = ax * lon + bx, y écran = ay * lat + by
+        double bx = this.toScreenX(0), ax = this.toScreenX(1) - bx;
+        double by = this.toScreenY(0), ay = this.toScreenY(1) - by;
+        //Décalage de l'image depuis son dessin, la vue devant y rester
+        int width = this.getWidth(), height = this.getHeight();
+        double[] view = this.zonesView;
+        int imageX = view == null ? 0 : (int) Math.round(bx - view[2]) - width / 2;
+        int imageY = view == null ? 0 : (int) Math.round(by - view[3]) - height / 2;
+        if(view == null || view[0] != ax || view[1] != ay || this.zonesImage.getWidth() != 2 * width || this.zonesImage.getHeight() != 2 * height
+                || imageX > 0 || imageY > 0 || imageX < -width || imageY < -height) {
+            this.renderZones(ax, bx + width / 2, ay, by + height / 2);
+            this.zonesView = new double[]{ax, ay, bx, by};
+            imageX = -width / 2;
+            imageY = -height / 2;
+        }
+        g.drawImage(this.zonesImage, imageX, imageY, null);
+        Zone selectedZone = this.selectedZone;
+        if(selectedZone != null) {
+            ((Graphics2D) g).setStroke(new BasicStroke(2));
+            g.setColor(SELECTED_ZONE_COLOR);
+            this.outlines.draw(g, this.outlines.getIndex(selectedZone), ax, bx, ay, by);
+            ((Graphics2D) g).setStroke(new BasicStroke(1));
+        }
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Dessine les contours des zones dans une image de deux fois la taille de la vue, centrée sur
+     * elle, pour que les petits déplacements ne fassent que la décaler
+     * @param ax, bx, ay, by la projection des coordonnées dans l'image */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private void renderZones(double ax, double bx, double ay, double by)
+    {
+        int width = 2 * this.getWidth(), height = 2 * this.getHeight();
+        if(this.zonesImage == null || this.zonesImage.getWidth() != width || this.zonesImage.getHeight() != height)
+            this.zonesImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        else
+            Arrays.fill(((DataBufferInt) this.zonesImage.getRaster().getDataBuffer()).getData(), 0);
+        Graphics2D g = this.zonesImage.createGraphics();
+        g.setColor(ZONE_COLOR);
+        double minX = (0 - bx) / ax, maxX = (width - bx) / ax, minY = (height - by) / ay, maxY = (0 - by) / ay;
+        this.outlines.tree.search(Math.min(minX, maxX), Math.min(minY, maxY), Math.max(minX, maxX), Math.max(minY, maxY),
+                zone -> this.outlines.draw(g, zone, ax, bx, ay, by));
+        g.dispose();
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Contours des zones d'une aire, lus une seule fois dans leurs géométries : coordonnées (lon, lat)
+     * de leurs anneaux à la suite, les zones visibles étant trouvées par leur boîte dans un
+     * PackedRTree. Dessinés sur l'EDT uniquement */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private static class ZoneOutlines
+    {
+        private final HashMap<Zone,Integer> indices = new HashMap<>();
+        //Anneaux zoneFirstRings[z]..zoneFirstRings[z+1]-1 de la zone z, points ringFirstPoints[r]..ringFirstPoints[r+1]-1
+        private final int[] zoneFirstRings, ringFirstPoints;
+        private final double[] coordinates, boxes;
+        private final PackedRTree tree;
+        //Points d'un anneau en pixels
+        private int[] xs, ys;
+        ZoneOutlines(Collection<Zone> zones)
+        {
+            int ringsNbr = 0, pointsNbr = 0, maxRingPointsNbr = 0;
+            for(Zone zone : zones)
+                for(int polygon = 0; polygon < zone.getShape().getNumGeometries(); polygon++)
+                {
+                    Polygon part = (Polygon) zone.getShape().getGeometryN(polygon);
+                    for(int ring = -1; ring < part.getNumInteriorRing(); ring++)
+                    {
+                        int ringPointsNbr = (ring < 0 ? part.getExteriorRing() : part.getInteriorRingN(ring)).getNumPoints();
+                        ringsNbr++;
+                        pointsNbr += ringPointsNbr;
+                        maxRingPointsNbr = Math.max(maxRingPointsNbr, ringPointsNbr);
+                    }
+                }
+            this.zoneFirstRings = new int[zones.size() + 1];
+            this.ringFirstPoints = new int[ringsNbr + 1];
+            this.coordinates = new double[2 * pointsNbr];
+            this.boxes = new double[4 * zones.size()];
+            this.xs = new int[maxRingPointsNbr];
+            this.ys = new int[maxRingPointsNbr];
+            int zoneIndex = 0, ringIndex = 0, point = 0;
+            for(Zone zone : zones)
+            {
+                this.indices.put(zone, zoneIndex);
+                Envelope envelope = zone.getShape().getEnvelopeInternal();
+                this.boxes[4 * zoneIndex] = envelope.getMinX();
+                this.boxes[4 * zoneIndex + 1] = envelope.getMinY();
+                this.boxes[4 * zoneIndex + 2] = envelope.getMaxX();
+                this.boxes[4 * zoneIndex + 3] = envelope.getMaxY();
+                for(int polygon = 0; polygon < zone.getShape().getNumGeometries(); polygon++)
+                {
+                    Polygon part = (Polygon) zone.getShape().getGeometryN(polygon);
+                    for(int ring = -1; ring < part.getNumInteriorRing(); ring++)
+                    {
+                        for(Coordinate coordinate : (ring < 0 ? part.getExteriorRing() : part.getInteriorRingN(ring)).getCoordinates())
+                        {
+                            this.coordinates[2 * point] = coordinate.x;
+                            this.coordinates[2 * point++ + 1] = coordinate.y;
+                        }
+                        this.ringFirstPoints[++ringIndex] = point;
+                    }
+                }
+                this.zoneFirstRings[++zoneIndex] = ringIndex;
+            }
+            this.tree = new PackedRTree(this.boxes);
+        }
+        int getIndex(Zone zone){Integer index = this.indices.get(zone);return index == null ? -1 : index;}
+        //////////////////////////////////////////////////////////////////////////////////////////////////
+        /** Dessine les contours d'une zone, les points à moins d'un pixel du précédent sautés, une zone
+         * de moins d'un pixel n'étant qu'un point */
+        //////////////////////////////////////////////////////////////////////////////////////////////////
+        void draw(Graphics g, int zone, double ax, double bx, double ay, double by)
+        {
+            if(zone < 0)
+                return;
+            double width = Math.abs(ax * (this.boxes[4 * zone + 2] - this.boxes[4 * zone]));
+            double height = Math.abs(ay * (this.boxes[4 * zone + 3] - this.boxes[4 * zone + 1]));
+            if(width < 1 && height < 1) {
+                g.fillRect((int) Math.round(ax * this.boxes[4 * zone] + bx), (int) Math.round(ay * this.boxes[4 * zone + 1] + by), 1, 1);
+                return;
+            }
+            for(int ring = this.zoneFirstRings[zone]; ring < this.zoneFirstRings[zone + 1]; ring++)
+            {
+                int pointsNbr = 0;
+                for(int point = this.ringFirstPoints[ring]; point < this.ringFirstPoints[ring + 1]; point++)
+                {
+                    int x = (int) Math.round(ax * this.coordinates[2 * point] + bx), y = (int) Math.round(ay * this.coordinates[2 * point + 1] + by);
+                    if(pointsNbr == 0 || x != this.xs[pointsNbr - 1] || y != this.ys[pointsNbr - 1]) {
+                        this.xs[pointsNbr] = x;
+                        this.ys[pointsNbr++] = y;
+                    }
+                }
+                g.drawPolyline(this.xs, this.ys, pointsNbr);
+            }
+        }
+    }
 }
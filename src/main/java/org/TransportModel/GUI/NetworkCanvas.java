@@ -1,43 +1,127 @@
 package org.TransportModel.GUI;
 
-import org.TransportModel.network.Link;
 import org.TransportModel.network.Network;
-import org.TransportModel.network.Node;
-import org.jgrapht.Graph;
 
 import javax.swing.*;
 import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.awt.image.BufferedImage;
 
 ///////////////////////////////////////////////////////////////////////////////////////////////////
-/**                        Représentation graphique d'un réseau                                  */
+/** Représentation graphique d'un réseau
+ * Le réseau est dessiné par tuiles en arrière-plan (TileRenderer), l'EDT ne faisant que copier
+ * les tuiles visibles : une tuile pas encore prête est remplacée par l'agrandissement d'une tuile
+ * d'un zoom inférieur. Glisser déplace la vue, la molette zoome autour du curseur */
 ///////////////////////////////////////////////////////////////////////////////////////////////////
 public class NetworkCanvas extends JComponent
 {
-    private Double[] bounds;
-    private Network network;
+    private static final double ZOOM_FACTOR = 1.25;
+    private static final int FALLBACK_LEVELS = 4;
+    private TileRenderer renderer;
+    private volatile ResultLayer layer;
+    //Vue : pixels par unité monde, 0 tant que la vue n'est pas cadrée, et coin haut gauche en monde
+    private double scale, originX, originY;
+    private Point dragStart;
     ///////////////////////////////////////////////////////////////////////////////////////////////////
     /**                                          Constructor                                       */
     ///////////////////////////////////////////////////////////////////////////////////////////////////
     public NetworkCanvas(Network network)
     {
-        this.network = network;this.setupBounds();
+        this.setNetwork(network);
+        MouseAdapter mouseAdapter = new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent e){dragStart = e.getPoint();}
+            @Override
+            public void mouseDragged(MouseEvent e){pan(e.getX() - dragStart.x, e.getY() - dragStart.y);dragStart = e.getPoint();}
+            @Override
+            public void mouseWheelMoved(MouseWheelEvent e){zoom(Math.pow(ZOOM_FACTOR, -e.getPreciseWheelRotation()), e.getX(), e.getY());}
+        };
+        this.addMouseListener(mouseAdapter);
+        this.addMouseMotionListener(mouseAdapter);
+        this.addMouseWheelListener(mouseAdapter);
     }
     ///////////////////////////////////////////////////////////////////////////////////////////////////
-    /**                                          Modificateurs                                       */
+    /**      Change le réseau, son index étant construit en arrière-plan avant de l'afficher         */
     ///////////////////////////////////////////////////////////////////////////////////////////////////
-    public void setNetwork(Network network) {this.network = network;this.setupBounds();}
+    public void setNetwork(Network network)
+    {
+        if(network == null) {
+            SwingUtilities.invokeLater(() -> this.setRenderer(null));
+            return;
+        }
+        Thread thread = new Thread(() -> {
+            TileRenderer renderer = new TileRenderer(network, this::repaint);
+            renderer.setLayer(this.layer);
+            SwingUtilities.invokeLater(() -> this.setRenderer(renderer));
+        }, "tile-index");
+        thread.setDaemon(true);
+        thread.start();
+    }
+    private void setRenderer(TileRenderer renderer)
+    {
+        if(this.renderer != null)
+            this.renderer.dispose();
+        this.renderer = renderer;
+        if(renderer != null && renderer.getLayer() != this.layer)
+            renderer.setLayer(this.layer);
+        this.scale = 0;
+        this.repaint();
+    }
     ///////////////////////////////////////////////////////////////////////////////////////////////////
-    /**                  Calcul les limites de coordonnés pour la mise à l'échelle                   */
+    /** Affiche une couche de résultats, dont le graphe doit être celui du réseau : ses changements
+     * ne redessinent que les tuiles concernées
+     * @param layer la couche, null pour n'afficher que le réseau */
     ///////////////////////////////////////////////////////////////////////////////////////////////////
-    private void setupBounds()
+    public void setResultLayer(ResultLayer layer)
     {
-        this.bounds = new Double[]{null, null, null, null};
-        for (Node node : this.network.getNodes().values()) {
-            bounds[0] = (bounds[0] == null || bounds[0] > node.getCoordinate().x) ? node.getCoordinate().x : bounds[0];
-            bounds[1] = (bounds[1] == null || bounds[1] > node.getCoordinate().y) ? node.getCoordinate().y : bounds[1];
-            bounds[2] = (bounds[2] == null || bounds[2] < node.getCoordinate().x) ? node.getCoordinate().x : bounds[2];
-            bounds[3] = (bounds[3] == null || bounds[3] < node.getCoordinate().y) ? node.getCoordinate().y : bounds[3];
-        }
+        this.layer = layer;
+        if(this.renderer != null)
+            this.renderer.setLayer(layer);
+    }
+    public ResultLayer getResultLayer(){return this.layer;}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /**                  Conversions entre pixels et coordonnées, la vue devant être prête           */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    protected boolean isViewReady(){return this.renderer != null && this.scale > 0;}
+    protected double toX(int screenX){return this.renderer.toX(this.originX + screenX / this.scale);}
+    protected double toY(int screenY){return this.renderer.toY(this.originY + screenY / this.scale);}
+    protected double toScreenX(double x){return (this.renderer.toWorldX(x) - this.originX) * this.scale;}
+    protected double toScreenY(double y){return (this.renderer.toWorldY(y) - this.originY) * this.scale;}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /**                          Déplace la vue d'un nombre de pixels                                */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public void pan(int dx, int dy)
+    {
+        if(this.scale == 0)
+            return;
+        this.originX -= dx / this.scale;
+        this.originY -= dy / this.scale;
+        this.repaint();
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /**                  Zoome d'un facteur en gardant fixe le point sous (x,y)                      */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public void zoom(double factor, int x, int y)
+    {
+        if(this.scale == 0)
+            return;
+        double worldX = this.originX + x / this.scale, worldY = this.originY + y / this.scale;
+        double maxScale = TileRenderer.TILE_SIZE * (double) (1L << TileRenderer.MAX_ZOOM);
+        this.scale = Math.max(Math.min(this.getWidth(), this.getHeight()) / 4.0, Math.min(maxScale, this.scale * factor));
+        this.originX = worldX - x / this.scale;
+        this.originY = worldY - y / this.scale;
+        this.repaint();
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /**                            Cadre la vue sur tout le réseau                                   */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private void fitView()
+    {
+        this.scale = Math.max(1, Math.min(this.getWidth(), this.getHeight()));
+        this.originX = -(this.getWidth() / this.scale - 1) / 2;
+        this.originY = -(this.getHeight() / this.scale - 1) / 2;
     }
     ///////////////////////////////////////////////////////////////////////////////////////////////////
     /**                                   PaintComponent                                             */
@@ -45,43 +129,48 @@ public class NetworkCanvas extends JComponent
     @Override
     public void paintComponent(Graphics g)
     {
-        if (this.network != null && this.bounds[0]!=null) {
-            this.drawNodes(g);
-            this.drawEdges(g);
-        }
+        if(this.renderer == null || this.getWidth() == 0 || this.getHeight() == 0)
+            return;
+        if(this.scale == 0)
+            this.fitView();
+        //Zoom des tuiles : la tuile la plus fine pas plus petite à l'écran que dans l'image
+        int zoom = (int) Math.ceil(Math.log(this.scale / TileRenderer.TILE_SIZE) / Math.log(2) - 1e-9);
+        zoom = Math.max(0, Math.min(TileRenderer.MAX_ZOOM, zoom));
+        int tilesNbr = 1 << zoom;
+        int minTileX = Math.max(0, (int) Math.floor(this.originX * tilesNbr));
+        int minTileY = Math.max(0, (int) Math.floor(this.originY * tilesNbr));
+        int maxTileX = Math.min(tilesNbr - 1, (int) Math.floor((this.originX + this.getWidth() / this.scale) * tilesNbr));
+        int maxTileY = Math.min(tilesNbr - 1, (int) Math.floor((this.originY + this.getHeight() / this.scale) * tilesNbr));
+        this.renderer.retainTiles(zoom, minTileX, minTileY, maxTileX, maxTileY);
+        for(int tileX = minTileX; tileX <= maxTileX; tileX++)
+            for(int tileY = minTileY; tileY <= maxTileY; tileY++)
+                this.drawTile(g, zoom, tileX, tileY);
     }
     //////////////////////////////////////////////////////////////////////////////////////////////////
-    /**                                     Dessine les noeuds                                      */
+    /**       Dessine une tuile, ou en attendant la partie agrandie d'une tuile plus grossière       */
     //////////////////////////////////////////////////////////////////////////////////////////////////
-    private void drawNodes(Graphics g)
+    private void drawTile(Graphics g, int zoom, int tileX, int tileY)
     {
-        g.setColor(Color.BLUE);
-        double screenWidth = this.getWidth(), screenHeight = this.getHeight();
-        double range = Math.max(this.bounds[2] - this.bounds[0], this.bounds[3] - this.bounds[1]);
-        for(Node node: this.network.getNodes().values())
-        {
-            int x = (int)((node.getCoordinate().x - bounds[0]) * screenWidth / range);
-            int y = (int)((node.getCoordinate().y - bounds[1]) * screenHeight / range);
-            g.fillOval(x,y,2,2);
+        double tilesNbr = 1 << zoom;
+        int x1 = (int) Math.floor((tileX / tilesNbr - this.originX) * this.scale);
+        int y1 = (int) Math.floor((tileY / tilesNbr - this.originY) * this.scale);
+        int x2 = (int) Math.floor(((tileX + 1) / tilesNbr - this.originX) * this.scale);
+        int y2 = (int) Math.floor(((tileY + 1) / tilesNbr - this.originY) * this.scale);
+        BufferedImage tile = this.renderer.getTile(zoom, tileX, tileY);
+        if(tile != null) {
+            g.drawImage(tile, x1, y1, x2, y2, 0, 0, TileRenderer.TILE_SIZE, TileRenderer.TILE_SIZE, null);
+            return;
         }
-    }
-    //////////////////////////////////////////////////////////////////////////////////////////////////
-    /**                                     Dessine les arcs                                        */
-    //////////////////////////////////////////////////////////////////////////////////////////////////
-    private void drawEdges(Graphics g)
-    {
-        g.setColor(Color.red);
-        double screenWidth = this.getWidth(), screenHeight = this.getHeight();
-        double range = Math.max(this.bounds[2] - this.bounds[0], this.bounds[3] - this.bounds[1]);
-        for (Link link : this.network.getLinks().values())
+        this.renderer.requestTile(zoom, tileX, tileY);
+        for(int level = 1; level <= Math.min(FALLBACK_LEVELS, zoom); level++)
         {
-            Node from = link.getFromNode();
-            Node to = link.getToNode();
-            int x1 = (int)((from.getCoordinate().x - bounds[0]) * screenWidth / range);
-            int y1 = (int)((from.getCoordinate().y - bounds[1]) * screenHeight / range);
-            int x2 = (int)((to.getCoordinate().x - bounds[0]) * screenWidth / range);
-            int y2 = (int)((to.getCoordinate().y - bounds[1]) * screenHeight / range);
-            g.drawLine(x1, y1, x2, y2);
+            BufferedImage parent = this.renderer.getTile(zoom - level, tileX >> level, tileY >> level);
+            if(parent == null)
+                continue;
+            int size = TileRenderer.TILE_SIZE >> level;
+            int sourceX = (tileX & ((1 << level) - 1)) * size, sourceY = (tileY & ((1 << level) - 1)) * size;
+            g.drawImage(parent, x1, y1, x2, y2, sourceX, sourceY, sourceX + size, sourceY + size, null);
+            return;
         }
     }
 }
@@ -0,0 +1,150 @@
+package org.TransportModel.GUI;
+
+import org.TransportModel.network.CompactGraph;
+
+import java.awt.*;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+///////////////////////////////////////////////////////////////////////////////////////////////////
+/** Couche de résultats d'un réseau : une valeur par lien (volume d'une affectation, temps depuis
+ * une origine...) colore le lien, et l'élargit si demandé, du vert au rouge entre deux bornes.
+ * Les valeurs sont réparties en CLASSES_NBR classes : quand elles changent, seuls les liens qui
+ * changent de classe sont signalés, pour ne redessiner que leurs tuiles.
+ * Les valeurs sont indexées comme les liens d'un CompactGraph, NaN pour un lien sans valeur.
+ * Les valeurs peuvent être changées depuis n'importe quel thread */
+///////////////////////////////////////////////////////////////////////////////////////////////////
+public class ResultLayer
+{
+    public static final int CLASSES_NBR = 16, MAX_WIDTH = 6;
+    private static final byte NO_VALUE = -1;
+    private static final Color[] COLORS = new Color[CLASSES_NBR];
+    static {
+        for(int linkClass = 0; linkClass < CLASSES_NBR; linkClass++)
+            COLORS[linkClass] = Color.getHSBColor((1f / 3) * (1 - linkClass / (float) (CLASSES_NBR - 1)), 1f, 0.9f);
+    }
+    private final CompactGraph graph;
+    private final List<ChangeListener> listeners = new CopyOnWriteArrayList<>();
+    private double minValue = Double.NaN, maxValue = Double.NaN;
+    private boolean widthScaled;
+    private double[] values;
+    private volatile byte[] linkClasses;
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Reçoit les liens qui ont changé de classe */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public interface ChangeListener
+    {
+        ///////////////////////////////////////////////////////////////////////////////////////////////////
+        /** @param links les indices des liens dans le graphe, null si tous les liens ont pu changer */
+        ///////////////////////////////////////////////////////////////////////////////////////////////////
+        void linksChanged(int[] links);
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /**                                          Constructeur                                        */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public ResultLayer(CompactGraph graph)
+    {
+        this.graph = graph;
+        this.linkClasses = new byte[graph.getLinksNbr()];
+        Arrays.fill(this.linkClasses, NO_VALUE);
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /**                                          Getters                                             */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public CompactGraph getGraph(){return this.graph;}
+    public boolean hasValue(int link){return this.linkClasses[link] != NO_VALUE;}
+    public int getClass(int link){return this.linkClasses[link];}
+    public static Color getColor(int linkClass){return COLORS[linkClass];}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Renvoie l'épaisseur d'une classe en pixels, de 1 à MAX_WIDTH si les liens sont élargis */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public int getWidth(int linkClass){return this.widthScaled ? 1 + linkClass * (MAX_WIDTH - 1) / (CLASSES_NBR - 1) : 1;}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /**                                        Modificateurs                                         */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public void addListener(ChangeListener listener){this.listeners.add(listener);}
+    public void removeListener(ChangeListener listener){this.listeners.remove(listener);}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Élargit ou non les liens selon leur valeur, les volumes par exemple */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public synchronized void setWidthScaled(boolean widthScaled)
+    {
+        this.widthScaled = widthScaled;
+        this.notifyListeners(null);
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Fixe les bornes des couleurs, les valeurs hors des bornes prenant la couleur de la borne
+     * Sans bornes (NaN), elles suivent le minimum et le maximum de chaque jeu de valeurs : des bornes
+     * fixes évitent de tout redessiner quand seules quelques valeurs changent */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public synchronized void setRange(double minValue, double maxValue)
+    {
+        this.minValue = minValue;
+        this.maxValue = maxValue;
+        if(this.values != null)
+            this.setValues(this.values);
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Change les valeurs des liens et signale ceux qui changent de classe
+     * @param linkValues les valeurs indexées comme les liens du graphe, NaN pour aucune valeur,
+     *                   gardées jusqu'au prochain appel et donc à ne plus modifier */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public synchronized void setValues(double[] linkValues)
+    {
+        if(linkValues.length != this.graph.getLinksNbr())
+            throw new IllegalArgumentException("One value per link expected: " + linkValues.length);
+        this.values = linkValues;
+        //Bornes
+        double minValue = this.minValue, maxValue = this.maxValue;
+        if(Double.isNaN(minValue) || Double.isNaN(maxValue)) {
+            double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+            for(double value : linkValues)
+                if(!Double.isNaN(value) && !Double.isInfinite(value)) {
+                    min = Math.min(min, value);
+                    max = Math.max(max, value);
+                }
+            minValue = Double.isNaN(minValue) ? min : minValue;
+            maxValue = Double.isNaN(maxValue) ? max : maxValue;
+        }
+        //Classes, et liens qui en changent
+        byte[] oldClasses = this.linkClasses, newClasses = new byte[linkValues.length];
+        int[] changedLinks = new int[16];
+        int changedNbr = 0;
+        for(int link = 0; link < linkValues.length; link++)
+        {
+            newClasses[link] = classify(linkValues[link], minValue, maxValue);
+            if(newClasses[link] != oldClasses[link]) {
+                if(changedNbr == changedLinks.length)
+                    changedLinks = Arrays.copyOf(changedLinks, changedNbr * 2);
+                changedLinks[changedNbr++] = link;
+            }
+        }
+        this.linkClasses = newClasses;
+        if(changedNbr > 0)
+            this.notifyListeners(Arrays.copyOf(changedLinks, changedNbr));
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Retire toutes les valeurs */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public synchronized void clear()
+    {
+        double[] values = new double[this.graph.getLinksNbr()];
+        Arrays.fill(values, Double.NaN);
+        this.setValues(values);
+    }
+    private static byte classify(double value, double minValue, double maxValue)
+    {
+        if(Double.isNaN(value) || Double.isInfinite(value))
+            return NO_VALUE;
+        if(!(maxValue > minValue))
+            return 0;
+        double position = (value - minValue) / (maxValue - minValue);
+        return (byte) Math.max(0, Math.min(CLASSES_NBR - 1, (int) (position * CLASSES_NBR)));
+    }
+    private void notifyListeners(int[] links)
+    {
+        for(ChangeListener listener : this.listeners)
+            listener.linksChanged(links);
+    }
+}
@@ -0,0 +1,389 @@
+package org.TransportModel.GUI;
+
+import org.TransportModel.network.CompactGraph;
+import org.TransportModel.network.IdDictionary;
+import org.TransportModel.network.Link;
+import org.TransportModel.network.Network;
+import org.TransportModel.network.Node;
+import org.TransportModel.network.spatial.PackedRTree;
+import org.locationtech.jts.geom.Coordinate;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+///////////////////////////////////////////////////////////////////////////////////////////////////
+/** Rastérise un réseau en tuiles de TILE_SIZE pixels, à chaque niveau de zoom le monde faisant
+ * TILE_SIZE * 2^zoom pixels de côté. Les tuiles sont dessinées en arrière-plan et gardées en cache
+ * (les moins récemment utilisées étant oubliées), les liens d'une tuile étant trouvés par un
+ * PackedRTree. Un lien de moins d'un pixel n'est qu'un point, les noeuds ne sont dessinés qu'aux
+ * zooms où les liens sont assez longs pour les séparer. Une couche de résultats peut être dessinée
+ * par-dessus : quand ses valeurs changent, seules les tuiles de ses liens changés sont redessinées.
+ * Monde : carré [0,1] projeté en équirectangulaire autour de la latitude moyenne, le nord en haut */
+///////////////////////////////////////////////////////////////////////////////////////////////////
+public class TileRenderer
+{
+    public static final int TILE_SIZE = 256, MAX_ZOOM = 16;
+    private static final int CACHE_SIZE = 512, NODE_MIN_LINK_PIXELS = 8;
+    //Couleurs par mode : route, transport en commun, marche, accès, connecteur
+    private static final Color[] MODE_COLORS = {Color.RED, new Color(0x3399FF), new Color(0x00CC66), new Color(0xFFCC00), new Color(0xCC66FF)};
+    private static final Color NODE_COLOR = Color.BLUE;
+    private static final Stroke THIN_STROKE = new BasicStroke(1);
+    //Liens : ids du réseau (indice = handle), boîtes monde, premier point, coordonnées monde x y des
+    //points (noeuds et forme) et mode
+    private final IdDictionary linkIds;
+    private final float[] linkBoxes, pointCoordinates;
+    private final int[] linkFirstPoints;
+    private final byte[] linkModes;
+    private final PackedRTree tree;
+    //Projection
+    private final double minX, maxY, cosLatitude, range;
+    //Tuiles
+    private final Map<Long,BufferedImage> tiles;
+    private final ConcurrentHashMap<Long,Future<?>> pendingTiles;
+    private final Set<Long> staleTiles;
+    private final ExecutorService executor;
+    private final Runnable tileListener;
+    //Dernière vue : zoom, tuiles min x y, max x y
+    private volatile int[] view;
+    //Couche de résultats : lien de la couche de chaque lien, lien de chaque lien de la couche
+    private ResultLayer layer;
+    private int[] layerLinks;
+    private volatile int[] rendererLinks;
+    private final ResultLayer.ChangeListener layerListener = this::invalidateLinks;
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Indexe les liens d'un réseau en coordonnées monde
+     * @param network le réseau à dessiner, lu une seule fois
+     * @param tileListener appelé depuis un thread de dessin à chaque tuile prête, repaint par exemple */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public TileRenderer(Network network, Runnable tileListener)
+    {
+        //Limites du réseau
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for(Node node : network.getNodes())
+        {
+            minX = Math.min(minX, node.getCoordinate().x);
+            minY = Math.min(minY, node.getCoordinate().y);
+            maxX = Math.max(maxX, node.getCoordinate().x);
+            maxY = Math.max(maxY, node.getCoordinate().y);
+        }
+        //Si réseau vide : monde d'un degré
+        if(minX > maxX) {
+            minX = minY = 0;
+            maxX = maxY = 1;
+        }
+        this.minX = minX;
+        this.maxY = maxY;
+        this.cosLatitude = Math.cos(Math.toRadians((minY + maxY) / 2));
+        this.range = Math.max(Math.max((maxX - minX) * this.cosLatitude, maxY - minY), 1e-9);
+        //Liens en coordonnées monde, points de forme compris, boîtes en degrés
+        Link[] links = network.getLinks().toArray(new Link[0]);
+        this.linkIds = network.getLinkIds();
+        this.linkModes = new byte[links.length];
+        this.linkFirstPoints = new int[links.length + 1];
+        for(int link = 0; link < links.length; link++)
+            this.linkFirstPoints[link + 1] = this.linkFirstPoints[link] + 2 + links[link].getShapePointsNbr();
+        this.pointCoordinates = new float[2 * this.linkFirstPoints[links.length]];
+        this.linkBoxes = new float[4 * links.length];
+        double[] boxes = new double[4 * links.length];
+        for(int link = 0; link < links.length; link++)
+        {
+            Coordinate from = links[link].getFromNode().getCoordinate(), to = links[link].getToNode().getCoordinate();
+            double[] shapePoints = links[link].getShapePoints();
+            int pointsNbr = this.linkFirstPoints[link + 1] - this.linkFirstPoints[link];
+            double minLinkX = Double.POSITIVE_INFINITY, minLinkY = Double.POSITIVE_INFINITY;
+            double maxLinkX = Double.NEGATIVE_INFINITY, maxLinkY = Double.NEGATIVE_INFINITY;
+            for(int position = 0; position < pointsNbr; position++)
+            {
+                double x = position == 0 ? from.x : position == pointsNbr - 1 ? to.x : shapePoints[2 * position - 2];
+                double y = position == 0 ? from.y : position == pointsNbr - 1 ? to.y : shapePoints[2 * position - 1];
+                int point = this.linkFirstPoints[link] + position;
+                this.pointCoordinates[2 * point] = (float) this.toWorldX(x);
+                this.pointCoordinates[2 * point + 1] = (float) this.toWorldY(y);
+                minLinkX = Math.min(minLinkX, x);
+                minLinkY = Math.min(minLinkY, y);
+                maxLinkX = Math.max(maxLinkX, x);
+                maxLinkY = Math.max(maxLinkY, y);
+            }
+            this.linkModes[link] = (byte) links[link].getMode().ordinal();
+            this.linkBoxes[4 * link] = (float) this.toWorldX(minLinkX);
+            this.linkBoxes[4 * link + 1] = (float) this.toWorldY(maxLinkY);
+            this.linkBoxes[4 * link + 2] = (float) this.toWorldX(maxLinkX);
+            this.linkBoxes[4 * link + 3] = (float) this.toWorldY(minLinkY);
+            boxes[4 * link] = minLinkX;
+            boxes[4 * link + 1] = minLinkY;
+            boxes[4 * link + 2] = maxLinkX;
+            boxes[4 * link + 3] = maxLinkY;
+        }
+        this.tree = new PackedRTree(boxes);
+        //Cache et threads de dessin
+        this.tiles = new LinkedHashMap<Long,BufferedImage>(CACHE_SIZE, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long,BufferedImage> eldest){return this.size() > CACHE_SIZE;}
+        };
+        this.pendingTiles = new ConcurrentHashMap<>();
+        this.staleTiles = ConcurrentHashMap.newKeySet();
+        this.executor = Executors.newFixedThreadPool(Math.max(1, Runtime.getRuntime().availableProcessors() - 1), runnable -> {
+            Thread thread = new Thread(runnable, "tile-renderer");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        this.tileListener = tileListener;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /**                                          Projection                                          */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public double toWorldX(double x){return (x - this.minX) * this.cosLatitude / this.range;}
+    public double toWorldY(double y){return (this.maxY - y) / this.range;}
+    public double toX(double worldX){return this.minX + worldX * this.range / this.cosLatitude;}
+    public double toY(double worldY){return this.maxY - worldY * this.range;}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Renvoie une tuile si elle est en cache
+     * @return la tuile, null si elle n'est pas encore dessinée */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public BufferedImage getTile(int zoom, int tileX, int tileY)
+    {
+        synchronized(this.tiles) {
+            return this.tiles.get(key(zoom, tileX, tileY));
+        }
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Demande le dessin d'une tuile en arrière-plan, si elle n'est ni en cache ni déjà demandée */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public void requestTile(int zoom, int tileX, int tileY)
+    {
+        if(this.getTile(zoom, tileX, tileY) == null)
+            this.submit(key(zoom, tileX, tileY));
+    }
+    private void submit(long key)
+    {
+        this.pendingTiles.computeIfAbsent(key, k -> this.executor.submit(() -> this.renderTile(key)));
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Dessine une tuile demandée et la met en cache, puis la redessine si elle a été invalidée
+     * pendant son dessin */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private void renderTile(long key)
+    {
+        this.staleTiles.remove(key);
+        BufferedImage tile = this.render((int) (key >>> 48), (int) (key >>> 24 & 0xFFFFFF), (int) (key & 0xFFFFFF));
+        synchronized(this.tiles) {
+            this.tiles.put(key, tile);
+        }
+        this.pendingTiles.remove(key);
+        if(this.staleTiles.contains(key))
+            this.submit(key);
+        this.tileListener.run();
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Annule les tuiles demandées hors de la vue, après un zoom ou un déplacement rapide, une tuile
+     * invalidée dont le dessin est annulé étant retirée du cache */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public void retainTiles(int zoom, int minTileX, int minTileY, int maxTileX, int maxTileY)
+    {
+        this.view = new int[]{zoom, minTileX, minTileY, maxTileX, maxTileY};
+        Iterator<Map.Entry<Long,Future<?>>> iterator = this.pendingTiles.entrySet().iterator();
+        while(iterator.hasNext())
+        {
+            Map.Entry<Long,Future<?>> entry = iterator.next();
+            long key = entry.getKey();
+            if(!this.isInView(key) && entry.getValue().cancel(false)) {
+                iterator.remove();
+                if(this.staleTiles.remove(key))
+                    synchronized(this.tiles) {
+                        this.tiles.remove(key);
+                    }
+            }
+        }
+    }
+    private boolean isInView(long key)
+    {
+        int[] view = this.view;
+        int tileZoom = (int) (key >>> 48), tileX = (int) (key >>> 24 & 0xFFFFFF), tileY = (int) (key & 0xFFFFFF);
+        return view != null && tileZoom == view[0] && tileX >= view[1] && tileX <= view[3] && tileY >= view[2] && tileY <= view[4];
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Arrête les threads de dessin, le renderer n'étant plus utilisé */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public void dispose()
+    {
+        this.setLayer(null);
+        this.executor.shutdownNow();
+    }
+    private static long key(int zoom, int tileX, int tileY){return (long) zoom << 48 | (long) tileX << 24 | tileY;}
+    public synchronized ResultLayer getLayer(){return this.layer;}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Affiche une couche de résultats par-dessus le réseau, ses liens étant retrouvés par leur handle
+     * dans les ids du réseau, directement si le graphe de la couche partage ces ids
+     * @param layer la couche, null pour n'afficher que le réseau */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public synchronized void setLayer(ResultLayer layer)
+    {
+        if(this.layer != null)
+            this.layer.removeListener(this.layerListener);
+        int[] layerLinks = null, rendererLinks = null;
+        if(layer != null) {
+            CompactGraph graph = layer.getGraph();
+            layerLinks = new int[this.linkModes.length];
+            rendererLinks = new int[graph.getLinksNbr()];
+            Arrays.fill(layerLinks, -1);
+            for(int index = 0; index < rendererLinks.length; index++)
+            {
+                //Si lien ajouté au réseau après le renderer : pas dessiné
+                int link = this.linkIds.getHandle(graph.getLinkIds(), index);
+                rendererLinks[index] = link < layerLinks.length ? link : -1;
+                if(rendererLinks[index] >= 0)
+                    layerLinks[link] = index;
+            }
+            layer.addListener(this.layerListener);
+        }
+        this.layerLinks = layerLinks;
+        this.rendererLinks = rendererLinks;
+        this.layer = layer;
+        this.invalidateLinks(null);
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Redessine les tuiles en cache traversées par des liens de la couche : celles de la vue en
+     * arrière-plan, l'ancienne image restant affichée jusque-là, les autres étant oubliées
+     * @param links les indices des liens dans le graphe de la couche, null pour toutes les tuiles */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private void invalidateLinks(int[] links)
+    {
+        Long[] cachedKeys;
+        synchronized(this.tiles) {
+            cachedKeys = this.tiles.keySet().toArray(new Long[0]);
+        }
+        HashSet<Long> keys = new HashSet<>();
+        int[] rendererLinks = this.rendererLinks;
+        if(links == null || rendererLinks == null || links.length > cachedKeys.length * 64)
+            keys.addAll(Arrays.asList(cachedKeys));
+        else {
+            //Zooms en cache, et tuiles touchées à chacun à MAX_WIDTH pixels près
+            TreeSet<Integer> zooms = new TreeSet<>();
+            for(long key : cachedKeys)
+                zooms.add((int) (key >>> 48));
+            for(int layerLink : links)
+            {
+                int link = rendererLinks[layerLink];
+                if(link < 0)
+                    continue;
+                for(int zoom : zooms)
+                {
+                    double scale = TILE_SIZE * (double) (1L << zoom);
+                    double margin = ResultLayer.MAX_WIDTH;
+                    double minPixelX = this.linkBoxes[4 * link] * scale - margin;
+                    double minPixelY = this.linkBoxes[4 * link + 1] * scale - margin;
+                    double maxPixelX = this.linkBoxes[4 * link + 2] * scale + margin;
+                    double maxPixelY = this.linkBoxes[4 * link + 3] * scale + margin;
+                    for(int tileX = Math.max(0, (int) Math.floor(minPixelX / TILE_SIZE)); tileX <= (int) Math.floor(maxPixelX / TILE_SIZE); tileX++)
+                        for(int tileY = Math.max(0, (int) Math.floor(minPixelY / TILE_SIZE)); tileY <= (int) Math.floor(maxPixelY / TILE_SIZE); tileY++)
+                            keys.add(key(zoom, tileX, tileY));
+                }
+            }
+            keys.retainAll(Arrays.asList(cachedKeys));
+        }
+        for(long key : keys)
+        {
+            if(this.isInView(key)) {
+                this.staleTiles.add(key);
+                this.submit(key);
+            }
+            else synchronized(this.tiles) {
+                this.tiles.remove(key);
+            }
+        }
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Dessine une tuile : les liens qui la traversent, les plus courts qu'un pixel étant un point,
+     * puis par-dessus les liens ayant une valeur dans la couche de résultats
+     * @return l'image de la tuile, transparente hors des liens */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public BufferedImage render(int zoom, int tileX, int tileY)
+    {
+        BufferedImage image = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_ARGB);
+        int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        Graphics2D g = image.createGraphics();
+        double scale = TILE_SIZE * (double) (1L << zoom);
+        double offsetX = tileX * (double) TILE_SIZE, offsetY = tileY * (double) TILE_SIZE;
+        ResultLayer layer;
+        int[] layerLinks;
+        synchronized(this) {
+            layer = this.layer;
+            layerLinks = this.layerLinks;
+        }
+        //Liens dont la boîte touche la tuile, à l'épaisseur près
+        double margin = layer == null ? 1 : ResultLayer.MAX_WIDTH;
+        double minWorldX = (offsetX - margin) / scale, maxWorldX = (offsetX + TILE_SIZE + margin) / scale;
+        double minWorldY = (offsetY - margin) / scale, maxWorldY = (offsetY + TILE_SIZE + margin) / scale;
+        int[][] resultLinks = {new int[64]};
+        int[] resultLinksNbr = {0};
+        this.tree.search(this.toX(minWorldX), this.toY(maxWorldY), this.toX(maxWorldX), this.toY(minWorldY), link -> {
+            //Si lien de la couche avec une valeur : dessiné après
+            if(layer != null && layerLinks[link] >= 0 && layer.hasValue(layerLinks[link])) {
+                if(resultLinksNbr[0] == resultLinks[0].length)
+                    resultLinks[0] = Arrays.copyOf(resultLinks[0], resultLinksNbr[0] * 2);
+                resultLinks[0][resultLinksNbr[0]++] = link;
+            }
+            this.drawLink(g, pixels, link, scale, offsetX, offsetY, MODE_COLORS[this.linkModes[link]], 1, true);
+        });
+        for(int position = 0; position < resultLinksNbr[0]; position++)
+        {
+            int link = resultLinks[0][position], linkClass = layer.getClass(layerLinks[link]);
+            if(linkClass >= 0)
+                this.drawLink(g, pixels, link, scale, offsetX, offsetY, ResultLayer.getColor(linkClass), layer.getWidth(linkClass), false);
+        }
+        g.dispose();
+        return image;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Dessine un lien sur une tuile en passant par ses points de forme, un point s'il fait moins
+     * d'un pixel */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private void drawLink(Graphics2D g, int[] pixels, int link, double scale, double offsetX, double offsetY, Color color, int width, boolean nodes)
+    {
+        double minPixelX = this.linkBoxes[4 * link] * scale - offsetX, minPixelY = this.linkBoxes[4 * link + 1] * scale - offsetY;
+        double maxPixelX = this.linkBoxes[4 * link + 2] * scale - offsetX, maxPixelY = this.linkBoxes[4 * link + 3] * scale - offsetY;
+        //Si lien de moins d'un pixel : un point
+        if(width == 1 && maxPixelX - minPixelX < 1 && maxPixelY - minPixelY < 1) {
+            int x = (int) Math.floor((minPixelX + maxPixelX) / 2), y = (int) Math.floor((minPixelY + maxPixelY) / 2);
+            if(x >= 0 && x < TILE_SIZE && y >= 0 && y < TILE_SIZE)
+                pixels[y * TILE_SIZE + x] = color.getRGB();
+            return;
+        }
+        g.setColor(color);
+        if(width > 1)
+            g.setStroke(new BasicStroke(width, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
+        int firstPoint = this.linkFirstPoints[link], lastPoint = this.linkFirstPoints[link + 1] - 1;
+        int x1 = this.toPixel(this.pointCoordinates[2 * firstPoint], scale, offsetX), y1 = this.toPixel(this.pointCoordinates[2 * firstPoint + 1], scale, offsetY);
+        int previousX = x1, previousY = y1;
+        for(int point = firstPoint + 1; point <= lastPoint; point++)
+        {
+            int x = this.toPixel(this.pointCoordinates[2 * point], scale, offsetX), y = this.toPixel(this.pointCoordinates[2 * point + 1], scale, offsetY);
+            g.drawLine(previousX, previousY, x, y);
+            previousX = x;
+            previousY = y;
+        }
+        if(width > 1)
+            g.setStroke(THIN_STROKE);
+        //Si lien assez long : ses noeuds
+        if(nodes && (maxPixelX - minPixelX) + (maxPixelY - minPixelY) >= NODE_MIN_LINK_PIXELS) {
+            g.setColor(NODE_COLOR);
+            g.fillRect(x1 - 1, y1 - 1, 2, 2);
+            g.fillRect(previousX - 1, previousY - 1, 2, 2);
+        }
+    }
+    private int toPixel(float world, double scale, double offset){return (int) Math.floor(world * scale - offset);}
+}
@@ -4,9 +4,23 @@ import java.util.HashMap;
 
 public class Area
 {
-    HashMap<String,Zone> zones;
+    HashMap<String,Zone> zones = new HashMap<>();
+    private ZoneLocator zoneLocator;
     public void addZone(Zone zone)
     {
         this.zones.put(zone.getId(),zone);
+        this.zoneLocator = null;
+    }
+    public Zone getZone(String id){return this.zones.get(id);}
+    public HashMap<String,Zone> getZones(){return this.zones;}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Returns the locator of the zones of the area, built on the first call after a zone is added
+     * @return the point-in-zone index of the current zones */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public synchronized ZoneLocator getZoneLocator()
+    {
+        if(this.zoneLocator == null)
+            this.zoneLocator = new ZoneLocator(this.zones.values());
+        return this.zoneLocator;
     }
 }
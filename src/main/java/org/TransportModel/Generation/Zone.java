@@ -1,6 +1,6 @@
 package org.TransportModel.Generation;
 
-import com.vividsolutions.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Coordinate;
 import org.locationtech.jts.geom.MultiPolygon;
 
 public class Zone
@@ -17,4 +17,18 @@ public class Zone
 
     public String getId()
     {return this.id;}
+    public MultiPolygon getShape()
+    {return this.shape;}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Returns the point at which the zone is connected to the networks, its geometric center
+     * (ZoneCenters.getGeometricCenter) unless another center has been set */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public Coordinate getCenter()
+    {
+        if(this.center == null)
+            this.center = ZoneCenters.getGeometricCenter(this.shape);
+        return this.center;
+    }
+    public void setCenter(Coordinate center)
+    {this.center = center;}
  }
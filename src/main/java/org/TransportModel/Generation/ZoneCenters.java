@@ -0,0 +1,95 @@
+package org.TransportModel.Generation;
+
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.Point;
+
+import java.util.Collection;
+import java.util.List;
+
+///////////////////////////////////////////////////////////////////////////////////////////////////
+/** ZoneCenters computes the points at which the zones are connected to the networks (x=lon, y=lat)
+ * The geometric center is the centroid of the shape, or an interior point when the centroid falls
+ * outside (a crescent-shaped commune for example). The population-weighted center is the mean of
+ * the populated points of the zone, or the populated point nearest to this mean when it falls
+ * outside, so that the connectors start where the inhabitants are */
+///////////////////////////////////////////////////////////////////////////////////////////////////
+public final class ZoneCenters
+{
+    private ZoneCenters(){}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Computes the geometric center of a shape
+     * @return the centroid if the shape covers it, an interior point otherwise */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public static Coordinate getGeometricCenter(Geometry shape)
+    {
+        Point centroid = shape.getCentroid();
+        if(shape.covers(centroid))
+            return centroid.getCoordinate();
+        return shape.getInteriorPoint().getCoordinate();
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Sets the geometric center of zones, the zones being spread over all the cores */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public static void setGeometricCenters(Collection<Zone> zones)
+    {
+        zones.parallelStream().forEach(zone -> zone.setCenter(getGeometricCenter(zone.getShape())));
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Sets the population-weighted center of the zones of a locator, the zones without populated
+     * point keeping their center
+     * @param locator the locator of the zones, giving the zone of every point on all the cores
+     * @param xs the x coordinates of the populated points (buildings, households...)
+     * @param ys the y coordinates of the populated points
+     * @param populations the population of every point, the points without population being ignored
+     * @return the number of zones whose center has been set */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public static int setPopulationCenters(ZoneLocator locator, double[] xs, double[] ys, double[] populations)
+    {
+        if(populations.length != xs.length)
+            throw new IllegalArgumentException(populations.length + " populations for " + xs.length + " points");
+        List<Zone> zones = locator.getZones();
+        int[] pointZones = locator.locate(xs, ys);
+        //Weighted means
+        double[] weights = new double[zones.size()], sumsX = new double[zones.size()], sumsY = new double[zones.size()];
+        for(int point = 0; point < xs.length; point++)
+        {
+            int zone = pointZones[point];
+            if(zone < 0 || !(populations[point] > 0))
+                continue;
+            weights[zone] += populations[point];
+            sumsX[zone] += populations[point] * xs[point];
+            sumsY[zone] += populations[point] * ys[point];
+        }
+        //If the mean is outside its zone:the populated point nearest to it
+        int[] nearestPoints = new int[zones.size()];
+        double[] nearestDistances = new double[zones.size()];
+        for(int zone = 0; zone < zones.size(); zone++)
+            if(weights[zone] > 0) {
+                sumsX[zone] /= weights[zone];
+                sumsY[zone] /= weights[zone];
+                nearestPoints[zone] = locator.locate(sumsX[zone], sumsY[zone]) == zone ? -1 : Integer.MAX_VALUE;
+            }
+        for(int point = 0; point < xs.length; point++)
+        {
+            int zone = pointZones[point];
+            if(zone < 0 || !(populations[point] > 0) || nearestPoints[zone] == -1)
+                continue;
+            double dx = (xs[point] - sumsX[zone]) * Math.cos(Math.toRadians(sumsY[zone])), dy = ys[point] - sumsY[zone];
+            if(nearestPoints[zone] == Integer.MAX_VALUE || dx * dx + dy * dy < nearestDistances[zone]) {
+                nearestPoints[zone] = point;
+                nearestDistances[zone] = dx * dx + dy * dy;
+            }
+        }
+        int centersNbr = 0;
+        for(int zone = 0; zone < zones.size(); zone++)
+        {
+            if(!(weights[zone] > 0))
+                continue;
+            int point = nearestPoints[zone];
+            zones.get(zone).setCenter(point == -1 ? new Coordinate(sumsX[zone], sumsY[zone]) : new Coordinate(xs[point], ys[point]));
+            centersNbr++;
+        }
+        return centersNbr;
+    }
+}
@@ -0,0 +1,111 @@
+package org.TransportModel.Generation;
+
+import org.TransportModel.network.Network;
+import org.TransportModel.network.Node;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
+import org.locationtech.jts.index.strtree.STRtree;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.IntStream;
+
+///////////////////////////////////////////////////////////////////////////////////////////////////
+/** ZoneLocator finds the zone containing a point (x=lon, y=lat)
+ * The envelopes of the zones are indexed by an STR-tree, and the few zones whose envelope contains
+ * the point are tested exactly with prepared geometries, which index the segments of a boundary
+ * on its first test. A point on the boundary of two zones is given to the first one */
+///////////////////////////////////////////////////////////////////////////////////////////////////
+public class ZoneLocator
+{
+    private final List<Zone> zones;
+    private final PreparedGeometry[] shapes;
+    private final STRtree tree;
+    private final GeometryFactory factory = new GeometryFactory();
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Indexes zones, the tree being built at once so that it can be queried from several threads
+     * @param zones the zones, their order giving their indices */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public ZoneLocator(Collection<Zone> zones)
+    {
+        this.zones = new ArrayList<>(zones);
+        this.shapes = new PreparedGeometry[this.zones.size()];
+        this.tree = new STRtree();
+        for(int zone = 0; zone < this.shapes.length; zone++)
+        {
+            this.shapes[zone] = PreparedGeometryFactory.prepare(this.zones.get(zone).getShape());
+            this.tree.insert(this.zones.get(zone).getShape().getEnvelopeInternal(), zone);
+        }
+        this.tree.build();
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /**                                          Getters                                             */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public List<Zone> getZones(){return this.zones;}
+    public Zone getZone(int zone){return this.zones.get(zone);}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Finds the zone containing a point
+     * @return the index of the zone, -1 if the point is outside every zone */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public int locate(double x, double y)
+    {
+        Coordinate coordinate = new Coordinate(x, y);
+        int[] found = {-1};
+        this.tree.query(new Envelope(coordinate), item -> {
+            int zone = (Integer) item;
+            //If a zone of smaller index already contains the point:skip the exact test
+            if(found[0] >= 0 && found[0] < zone)
+                return;
+            if(this.shapes[zone].covers(this.factory.createPoint(coordinate)))
+                found[0] = zone;
+        });
+        return found[0];
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Finds the zone containing a coordinate
+     * @return the zone, null if the coordinate is outside every zone */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public Zone getZone(Coordinate coordinate)
+    {
+        int zone = this.locate(coordinate.x, coordinate.y);
+        return zone < 0 ? null : this.zones.get(zone);
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Finds the zone containing every point of a batch, the points being spread over all the cores
+     * @param xs the x coordinates of the points
+     * @param ys the y coordinates of the points
+     * @return the index of the zone of every point, -1 for the points outside every zone */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public int[] locate(double[] xs, double[] ys)
+    {
+        if(xs.length != ys.length)
+            throw new IllegalArgumentException(xs.length + " x coordinates for " + ys.length + " y coordinates");
+        int[] zones = new int[xs.length];
+        IntStream.range(0, xs.length).parallel().forEach(point -> zones[point] = this.locate(xs[point], ys[point]));
+        return zones;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Finds the zone of every node of a network
+     * @return the zones indexed by node handle, null for the nodes outside every zone */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public Zone[] locateNodes(Network network)
+    {
+        Node[] nodes = network.getNodes().toArray(new Node[0]);
+        double[] xs = new double[nodes.length], ys = new double[nodes.length];
+        for(int node = 0; node < nodes.length; node++)
+        {
+            xs[node] = nodes[node].getCoordinate().x;
+            ys[node] = nodes[node].getCoordinate().y;
+        }
+        int[] zones = this.locate(xs, ys);
+        Zone[] nodeZones = new Zone[nodes.length];
+        for(int node = 0; node < nodes.length; node++)
+            if(zones[node] >= 0)
+                nodeZones[node] = this.zones.get(zones[node]);
+        return nodeZones;
+    }
+}
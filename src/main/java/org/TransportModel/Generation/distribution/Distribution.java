@@ -0,0 +1,43 @@
+package org.TransportModel.Generation.distribution;
+
+import org.TransportModel.skim.SkimMatrix;
+
+///////////////////////////////////////////////////////////////////////////////////////////////////
+/** Distribution is the result of a gravity model for one segment: the trips between the zones
+ * and the convergence of the balancing */
+///////////////////////////////////////////////////////////////////////////////////////////////////
+public class Distribution
+{
+    private final String name;
+    private final SkimMatrix trips;
+    private final double[] errors;
+    private final boolean converged;
+    private final double unassignedTrips;
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /**                                        Constructor                                           */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    Distribution(String name, SkimMatrix trips, double[] errors, boolean converged, double unassignedTrips)
+    {
+        this.name = name;
+        this.trips = trips;
+        this.errors = errors;
+        this.converged = converged;
+        this.unassignedTrips = unassignedTrips;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /**                                          Getters                                             */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public String getName(){return this.name;}
+    public SkimMatrix getTrips(){return this.trips;}
+    public int getIterationsNbr(){return this.errors.length;}
+    public boolean isConverged(){return this.converged;}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Returns the largest relative difference between the trips reaching a zone and its attraction,
+     * at every iteration, the trips leaving every zone matching its production */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public double[] getErrors(){return this.errors;}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Returns the trips produced by zones from which no attracting zone can be reached */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public double getUnassignedTrips(){return this.unassignedTrips;}
+}
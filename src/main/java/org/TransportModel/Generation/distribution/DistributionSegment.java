@@ -0,0 +1,64 @@
+package org.TransportModel.Generation.distribution;
+
+import org.TransportModel.Generation.Zone;
+import org.TransportModel.skim.SkimMatrix;
+
+import java.util.Map;
+
+///////////////////////////////////////////////////////////////////////////////////////////////////
+/** DistributionSegment is one purpose and time period to distribute: the trips produced and
+ * attracted by every zone, the travel times of the period and the impedance of the purpose */
+///////////////////////////////////////////////////////////////////////////////////////////////////
+public class DistributionSegment
+{
+    private final String name;
+    private final SkimMatrix travelTimes;
+    private final double[] productions, attractions;
+    private final ImpedanceFunction impedanceFunction;
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Creates a segment
+     * @param name the name of the segment, "home-work AM" for example
+     * @param travelTimes the travel times in seconds between the zones, infinite between unconnected zones
+     * @param productions the trips leaving every zone, indexed like the zones of the matrix
+     * @param attractions the trips reaching every zone, indexed like the zones of the matrix */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public DistributionSegment(String name, SkimMatrix travelTimes, double[] productions, double[] attractions, ImpedanceFunction impedanceFunction)
+    {
+        if(productions.length != travelTimes.getZonesNbr() || attractions.length != travelTimes.getZonesNbr())
+            throw new IllegalArgumentException(productions.length + " productions and " + attractions.length + " attractions for " + travelTimes.getZonesNbr() + " zones");
+        this.name = name;
+        this.travelTimes = travelTimes;
+        this.productions = productions;
+        this.attractions = attractions;
+        this.impedanceFunction = impedanceFunction;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Creates a segment from the productions and attractions of the zones, the zones missing from
+     * the maps producing and attracting no trip
+     * @throws IllegalArgumentException if a zone of the maps is not a zone of the matrix */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public DistributionSegment(String name, SkimMatrix travelTimes, Map<Zone,Double> productions, Map<Zone,Double> attractions, ImpedanceFunction impedanceFunction)
+    {
+        this(name, travelTimes, toArray(travelTimes, productions), toArray(travelTimes, attractions), impedanceFunction);
+    }
+    private static double[] toArray(SkimMatrix travelTimes, Map<Zone,Double> values)
+    {
+        double[] array = new double[travelTimes.getZonesNbr()];
+        for(Map.Entry<Zone,Double> entry : values.entrySet())
+        {
+            int zone = travelTimes.getZoneIndex(entry.getKey().getId());
+            if(zone < 0)//If zone not in the matrix:error
+                throw new IllegalArgumentException("Zone not found: " + entry.getKey().getId());
+            array[zone] = entry.getValue();
+        }
+        return array;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /**                                          Getters                                             */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public String getName(){return this.name;}
+    public SkimMatrix getTravelTimes(){return this.travelTimes;}
+    public double[] getProductions(){return this.productions;}
+    public double[] getAttractions(){return this.attractions;}
+    public ImpedanceFunction getImpedanceFunction(){return this.impedanceFunction;}
+}
@@ -0,0 +1,191 @@
+package org.TransportModel.Generation.distribution;
+
+import org.TransportModel.skim.SkimMatrix;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.stream.IntStream;
+
+///////////////////////////////////////////////////////////////////////////////////////////////////
+/** GravityModel distributes the trips of segments between zones with a doubly constrained gravity
+ * model: T(i,j) = a(i) * b(j) * f(t(i,j)), the balancing factors a and b being found by Furness
+ * iterations so that the trips leaving and reaching every zone match its production and attraction.
+ * The attractions are first scaled to the total of the productions, without the zones that
+ * can't reach or be reached by any other zone, whose trips are left unassigned.
+ * The impedances are stored in a dense float matrix and every pass goes over blocks of rows on all
+ * the cores, the column sums being accumulated per block then added */
+///////////////////////////////////////////////////////////////////////////////////////////////////
+public class GravityModel
+{
+    public static final int DEFAULT_MAX_ITERATIONS = 100;
+    public static final double DEFAULT_TOLERANCE = 1e-4;
+    private static final int ROWS_PER_BLOCK = 64;
+    private int maxIterations = DEFAULT_MAX_ITERATIONS;
+    private double tolerance = DEFAULT_TOLERANCE;
+    private IterationListener listener;
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Receives the error of every iteration, to follow the convergence */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public interface IterationListener
+    {
+        void iterationDone(String segment, int iteration, double error);
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /**                                          Setters                                             */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public void setMaxIterations(int maxIterations){this.maxIterations = maxIterations;}
+    public void setListener(IterationListener listener){this.listener = listener;}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Sets the largest relative difference between the trips reaching a zone and its attraction at
+     * which the balancing stops */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public void setTolerance(double tolerance){this.tolerance = tolerance;}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Distributes several segments (purposes, time periods) one after the other
+     * @return the distributions by segment name, in the order of the segments */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public LinkedHashMap<String,Distribution> distribute(List<DistributionSegment> segments)
+    {
+        LinkedHashMap<String,Distribution> distributions = new LinkedHashMap<>();
+        for(DistributionSegment segment : segments)
+            distributions.put(segment.getName(), this.distribute(segment));
+        return distributions;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Distributes the trips of a segment
+     * @return the trips in a matrix in direct memory, with the zones of the travel times matrix */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public Distribution distribute(DistributionSegment segment)
+    {
+        int zonesNbr = segment.getTravelTimes().getZonesNbr();
+        int blocksNbr = (zonesNbr + ROWS_PER_BLOCK - 1) / ROWS_PER_BLOCK;
+        float[] impedances = this.computeImpedances(segment, blocksNbr);
+        double[] productions = segment.getProductions();
+        double[] attractions = this.scaleAttractions(segment, impedances);
+        //Balancing factors, the columns ones first neutral
+        double[] rowFactors = new double[zonesNbr], columnFactors = new double[zonesNbr], rowSums = new double[zonesNbr];
+        Arrays.fill(columnFactors, 1);
+        double[][] blockColumnSums = new double[blocksNbr][zonesNbr];
+        double[] columnSums = new double[zonesNbr];
+        List<Double> errors = new ArrayList<>();
+        boolean converged = false;
+        while(!converged && errors.size() < this.maxIterations)
+        {
+            //Rows: the trips leaving every zone match its production
+            IntStream.range(0, blocksNbr).parallel().forEach(block -> {
+                double[] blockSums = blockColumnSums[block];
+                Arrays.fill(blockSums, 0);
+                for(int origin = block * ROWS_PER_BLOCK; origin < Math.min(zonesNbr, (block + 1) * ROWS_PER_BLOCK); origin++)
+                {
+                    int offset = origin * zonesNbr;
+                    double rowSum = 0;
+                    for(int destination = 0; destination < zonesNbr; destination++)
+                        rowSum += columnFactors[destination] * impedances[offset + destination];
+                    rowSums[origin] = rowSum;
+                    double rowFactor = rowSum > 0 ? productions[origin] / rowSum : 0;
+                    rowFactors[origin] = rowFactor;
+                    if(rowFactor == 0)
+                        continue;
+                    for(int destination = 0; destination < zonesNbr; destination++)
+                        blockSums[destination] += rowFactor * impedances[offset + destination];
+                }
+            });
+            //Columns: the error before the update, which would make them match their attraction
+            IntStream.range(0, zonesNbr).parallel().forEach(destination -> {
+                double columnSum = 0;
+                for(int block = 0; block < blocksNbr; block++)
+                    columnSum += blockColumnSums[block][destination];
+                columnSums[destination] = columnSum;
+            });
+            double error = 0;
+            for(int destination = 0; destination < zonesNbr; destination++)
+                if(attractions[destination] > 0 && columnSums[destination] > 0)
+                    error = Math.max(error, Math.abs(columnFactors[destination] * columnSums[destination] - attractions[destination]) / attractions[destination]);
+            errors.add(error);
+            if(this.listener != null)
+                this.listener.iterationDone(segment.getName(), errors.size(), error);
+            converged = error <= this.tolerance;
+            if(!converged)
+                for(int destination = 0; destination < zonesNbr; destination++)
+                    if(columnSums[destination] > 0)
+                        columnFactors[destination] = attractions[destination] / columnSums[destination];
+        }
+        //If no attracting zone can be reached from a zone:its trips are lost
+        double unassignedTrips = 0;
+        for(int origin = 0; origin < zonesNbr; origin++)
+            if(!(rowSums[origin] > 0))
+                unassignedTrips += productions[origin];
+        SkimMatrix trips = this.computeTrips(segment.getTravelTimes(), impedances, rowFactors, columnFactors, blocksNbr);
+        return new Distribution(segment.getName(), trips, errors.stream().mapToDouble(Double::doubleValue).toArray(), converged, unassignedTrips);
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Computes the impedance of every pair of zones from their travel time
+     * @return the impedances row by row */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private float[] computeImpedances(DistributionSegment segment, int blocksNbr)
+    {
+        SkimMatrix travelTimes = segment.getTravelTimes();
+        int zonesNbr = travelTimes.getZonesNbr();
+        float[] impedances = new float[zonesNbr * zonesNbr];
+        IntStream.range(0, blocksNbr).parallel().forEach(block -> {
+            float[] row = new float[zonesNbr];
+            for(int origin = block * ROWS_PER_BLOCK; origin < Math.min(zonesNbr, (block + 1) * ROWS_PER_BLOCK); origin++)
+            {
+                travelTimes.getRow(origin, row);
+                for(int destination = 0; destination < zonesNbr; destination++)
+                    impedances[origin * zonesNbr + destination] = (float) segment.getImpedanceFunction().getImpedance(row[destination]);
+            }
+        });
+        return impedances;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Scales the attractions of a segment to the total of its productions, the zones that can't
+     * reach any zone producing nothing and the zones that can't be reached attracting nothing
+     * @return the scaled attractions */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private double[] scaleAttractions(DistributionSegment segment, float[] impedances)
+    {
+        int zonesNbr = segment.getTravelTimes().getZonesNbr();
+        boolean[] reachingRows = new boolean[zonesNbr], reachedColumns = new boolean[zonesNbr];
+        for(int origin = 0; origin < zonesNbr; origin++)
+            for(int destination = 0; destination < zonesNbr; destination++)
+                if(impedances[origin * zonesNbr + destination] > 0) {
+                    reachingRows[origin] = true;
+                    reachedColumns[destination] = true;
+                }
+        double totalProductions = 0, totalAttractions = 0;
+        for(int zone = 0; zone < zonesNbr; zone++)
+        {
+            totalProductions += reachingRows[zone] ? segment.getProductions()[zone] : 0;
+            totalAttractions += reachedColumns[zone] ? segment.getAttractions()[zone] : 0;
+        }
+        double scale = totalAttractions > 0 ? totalProductions / totalAttractions : 0;
+        double[] attractions = new double[zonesNbr];
+        for(int zone = 0; zone < zonesNbr; zone++)
+            attractions[zone] = reachedColumns[zone] ? segment.getAttractions()[zone] * scale : 0;
+        return attractions;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Fills the matrix of the trips from the balancing factors */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private SkimMatrix computeTrips(SkimMatrix travelTimes, float[] impedances, double[] rowFactors, double[] columnFactors, int blocksNbr)
+    {
+        int zonesNbr = travelTimes.getZonesNbr();
+        List<String> zoneIds = new ArrayList<>(zonesNbr);
+        for(int zone = 0; zone < zonesNbr; zone++)
+            zoneIds.add(travelTimes.getZoneId(zone));
+        SkimMatrix trips = SkimMatrix.allocateDirect(zoneIds);
+        IntStream.range(0, blocksNbr).parallel().forEach(block -> {
+            float[] row = new float[zonesNbr];
+            for(int origin = block * ROWS_PER_BLOCK; origin < Math.min(zonesNbr, (block + 1) * ROWS_PER_BLOCK); origin++)
+            {
+                for(int destination = 0; destination < zonesNbr; destination++)
+                    row[destination] = (float) (rowFactors[origin] * columnFactors[destination] * impedances[origin * zonesNbr + destination]);
+                trips.setRow(origin, row);
+            }
+        });
+        return trips;
+    }
+}
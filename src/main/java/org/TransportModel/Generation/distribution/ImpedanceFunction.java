@@ -0,0 +1,37 @@
+package org.TransportModel.Generation.distribution;
+
+///////////////////////////////////////////////////////////////////////////////////////////////////
+/** ImpedanceFunction gives the deterrence of a travel time in a gravity model: the larger the
+ * value, the more attractive the destination. An infinite time (unreachable zone) must give 0 */
+///////////////////////////////////////////////////////////////////////////////////////////////////
+public interface ImpedanceFunction
+{
+    double getImpedance(double travelTimeInS);
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Creates the negative exponential function exp(-beta * t)
+     * @param betaPerS the decay per second of travel time */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    static ImpedanceFunction exponential(double betaPerS)
+    {
+        return travelTimeInS -> Math.exp(-betaPerS * travelTimeInS);
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Creates the power function t^-alpha, the times under a minimum being raised to it
+     * @param minTravelTimeInS the time under which the impedance no longer grows (intrazonal trips) */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    static ImpedanceFunction power(double alpha, double minTravelTimeInS)
+    {
+        return travelTimeInS -> Math.pow(Math.max(travelTimeInS, minTravelTimeInS), -alpha);
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Creates the combined (gamma) function t^-alpha * exp(-beta * t)
+     * @param minTravelTimeInS the time under which the impedance no longer grows (intrazonal trips) */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    static ImpedanceFunction gamma(double alpha, double betaPerS, double minTravelTimeInS)
+    {
+        return travelTimeInS -> {
+            double time = Math.max(travelTimeInS, minTravelTimeInS);
+            return Math.pow(time, -alpha) * Math.exp(-betaPerS * time);
+        };
+    }
+}
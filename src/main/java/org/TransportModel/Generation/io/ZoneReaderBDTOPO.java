@@ -2,49 +2,92 @@ package org.TransportModel.Generation.io;
 
 import org.TransportModel.Generation.Area;
 import org.TransportModel.Generation.Zone;
+import org.TransportModel.metrics.Metrics;
+import org.TransportModel.network.io.CoordinateTransformer;
+import org.TransportModel.network.io.FeatureBatchReader;
 import org.geotools.data.shapefile.ShapefileDataStore;
 import org.geotools.data.simple.SimpleFeatureIterator;
 import org.geotools.data.simple.SimpleFeatureSource;
-import org.locationtech.jts.geom.Coordinate;
+import org.geotools.referencing.CRS;
 import org.locationtech.jts.geom.MultiPolygon;
-import org.locationtech.jts.geom.Polygon;
 import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.referencing.FactoryException;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
 
 import java.io.File;
 import java.io.IOException;
 
 public class ZoneReaderBDTOPO
 {
+    private boolean parallel = true;
     ///////////////////////////////////////////////////////////////////////////////////////////////////
-    /** Imports a shapefile of BDTOPO format and creates links from the features
-     * @param shpFilePath The path to the shapefile to import */
+    /**                                          Setters                                             */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public void setParallel(boolean parallel){this.parallel = parallel;}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Imports a shapefile of BDTOPO format and creates zones from the features
+     * The shapes are converted to WGS84 (x = longitude, y = latitude) like the networks, by batches
+     * on all the cores, and the zones are added in the order of the features, as the zones.read phase
+     * of the metrics
+     * @param shpFilePath The path to the shapefile to import
+     * @throws IOException if the shapefile can't be read, its CRS decoded or a shape converted */
     ///////////////////////////////////////////////////////////////////////////////////////////////////
     public void readBDTOPOFile(Area area, String shpFilePath) throws IOException
     {
         File shapeFile = new File(shpFilePath);
         ShapefileDataStore dataStore = new ShapefileDataStore(shapeFile.toURI().toURL());
         SimpleFeatureSource featureSource = dataStore.getFeatureSource(dataStore.getTypeNames()[0]);
-        try(SimpleFeatureIterator featureIterator = featureSource.getFeatures().features()){
-            while (featureIterator.hasNext())
-                this.addFeatureZone(area, featureIterator.next());
+        try(Metrics.Phase phase = Metrics.startPhase("zones.read");
+            SimpleFeatureIterator featureIterator = featureSource.getFeatures().features()){
+            int zonesNbr = area.getZones().size();
+            CoordinateTransformer transformer = this.getTransformer(featureSource);
+            FeatureBatchReader<Zone,Zone> reader = new FeatureBatchReader<>(this::extractZone,
+                    zone -> new Zone(zone.getId(), transformer.transform(zone.getShape())), area::addZone);
+            reader.setParallel(this.parallel);
+            try {
+                reader.read(featureIterator);
+            }
+            finally {
+                phase.addRows(reader.getFeaturesNbr());
+                phase.addRejectedRows(reader.getRejectedFeaturesNbr());
+                phase.addCreated(area.getZones().size() - zonesNbr);
+                phase.record("iterationTimeInNs", reader.getIterationTimeInNs());
+            }
+        }
+        catch(IOException | RuntimeException e){
+            throw e;
+        }
+        //If the CRS or a conversion failed:error, a partial area must not be used
+        catch(Exception e){
+            throw new IOException("Failed to read " + shpFilePath, e);
+        }
+        finally {
+            dataStore.dispose();
         }
-        catch(Exception e){e.printStackTrace();}
     }
     ///////////////////////////////////////////////////////////////////////////////////////////////////
-    /** */
+    /** Returns the transformer from the CRS of the shapefile to WGS84, Lambert-93 if it isn't declared */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private CoordinateTransformer getTransformer(SimpleFeatureSource featureSource) throws FactoryException
+    {
+        CoordinateReferenceSystem sourceCRS = featureSource.getSchema().getCoordinateReferenceSystem();
+        if(sourceCRS == null)
+            return CoordinateTransformer.lambert93ToWGS84();
+        return new CoordinateTransformer(sourceCRS, CRS.decode(CoordinateTransformer.WGS_84));
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Gets the id and the original shape of a feature, on the reading thread
+     * @return the zone in the CRS of the file, null if the feature has no id */
     ///////////////////////////////////////////////////////////////////////////////////////////////////
-    private void addFeatureZone(Area area, SimpleFeature feature)
+    private Zone extractZone(SimpleFeature feature)
     {
         //Get values
         Object id = feature.getAttribute(ATTRIBUTES.ID);
-        Object shapeLength = feature.getAttribute(ATTRIBUTES.SHAPE_LENGTH);
-        Object department = feature.getAttribute(ATTRIBUTES.DEPARTMENT);
         //Convert
         if (id == null)
-            return;
+            return null;
         MultiPolygon multiPolygon = (MultiPolygon) feature.getDefaultGeometry();
-        Zone zone = new Zone(id.toString(),multiPolygon);
-        area.addZone(zone);
+        return new Zone(id.toString(),multiPolygon);
     }
 }
 ///////////////////////////////////////////////////////////////////////////////////////////////////
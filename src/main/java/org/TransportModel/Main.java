@@ -4,9 +4,15 @@ import org.TransportModel.GUI.NetworkCanvas;
 import org.TransportModel.GUI.UserInterface;
 import org.TransportModel.Generation.Area;
 import org.TransportModel.Generation.io.ZoneReaderBDTOPO;
+import org.TransportModel.metrics.Metrics;
 import org.TransportModel.network.Network;
+import org.TransportModel.network.NetworkMerger;
+import org.TransportModel.network.TopologyBuilder;
 import org.TransportModel.network.io.NetworkReaderBDTOPO;
 import org.TransportModel.network.io.NetworkReaderGTFS;
+import org.TransportModel.network.io.NetworkSnapshot;
+
+import java.io.File;
 ///////////////////////////////////////////////////////////////////////////////////////////////////
 /**                                       Main Class                                             */
 ///////////////////////////////////////////////////////////////////////////////////////////////////
@@ -20,17 +26,23 @@ public class Main
         //TI
         Network network_TI = new Network();
         NetworkReaderBDTOPO networkReaderBDTOPO = new NetworkReaderBDTOPO();
+        networkReaderBDTOPO.setTopologyBuilder(new TopologyBuilder());
         String shpFilePath = "src/main/resources/TI/BDTOPO_94/TRONCON_DE_ROUTE.shp";
-        try{networkReaderBDTOPO.readBDTOPOFile(network_TI,shpFilePath);}
+        File snapshot_TI = new File("src/main/resources/TI/BDTOPO_94/network.snapshot");
+        try{network_TI = NetworkSnapshot.load(snapshot_TI, networkReaderBDTOPO.getConfiguration(), network -> networkReaderBDTOPO.readBDTOPOFile(network,shpFilePath), new File(shpFilePath));}
         catch(Exception e){e.printStackTrace();}
 
         //TC
         Network network_TC = new Network();
         NetworkReaderGTFS networkReaderGTFS = new NetworkReaderGTFS();
         String gtfsFolderPath = "src/main/resources/TC/GTFS_IDF";
-        try{networkReaderGTFS.readGTFSFolder(network_TC,gtfsFolderPath);}
+        File snapshot_TC = new File("src/main/resources/TC/network.snapshot");
+        try{network_TC = NetworkSnapshot.load(snapshot_TC, networkReaderGTFS.getConfiguration(), network -> networkReaderGTFS.readGTFSFolder(network,gtfsFolderPath), new File(gtfsFolderPath));}
         catch(Exception e){e.printStackTrace();}
 
+        //Multimodal
+        Network network_multimodal = new NetworkMerger().merge(network_TI, network_TC);
+
         //Display Network
         UserInterface gUI = new UserInterface();
         NetworkCanvas networkCanvas = new NetworkCanvas(network_TC);
@@ -44,6 +56,10 @@ public class Main
         try{zoneReaderBDTOPO.readBDTOPOFile(idf, communesShapeFile);}
         catch(Exception e){e.printStackTrace();}
 
+        //Metrics of the loading phases, with -Dmetrics.report
+        if(Boolean.getBoolean("metrics.report"))
+            System.out.println(Metrics.getRegistry());
+
 
     }
 }
\ No newline at end of file
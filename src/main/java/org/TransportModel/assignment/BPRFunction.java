@@ -0,0 +1,67 @@
+package org.TransportModel.assignment;
+
+///////////////////////////////////////////////////////////////////////////////////////////////////
+/** BPRFunction is the volume-delay function of the Bureau of Public Roads:
+ * time = freeFlowTime * (1 + alpha * (volume / capacity)^beta)
+ * An arc without a positive finite capacity is never congested */
+///////////////////////////////////////////////////////////////////////////////////////////////////
+public class BPRFunction
+{
+    public static final double DEFAULT_ALPHA = 0.15, DEFAULT_BETA = 4;
+    private final double alpha, beta;
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Creates the function with the usual parameters alpha = 0.15 and beta = 4 */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public BPRFunction()
+    {
+        this(DEFAULT_ALPHA, DEFAULT_BETA);
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Creates the function with custom parameters
+     * @param alpha the relative delay at capacity, non-negative
+     * @param beta the steepness of the delay beyond capacity, at least 1 */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public BPRFunction(double alpha, double beta)
+    {
+        if(alpha < 0 || beta < 1)
+            throw new IllegalArgumentException("Wrong BPR parameters: alpha=" + alpha + " beta=" + beta);
+        this.alpha = alpha;
+        this.beta = beta;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /**                                          Getters                                             */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public double getAlpha(){return this.alpha;}
+    public double getBeta(){return this.beta;}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Computes the congested travel time of an arc
+     * @param freeFlowTime the travel time of the empty arc in seconds
+     * @param volume the volume of the arc, in vehicles per hour
+     * @param capacityPerHour the capacity of the arc, in vehicles per hour
+     * @return the travel time in seconds */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public double getTime(double freeFlowTime, double volume, double capacityPerHour)
+    {
+        if(volume <= 0 || !isCongestible(capacityPerHour))
+            return freeFlowTime;
+        return freeFlowTime * (1 + this.alpha * Math.pow(volume / capacityPerHour, this.beta));
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Computes the derivative of the travel time of an arc with respect to its volume
+     * @return the derivative in seconds per vehicle per hour */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public double getDerivative(double freeFlowTime, double volume, double capacityPerHour)
+    {
+        if(volume <= 0 || !isCongestible(capacityPerHour))
+            return 0;
+        double ratio = volume / capacityPerHour;
+        return freeFlowTime * this.alpha * this.beta * Math.pow(ratio, this.beta - 1) / capacityPerHour;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Returns true if a capacity can be reached, positive and finite */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private static boolean isCongestible(double capacityPerHour)
+    {
+        return capacityPerHour > 0 && capacityPerHour < Double.POSITIVE_INFINITY;
+    }
+}
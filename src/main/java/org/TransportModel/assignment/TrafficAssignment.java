@@ -0,0 +1,384 @@
+package org.TransportModel.assignment;
+
+import org.TransportModel.Generation.Zone;
+import org.TransportModel.metrics.Metrics;
+import org.TransportModel.network.CompactGraph;
+import org.TransportModel.network.Mode;
+import org.TransportModel.routing.Router;
+import org.TransportModel.routing.SearchState;
+import org.TransportModel.skim.SkimBuilder;
+import org.TransportModel.skim.SkimMatrix;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+///////////////////////////////////////////////////////////////////////////////////////////////////
+/** TrafficAssignment loads an origin-destination demand between zones onto the arcs of a graph
+ * until user equilibrium, every used path of an OD pair having the same congested travel time.
+ * It iterates Frank-Wolfe or its conjugate and bi-conjugate variants (Mitradjieva and Lindberg):
+ * each iteration updates the BPR times, loads the demand all-or-nothing on the shortest paths
+ * (the origins in parallel), and moves the volumes toward this loading by the step minimizing
+ * the Beckmann objective. Volumes and times are stored in arrays indexed by arc, the zones being
+ * connected to the graph like in SkimBuilder.
+ * The vehicles only use the road and centroid connector arcs, those of the other modes of a
+ * multimodal graph (transit, walk, access) keeping no volume */
+///////////////////////////////////////////////////////////////////////////////////////////////////
+public class TrafficAssignment
+{
+    public static final int DEFAULT_MAX_ITERATIONS = 100;
+    public static final double DEFAULT_TARGET_RELATIVE_GAP = 1e-4;
+    private static final int LINE_SEARCH_ITERATIONS = 40;
+    private static final double MAX_CONJUGATE_WEIGHT = 0.99;
+    private static final int VEHICLE_MODES = Mode.mask(Mode.ROAD, Mode.CONNECTOR);
+    private final CompactGraph graph;
+    private final SkimMatrix demand;
+    private final BPRFunction bpr;
+    private final SkimBuilder connectors;
+    private final Router router;
+    private final double[] freeFlowTimes, capacities, times;
+    private double[] volumes, allOrNothing, direction, previousDirection, secondPreviousDirection;
+    private final List<OriginLoader> originLoaders = new ArrayList<>();
+    private final ThreadLocal<OriginLoader> threadLoaders;
+    private Algorithm algorithm = Algorithm.BICONJUGATE_FRANK_WOLFE;
+    private int maxIterations = DEFAULT_MAX_ITERATIONS;
+    private double targetRelativeGap = DEFAULT_TARGET_RELATIVE_GAP;
+    private IterationListener listener;
+    private double[] relativeGaps = new double[0];
+    private double unassignedDemand;
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** The rule giving the direction of each iteration */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public enum Algorithm
+    {
+        FRANK_WOLFE, CONJUGATE_FRANK_WOLFE, BICONJUGATE_FRANK_WOLFE
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Receives the convergence of the assignment, called on the calling thread */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public interface IterationListener
+    {
+        void iterationDone(int iteration, double relativeGap);
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Prepares the assignment with the default BPR function
+     * @param graph the graph to load, its free flow times and capacities being those of its links
+     * @param zones the zones of the demand, in row and column order
+     * @param demand the number of vehicles per hour between each pair of zones */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public TrafficAssignment(CompactGraph graph, List<Zone> zones, SkimMatrix demand)
+    {
+        this(graph, zones, demand, new BPRFunction());
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Prepares the assignment
+     * @param bpr the volume-delay function of every arc */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public TrafficAssignment(CompactGraph graph, List<Zone> zones, SkimMatrix demand, BPRFunction bpr)
+    {
+        if(demand.getZonesNbr() != zones.size())
+            throw new IllegalArgumentException("Demand matrix of " + demand.getZonesNbr() + " zones for " + zones.size() + " zones");
+        this.graph = graph;
+        this.demand = demand;
+        this.bpr = bpr;
+        this.freeFlowTimes = graph.getArcTimes();
+        this.capacities = new double[graph.getArcsNbr()];
+        for(int arc = 0; arc < this.capacities.length; arc++)
+            this.capacities[arc] = graph.getArcCapacityPerHour(arc);
+        this.times = this.freeFlowTimes.clone();
+        this.router = new Router(graph, this.times).withModes(VEHICLE_MODES);
+        this.connectors = new SkimBuilder(this.router, zones);
+        this.volumes = new double[graph.getArcsNbr()];
+        this.allOrNothing = new double[graph.getArcsNbr()];
+        this.direction = new double[graph.getArcsNbr()];
+        this.previousDirection = new double[graph.getArcsNbr()];
+        this.secondPreviousDirection = new double[graph.getArcsNbr()];
+        this.threadLoaders = ThreadLocal.withInitial(() -> {
+            OriginLoader loader = new OriginLoader();
+            synchronized(this.originLoaders) {this.originLoaders.add(loader);}
+            return loader;
+        });
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /**                                          Setters                                             */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public void setAlgorithm(Algorithm algorithm){this.algorithm = algorithm;}
+    public void setMaxIterations(int maxIterations){this.maxIterations = Math.max(1, maxIterations);}
+    public void setTargetRelativeGap(double targetRelativeGap){this.targetRelativeGap = targetRelativeGap;}
+    public void setListener(IterationListener listener){this.listener = listener;}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /**                                          Getters                                             */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public CompactGraph getGraph(){return this.graph;}
+    public double[] getArcVolumes(){return this.volumes;}
+    public double[] getArcTimes(){return this.times;}
+    public double getArcVolume(int arc){return this.volumes[arc];}
+    public double getArcTime(int arc){return this.times[arc];}
+    public int getIterationsNbr(){return this.relativeGaps.length;}
+    public double[] getRelativeGaps(){return this.relativeGaps.clone();}
+    public double getRelativeGap(){return this.relativeGaps.length == 0 ? Double.POSITIVE_INFINITY : this.relativeGaps[this.relativeGaps.length - 1];}
+    public double getUnassignedDemand(){return this.unassignedDemand;}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Sums the volumes of the arcs of each link, both directions of a bidirectional link together
+     * @return the volumes indexed like the links of the graph */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public double[] getLinkVolumes()
+    {
+        double[] linkVolumes = new double[this.graph.getLinksNbr()];
+        for(int arc = 0; arc < this.volumes.length; arc++)
+            linkVolumes[this.graph.getArcLinkIndex(arc)] += this.volumes[arc];
+        return linkVolumes;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Computes the zone to zone travel time matrix with the congested times of the last iteration
+     * @return the matrix of travel times in seconds, in direct memory */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public SkimMatrix buildCongestedSkim()
+    {
+        return this.connectors.build();
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Runs the assignment from free flow until the target relative gap or the maximum number of
+     * iterations is reached. The relative gap of an iteration is (TSTT - SPTT) / TSTT, TSTT being
+     * the total travel time of the current volumes and SPTT the total time if everyone used the
+     * current shortest paths
+     * The run is the assignment.traffic phase of the metrics, its searches router.search queries */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public void run()
+    {
+        try(Metrics.Phase phase = Metrics.startPhase("assignment.traffic"))
+        {
+            this.iterate();
+            phase.record("iterationsNbr", this.getIterationsNbr());
+        }
+    }
+    private void iterate()
+    {
+        System.arraycopy(this.freeFlowTimes, 0, this.times, 0, this.times.length);
+        this.loadAllOrNothing(this.volumes);
+        double[] gaps = new double[this.maxIterations];
+        int iterationsNbr = 0, conjugateDirectionsNbr = 0;
+        double previousStep = 0;
+        while(iterationsNbr < this.maxIterations)
+        {
+            this.updateTimes();
+            double shortestPathsTime = this.loadAllOrNothing(this.allOrNothing);
+            double totalTime = this.getTotalTravelTime();
+            double relativeGap = totalTime > 0 ? Math.max(0, (totalTime - shortestPathsTime) / totalTime) : 0;
+            gaps[iterationsNbr++] = relativeGap;
+            if(this.listener != null)
+                this.listener.iterationDone(iterationsNbr, relativeGap);
+            if(relativeGap <= this.targetRelativeGap)
+                break;
+            //Direction
+            int order = this.algorithm == Algorithm.FRANK_WOLFE ? 0 : this.algorithm == Algorithm.CONJUGATE_FRANK_WOLFE ? 1 : 2;
+            int previousDirectionsNbr = Math.min(order, conjugateDirectionsNbr);
+            if(previousDirectionsNbr == 2)
+                this.setBiconjugateDirection(previousStep);
+            else if(previousDirectionsNbr == 1)
+                this.setConjugateDirection();
+            else
+                System.arraycopy(this.allOrNothing, 0, this.direction, 0, this.direction.length);
+            //Step
+            double step = this.searchStep();
+            for(int arc = 0; arc < this.volumes.length; arc++)
+                this.volumes[arc] += step * (this.direction[arc] - this.volumes[arc]);
+            //Keep the directions for the next iteration, restarting from Frank-Wolfe after a full or null step
+            double[] recycled = this.secondPreviousDirection;
+            this.secondPreviousDirection = this.previousDirection;
+            this.previousDirection = this.direction;
+            this.direction = recycled;
+            conjugateDirectionsNbr = step > 0 && step < 1 ? conjugateDirectionsNbr + 1 : 0;
+            previousStep = step;
+        }
+        this.updateTimes();
+        this.relativeGaps = Arrays.copyOf(gaps, iterationsNbr);
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Sets the congested times of the arcs from their current volumes */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private void updateTimes()
+    {
+        for(int arc = 0; arc < this.times.length; arc++)
+            this.times[arc] = this.bpr.getTime(this.freeFlowTimes[arc], this.volumes[arc], this.capacities[arc]);
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Returns the sum over the loaded arcs of their volume times their congested time */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private double getTotalTravelTime()
+    {
+        double totalTime = 0;
+        for(int arc = 0; arc < this.volumes.length; arc++)
+            if(this.volumes[arc] > 0)
+                totalTime += this.volumes[arc] * this.times[arc];
+        return totalTime;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Sets the conjugate direction, mixing the all-or-nothing loading with the previous direction
+     * so that the new direction is conjugate to it with respect to the Hessian of the objective */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private void setConjugateDirection()
+    {
+        double numerator = 0, denominator = 0;
+        for(int arc = 0; arc < this.volumes.length; arc++)
+        {
+            double hessian = this.bpr.getDerivative(this.freeFlowTimes[arc], this.volumes[arc], this.capacities[arc]);
+            if(hessian == 0)
+                continue;
+            double previous = this.previousDirection[arc] - this.volumes[arc];
+            numerator += previous * hessian * (this.allOrNothing[arc] - this.volumes[arc]);
+            denominator += previous * hessian * (this.allOrNothing[arc] - this.previousDirection[arc]);
+        }
+        double weight = denominator != 0 ? Math.max(0, Math.min(MAX_CONJUGATE_WEIGHT, numerator / denominator)) : 0;
+        for(int arc = 0; arc < this.volumes.length; arc++)
+            this.direction[arc] = weight * this.previousDirection[arc] + (1 - weight) * this.allOrNothing[arc];
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Sets the bi-conjugate direction, mixing the all-or-nothing loading with the two previous
+     * directions so that the new direction is conjugate to both of them
+     * @param previousStep the step of the previous iteration, strictly between 0 and 1 */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private void setBiconjugateDirection(double previousStep)
+    {
+        double muNumerator = 0, muDenominator = 0, nuNumerator = 0, nuDenominator = 0;
+        for(int arc = 0; arc < this.volumes.length; arc++)
+        {
+            double hessian = this.bpr.getDerivative(this.freeFlowTimes[arc], this.volumes[arc], this.capacities[arc]);
+            if(hessian == 0)
+                continue;
+            double descent = this.allOrNothing[arc] - this.volumes[arc];
+            double previous = this.previousDirection[arc] - this.volumes[arc];
+            double secondPrevious = previousStep * this.previousDirection[arc] + (1 - previousStep) * this.secondPreviousDirection[arc] - this.volumes[arc];
+            muNumerator += secondPrevious * hessian * descent;
+            muDenominator += secondPrevious * hessian * (this.secondPreviousDirection[arc] - this.previousDirection[arc]);
+            nuNumerator += previous * hessian * descent;
+            nuDenominator += previous * hessian * previous;
+        }
+        double mu = muDenominator != 0 ? Math.max(0, -muNumerator / muDenominator) : 0;
+        double nu = nuDenominator != 0 ? Math.max(0, -nuNumerator / nuDenominator + mu * previousStep / (1 - previousStep)) : 0;
+        double beta0 = 1 / (1 + mu + nu), beta1 = nu * beta0, beta2 = mu * beta0;
+        for(int arc = 0; arc < this.volumes.length; arc++)
+            this.direction[arc] = beta0 * this.allOrNothing[arc] + beta1 * this.previousDirection[arc] + beta2 * this.secondPreviousDirection[arc];
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Finds the step toward the direction minimizing the Beckmann objective, by bisection on its
+     * derivative: the sum over the arcs of (direction - volume) * time(volume + step * (direction - volume))
+     * @return the step, between 0 and 1 */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private double searchStep()
+    {
+        if(this.getObjectiveDerivative(1) <= 0)
+            return 1;
+        double lowStep = 0, highStep = 1;
+        for(int iteration = 0; iteration < LINE_SEARCH_ITERATIONS; iteration++)
+        {
+            double step = (lowStep + highStep) / 2;
+            if(this.getObjectiveDerivative(step) > 0)
+                highStep = step;
+            else
+                lowStep = step;
+        }
+        return (lowStep + highStep) / 2;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Computes the derivative of the Beckmann objective along the direction at a given step */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private double getObjectiveDerivative(double step)
+    {
+        double derivative = 0;
+        for(int arc = 0; arc < this.volumes.length; arc++)
+        {
+            double move = this.direction[arc] - this.volumes[arc];
+            if(move != 0)
+                derivative += move * this.bpr.getTime(this.freeFlowTimes[arc], this.volumes[arc] + step * move, this.capacities[arc]);
+        }
+        return derivative;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Loads the whole demand on the shortest paths of the current times, the origins in parallel
+     * @param loads the array receiving the volume of each arc
+     * @return the total travel time of the loaded demand */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private double loadAllOrNothing(double[] loads)
+    {
+        synchronized(this.originLoaders) {
+            for(OriginLoader loader : this.originLoaders)
+                loader.clear();
+        }
+        IntStream.range(0, this.demand.getZonesNbr()).parallel().forEach(origin -> this.threadLoaders.get().load(origin));
+        Arrays.fill(loads, 0);
+        double totalTime = 0;
+        this.unassignedDemand = 0;
+        synchronized(this.originLoaders) {
+            for(OriginLoader loader : this.originLoaders)
+            {
+                for(int arc = 0; arc < loads.length; arc++)
+                    loads[arc] += loader.volumes[arc];
+                totalTime += loader.totalTime;
+                this.unassignedDemand += loader.unassignedDemand;
+            }
+        }
+        return totalTime;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** The all-or-nothing loading of the origins processed by one thread */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private class OriginLoader
+    {
+        private final double[] volumes = new double[graph.getArcsNbr()];
+        private final double[] nodeLoads = new double[graph.getNodesNbr()];
+        private final float[] row = new float[demand.getZonesNbr()];
+        private double totalTime, unassignedDemand;
+        ///////////////////////////////////////////////////////////////////////////////////////////////////
+        /** Forgets the loads of the previous loading */
+        ///////////////////////////////////////////////////////////////////////////////////////////////////
+        void clear()
+        {
+            Arrays.fill(this.volumes, 0);
+            this.totalTime = 0;
+            this.unassignedDemand = 0;
+        }
+        ///////////////////////////////////////////////////////////////////////////////////////////////////
+        /** Loads the demand of an origin on its shortest path tree: the demand is put on the destination
+         * nodes, then pushed from every node to its predecessor arc in the reverse order of the search */
+        ///////////////////////////////////////////////////////////////////////////////////////////////////
+        void load(int origin)
+        {
+            demand.getRow(origin, this.row);
+            int originNode = connectors.getZoneNode(origin);
+            if(originNode < 0) {
+                for(int destination = 0; destination < this.row.length; destination++)
+                    if(destination != origin && this.row[destination] > 0)
+                        this.unassignedDemand += this.row[destination];
+                return;
+            }
+            SearchState state = router.search(originNode, Double.POSITIVE_INFINITY);
+            for(int destination = 0; destination < this.row.length; destination++)
+            {
+                double trips = this.row[destination];
+                if(destination == origin || !(trips > 0))
+                    continue;
+                int destinationNode = connectors.getZoneNode(destination);
+                if(destinationNode < 0 || !state.isReached(destinationNode)) {
+                    this.unassignedDemand += trips;
+                    continue;
+                }
+                this.nodeLoads[destinationNode] += trips;
+                this.totalTime += trips * state.getDistance(destinationNode);
+            }
+            for(int position = state.getSettledNodesNbr() - 1; position > 0; position--)
+            {
+                int node = state.getSettledNode(position);
+                double load = this.nodeLoads[node];
+                if(load == 0)
+                    continue;
+                this.nodeLoads[node] = 0;
+                int arc = state.getPredecessorArc(node);
+                this.volumes[arc] += load;
+                this.nodeLoads[graph.getArcTail(arc)] += load;
+            }
+            this.nodeLoads[originNode] = 0;
+        }
+    }
+}
@@ -0,0 +1,415 @@
+package org.TransportModel.assignment;
+
+import org.TransportModel.Generation.Zone;
+import org.TransportModel.metrics.Metrics;
+import org.TransportModel.network.Link;
+import org.TransportModel.network.Mode;
+import org.TransportModel.network.Network;
+import org.TransportModel.network.Node;
+import org.TransportModel.network.TransferGenerator;
+import org.TransportModel.network.spatial.PackedRTree;
+import org.TransportModel.routing.GreatCircle;
+import org.TransportModel.routing.IndexedMinHeap;
+import org.TransportModel.skim.SkimMatrix;
+import org.locationtech.jts.geom.Coordinate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.stream.IntStream;
+
+///////////////////////////////////////////////////////////////////////////////////////////////////
+/** TransitAssignment loads an origin-destination demand between zones onto the route sections of a
+ * GTFS network with the optimal strategies of Spiess and Florian: at every stop a passenger boards
+ * the first vehicle among a set of attractive lines, each line being taken in proportion to its
+ * frequency (the inverse of the headway of its sections), the expected wait being the wait factor
+ * divided by the combined frequency of the set.
+ * The network is expanded into a strategy graph: a node per stop and an on board node per section,
+ * a passenger having ridden the section and being at its last stop. A boarding arc per section goes
+ * from its first stop straight on board at its last stop, an alighting arc goes from every on board
+ * node to its stop and an in-vehicle arc goes on to the section continuing the same pattern, the one
+ * section of the line leaving the stop other than back, so that a passenger never turns back or
+ * changes branch without alighting and waiting. Each zone walks to and from its nearest stops, along
+ * with the walking links between stops. The strategies of the destinations are computed and loaded
+ * in parallel, every thread summing the volumes of its destinations */
+///////////////////////////////////////////////////////////////////////////////////////////////////
+public class TransitAssignment
+{
+    public static final double DEFAULT_WAIT_FACTOR = 0.5;
+    public static final double DEFAULT_HEADWAY_IN_S = 3600;
+    public static final int DEFAULT_ACCESS_STOPS_NBR = 3;
+    public static final double DEFAULT_MAX_ACCESS_LENGTH_IN_M = 1000;
+    private final List<Zone> zones;
+    private final SkimMatrix demand;
+    private final List<Link> sections = new ArrayList<>();
+    private double waitFactor = DEFAULT_WAIT_FACTOR;
+    //Strategy graph: stops, then sections on board, then zones
+    private final int stopsNbr, zonesStart, nodesNbr;
+    private int[] arcTail, arcHead, arcSection;
+    private double[] arcCost, arcFrequency;
+    private boolean[] arcBoarding;
+    private int arcsNbr;
+    //Backward star
+    private int[] firstIn, inArcs;
+    //Results
+    private final double[] sectionLoads, sectionBoardings;
+    private double totalTravelTime, totalWaitTime, unassignedDemand;
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Prepares the assignment with the default access to the stops
+     * @param network the transit network, its sections giving their line and headway
+     * @param zones the zones of the demand, in row and column order
+     * @param demand the number of passengers per hour between each pair of zones */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public TransitAssignment(Network network, List<Zone> zones, SkimMatrix demand)
+    {
+        this(network, zones, demand, DEFAULT_ACCESS_STOPS_NBR, DEFAULT_MAX_ACCESS_LENGTH_IN_M, TransferGenerator.DEFAULT_WALK_SPEED_IN_MS);
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Prepares the assignment
+     * @param accessStopsNbr the number of stops each zone walks to and from
+     * @param maxAccessLengthInM the distance beyond which a stop is not walked to from a zone
+     * @param walkSpeedInMS the speed between a zone center and its stops */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public TransitAssignment(Network network, List<Zone> zones, SkimMatrix demand, int accessStopsNbr, double maxAccessLengthInM, double walkSpeedInMS)
+    {
+        if(demand.getZonesNbr() != zones.size())
+            throw new IllegalArgumentException("Demand matrix of " + demand.getZonesNbr() + " zones for " + zones.size() + " zones");
+        this.zones = new ArrayList<>(zones);
+        this.demand = demand;
+        //Stops: the nodes of the sections and walking links, indexed by node handle
+        int[] stops = new int[network.getNodesNbr()];
+        Arrays.fill(stops, -1);
+        List<Node> stopNodes = new ArrayList<>();
+        List<Link> walkLinks = new ArrayList<>();
+        for(Link link : network.getLinks())
+        {
+            if(link.getMode() == Mode.TRANSIT)
+                this.sections.add(link);
+            else if(link.getMode() == Mode.WALK)
+                walkLinks.add(link);
+            else
+                continue;
+            for(Node node : new Node[]{link.getFromNode(), link.getToNode()})
+            {
+                int handle = network.getNodeHandle(node);
+                if(stops[handle] < 0) {
+                    stops[handle] = stopNodes.size();
+                    stopNodes.add(node);
+                }
+            }
+        }
+        this.stopsNbr = stopNodes.size();
+        this.zonesStart = this.stopsNbr + this.sections.size();
+        this.nodesNbr = this.zonesStart + zones.size();
+        //Sections of each line leaving each stop
+        int[] fromStops = new int[this.sections.size()], toStops = new int[this.sections.size()];
+        HashMap<String,List<Integer>> lineDepartures = new HashMap<>();
+        for(int section = 0; section < fromStops.length; section++)
+        {
+            Link link = this.sections.get(section);
+            fromStops[section] = stops[network.getNodeHandle(link.getFromNode())];
+            toStops[section] = stops[network.getNodeHandle(link.getToNode())];
+            lineDepartures.computeIfAbsent(link.getLineId() + '\u0000' + fromStops[section], key -> new ArrayList<>()).add(section);
+        }
+        //Arcs
+        int capacity = 3 * this.sections.size() + 2 * walkLinks.size() + 2 * accessStopsNbr * zones.size();
+        this.arcTail = new int[capacity];
+        this.arcHead = new int[capacity];
+        this.arcSection = new int[capacity];
+        this.arcCost = new double[capacity];
+        this.arcFrequency = new double[capacity];
+        this.arcBoarding = new boolean[capacity];
+        for(int section = 0; section < this.sections.size(); section++)
+        {
+            Link link = this.sections.get(section);
+            double headway = link.getHeadwayInS() > 0 ? link.getHeadwayInS() : DEFAULT_HEADWAY_IN_S;
+            this.addArc(fromStops[section], this.stopsNbr + section, this.getTime(link), 1 / headway, section, true);
+            this.addArc(this.stopsNbr + section, toStops[section], 0, Double.POSITIVE_INFINITY, -1, false);
+            int next = this.getNextSection(section, fromStops, toStops, lineDepartures.get(link.getLineId() + '\u0000' + toStops[section]));
+            if(next >= 0)
+                this.addArc(this.stopsNbr + section, this.stopsNbr + next, this.getTime(this.sections.get(next)), Double.POSITIVE_INFINITY, next, false);
+        }
+        for(Link link : walkLinks)
+        {
+            int from = stops[network.getNodeHandle(link.getFromNode())], to = stops[network.getNodeHandle(link.getToNode())];
+            double time = this.getTime(link);
+            this.addArc(from, to, time, Double.POSITIVE_INFINITY, -1, false);
+            if(link.isBidirectional())
+                this.addArc(to, from, time, Double.POSITIVE_INFINITY, -1, false);
+        }
+        this.connectZones(stopNodes, accessStopsNbr, maxAccessLengthInM, walkSpeedInMS);
+        this.buildBackwardStar();
+        this.sectionLoads = new double[this.sections.size()];
+        this.sectionBoardings = new double[this.sections.size()];
+    }
+    private double getTime(Link link){return link.getLengthInM() > 0 ? link.getLengthInM() / link.getNormalSpeedInMS() : 0;}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Finds the section a vehicle rides after a section: the section of its line leaving its last
+     * stop, other than back to its first stop. At a branching the vehicle can't be told, the passenger
+     * alights and boards the branch
+     * @param departures the sections of the line leaving the last stop of the section, or null
+     * @return the next section, -1 at a terminus or a branching */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private int getNextSection(int section, int[] fromStops, int[] toStops, List<Integer> departures)
+    {
+        int next = -1;
+        if(departures != null)
+            for(int departure : departures)
+                if(toStops[departure] != fromStops[section]) {
+                    if(next >= 0)
+                        return -1;
+                    next = departure;
+                }
+        return next;
+    }
+    private void addArc(int tail, int head, double cost, double frequency, int section, boolean boarding)
+    {
+        this.arcTail[this.arcsNbr] = tail;
+        this.arcHead[this.arcsNbr] = head;
+        this.arcCost[this.arcsNbr] = cost;
+        this.arcFrequency[this.arcsNbr] = frequency;
+        this.arcSection[this.arcsNbr] = section;
+        this.arcBoarding[this.arcsNbr++] = boarding;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Links every zone in both directions to the stops nearest to its center, among the stops where
+     * a line can be boarded or left, found in parallel in a PackedRTree */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private void connectZones(List<Node> stopNodes, int accessStopsNbr, double maxAccessLengthInM, double walkSpeedInMS)
+    {
+        boolean[] served = new boolean[this.stopsNbr];
+        for(int arc = 0; arc < this.arcsNbr; arc++)
+            if(this.arcBoarding[arc])
+                served[this.arcTail[arc]] = true;
+            //If alighting:the line also serves its head
+            else if(this.arcTail[arc] >= this.stopsNbr && this.arcHead[arc] < this.stopsNbr)
+                served[this.arcHead[arc]] = true;
+        int[] items = IntStream.range(0, this.stopsNbr).filter(stop -> served[stop]).toArray();
+        double[] boxes = new double[4 * items.length];
+        for(int item = 0; item < items.length; item++)
+        {
+            boxes[4 * item] = boxes[4 * item + 2] = stopNodes.get(items[item]).getCoordinate().x;
+            boxes[4 * item + 1] = boxes[4 * item + 3] = stopNodes.get(items[item]).getCoordinate().y;
+        }
+        PackedRTree tree = new PackedRTree(boxes);
+        int[][] zoneStops = this.zones.parallelStream().map(zone -> {
+            Coordinate center = zone.getCenter();
+            int[] found = new int[accessStopsNbr];
+            int foundNbr = tree.nearest(center.x, center.y, accessStopsNbr, maxAccessLengthInM, null, found, new double[found.length]);
+            return Arrays.copyOf(found, foundNbr);
+        }).toArray(int[][]::new);
+        for(int zone = 0; zone < zoneStops.length; zone++)
+        {
+            Coordinate center = this.zones.get(zone).getCenter();
+            for(int item : zoneStops[zone])
+            {
+                Node stop = stopNodes.get(items[item]);
+                double time = GreatCircle.distanceInM(center.x, center.y, stop.getCoordinate().x, stop.getCoordinate().y) / walkSpeedInMS;
+                this.addArc(this.zonesStart + zone, items[item], time, Double.POSITIVE_INFINITY, -1, false);
+                this.addArc(items[item], this.zonesStart + zone, time, Double.POSITIVE_INFINITY, -1, false);
+            }
+        }
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Fills the arcs entering every node, the strategies being built from the destination backward */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private void buildBackwardStar()
+    {
+        this.firstIn = new int[this.nodesNbr + 1];
+        this.inArcs = new int[this.arcsNbr];
+        for(int arc = 0; arc < this.arcsNbr; arc++)
+            this.firstIn[this.arcHead[arc] + 1]++;
+        for(int node = 0; node < this.nodesNbr; node++)
+            this.firstIn[node + 1] += this.firstIn[node];
+        int[] nextIn = Arrays.copyOf(this.firstIn, this.nodesNbr);
+        for(int arc = 0; arc < this.arcsNbr; arc++)
+            this.inArcs[nextIn[this.arcHead[arc]]++] = arc;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /**                                          Setters                                             */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Sets the ratio between the expected wait and the headway of the attractive lines, 0.5 for
+     * regular headways and 1 for random arrivals of the vehicles */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public void setWaitFactor(double waitFactor){this.waitFactor = waitFactor;}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /**                                          Getters                                             */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public List<Link> getSections(){return this.sections;}
+    public double[] getSectionLoads(){return this.sectionLoads;}
+    public double[] getSectionBoardings(){return this.sectionBoardings;}
+    public double getTotalTravelTime(){return this.totalTravelTime;}
+    public double getTotalWaitTime(){return this.totalWaitTime;}
+    public double getUnassignedDemand(){return this.unassignedDemand;}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Divides the load of every section by its capacity
+     * @return the load factors indexed like the sections, infinite on a loaded section without capacity */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public double[] getSectionLoadFactors()
+    {
+        double[] loadFactors = new double[this.sections.size()];
+        for(int section = 0; section < loadFactors.length; section++)
+            loadFactors[section] = this.sectionLoads[section] == 0 ? 0 : this.sectionLoads[section] / this.getSectionCapacityPerHour(section);
+        return loadFactors;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Returns the capacity of a section, the one of its link when it has a headway, otherwise the
+     * capacity of a vehicle (see NetworkReaderGTFS) passing every default headway as in the strategies */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public double getSectionCapacityPerHour(int section)
+    {
+        Link link = this.sections.get(section);
+        return link.getHeadwayInS() > 0 ? link.getCapacityPerHour() : link.getCapacityPerHour() * 3600 / DEFAULT_HEADWAY_IN_S;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Computes the optimal strategy of every destination and loads its demand, the destinations in
+     * parallel, then sums the volumes of the sections, as the assignment.transit phase of the metrics */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public void run()
+    {
+        try(Metrics.Phase phase = Metrics.startPhase("assignment.transit"))
+        {
+            this.load();
+            phase.addRows(this.zones.size());
+        }
+    }
+    private void load()
+    {
+        List<DestinationLoader> loaders = new ArrayList<>();
+        ThreadLocal<DestinationLoader> threadLoaders = ThreadLocal.withInitial(() -> {
+            DestinationLoader loader = new DestinationLoader();
+            synchronized(loaders) {loaders.add(loader);}
+            return loader;
+        });
+        IntStream.range(0, this.zones.size()).parallel().forEach(destination -> threadLoaders.get().load(destination));
+        Arrays.fill(this.sectionLoads, 0);
+        Arrays.fill(this.sectionBoardings, 0);
+        this.totalTravelTime = this.totalWaitTime = this.unassignedDemand = 0;
+        for(DestinationLoader loader : loaders)
+        {
+            for(int arc = 0; arc < this.arcsNbr; arc++)
+                if(this.arcSection[arc] >= 0) {
+                    this.sectionLoads[this.arcSection[arc]] += loader.volumes[arc];
+                    if(this.arcBoarding[arc])
+                        this.sectionBoardings[this.arcSection[arc]] += loader.volumes[arc];
+                }
+            this.totalTravelTime += loader.totalTravelTime;
+            this.totalWaitTime += loader.totalWaitTime;
+            this.unassignedDemand += loader.unassignedDemand;
+        }
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** The strategies and loadings of the destinations processed by one thread */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private class DestinationLoader
+    {
+        private final double[] volumes = new double[arcsNbr];
+        private final double[] nodeTimes = new double[nodesNbr], nodeFrequencies = new double[nodesNbr], nodeVolumes = new double[nodesNbr];
+        //Arc leaving a node without wait (walk, in-vehicle, alighting) once attractive, -1 otherwise
+        private final int[] directArcs = new int[nodesNbr];
+        private final boolean[] processed = new boolean[arcsNbr];
+        private final int[] attractiveArcs = new int[arcsNbr];
+        private final IndexedMinHeap heap = new IndexedMinHeap(arcsNbr);
+        private double totalTravelTime, totalWaitTime, unassignedDemand;
+        ///////////////////////////////////////////////////////////////////////////////////////////////////
+        /** Builds the optimal strategy toward a destination, then loads its demand from every origin */
+        ///////////////////////////////////////////////////////////////////////////////////////////////////
+        void load(int destination)
+        {
+            int attractiveNbr = this.buildStrategy(zonesStart + destination);
+            //Demand of the origins, put on their zone nodes
+            Arrays.fill(this.nodeVolumes, 0);
+            boolean loaded = false;
+            for(int origin = 0; origin < zones.size(); origin++)
+            {
+                double trips = demand.get(origin, destination);
+                if(origin == destination || !(trips > 0))
+                    continue;
+                if(this.nodeTimes[zonesStart + origin] == Double.POSITIVE_INFINITY)
+                    this.unassignedDemand += trips;
+                else {
+                    this.nodeVolumes[zonesStart + origin] = trips;
+                    this.totalTravelTime += trips * this.nodeTimes[zonesStart + origin];
+                    loaded = true;
+                }
+            }
+            if(!loaded)
+                return;
+            //Attractive arcs from the farthest: a node has received all its volume before splitting it
+            for(int position = attractiveNbr - 1; position >= 0; position--)
+            {
+                int arc = this.attractiveArcs[position], tail = arcTail[arc];
+                double nodeVolume = this.nodeVolumes[tail];
+                if(nodeVolume == 0)
+                    continue;
+                double share;
+                if(this.directArcs[tail] >= 0)
+                    share = this.directArcs[tail] == arc ? 1 : 0;
+                else
+                    share = arcFrequency[arc] / this.nodeFrequencies[tail];
+                double volume = nodeVolume * share;
+                this.volumes[arc] += volume;
+                this.nodeVolumes[arcHead[arc]] += volume;
+            }
+            //Waits: every node splitting its volume among lines
+            for(int node = 0; node < stopsNbr; node++)
+                if(this.directArcs[node] < 0 && this.nodeFrequencies[node] > 0)
+                    this.totalWaitTime += waitFactor * this.nodeVolumes[node] / this.nodeFrequencies[node];
+        }
+        ///////////////////////////////////////////////////////////////////////////////////////////////////
+        /** Scans the arcs by increasing time to the destination from their head, an arc becoming
+         * attractive if it shortens the expected time from its tail: without wait it replaces the
+         * strategy of the tail, with wait its line joins the lines of the tail
+         * @return the number of attractive arcs, kept in the order they were found */
+        ///////////////////////////////////////////////////////////////////////////////////////////////////
+        private int buildStrategy(int destinationNode)
+        {
+            Arrays.fill(this.nodeTimes, Double.POSITIVE_INFINITY);
+            Arrays.fill(this.nodeFrequencies, 0);
+            Arrays.fill(this.directArcs, -1);
+            Arrays.fill(this.processed, false);
+            this.heap.clear();
+            this.nodeTimes[destinationNode] = 0;
+            this.pushInArcs(destinationNode);
+            int attractiveNbr = 0;
+            while(!this.heap.isEmpty())
+            {
+                double time = this.heap.peekKey();
+                int arc = this.heap.pop();
+                this.processed[arc] = true;
+                int tail = arcTail[arc];
+                //If the tail already leaves without wait, or can't be improved:not attractive
+                if(this.directArcs[tail] >= 0 || this.nodeTimes[tail] < time)
+                    continue;
+                if(arcFrequency[arc] == Double.POSITIVE_INFINITY) {
+                    this.nodeTimes[tail] = time;
+                    this.directArcs[tail] = arc;
+                }
+                else if(this.nodeFrequencies[tail] == 0) {
+                    this.nodeTimes[tail] = waitFactor / arcFrequency[arc] + time;
+                    this.nodeFrequencies[tail] = arcFrequency[arc];
+                }
+                else {
+                    double frequency = this.nodeFrequencies[tail];
+                    this.nodeTimes[tail] = (frequency * this.nodeTimes[tail] + arcFrequency[arc] * time) / (frequency + arcFrequency[arc]);
+                    this.nodeFrequencies[tail] = frequency + arcFrequency[arc];
+                }
+                this.attractiveArcs[attractiveNbr++] = arc;
+                //If zone:only walked to and from, never through
+                if(tail < zonesStart)
+                    this.pushInArcs(tail);
+            }
+            return attractiveNbr;
+        }
+        private void pushInArcs(int node)
+        {
+            for(int position = firstIn[node]; position < firstIn[node + 1]; position++)
+            {
+                int arc = inArcs[position];
+                if(!this.processed[arc])
+                    this.heap.push(arc, this.nodeTimes[node] + arcCost[arc]);
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package org.TransportModel.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+///////////////////////////////////////////////////////////////////////////////////////////////////
+/** InMemoryRegistry is the default registry: it keeps the counters, distributions and gauges in
+ * concurrent maps, the values being added with LongAdders so that the threads of a parallel stream
+ * don't contend on them. A distribution only keeps its count, total, min and max */
+///////////////////////////////////////////////////////////////////////////////////////////////////
+public class InMemoryRegistry implements MetricsRegistry
+{
+    private final ConcurrentHashMap<String,LongAdder> counters = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String,Distribution> distributions = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String,AtomicLong> gauges = new ConcurrentHashMap<>();
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /**                                         Modifiers                                            */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    @Override
+    public void count(String name, long delta){get(this.counters, name, LongAdder::new).add(delta);}
+    @Override
+    public void record(String name, long value){get(this.distributions, name, Distribution::new).add(value);}
+    @Override
+    public void set(String name, long value){get(this.gauges, name, AtomicLong::new).set(value);}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Gets a measure, reading the map before computeIfAbsent which locks its bin even when the
+     * measure exists on Java 8 */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private static <T> T get(ConcurrentHashMap<String,T> measures, String name, Supplier<T> constructor)
+    {
+        T measure = measures.get(name);
+        return measure != null ? measure : measures.computeIfAbsent(name, key -> constructor.get());
+    }
+    public void clear()
+    {
+        this.counters.clear();
+        this.distributions.clear();
+        this.gauges.clear();
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /**                                          Getters                                             */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public long getCount(String name){LongAdder counter = this.counters.get(name);return counter == null ? 0 : counter.sum();}
+    public long getGauge(String name){AtomicLong gauge = this.gauges.get(name);return gauge == null ? 0 : gauge.get();}
+    public Distribution getDistribution(String name){return this.distributions.get(name);}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Lists every measure, one per line sorted by name, the distributions in nanoseconds also giving
+     * their rate: the number of values per second of recorded time, queries per second for a timer */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public String report()
+    {
+        TreeMap<String,String> lines = new TreeMap<>();
+        this.counters.forEach((name, counter) -> lines.put(name, String.valueOf(counter.sum())));
+        this.gauges.forEach((name, gauge) -> lines.put(name, String.valueOf(gauge.get())));
+        this.distributions.forEach((name, distribution) -> lines.put(name, distribution.toString()
+                + (name.endsWith("InNs") ? String.format(" rate=%.1f/s", distribution.getRatePerS()) : "")));
+        StringBuilder report = new StringBuilder();
+        for(Map.Entry<String,String> line : lines.entrySet())
+            report.append(line.getKey()).append(" = ").append(line.getValue()).append('\n');
+        return report.toString();
+    }
+    @Override
+    public String toString(){return this.report();}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Count, total, min and max of the values of a distribution */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public static class Distribution
+    {
+        private final LongAdder count = new LongAdder(), total = new LongAdder();
+        private final LongAccumulator min = new LongAccumulator(Math::min, Long.MAX_VALUE);
+        private final LongAccumulator max = new LongAccumulator(Math::max, Long.MIN_VALUE);
+        void add(long value)
+        {
+            this.count.increment();
+            this.total.add(value);
+            this.min.accumulate(value);
+            this.max.accumulate(value);
+        }
+        public long getCount(){return this.count.sum();}
+        public long getTotal(){return this.total.sum();}
+        public long getMin(){return this.getCount() == 0 ? 0 : this.min.get();}
+        public long getMax(){return this.getCount() == 0 ? 0 : this.max.get();}
+        public double getMean(){long count = this.getCount();return count == 0 ? 0 : (double) this.getTotal() / count;}
+        ///////////////////////////////////////////////////////////////////////////////////////////////////
+        /** Returns the number of values per second of the total, for a distribution of durations in ns */
+        ///////////////////////////////////////////////////////////////////////////////////////////////////
+        public double getRatePerS(){long total = this.getTotal();return total <= 0 ? 0 : this.getCount() * 1e9 / total;}
+        @Override
+        public String toString()
+        {
+            return String.format("count=%d total=%d mean=%.1f min=%d max=%d", this.getCount(), this.getTotal(), this.getMean(), this.getMin(), this.getMax());
+        }
+    }
+}
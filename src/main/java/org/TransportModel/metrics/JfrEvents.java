@@ -0,0 +1,100 @@
+package org.TransportModel.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+///////////////////////////////////////////////////////////////////////////////////////////////////
+/** JfrEvents holds the Flight Recorder events of the phases and queries, recorded with the rest of
+ * a production run by -XX:StartFlightRecording. Only Metrics calls it, once it checked that the JVM
+ * has the jdk.jfr module, the events being passed around as Objects so that no other class links
+ * against jdk.jfr */
+///////////////////////////////////////////////////////////////////////////////////////////////////
+final class JfrEvents
+{
+    private JfrEvents(){}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Starts the event of a phase
+     * @return the event, null if the phase events aren't recorded */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    static Object beginPhase(String name)
+    {
+        PhaseEvent event = new PhaseEvent();
+        if(!event.isEnabled())
+            return null;
+        event.name = name;
+        event.begin();
+        return event;
+    }
+    static void commitPhase(Object phaseEvent, long rowsNbr, long rejectedRowsNbr, long createdNbr, long heapDeltaInBytes)
+    {
+        PhaseEvent event = (PhaseEvent) phaseEvent;
+        event.end();
+        if(!event.shouldCommit())
+            return;
+        event.rowsNbr = rowsNbr;
+        event.rejectedRowsNbr = rejectedRowsNbr;
+        event.createdNbr = createdNbr;
+        event.heapDeltaInBytes = heapDeltaInBytes;
+        event.commit();
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Starts the event of a query
+     * @return the event, null if the query events aren't recorded */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    static Object beginQuery(String name)
+    {
+        QueryEvent event = new QueryEvent();
+        if(!event.isEnabled())
+            return null;
+        event.name = name;
+        event.begin();
+        return event;
+    }
+    static void commitQuery(Object queryEvent, long settledNodesNbr)
+    {
+        QueryEvent event = (QueryEvent) queryEvent;
+        event.end();
+        if(!event.shouldCommit())
+            return;
+        event.settledNodesNbr = settledNodesNbr;
+        event.commit();
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /**                                          Events                                              */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    @Name("org.TransportModel.Phase")
+    @Label("Load Phase")
+    @Category("TransportModel")
+    @Description("A phase of the loading of the networks and zones, or of a model step")
+    static class PhaseEvent extends Event
+    {
+        @Label("Name")
+        String name;
+        @Label("Rows Parsed")
+        long rowsNbr;
+        @Label("Rows Rejected")
+        long rejectedRowsNbr;
+        @Label("Objects Created")
+        long createdNbr;
+        @Label("Heap Delta")
+        @DataAmount
+        long heapDeltaInBytes;
+    }
+    @Name("org.TransportModel.Query")
+    @Label("Query")
+    @Category("TransportModel")
+    @Description("A shortest path or timetable query")
+    @StackTrace(false)
+    static class QueryEvent extends Event
+    {
+        @Label("Name")
+        String name;
+        @Label("Settled Nodes")
+        long settledNodesNbr;
+    }
+}
@@ -0,0 +1,157 @@
+package org.TransportModel.metrics;
+
+///////////////////////////////////////////////////////////////////////////////////////////////////
+/** Metrics is the instrumentation entry point of the readers and of the graph algorithms
+ * A phase (reading stop_times, iterating a shapefile...) is timed by a try-with-resources block and
+ * reports its rows parsed, rejected rows, objects created and heap delta; a query (a search of a
+ * router) reports its duration and its settled nodes. Every measure goes to the registry, an
+ * InMemoryRegistry unless another one is set, and the phases and queries are also Flight Recorder
+ * events when the JVM has JFR and a recording enables them:
+ * java -XX:StartFlightRecording=filename=run.jfr ... then jfr print --events org.TransportModel.Phase run.jfr */
+///////////////////////////////////////////////////////////////////////////////////////////////////
+public final class Metrics
+{
+    private static final boolean JFR_AVAILABLE = isJfrAvailable();
+    private static volatile MetricsRegistry registry = new InMemoryRegistry();
+    private Metrics(){}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /**                                     Getters / Setters                                        */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public static MetricsRegistry getRegistry(){return registry;}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Sets the registry receiving the measures of every thread, null to ignore them */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public static void setRegistry(MetricsRegistry registry){Metrics.registry = registry == null ? MetricsRegistry.NONE : registry;}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /**                                         Measures                                             */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public static void count(String name, long delta){registry.count(name, delta);}
+    public static void record(String name, long value){registry.record(name, value);}
+    public static void set(String name, long value){registry.set(name, value);}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Starts a phase, to close at its end
+     * @param name the name of the phase, prefix of its measures */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public static Phase startPhase(String name){return new Phase(name);}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Creates a type of query, kept in a constant of the algorithm so that its queries don't build
+     * the names of their measures
+     * @param name the name of the queries, prefix of their measures */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public static QueryType queryType(String name){return new QueryType(name);}
+    private static boolean isJfrAvailable()
+    {
+        try {
+            Class.forName("jdk.jfr.Event", false, Metrics.class.getClassLoader());
+            return true;
+        }
+        catch(ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+    private static long getUsedHeapInBytes()
+    {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Phase of a load or of a model step, closed at its end
+     * Measures: name.timeInNs (distribution), name.rowsNbr, name.rejectedRowsNbr, name.createdNbr
+     * (counters) and name.heapDeltaInBytes (gauge), the used heap after minus before the phase, so
+     * that a garbage collection during the phase can make it negative */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public static final class Phase implements AutoCloseable
+    {
+        private final String name;
+        private final long startNs, startHeapInBytes;
+        private final Object event;
+        private long rowsNbr, rejectedRowsNbr, createdNbr;
+        private boolean closed;
+        private Phase(String name)
+        {
+            this.name = name;
+            this.event = JFR_AVAILABLE ? JfrEvents.beginPhase(name) : null;
+            this.startHeapInBytes = getUsedHeapInBytes();
+            this.startNs = System.nanoTime();
+        }
+        ///////////////////////////////////////////////////////////////////////////////////////////////////
+        /**                                         Modifiers                                            */
+        ///////////////////////////////////////////////////////////////////////////////////////////////////
+        public void addRows(long rowsNbr){this.rowsNbr += rowsNbr;}
+        public void addRejectedRows(long rejectedRowsNbr){this.rejectedRowsNbr += rejectedRowsNbr;}
+        public void addCreated(long createdNbr){this.createdNbr += createdNbr;}
+        ///////////////////////////////////////////////////////////////////////////////////////////////////
+        /** Records a value of a distribution of the phase, a duration of one of its steps for example
+         * @param name the name of the distribution, after the name of the phase */
+        ///////////////////////////////////////////////////////////////////////////////////////////////////
+        public void record(String name, long value){registry.record(this.name + '.' + name, value);}
+        ///////////////////////////////////////////////////////////////////////////////////////////////////
+        /** Ends the phase and reports its measures, only once */
+        ///////////////////////////////////////////////////////////////////////////////////////////////////
+        @Override
+        public void close()
+        {
+            if(this.closed)
+                return;
+            this.closed = true;
+            long timeInNs = System.nanoTime() - this.startNs;
+            long heapDeltaInBytes = getUsedHeapInBytes() - this.startHeapInBytes;
+            MetricsRegistry registry = Metrics.registry;
+            registry.record(this.name + ".timeInNs", timeInNs);
+            registry.count(this.name + ".rowsNbr", this.rowsNbr);
+            registry.count(this.name + ".rejectedRowsNbr", this.rejectedRowsNbr);
+            registry.count(this.name + ".createdNbr", this.createdNbr);
+            registry.set(this.name + ".heapDeltaInBytes", heapDeltaInBytes);
+            if(this.event != null)
+                JfrEvents.commitPhase(this.event, this.rowsNbr, this.rejectedRowsNbr, this.createdNbr, heapDeltaInBytes);
+        }
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Type of the queries of a graph algorithm, the searches of a router for example
+     * Measures: name.timeInNs and name.settledNodesNbr (distributions), the rate of the timer being
+     * the number of queries per second of search of a thread */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public static final class QueryType
+    {
+        private final String name, timeName, settledNodesName;
+        private QueryType(String name)
+        {
+            this.name = name;
+            this.timeName = name + ".timeInNs";
+            this.settledNodesName = name + ".settledNodesNbr";
+        }
+        public String getName(){return this.name;}
+        ///////////////////////////////////////////////////////////////////////////////////////////////////
+        /** Starts a query, to end once its search is over */
+        ///////////////////////////////////////////////////////////////////////////////////////////////////
+        public Query start(){return new Query(this);}
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Query of a graph algorithm, ended once its search is over */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public static final class Query
+    {
+        private final QueryType type;
+        private final long startNs;
+        private final Object event;
+        private Query(QueryType type)
+        {
+            this.type = type;
+            this.event = JFR_AVAILABLE ? JfrEvents.beginQuery(type.name) : null;
+            this.startNs = System.nanoTime();
+        }
+        ///////////////////////////////////////////////////////////////////////////////////////////////////
+        /** Ends the query and reports its measures
+         * @param settledNodesNbr the number of nodes (or stops) the search settled */
+        ///////////////////////////////////////////////////////////////////////////////////////////////////
+        public void end(long settledNodesNbr)
+        {
+            long timeInNs = System.nanoTime() - this.startNs;
+            MetricsRegistry registry = Metrics.registry;
+            registry.record(this.type.timeName, timeInNs);
+            registry.record(this.type.settledNodesName, settledNodesNbr);
+            if(this.event != null)
+                JfrEvents.commitQuery(this.event, settledNodesNbr);
+        }
+    }
+}
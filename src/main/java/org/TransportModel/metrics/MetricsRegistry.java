@@ -0,0 +1,36 @@
+package org.TransportModel.metrics;
+
+///////////////////////////////////////////////////////////////////////////////////////////////////
+/** MetricsRegistry receives the measures of the loading phases and of the queries, by name
+ * Counters add up (rows parsed, links created...), distributions collect values (durations in
+ * nanoseconds, settled nodes per query...) and gauges keep their last value (heap delta of a phase)
+ * The names are dotted paths ending like the fields of the repository: "gtfs.stops.rowsNbr",
+ * "router.search.timeInNs". A registry is called from every thread and must be thread safe */
+///////////////////////////////////////////////////////////////////////////////////////////////////
+public interface MetricsRegistry
+{
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Registry ignoring every measure, to disable the metrics */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    MetricsRegistry NONE = new MetricsRegistry()
+    {
+        @Override
+        public void count(String name, long delta){}
+        @Override
+        public void record(String name, long value){}
+        @Override
+        public void set(String name, long value){}
+    };
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Adds to a counter, created at 0 on its first use */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    void count(String name, long delta);
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Adds a value to a distribution, a duration in nanoseconds for a timer */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    void record(String name, long value);
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Sets the value of a gauge */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    void set(String name, long value);
+}
@@ -0,0 +1,123 @@
+package org.TransportModel.network;
+
+import org.TransportModel.Generation.Zone;
+import org.TransportModel.network.spatial.PackedRTree;
+import org.TransportModel.routing.GreatCircle;
+import org.locationtech.jts.geom.Coordinate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Predicate;
+
+///////////////////////////////////////////////////////////////////////////////////////////////////
+/** CentroidConnectorGenerator adds the zones to a network: a node at the center of every zone,
+ * linked in both directions to the k eligible nodes nearest to it, so that the demand of the zones
+ * can be loaded on the network. The eligible nodes are indexed in a PackedRTree and the nearest
+ * nodes of the zones are searched on all the cores. A connector is as long as the crow-fly distance
+ * and is covered at the connector speed */
+///////////////////////////////////////////////////////////////////////////////////////////////////
+public class CentroidConnectorGenerator
+{
+    public static final int DEFAULT_CONNECTORS_NBR = 3;
+    public static final double DEFAULT_SPEED_IN_MS = 5 * (1000.0 / 3600.0);
+    public static final String ZONE_NODE_PREFIX = "zone:", CONNECTOR_PREFIX = "connector:";
+    private static final double CAPACITY_PER_HOUR = 10000000;
+    private int connectorsNbr = DEFAULT_CONNECTORS_NBR;
+    private double speedInMS = DEFAULT_SPEED_IN_MS, maxLengthInM = Double.POSITIVE_INFINITY;
+    private Predicate<Node> eligible;
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /**                                          Setters                                             */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public void setConnectorsNbr(int connectorsNbr){this.connectorsNbr = connectorsNbr;}
+    public void setSpeedInMS(double speedInMS){this.speedInMS = speedInMS;}
+    public void setMaxLengthInM(double maxLengthInM){this.maxLengthInM = maxLengthInM;}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Restricts the nodes that can be connected, by default the nodes both left and reached by a link */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public void setEligibleNodes(Predicate<Node> eligible){this.eligible = eligible;}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /**                                          Getters                                             */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public static String getZoneNodeId(Zone zone){return ZONE_NODE_PREFIX + zone.getId();}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Adds the node of every zone and its connectors to a network
+     * @param network the network to connect the zones to
+     * @param zones the zones, connected at their center
+     * @return the number of connectors added, a zone without eligible node within the maximum
+     *         length being left unconnected */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public int connect(Network network, List<Zone> zones)
+    {
+        Node[] nodes = this.getEligibleNodes(network);
+        double[] boxes = new double[4 * nodes.length];
+        for(int item = 0; item < nodes.length; item++)
+        {
+            boxes[4 * item] = boxes[4 * item + 2] = nodes[item].getCoordinate().x;
+            boxes[4 * item + 1] = boxes[4 * item + 3] = nodes[item].getCoordinate().y;
+        }
+        PackedRTree tree = new PackedRTree(boxes);
+        //Nearest nodes of every zone
+        int[][] zoneNodes = zones.parallelStream().map(zone -> {
+            Coordinate center = zone.getCenter();
+            int[] items = new int[this.connectorsNbr];
+            int found = tree.nearest(center.x, center.y, this.connectorsNbr, this.maxLengthInM, null, items, new double[items.length]);
+            return found == items.length ? items : Arrays.copyOf(items, found);
+        }).toArray(int[][]::new);
+        //Links, in the order of the zones
+        int connectorsNbr = 0;
+        for(int zone = 0; zone < zones.size(); zone++)
+        {
+            Node zoneNode = new Node(getZoneNodeId(zones.get(zone)), zones.get(zone).getCenter());
+            network.addNode(zoneNode);
+            for(int item : zoneNodes[zone])
+            {
+                Node node = nodes[item];
+                double lengthInM = GreatCircle.distanceInM(zoneNode.getCoordinate().x, zoneNode.getCoordinate().y, node.getCoordinate().x, node.getCoordinate().y);
+                String id = CONNECTOR_PREFIX + zones.get(zone).getId() + ':' + node.getId();
+                Link link = new Link(id, zoneNode, node, true, this.speedInMS, CAPACITY_PER_HOUR, lengthInM);
+                link.setMode(Mode.CONNECTOR);
+                network.addLink(link);
+                connectorsNbr++;
+            }
+        }
+        return connectorsNbr;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Returns the nodes that can be connected, without the nodes of the zones already connected */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private Node[] getEligibleNodes(Network network)
+    {
+        Predicate<Node> eligible = this.eligible;
+        //If no restriction:the nodes both left and reached by a link
+        if(eligible == null)
+            eligible = isLeftAndReached(network);
+        List<Node> nodes = new ArrayList<>();
+        for(int handle = 0; handle < network.getNodesNbr(); handle++)
+            if(!network.getNodeIds().startsWith(handle, ZONE_NODE_PREFIX) && eligible.test(network.getNode(handle)))
+                nodes.add(network.getNode(handle));
+        return nodes.toArray(new Node[0]);
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Creates the test of the nodes both left and reached by some links of a network, the nodes where
+     * a trip can start and end, flagged by node handle */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    static Predicate<Node> isLeftAndReached(Network network)
+    {
+        boolean[] leftNodes = new boolean[network.getNodesNbr()], reachedNodes = new boolean[network.getNodesNbr()];
+        for(Link link : network.getLinks())
+        {
+            int fromNode = network.getNodeHandle(link.getFromNode()), toNode = network.getNodeHandle(link.getToNode());
+            leftNodes[fromNode] = true;
+            reachedNodes[toNode] = true;
+            if(link.isBidirectional()) {
+                leftNodes[toNode] = true;
+                reachedNodes[fromNode] = true;
+            }
+        }
+        return node -> {
+            int handle = network.getNodeHandle(node);
+            return handle >= 0 && handle < leftNodes.length && leftNodes[handle] && reachedNodes[handle];
+        };
+    }
+}
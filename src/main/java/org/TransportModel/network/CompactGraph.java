@@ -0,0 +1,334 @@
+package org.TransportModel.network;
+
+///////////////////////////////////////////////////////////////////////////////////////////////////
+/** CompactGraph is a frozen adjacency view of a Network stored in primitive arrays (CSR)
+ * Nodes are numbered 0..n-1 and arcs 0..m-1, the outgoing arcs of a node being contiguous
+ * A bidirectional link is expanded into two arcs, one in each direction
+ * Every arc keeps the mode of its link, so that a search can be restricted to some modes
+ * The ids of the nodes and links are kept in dictionaries, those of the network when the graph is
+ * built from one, the index of a node or a link being its handle there
+ * The shape points of the links are packed in one array, the points of link l being the points
+ * linkFirstShapePoint[l]..linkFirstShapePoint[l+1]-1 */
+///////////////////////////////////////////////////////////////////////////////////////////////////
+public class CompactGraph
+{
+    //Nodes
+    private final IdDictionary nodeIds;
+    private final double[] nodeX, nodeY;
+    //Forward star: arcs firstOut[n]..firstOut[n+1]-1 leave node n
+    private final int[] firstOut, arcTail, arcHead;
+    //Backward star: inArcs[firstIn[n]..firstIn[n+1]-1] are the arcs entering node n
+    private final int[] firstIn, inArcs;
+    //Arcs attributes
+    private final double[] arcLength, arcSpeed, arcCapacity, arcTime;
+    private final int[] arcLink;
+    private final boolean[] arcReversed;
+    private final byte[] arcMode;
+    private final IdDictionary linkIds;
+    private final int linksNbr;
+    //Links shapes: x y of each point in turn
+    private final int[] linkFirstShapePoint;
+    private final double[] shapePoints;
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Builds the compact view of a network, only the dictionaries of its ids being shared with it
+     * @param network The network to freeze */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public CompactGraph(Network network)
+    {
+        this(Source.of(network));
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Builds the compact view of nodes and links given as arrays, a snapshot for example
+     * The coordinates arrays are kept by the graph and must not be modified afterwards
+     * @param nodeIds the ids of the nodes, giving their indices
+     * @param nodeX the x coordinates (longitudes) of the nodes
+     * @param nodeY the y coordinates (latitudes) of the nodes
+     * @param linkIds the ids of the links, giving their indices
+     * @param linkFrom the index of the from node of every link
+     * @param linkTo the index of the to node of every link
+     * @param linkBidirectional if every link can be used in both directions
+     * @param linkLengthInM the length in meters of every link
+     * @param linkSpeedInMS the normal speed in meters per second of every link
+     * @param linkCapacityPerHour the capacity per hour of every link
+     * @throws IllegalArgumentException if two nodes or two links have the same id */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public CompactGraph(String[] nodeIds, double[] nodeX, double[] nodeY, String[] linkIds, int[] linkFrom, int[] linkTo,
+                        boolean[] linkBidirectional, double[] linkLengthInM, double[] linkSpeedInMS, double[] linkCapacityPerHour)
+    {
+        this(nodeIds, nodeX, nodeY, linkIds, linkFrom, linkTo, linkBidirectional, linkLengthInM, linkSpeedInMS, linkCapacityPerHour, null);
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Builds the compact view of multimodal nodes and links given as arrays
+     * @param linkModes the mode of every link, all the links being road links if null */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public CompactGraph(String[] nodeIds, double[] nodeX, double[] nodeY, String[] linkIds, int[] linkFrom, int[] linkTo,
+                        boolean[] linkBidirectional, double[] linkLengthInM, double[] linkSpeedInMS, double[] linkCapacityPerHour, Mode[] linkModes)
+    {
+        this(nodeIds, nodeX, nodeY, linkIds, linkFrom, linkTo, linkBidirectional, linkLengthInM, linkSpeedInMS, linkCapacityPerHour, linkModes, null);
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Builds the compact view of multimodal nodes and links given as arrays, with their shapes
+     * @param linkShapePoints the points every link goes through between its nodes (x y of each point
+     * in turn, like Link.getShapePoints), null for a straight link or if all the links are straight */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public CompactGraph(String[] nodeIds, double[] nodeX, double[] nodeY, String[] linkIds, int[] linkFrom, int[] linkTo,
+                        boolean[] linkBidirectional, double[] linkLengthInM, double[] linkSpeedInMS, double[] linkCapacityPerHour, Mode[] linkModes,
+                        double[][] linkShapePoints)
+    {
+        this(new Source(Source.intern(nodeIds, "node"), nodeX, nodeY, Source.intern(linkIds, "link"), linkFrom, linkTo,
+                linkBidirectional, linkLengthInM, linkSpeedInMS, linkCapacityPerHour, linkModes, linkShapePoints));
+    }
+    private CompactGraph(Source source)
+    {
+        //Nodes
+        int nodesNbr = source.nodeX.length;
+        this.nodeIds = source.nodeIds;
+        this.nodeX = source.nodeX;
+        this.nodeY = source.nodeY;
+        //Links
+        int linksNbr = source.linkFrom.length;
+        this.linkIds = source.linkIds;
+        this.linksNbr = linksNbr;
+        int arcsNbr = 0;
+        for(int linkIndex = 0; linkIndex < linksNbr; linkIndex++)
+            arcsNbr += source.linkBidirectional[linkIndex] ? 2 : 1;
+        //Count arcs per tail node
+        this.firstOut = new int[nodesNbr + 1];
+        for(int linkIndex = 0; linkIndex < linksNbr; linkIndex++)
+        {
+            this.firstOut[source.linkFrom[linkIndex] + 1]++;
+            if(source.linkBidirectional[linkIndex])
+                this.firstOut[source.linkTo[linkIndex] + 1]++;
+        }
+        for(int node = 0; node < nodesNbr; node++)
+            this.firstOut[node + 1] += this.firstOut[node];
+        //Fill arcs
+        this.arcTail = new int[arcsNbr];
+        this.arcHead = new int[arcsNbr];
+        this.arcLength = new double[arcsNbr];
+        this.arcSpeed = new double[arcsNbr];
+        this.arcCapacity = new double[arcsNbr];
+        this.arcTime = new double[arcsNbr];
+        this.arcLink = new int[arcsNbr];
+        this.arcReversed = new boolean[arcsNbr];
+        this.arcMode = new byte[arcsNbr];
+        int[] nextArc = new int[nodesNbr];
+        System.arraycopy(this.firstOut, 0, nextArc, 0, nodesNbr);
+        for(int linkIndex = 0; linkIndex < linksNbr; linkIndex++)
+        {
+            int from = source.linkFrom[linkIndex];
+            int to = source.linkTo[linkIndex];
+            this.setArc(nextArc[from]++, from, to, source, linkIndex, false);
+            if(source.linkBidirectional[linkIndex])
+                this.setArc(nextArc[to]++, to, from, source, linkIndex, true);
+        }
+        //Backward star
+        this.firstIn = new int[nodesNbr + 1];
+        this.inArcs = new int[arcsNbr];
+        this.buildBackwardStar();
+        //Shapes
+        this.linkFirstShapePoint = new int[linksNbr + 1];
+        for(int linkIndex = 0; linkIndex < linksNbr; linkIndex++)
+        {
+            double[] linkShapePoints = source.linkShapePoints == null ? null : source.linkShapePoints[linkIndex];
+            this.linkFirstShapePoint[linkIndex + 1] = this.linkFirstShapePoint[linkIndex] + (linkShapePoints == null ? 0 : linkShapePoints.length / 2);
+        }
+        this.shapePoints = new double[2 * this.linkFirstShapePoint[linksNbr]];
+        for(int linkIndex = 0; linkIndex < linksNbr && this.shapePoints.length > 0; linkIndex++)
+            if(source.linkShapePoints[linkIndex] != null)
+                System.arraycopy(source.linkShapePoints[linkIndex], 0, this.shapePoints, 2 * this.linkFirstShapePoint[linkIndex], 2 * this.getLinkShapePointsNbr(linkIndex));
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Sets the attributes of an arc from its link */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private void setArc(int arc, int tail, int head, Source source, int linkIndex, boolean reversed)
+    {
+        this.arcTail[arc] = tail;
+        this.arcHead[arc] = head;
+        this.arcLength[arc] = source.linkLengthInM[linkIndex];
+        this.arcSpeed[arc] = source.linkSpeedInMS[linkIndex];
+        this.arcCapacity[arc] = source.linkCapacityPerHour[linkIndex];
+        this.arcTime[arc] = freeFlowTime(source.linkLengthInM[linkIndex], source.linkSpeedInMS[linkIndex]);
+        this.arcLink[arc] = linkIndex;
+        this.arcReversed[arc] = reversed;
+        this.arcMode[arc] = (byte) (source.linkModes == null ? Mode.ROAD : source.linkModes[linkIndex]).ordinal();
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Fills the backward star from the arcs heads, arcs entering a node keep their forward order */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private void buildBackwardStar()
+    {
+        for(int head : this.arcHead)
+            this.firstIn[head + 1]++;
+        for(int node = 0; node < this.getNodesNbr(); node++)
+            this.firstIn[node + 1] += this.firstIn[node];
+        int[] nextIn = new int[this.getNodesNbr()];
+        System.arraycopy(this.firstIn, 0, nextIn, 0, nextIn.length);
+        for(int arc = 0; arc < this.arcHead.length; arc++)
+            this.inArcs[nextIn[this.arcHead[arc]]++] = arc;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Computes the free flow travel time of a link
+     * @return the travel time in seconds, 0 for an empty link, infinity if the link can't be driven */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public static double freeFlowTime(double lengthInM, double speedInMS)
+    {
+        if(lengthInM == 0)
+            return 0;
+        return speedInMS > 0 ? lengthInM / speedInMS : Double.POSITIVE_INFINITY;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /**                                       Nodes Getters                                          */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public int getNodesNbr(){return this.nodeX.length;}
+    public String getNodeId(int node){return this.nodeIds.getId(node);}
+    public IdDictionary getNodeIds(){return this.nodeIds;}
+    public double getNodeX(int node){return this.nodeX[node];}
+    public double getNodeY(int node){return this.nodeY[node];}
+    public int getNodeIndex(String nodeId){int index = this.nodeIds.getHandle(nodeId);return index < this.getNodesNbr() ? index : -1;}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Finds the index of a node, its handle when it belongs to the network the graph was built from,
+     * without decoding its id; the id is only looked up for a node of another network
+     * @return the index or -1 if the node isn't in the graph */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public int getNodeIndex(Node node)
+    {
+        int handle = node.getHandle(this.nodeIds);
+        if(handle < 0)
+            return this.getNodeIndex(node.getId());
+        //If node added to the network after the graph was built: not in the graph
+        return handle < this.getNodesNbr() ? handle : -1;
+    }
+    public int getOutArcsStart(int node){return this.firstOut[node];}
+    public int getOutArcsEnd(int node){return this.firstOut[node + 1];}
+    public int getInArcsStart(int node){return this.firstIn[node];}
+    public int getInArcsEnd(int node){return this.firstIn[node + 1];}
+    public int getInArc(int position){return this.inArcs[position];}
+    public int getOutDegree(int node){return this.firstOut[node + 1] - this.firstOut[node];}
+    public int getInDegree(int node){return this.firstIn[node + 1] - this.firstIn[node];}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Checks if a node is left by an arc of one of the modes of a mask */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public boolean hasOutArc(int node, int modeMask)
+    {
+        for(int arc = this.firstOut[node]; arc < this.firstOut[node + 1]; arc++)
+            if(this.isArcIn(arc, modeMask))
+                return true;
+        return false;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Checks if a node is reached by an arc of one of the modes of a mask */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public boolean hasInArc(int node, int modeMask)
+    {
+        for(int position = this.firstIn[node]; position < this.firstIn[node + 1]; position++)
+            if(this.isArcIn(this.inArcs[position], modeMask))
+                return true;
+        return false;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /**                                       Arcs Getters                                           */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public int getArcsNbr(){return this.arcHead.length;}
+    public int getArcTail(int arc){return this.arcTail[arc];}
+    public int getArcHead(int arc){return this.arcHead[arc];}
+    public double getArcLengthInM(int arc){return this.arcLength[arc];}
+    public double getArcSpeedInMS(int arc){return this.arcSpeed[arc];}
+    public double getArcCapacityPerHour(int arc){return this.arcCapacity[arc];}
+    public double getArcTimeInS(int arc){return this.arcTime[arc];}
+    public boolean isArcReversed(int arc){return this.arcReversed[arc];}
+    public Mode getArcMode(int arc){return Mode.of(this.arcMode[arc]);}
+    public boolean isArcIn(int arc, int modeMask){return (modeMask >>> this.arcMode[arc] & 1) != 0;}
+    public int getArcLinkIndex(int arc){return this.arcLink[arc];}
+    public String getArcLinkId(int arc){return this.linkIds.getId(this.arcLink[arc]);}
+    public int getLinksNbr(){return this.linksNbr;}
+    public String getLinkId(int linkIndex){return this.linkIds.getId(linkIndex);}
+    public IdDictionary getLinkIds(){return this.linkIds;}
+    public int getLinkShapePointsNbr(int linkIndex){return this.linkFirstShapePoint[linkIndex + 1] - this.linkFirstShapePoint[linkIndex];}
+    public double getLinkShapePointX(int linkIndex, int point){return this.shapePoints[2 * (this.linkFirstShapePoint[linkIndex] + point)];}
+    public double getLinkShapePointY(int linkIndex, int point){return this.shapePoints[2 * (this.linkFirstShapePoint[linkIndex] + point) + 1];}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Returns the free flow travel times of all the arcs, the array must not be modified
+     * @return the travel times in seconds indexed by arc */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public double[] getArcTimes(){return this.arcTime;}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Returns the first arc going from one node to another
+     * @return the arc index or -1 if the nodes are not adjacent */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public int findArc(int from, int to)
+    {
+        for(int arc = this.firstOut[from]; arc < this.firstOut[from + 1]; arc++)
+            if(this.arcHead[arc] == to)
+                return arc;
+        return -1;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Nodes and links of a graph to build, as arrays */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private static class Source
+    {
+        private final IdDictionary nodeIds, linkIds;
+        private final double[] nodeX, nodeY, linkLengthInM, linkSpeedInMS, linkCapacityPerHour;
+        private final int[] linkFrom, linkTo;
+        private final boolean[] linkBidirectional;
+        private final Mode[] linkModes;
+        private final double[][] linkShapePoints;
+        Source(IdDictionary nodeIds, double[] nodeX, double[] nodeY, IdDictionary linkIds, int[] linkFrom, int[] linkTo,
+               boolean[] linkBidirectional, double[] linkLengthInM, double[] linkSpeedInMS, double[] linkCapacityPerHour, Mode[] linkModes,
+               double[][] linkShapePoints)
+        {
+            this.nodeIds = nodeIds;
+            this.nodeX = nodeX;
+            this.nodeY = nodeY;
+            this.linkIds = linkIds;
+            this.linkFrom = linkFrom;
+            this.linkTo = linkTo;
+            this.linkBidirectional = linkBidirectional;
+            this.linkLengthInM = linkLengthInM;
+            this.linkSpeedInMS = linkSpeedInMS;
+            this.linkCapacityPerHour = linkCapacityPerHour;
+            this.linkModes = linkModes;
+            this.linkShapePoints = linkShapePoints;
+        }
+        static Source of(Network network)
+        {
+            int nodesNbr = network.getNodesNbr();
+            double[] nodeX = new double[nodesNbr], nodeY = new double[nodesNbr];
+            for(int node = 0; node < nodesNbr; node++)
+            {
+                nodeX[node] = network.getNode(node).getCoordinate().x;
+                nodeY[node] = network.getNode(node).getCoordinate().y;
+            }
+            int linksNbr = network.getLinksNbr();
+            int[] linkFrom = new int[linksNbr], linkTo = new int[linksNbr];
+            boolean[] linkBidirectional = new boolean[linksNbr];
+            Mode[] linkModes = new Mode[linksNbr];
+            double[][] linkShapePoints = new double[linksNbr][];
+            double[] linkLengthInM = new double[linksNbr], linkSpeedInMS = new double[linksNbr], linkCapacityPerHour = new double[linksNbr];
+            for(int linkIndex = 0; linkIndex < linksNbr; linkIndex++)
+            {
+                Link link = network.getLink(linkIndex);
+                linkFrom[linkIndex] = network.getNodeHandle(link.getFromNode());
+                linkTo[linkIndex] = network.getNodeHandle(link.getToNode());
+                linkBidirectional[linkIndex] = link.isBidirectional();
+                linkLengthInM[linkIndex] = link.getLengthInM();
+                linkSpeedInMS[linkIndex] = link.getNormalSpeedInMS();
+                linkModes[linkIndex] = link.getMode();
+                linkCapacityPerHour[linkIndex] = link.getCapacityPerHour();
+                linkShapePoints[linkIndex] = link.getShapePoints();
+            }
+            IdDictionary nodeIds = network.getNodeIds(), linkIds = network.getLinkIds();
+            return new Source(nodeIds, nodeX, nodeY, linkIds, linkFrom, linkTo, linkBidirectional, linkLengthInM, linkSpeedInMS, linkCapacityPerHour, linkModes, linkShapePoints);
+        }
+        static IdDictionary intern(String[] ids, String kind)
+        {
+            IdDictionary dictionary = new IdDictionary(ids.length);
+            for(int index = 0; index < ids.length; index++)
+                //If id already exists, the next ids would get shifted handles
+                if(dictionary.add(ids[index]) != index)
+                    throw new IllegalArgumentException("Duplicate " + kind + " id: " + ids[index]);
+            return dictionary;
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package org.TransportModel.network;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+///////////////////////////////////////////////////////////////////////////////////////////////////
+/** IdDictionary maps the string ids of a network to dense int handles, numbered from 0 in the order
+ * the ids are first added, and keeps every id only once as UTF-8 bytes packed in a single array
+ * A handle is found back from its id through an open addressing table of handles, so that an id
+ * costs its bytes and a few ints instead of a String and a HashMap entry
+ * Ids are only added, by a single thread, lookups may then be made from any number of threads */
+///////////////////////////////////////////////////////////////////////////////////////////////////
+public class IdDictionary
+{
+    private static final int MIN_CAPACITY = 16;
+    //Bytes of the id of handle h: bytes[offsets[h]..offsets[h+1]-1]
+    private byte[] bytes;
+    private int[] offsets, hashes;
+    //Open addressing table, handle + 1 in every used slot and 0 in the free ones
+    private int[] slots;
+    private int size;
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /**                                        Constructors                                          */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public IdDictionary(){this(MIN_CAPACITY);}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Creates a dictionary sized for a known number of ids, to avoid growing it
+     * @param idsNbr the expected number of ids */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public IdDictionary(int idsNbr)
+    {
+        int capacity = Math.max(MIN_CAPACITY, idsNbr);
+        this.bytes = new byte[capacity * 8];
+        this.offsets = new int[capacity + 1];
+        this.hashes = new int[capacity];
+        this.slots = new int[tableSize(capacity)];
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /**                                          Getters                                             */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public int size(){return this.size;}
+    public long getSizeInBytes(){return this.bytes.length + 4L * (this.offsets.length + this.hashes.length + this.slots.length);}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Decodes the id of a handle, a new String at every call
+     * @throws IndexOutOfBoundsException if the handle isn't in the dictionary */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public String getId(int handle)
+    {
+        if(handle < 0 || handle >= this.size)
+            throw new IndexOutOfBoundsException("No id of handle " + handle);
+        int offset = this.offsets[handle];
+        return new String(this.bytes, offset, this.offsets[handle + 1] - offset, StandardCharsets.UTF_8);
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Looks up the handle of an id
+     * @return the handle or -1 if the id isn't in the dictionary */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public int getHandle(String id)
+    {
+        byte[] encoded = isAscii(id) ? null : id.getBytes(StandardCharsets.UTF_8);
+        int slot = this.findSlot(id, encoded, hash(id, encoded));
+        return this.slots[slot] - 1;
+    }
+    public boolean contains(String id){return this.getHandle(id) >= 0;}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Checks if the id of a handle starts with a prefix, comparing its bytes without decoding it
+     * @throws IndexOutOfBoundsException if the handle isn't in the dictionary */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public boolean startsWith(int handle, String prefix)
+    {
+        if(handle < 0 || handle >= this.size)
+            throw new IndexOutOfBoundsException("No id of handle " + handle);
+        byte[] encoded = prefix.getBytes(StandardCharsets.UTF_8);
+        int offset = this.offsets[handle];
+        if(this.offsets[handle + 1] - offset < encoded.length)
+            return false;
+        for(int index = 0; index < encoded.length; index++)
+            if(this.bytes[offset + index] != encoded[index])
+                return false;
+        return true;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Looks up the handle of an id of another dictionary, comparing their bytes without decoding it
+     * @param other the dictionary of the id, this one giving the handle back
+     * @param otherHandle the handle of the id in the other dictionary
+     * @return the handle or -1 if the id isn't in the dictionary */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public int getHandle(IdDictionary other, int otherHandle)
+    {
+        if(otherHandle < 0 || otherHandle >= other.size)
+            throw new IndexOutOfBoundsException("No id of handle " + otherHandle);
+        if(other == this)
+            return otherHandle;
+        int otherOffset = other.offsets[otherHandle], length = other.offsets[otherHandle + 1] - otherOffset;
+        int hash = other.hashes[otherHandle], mask = this.slots.length - 1;
+        for(int slot = hash & mask; ; slot = (slot + 1) & mask)
+        {
+            int handle = this.slots[slot] - 1;
+            if(handle < 0)
+                return -1;
+            int offset = this.offsets[handle];
+            if(this.hashes[handle] != hash || this.offsets[handle + 1] - offset != length)
+                continue;
+            int index = 0;
+            while(index < length && this.bytes[offset + index] == other.bytes[otherOffset + index])
+                index++;
+            if(index == length)
+                return handle;
+        }
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Adds an id if it isn't in the dictionary yet
+     * @return the handle of the id, the existing one if it was already added */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public int add(String id)
+    {
+        //If id already exists, return its handle
+        byte[] encoded = isAscii(id) ? null : id.getBytes(StandardCharsets.UTF_8);
+        int hash = hash(id, encoded);
+        int slot = this.findSlot(id, encoded, hash);
+        if(this.slots[slot] != 0)
+            return this.slots[slot] - 1;
+        //Append the bytes, ASCII chars being their own UTF-8 bytes
+        int length = encoded == null ? id.length() : encoded.length;
+        if(this.size == this.hashes.length) {
+            this.offsets = Arrays.copyOf(this.offsets, 2 * this.size + 1);
+            this.hashes = Arrays.copyOf(this.hashes, 2 * this.size);
+        }
+        int offset = this.offsets[this.size];
+        if(offset + length > this.bytes.length) {
+            if(offset + (long) length > Integer.MAX_VALUE - 8)
+                throw new IllegalStateException("Too many id bytes in the dictionary");
+            this.bytes = Arrays.copyOf(this.bytes, (int) Math.min(Integer.MAX_VALUE - 8, Math.max(offset + length, 2L * this.bytes.length)));
+        }
+        if(encoded == null)
+            for(int index = 0; index < length; index++)
+                this.bytes[offset + index] = (byte) id.charAt(index);
+        else
+            System.arraycopy(encoded, 0, this.bytes, offset, length);
+        int handle = this.size++;
+        this.offsets[this.size] = offset + length;
+        this.hashes[handle] = hash;
+        this.slots[slot] = handle + 1;
+        //Keep the table at most half full
+        if(2 * this.size > this.slots.length)
+            this.rehash(2 * this.slots.length);
+        return handle;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Finds the slot of an id by linear probing
+     * @return the slot holding the id, or the free slot ending its probe sequence if it is missing */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private int findSlot(String id, byte[] encoded, int hash)
+    {
+        int mask = this.slots.length - 1;
+        for(int slot = hash & mask; ; slot = (slot + 1) & mask)
+        {
+            int handle = this.slots[slot] - 1;
+            if(handle < 0 || this.hashes[handle] == hash && this.matches(handle, id, encoded))
+                return slot;
+        }
+    }
+    private boolean matches(int handle, String id, byte[] encoded)
+    {
+        int offset = this.offsets[handle], length = this.offsets[handle + 1] - offset;
+        if(encoded != null) {
+            if(length != encoded.length)
+                return false;
+            for(int index = 0; index < length; index++)
+                if(this.bytes[offset + index] != encoded[index])
+                    return false;
+            return true;
+        }
+        if(length != id.length())
+            return false;
+        for(int index = 0; index < length; index++)
+            if(this.bytes[offset + index] != (byte) id.charAt(index))
+                return false;
+        return true;
+    }
+    private void rehash(int tableSize)
+    {
+        this.slots = new int[tableSize];
+        int mask = tableSize - 1;
+        for(int handle = 0; handle < this.size; handle++)
+        {
+            int slot = this.hashes[handle] & mask;
+            while(this.slots[slot] != 0)
+                slot = (slot + 1) & mask;
+            this.slots[slot] = handle + 1;
+        }
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Hashes the UTF-8 bytes of an id, read from its chars when it is ASCII, mixed so that the low
+     * bits used by the table depend on all of them */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private static int hash(String id, byte[] encoded)
+    {
+        int hash = 0;
+        if(encoded == null)
+            for(int index = 0; index < id.length(); index++)
+                hash = 31 * hash + id.charAt(index);
+        else
+            for(byte b : encoded)
+                hash = 31 * hash + (b & 0xFF);
+        hash ^= hash >>> 16;
+        hash *= 0x85EBCA6B;
+        return hash ^ hash >>> 13;
+    }
+    private static boolean isAscii(String id)
+    {
+        for(int index = 0; index < id.length(); index++)
+            if(id.charAt(index) >= 0x80)
+                return false;
+        return true;
+    }
+    private static int tableSize(int idsNbr){return Integer.highestOneBit(2 * idsNbr - 1) << 1;}
+}
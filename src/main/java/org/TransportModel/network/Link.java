@@ -4,12 +4,20 @@ package org.TransportModel.network;
 ///////////////////////////////////////////////////////////////////////////////////////////////////
 public class Link
 {
-    //Essentials
-    final String id;
+    //Essentials, the id being handed over to the dictionary of the network the link is added to
+    private String id;
+    private IdDictionary ids;
+    private int handle = -1;
     private Node fromNode, toNode;
     //Optional
     private boolean isBidirectional;
     private double lengthInM, normalSpeedInMS, capacityPerHour;
+    private Mode mode = Mode.ROAD;
+    //Transit
+    private String lineId;
+    private double headwayInS = Double.NaN;
+    //Shape, x y of the points between the from and to nodes, null if straight
+    private double[] shapePoints;
     ///////////////////////////////////////////////////////////////////////////////////////////////////
     /**                                        Constructor                                           */
     ///////////////////////////////////////////////////////////////////////////////////////////////////
@@ -32,6 +40,11 @@ public class Link
     public double getCapacityPerHour(){return this.capacityPerHour;}
     public Node getFromNode(){return this.fromNode;}
     public Node getToNode(){return this.toNode;}
+    public Mode getMode(){return this.mode;}
+    public String getLineId(){return this.lineId;}
+    public double getHeadwayInS(){return this.headwayInS;}
+    public double[] getShapePoints(){return this.shapePoints;}
+    public int getShapePointsNbr(){return this.shapePoints == null ? 0 : this.shapePoints.length / 2;}
     ///////////////////////////////////////////////////////////////////////////////////////////////////
     /**                                          Setters                                             */
     ///////////////////////////////////////////////////////////////////////////////////////////////////
@@ -41,5 +54,32 @@ public class Link
     public void setCapacityPerHour(double capacityPerHour){this.capacityPerHour = capacityPerHour;}
     public void setFromNode(Node node){this.fromNode = node;}
     public void setToNode(Node node){this.toNode = node;}
-    public String getId(){return this.id;}
+    public void setMode(Mode mode){this.mode = mode;}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Sets the line of a transit section and the average time between two of its vehicles */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public void setLine(String lineId, double headwayInS){this.lineId = lineId;this.headwayInS = headwayInS;}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Sets the points the link goes through between its from and to nodes
+     * @param shapePoints x y of each point in turn, from the from node, null for a straight link */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public void setShapePoints(double[] shapePoints){this.shapePoints = shapePoints;}
+    public String getId(){return this.ids == null ? this.id : this.ids.getId(this.handle);}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Copies the link between other nodes, sharing its shape points
+     * @return a link of the same id and attributes, in no network yet */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    Link copy(Node fromNode, Node toNode)
+    {
+        Link link = new Link(this.getId(), fromNode, toNode, this.isBidirectional, this.normalSpeedInMS, this.capacityPerHour, this.lengthInM);
+        link.mode = this.mode;
+        link.lineId = this.lineId;
+        link.headwayInS = this.headwayInS;
+        link.shapePoints = this.shapePoints;
+        return link;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Keeps the handle of the link in the ids of a network instead of its id string */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    void setHandle(IdDictionary ids, int handle){this.ids = ids;this.handle = handle;this.id = null;}
 }
@@ -0,0 +1,33 @@
+package org.TransportModel.network;
+
+///////////////////////////////////////////////////////////////////////////////////////////////////
+/** Mode is the way a link is travelled, so that the links of a multimodal network can be
+ * filtered per query. A set of modes is given as a mask, the bit of a mode being 1 << ordinal */
+///////////////////////////////////////////////////////////////////////////////////////////////////
+public enum Mode
+{
+    ROAD,       //Road section (BDTOPO)
+    TRANSIT,    //Section of a public transport route (GTFS)
+    WALK,       //Transfer or pathway between stops
+    ACCESS,     //Walk between a stop and the road network
+    CONNECTOR;  //Centroid connector of a zone
+    public static final int ALL = (1 << values().length) - 1;
+    private static final Mode[] MODES = values();
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /**                                          Getters                                             */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public int getMask(){return 1 << this.ordinal();}
+    public boolean isIn(int modeMask){return (modeMask & this.getMask()) != 0;}
+    public static Mode of(int ordinal){return MODES[ordinal];}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Combines modes into a mask
+     * @return the mask of the modes, 0 if none */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public static int mask(Mode... modes)
+    {
+        int mask = 0;
+        for(Mode mode : modes)
+            mask |= mode.getMask();
+        return mask;
+    }
+}
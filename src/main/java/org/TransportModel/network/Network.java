@@ -1,53 +1,125 @@
 package org.TransportModel.network;
 
-import java.util.HashMap;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
 
 ///////////////////////////////////////////////////////////////////////////////////////////////////
-/**    Network class represents a transportation network containing a graph of nodes and links   */
+/**    Network class represents a transportation network containing a graph of nodes and links
+ * The ids of the nodes and links are interned in two dictionaries when they are added, giving them
+ * dense int handles in their order of addition: nodes and links are stored in arrays indexed by
+ * handle and their ids are only kept once, as bytes in the dictionaries */
 ///////////////////////////////////////////////////////////////////////////////////////////////////
 public class Network
 {
-    private final HashMap<String,Node> nodes;
-    private final HashMap<String,Link> links;
+    private final IdDictionary nodeIds, linkIds;
+    private Node[] nodes;
+    private Link[] links;
     ///////////////////////////////////////////////////////////////////////////////////////////////////
     /**                                       Constructor                                            */
     ///////////////////////////////////////////////////////////////////////////////////////////////////
     public Network(){
-        this.nodes = new HashMap<>();
-        this.links = new HashMap<>();
+        this(16, 16);
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Creates a network sized for a known number of nodes and links, to avoid growing it
+     * @param nodesNbr the expected number of nodes
+     * @param linksNbr the expected number of links */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public Network(int nodesNbr, int linksNbr){
+        this.nodeIds = new IdDictionary(nodesNbr);
+        this.linkIds = new IdDictionary(linksNbr);
+        this.nodes = new Node[Math.max(16, nodesNbr)];
+        this.links = new Link[Math.max(16, linksNbr)];
     }
     ///////////////////////////////////////////////////////////////////////////////////////////////////
     /**                                        Getters                                               */
     ///////////////////////////////////////////////////////////////////////////////////////////////////
-    public boolean containsNode(String id){return this.nodes.containsKey(id);}
-    public boolean containsLink(String id){return this.nodes.containsKey(id);}
-    public Node getNode(String id) {return this.nodes.get(id);}
-    public HashMap<String,Node> getNodes(){return this.nodes;}
-    public Link getLink(String id){return this.links.get(id);}
-    public HashMap<String,Link> getLinks(){return this.links;}
+    public boolean containsNode(String id){return this.nodeIds.contains(id);}
+    public boolean containsLink(String id){return this.linkIds.contains(id);}
+    public Node getNode(String id){int handle = this.nodeIds.getHandle(id);return handle < 0 ? null : this.nodes[handle];}
+    public Link getLink(String id){int handle = this.linkIds.getHandle(id);return handle < 0 ? null : this.links[handle];}
+    public Node getNode(int handle){return this.nodes[handle];}
+    public Link getLink(int handle){return this.links[handle];}
+    public int getNodeHandle(String id){return this.nodeIds.getHandle(id);}
+    public int getLinkHandle(String id){return this.linkIds.getHandle(id);}
+    public int getNodesNbr(){return this.nodeIds.size();}
+    public int getLinksNbr(){return this.linkIds.size();}
+    public IdDictionary getNodeIds(){return this.nodeIds;}
+    public IdDictionary getLinkIds(){return this.linkIds;}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Returns the nodes in the order of their handles, as a read only view of the network
+     * @return the list whose element i is the node of handle i */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public List<Node> getNodes(){return new HandleList<>(this, true);}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Returns the links in the order of their handles, as a read only view of the network
+     * @return the list whose element i is the link of handle i */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public List<Link> getLinks(){return new HandleList<>(this, false);}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Returns the handle of a node of the network, without decoding its id when it has one here, so
+     * that data about the nodes can be kept in arrays indexed by handle instead of maps by id
+     * @return the handle or -1 if no node of the network has its id */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public int getNodeHandle(Node node)
+    {
+        int handle = node.getHandle(this.nodeIds);
+        return handle >= 0 ? handle : this.nodeIds.getHandle(node.getId());
+    }
     ///////////////////////////////////////////////////////////////////////////////////////////////////
     /**                                                                                              */
     ///////////////////////////////////////////////////////////////////////////////////////////////////
     public void addNode(Node node) {
         //If node id already exists, do nothing
-        if(!this.containsNode(node.getId()))
-            this.nodes.put(node.getId(),node);
+        if(this.getNodeHandle(node) >= 0)
+            return;
+        int handle = this.nodeIds.add(node.getId());
+        if(handle == this.nodes.length)
+            this.nodes = Arrays.copyOf(this.nodes, 2 * handle);
+        this.nodes[handle] = node;
+        node.setHandle(this.nodeIds, handle);
     }
     ///////////////////////////////////////////////////////////////////////////////////////////////////
     /**                                                                                              */
     ///////////////////////////////////////////////////////////////////////////////////////////////////
     public void addLink(Link link) {
         //Check if from node already exits
-        if(!this.containsNode(link.getFromNode().getId()))
+        int fromHandle = this.getNodeHandle(link.getFromNode());
+        if(fromHandle < 0)
             this.addNode(link.getFromNode());
         else
-            link.setFromNode(this.getNode(link.getFromNode().getId()));
+            link.setFromNode(this.nodes[fromHandle]);
         //Check if to node already exists
-        if(!this.containsNode(link.getToNode().getId()))
+        int toHandle = this.getNodeHandle(link.getToNode());
+        if(toHandle < 0)
             this.addNode(link.getToNode());
         else
-            link.setToNode(this.getNode(link.getToNode().getId()));
+            link.setToNode(this.nodes[toHandle]);
         //If link id already exists, replace it
-        this.links.put(link.getId(),link);
+        int handle = this.linkIds.add(link.getId());
+        if(handle == this.links.length)
+            this.links = Arrays.copyOf(this.links, 2 * handle);
+        this.links[handle] = link;
+        link.setHandle(this.linkIds, handle);
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Read only list of the nodes or links of a network, indexed by handle */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private static class HandleList<T> extends AbstractList<T>
+    {
+        private final Network network;
+        private final boolean nodes;
+        HandleList(Network network, boolean nodes){this.network = network;this.nodes = nodes;}
+        @Override
+        public int size(){return this.nodes ? this.network.getNodesNbr() : this.network.getLinksNbr();}
+        @Override
+        @SuppressWarnings("unchecked")
+        public T get(int handle)
+        {
+            if(handle < 0 || handle >= this.size())
+                throw new IndexOutOfBoundsException("No handle " + handle);
+            return (T) (this.nodes ? this.network.nodes[handle] : this.network.links[handle]);
+        }
     }
 }
@@ -0,0 +1,127 @@
+package org.TransportModel.network;
+
+import org.TransportModel.network.spatial.PackedRTree;
+import org.TransportModel.routing.GreatCircle;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Predicate;
+
+///////////////////////////////////////////////////////////////////////////////////////////////////
+/** NetworkMerger combines a road network (BDTOPO) and a transit network (GTFS) into one multimodal
+ * network, every link keeping its mode. Each stop is linked in both directions to the k road nodes
+ * nearest to it by access links, walked at a walking speed along the crow-fly distance.
+ * The road nodes are indexed in a PackedRTree and the nearest nodes of the stops are searched on
+ * all the cores. The merged network is made of copies of the nodes and links of the two networks,
+ * which keep their own handles and are left unchanged, the copies only sharing the coordinates and
+ * shape points */
+///////////////////////////////////////////////////////////////////////////////////////////////////
+public class NetworkMerger
+{
+    public static final int DEFAULT_ACCESS_LINKS_NBR = 2;
+    public static final double DEFAULT_MAX_ACCESS_LENGTH_IN_M = 500;
+    public static final String ACCESS_PREFIX = "access:";
+    private static final double CAPACITY_PER_HOUR = 10000000;
+    private int accessLinksNbr = DEFAULT_ACCESS_LINKS_NBR;
+    private double maxAccessLengthInM = DEFAULT_MAX_ACCESS_LENGTH_IN_M;
+    private double walkSpeedInMS = TransferGenerator.DEFAULT_WALK_SPEED_IN_MS;
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /**                                          Setters                                             */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public void setAccessLinksNbr(int accessLinksNbr){this.accessLinksNbr = accessLinksNbr;}
+    public void setWalkSpeedInMS(double walkSpeedInMS){this.walkSpeedInMS = walkSpeedInMS;}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Sets the distance beyond which a stop is not linked to a road node, a stop without road node
+     * within it being left without access link */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public void setMaxAccessLengthInM(double maxAccessLengthInM){this.maxAccessLengthInM = maxAccessLengthInM;}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /**                                          Getters                                             */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public static String getAccessLinkId(Node stop, Node roadNode){return ACCESS_PREFIX + stop.getId() + ':' + roadNode.getId();}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Merges a road network and a transit network and links them with access links
+     * @param roadNetwork the road network, its links being of the road mode
+     * @param transitNetwork the transit network, its nodes being the stops
+     * @return the multimodal network
+     * @throws IllegalArgumentException if a node or link id is used by both networks */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public Network merge(Network roadNetwork, Network transitNetwork)
+    {
+        //Nodes and links of both networks
+        for(int node = 0; node < transitNetwork.getNodesNbr(); node++)
+            if(roadNetwork.containsNode(transitNetwork.getNodeIds().getId(node)))//If id in both networks:error
+                throw new IllegalArgumentException("Node in both networks: " + transitNetwork.getNodeIds().getId(node));
+        for(int link = 0; link < transitNetwork.getLinksNbr(); link++)
+            if(roadNetwork.containsLink(transitNetwork.getLinkIds().getId(link)))//If id in both networks:error
+                throw new IllegalArgumentException("Link in both networks: " + transitNetwork.getLinkIds().getId(link));
+        //Copies of the nodes, indexed by handle in their network
+        Node[] roadNodes = copyNodes(roadNetwork), stops = copyNodes(transitNetwork);
+        List<Link> accessLinks = this.createAccessLinks(roadNetwork, roadNodes, stops);
+        Network network = new Network(roadNodes.length + stops.length, roadNetwork.getLinksNbr() + transitNetwork.getLinksNbr() + accessLinks.size());
+        for(Node node : roadNodes)
+            network.addNode(node);
+        for(Node stop : stops)
+            network.addNode(stop);
+        copyLinks(roadNetwork, roadNodes, network);
+        copyLinks(transitNetwork, stops, network);
+        //Access links
+        for(Link link : accessLinks)
+            network.addLink(link);
+        return network;
+    }
+    private static Node[] copyNodes(Network network)
+    {
+        Node[] nodes = new Node[network.getNodesNbr()];
+        for(int handle = 0; handle < nodes.length; handle++)
+            nodes[handle] = new Node(network.getNodeIds().getId(handle), network.getNode(handle).getCoordinate());
+        return nodes;
+    }
+    private static void copyLinks(Network network, Node[] nodes, Network mergedNetwork)
+    {
+        for(Link link : network.getLinks())
+            mergedNetwork.addLink(link.copy(nodes[network.getNodeHandle(link.getFromNode())], nodes[network.getNodeHandle(link.getToNode())]));
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Creates the access links between the stops and their nearest road nodes
+     * @param roadNodes the copies of the road nodes, indexed by handle in the road network
+     * @param stops the copies of the stops
+     * @return the links between the copies, in the order of the stops */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private List<Link> createAccessLinks(Network roadNetwork, Node[] roadNodes, Node[] stops)
+    {
+        Predicate<Node> eligible = CentroidConnectorGenerator.isLeftAndReached(roadNetwork);
+        List<Node> nodes = new ArrayList<>();
+        for(int handle = 0; handle < roadNodes.length; handle++)
+            if(eligible.test(roadNetwork.getNode(handle)))
+                nodes.add(roadNodes[handle]);
+        double[] boxes = new double[4 * nodes.size()];
+        for(int item = 0; item < nodes.size(); item++)
+        {
+            boxes[4 * item] = boxes[4 * item + 2] = nodes.get(item).getCoordinate().x;
+            boxes[4 * item + 1] = boxes[4 * item + 3] = nodes.get(item).getCoordinate().y;
+        }
+        PackedRTree tree = new PackedRTree(boxes);
+        //Nearest road nodes of every stop
+        int[][] stopNodes = Arrays.stream(stops).parallel().map(stop -> {
+            double x = stop.getCoordinate().x, y = stop.getCoordinate().y;
+            if(Double.isNaN(x) || Double.isNaN(y))
+                return new int[0];
+            int[] items = new int[this.accessLinksNbr];
+            int found = tree.nearest(x, y, this.accessLinksNbr, this.maxAccessLengthInM, null, items, new double[items.length]);
+            return found == items.length ? items : Arrays.copyOf(items, found);
+        }).toArray(int[][]::new);
+        List<Link> links = new ArrayList<>();
+        for(int stop = 0; stop < stops.length; stop++)
+            for(int item : stopNodes[stop])
+            {
+                Node node = nodes.get(item);
+                double lengthInM = GreatCircle.distanceInM(stops[stop].getCoordinate().x, stops[stop].getCoordinate().y, node.getCoordinate().x, node.getCoordinate().y);
+                Link link = new Link(getAccessLinkId(stops[stop], node), stops[stop], node, true, this.walkSpeedInMS, CAPACITY_PER_HOUR, lengthInM);
+                link.setMode(Mode.ACCESS);
+                links.add(link);
+            }
+        return links;
+    }
+}
@@ -6,7 +6,10 @@ import org.locationtech.jts.geom.Coordinate;
 ///////////////////////////////////////////////////////////////////////////////////////////////////
 public class Node
 {
-    final private String id;
+    //Id, handed over to the dictionary of the network the node is added to
+    private String id;
+    private IdDictionary ids;
+    private int handle = -1;
     final private Coordinate coordinate;
     ///////////////////////////////////////////////////////////////////////////////////////////////////
     /**                                        Constructor                                           */
@@ -20,5 +23,10 @@ public class Node
     /**                                          Getters                                             */
     ///////////////////////////////////////////////////////////////////////////////////////////////////
     public Coordinate getCoordinate(){return this.coordinate;}
-    public String getId(){return this.id;}
+    public String getId(){return this.ids == null ? this.id : this.ids.getId(this.handle);}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Keeps the handle of the node in the ids of a network instead of its id string */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    void setHandle(IdDictionary ids, int handle){this.ids = ids;this.handle = handle;this.id = null;}
+    int getHandle(IdDictionary ids){return this.ids == ids ? this.handle : -1;}
 }
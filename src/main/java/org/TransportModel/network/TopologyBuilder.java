@@ -0,0 +1,261 @@
+package org.TransportModel.network;
+
+import org.TransportModel.network.spatial.PackedRTree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Objects;
+
+///////////////////////////////////////////////////////////////////////////////////////////////////
+/** TopologyBuilder rebuilds the topology of a network read segment by segment, such as the BDTOPO
+ * roads whose node ids are made of their coordinates:
+ * - the nodes closer than a tolerance are snapped on one node, the candidates being found in a hash
+ * of the coordinates quantized on cells of the tolerance (a node and the nodes within the tolerance
+ * of it are in the same cell or in the 8 cells around)
+ * - the chains of nodes only joining two links of identical attributes are contracted into single
+ * links, which keep the coordinates of the removed nodes as their shape points.
+ * Links reduced to a loop by the snapping are removed. The network built shares the nodes and the
+ * links of the network cleaned, which must not be used afterwards */
+///////////////////////////////////////////////////////////////////////////////////////////////////
+public class TopologyBuilder
+{
+    public static final double DEFAULT_SNAP_TOLERANCE_IN_M = 0.5;
+    private double snapToleranceInM = DEFAULT_SNAP_TOLERANCE_IN_M;
+    private boolean chainsContracted = true;
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /**                                          Setters                                             */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Sets the distance within which nodes are merged, 0 to only merge nodes of equal coordinates */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public void setSnapToleranceInM(double snapToleranceInM){this.snapToleranceInM = snapToleranceInM;}
+    public void setChainsContracted(boolean chainsContracted){this.chainsContracted = chainsContracted;}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /**                                          Getters                                             */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public double getSnapToleranceInM(){return this.snapToleranceInM;}
+    public boolean isChainsContracted(){return this.chainsContracted;}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Snaps the nodes of a network and contracts its chains
+     * @param network the network to clean, not to be used afterwards
+     * @return the cleaned network, without the nodes left without link */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public Network build(Network network)
+    {
+        Node[] snappedNodes = this.snapNodes(network);
+        //Links between the snapped nodes, without loops
+        List<Link> links = new ArrayList<>(network.getLinks().size());
+        for(Link link : network.getLinks())
+        {
+            Node fromNode = snappedNodes[network.getNodeHandle(link.getFromNode())], toNode = snappedNodes[network.getNodeHandle(link.getToNode())];
+            if(fromNode == toNode)
+                continue;
+            link.setFromNode(fromNode);
+            link.setToNode(toNode);
+            links.add(link);
+        }
+        if(this.chainsContracted)
+            links = contractChains(links);
+        Network builtNetwork = new Network(links.size(), links.size());
+        for(Link link : links)
+            builtNetwork.addLink(link);
+        return builtNetwork;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Finds the node each node is snapped on: the first node met within the tolerance, or itself
+     * @return the nodes to use indexed by node handle */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private Node[] snapNodes(Network network)
+    {
+        Node[] nodes = network.getNodes().toArray(new Node[0]);
+        Node[] snappedNodes = new Node[nodes.length];
+        //Cells wide enough in x at the latitude farthest from the equator
+        double maxAbsY = 0;
+        for(Node node : nodes)
+            maxAbsY = Math.max(maxAbsY, Math.abs(node.getCoordinate().y));
+        double tolerance = Math.max(this.snapToleranceInM, 1e-6);
+        double cellY = tolerance / PackedRTree.METERS_PER_DEGREE;
+        double cellX = cellY / Math.max(Math.cos(Math.toRadians(maxAbsY)), 1e-6);
+        //Kept nodes by cell, chained
+        HashMap<Long,Integer> firstInCell = new HashMap<>(Math.max(16, (int) (nodes.length / 0.75f) + 1));
+        int[] nextInCell = new int[nodes.length];
+        for(int node = 0; node < nodes.length; node++)
+        {
+            double x = nodes[node].getCoordinate().x, y = nodes[node].getCoordinate().y;
+            long cellI = (long) Math.floor(x / cellX), cellJ = (long) Math.floor(y / cellY);
+            Node snappedNode = null;
+            for(int di = -1; di <= 1 && snappedNode == null; di++)
+                for(int dj = -1; dj <= 1 && snappedNode == null; dj++)
+                {
+                    Integer kept = firstInCell.get(cellKey(cellI + di, cellJ + dj));
+                    for(int other = kept == null ? -1 : kept; other >= 0; other = nextInCell[other])
+                        if(PackedRTree.distanceInM(x, y, nodes[other].getCoordinate().x, nodes[other].getCoordinate().y) <= this.snapToleranceInM) {
+                            snappedNode = nodes[other];
+                            break;
+                        }
+                }
+            if(snappedNode == null) {
+                Integer first = firstInCell.put(cellKey(cellI, cellJ), node);
+                nextInCell[node] = first == null ? -1 : first;
+                snappedNode = nodes[node];
+            }
+            snappedNodes[node] = snappedNode;
+        }
+        return snappedNodes;
+    }
+    private static long cellKey(long cellI, long cellJ){return cellI << 32 ^ (cellJ & 0xFFFFFFFFL);}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Replaces the chains of links through nodes only joining two links of identical attributes,
+     * that can be passed through in the direction of the links, by single links. A chain keeps the
+     * id of its first link; a chain coming back to its first node, or a ring of such nodes only, is
+     * kept as it is */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private static List<Link> contractChains(List<Link> links)
+    {
+        //Links at each node
+        HashMap<Node,Integer> nodeIndices = new HashMap<>(Math.max(16, (int) (2 * links.size() / 0.75f) + 1));
+        List<Node> nodes = new ArrayList<>();
+        int[] linkFrom = new int[links.size()], linkTo = new int[links.size()];
+        for(int link = 0; link < links.size(); link++)
+        {
+            linkFrom[link] = index(links.get(link).getFromNode(), nodeIndices, nodes);
+            linkTo[link] = index(links.get(link).getToNode(), nodeIndices, nodes);
+        }
+        int[] firstLink = new int[nodes.size() + 1];
+        for(int link = 0; link < links.size(); link++)
+        {
+            firstLink[linkFrom[link] + 1]++;
+            firstLink[linkTo[link] + 1]++;
+        }
+        for(int node = 0; node < nodes.size(); node++)
+            firstLink[node + 1] += firstLink[node];
+        int[] nodeLinks = new int[2 * links.size()], nextLink = Arrays.copyOf(firstLink, nodes.size());
+        for(int link = 0; link < links.size(); link++)
+        {
+            nodeLinks[nextLink[linkFrom[link]]++] = link;
+            nodeLinks[nextLink[linkTo[link]]++] = link;
+        }
+        //Nodes that can be removed
+        boolean[] passed = new boolean[nodes.size()];
+        for(int node = 0; node < nodes.size(); node++)
+        {
+            if(firstLink[node + 1] - firstLink[node] != 2)
+                continue;
+            int link1 = nodeLinks[firstLink[node]], link2 = nodeLinks[firstLink[node] + 1];
+            int end1 = linkFrom[link1] == node ? linkTo[link1] : linkFrom[link1];
+            int end2 = linkFrom[link2] == node ? linkTo[link2] : linkFrom[link2];
+            //If one way links both entering or both leaving the node:kept, as a dead end
+            boolean passable = links.get(link1).isBidirectional() || (linkTo[link1] == node) != (linkTo[link2] == node);
+            passed[node] = end1 != end2 && passable && haveSameAttributes(links.get(link1), links.get(link2));
+        }
+        //Chains from the nodes kept
+        List<Link> contractedLinks = new ArrayList<>();
+        boolean[] used = new boolean[links.size()];
+        List<Integer> chainLinks = new ArrayList<>(), chainNodes = new ArrayList<>();
+        for(int start = 0; start < nodes.size(); start++)
+        {
+            if(passed[start])
+                continue;
+            for(int position = firstLink[start]; position < firstLink[start + 1]; position++)
+            {
+                int link = nodeLinks[position];
+                if(used[link])
+                    continue;
+                chainLinks.clear();
+                chainNodes.clear();
+                chainNodes.add(start);
+                int node = start;
+                while(true)
+                {
+                    used[link] = true;
+                    chainLinks.add(link);
+                    node = linkFrom[link] == node ? linkTo[link] : linkFrom[link];
+                    chainNodes.add(node);
+                    if(!passed[node])
+                        break;
+                    link = nodeLinks[firstLink[node]] == link ? nodeLinks[firstLink[node] + 1] : nodeLinks[firstLink[node]];
+                }
+                if(chainLinks.size() == 1 || node == start)
+                    for(int chainLink : chainLinks)
+                        contractedLinks.add(links.get(chainLink));
+                else
+                    contractedLinks.add(contractChain(links, linkFrom, nodes, chainLinks, chainNodes));
+            }
+        }
+        //Rings of removable nodes only
+        for(int link = 0; link < links.size(); link++)
+            if(!used[link])
+                contractedLinks.add(links.get(link));
+        return contractedLinks;
+    }
+    private static int index(Node node, HashMap<Node,Integer> nodeIndices, List<Node> nodes)
+    {
+        Integer index = nodeIndices.get(node);
+        if(index == null) {
+            index = nodes.size();
+            nodeIndices.put(node, index);
+            nodes.add(node);
+        }
+        return index;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Tells if two links can be merged: same direction type, speed, capacity, mode and line */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private static boolean haveSameAttributes(Link link1, Link link2)
+    {
+        return link1.isBidirectional() == link2.isBidirectional()
+                && Double.compare(link1.getNormalSpeedInMS(), link2.getNormalSpeedInMS()) == 0
+                && Double.compare(link1.getCapacityPerHour(), link2.getCapacityPerHour()) == 0
+                && link1.getMode() == link2.getMode()
+                && Objects.equals(link1.getLineId(), link2.getLineId())
+                && Double.compare(link1.getHeadwayInS(), link2.getHeadwayInS()) == 0;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Creates the link of a chain, in the direction of its first link, going through the removed
+     * nodes and the shape points of the links */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private static Link contractChain(List<Link> links, int[] linkFrom, List<Node> nodes, List<Integer> chainLinks, List<Integer> chainNodes)
+    {
+        //If first link against the chain:chain walked backward
+        if(linkFrom[chainLinks.get(0)] != chainNodes.get(0)) {
+            Collections.reverse(chainLinks);
+            Collections.reverse(chainNodes);
+        }
+        Link firstLink = links.get(chainLinks.get(0));
+        double lengthInM = 0;
+        int pointsNbr = chainNodes.size() - 2;
+        for(int chainLink : chainLinks)
+        {
+            lengthInM += links.get(chainLink).getLengthInM();
+            pointsNbr += links.get(chainLink).getShapePointsNbr();
+        }
+        double[] shapePoints = new double[2 * pointsNbr];
+        int point = 0;
+        for(int position = 0; position < chainLinks.size(); position++)
+        {
+            Link link = links.get(chainLinks.get(position));
+            double[] linkPoints = link.getShapePoints();
+            boolean forward = linkFrom[chainLinks.get(position)] == chainNodes.get(position);
+            for(int linkPoint = 0; linkPoint < link.getShapePointsNbr(); linkPoint++)
+            {
+                int source = forward ? linkPoint : link.getShapePointsNbr() - 1 - linkPoint;
+                shapePoints[2 * point] = linkPoints[2 * source];
+                shapePoints[2 * point++ + 1] = linkPoints[2 * source + 1];
+            }
+            if(position < chainLinks.size() - 1) {
+                Node node = nodes.get(chainNodes.get(position + 1));
+                shapePoints[2 * point] = node.getCoordinate().x;
+                shapePoints[2 * point++ + 1] = node.getCoordinate().y;
+            }
+        }
+        Link contractedLink = new Link(firstLink.getId(), nodes.get(chainNodes.get(0)), nodes.get(chainNodes.get(chainNodes.size() - 1)),
+                firstLink.isBidirectional(), firstLink.getNormalSpeedInMS(), firstLink.getCapacityPerHour(), lengthInM);
+        contractedLink.setMode(firstLink.getMode());
+        if(firstLink.getLineId() != null)
+            contractedLink.setLine(firstLink.getLineId(), firstLink.getHeadwayInS());
+        contractedLink.setShapePoints(shapePoints);
+        return contractedLink;
+    }
+}
@@ -0,0 +1,110 @@
+package org.TransportModel.network;
+
+import org.TransportModel.network.spatial.PackedRTree;
+import org.TransportModel.routing.GreatCircle;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.IntStream;
+
+///////////////////////////////////////////////////////////////////////////////////////////////////
+/** TransferGenerator creates the walking transfers between stops closer than a radius, for the
+ * feeds without transfers file. The stops are indexed in a PackedRTree and each stop only looks
+ * at its neighbours, so that the generation is near-linear in the number of stops.
+ * The time of a transfer is its crow-fly length covered at a walking speed */
+///////////////////////////////////////////////////////////////////////////////////////////////////
+public class TransferGenerator
+{
+    public static final double DEFAULT_RADIUS_IN_M = 300;
+    public static final double DEFAULT_WALK_SPEED_IN_MS = 4 * (1000.0 / 3600.0);
+    private static final double CAPACITY_PER_HOUR = 10000000;
+    private final double radiusInM, walkSpeedInMS;
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Receives the transfers generated, each pair of stops being given once */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public interface TransferConsumer
+    {
+        void accept(int stop, int otherStop, double lengthInM);
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /**                                        Constructor                                           */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public TransferGenerator()
+    {
+        this(DEFAULT_RADIUS_IN_M, DEFAULT_WALK_SPEED_IN_MS);
+    }
+    public TransferGenerator(double radiusInM, double walkSpeedInMS)
+    {
+        if(!(walkSpeedInMS > 0))
+            throw new IllegalArgumentException("Walk speed must be positive: " + walkSpeedInMS);
+        this.radiusInM = radiusInM;
+        this.walkSpeedInMS = walkSpeedInMS;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /**                                          Getters                                             */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public double getRadiusInM(){return this.radiusInM;}
+    public double getWalkSpeedInMS(){return this.walkSpeedInMS;}
+    public double getTimeInS(double lengthInM){return lengthInM / this.walkSpeedInMS;}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Finds the pairs of stops within the radius, the neighbours being searched on all the cores
+     * @param xs the x coordinates (longitudes) of the stops, NaN for a stop without coordinates
+     * @param ys the y coordinates (latitudes) of the stops
+     * @param consumer called with every pair (stop < otherStop), in the order of the stops */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public void generate(double[] xs, double[] ys, TransferConsumer consumer)
+    {
+        if(xs.length != ys.length)
+            throw new IllegalArgumentException(xs.length + " x coordinates for " + ys.length + " y coordinates");
+        int[] stops = IntStream.range(0, xs.length).filter(stop -> !Double.isNaN(xs[stop]) && !Double.isNaN(ys[stop])).toArray();
+        double[] boxes = new double[4 * stops.length];
+        for(int item = 0; item < stops.length; item++)
+        {
+            boxes[4 * item] = boxes[4 * item + 2] = xs[stops[item]];
+            boxes[4 * item + 1] = boxes[4 * item + 3] = ys[stops[item]];
+        }
+        PackedRTree tree = new PackedRTree(boxes);
+        int[][] neighbours = IntStream.range(0, stops.length).parallel().mapToObj(item -> {
+            int stop = stops[item];
+            List<Integer> found = new ArrayList<>();
+            tree.searchWithin(xs[stop], ys[stop], this.radiusInM, other -> {
+                if(stops[other] > stop)
+                    found.add(stops[other]);
+            });
+            int[] sorted = found.stream().mapToInt(Integer::intValue).toArray();
+            Arrays.sort(sorted);
+            return sorted;
+        }).toArray(int[][]::new);
+        for(int item = 0; item < stops.length; item++)
+        {
+            int stop = stops[item];
+            for(int otherStop : neighbours[item])
+                consumer.accept(stop, otherStop, GreatCircle.distanceInM(xs[stop], ys[stop], xs[otherStop], ys[otherStop]));
+        }
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Creates the bidirectional walking links between the stops within the radius
+     * @param stops the stops, nodes of a network
+     * @return the links, with the "from_id:to_id" ids of the transfers read from a file */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public List<Link> generateLinks(Collection<Node> stops)
+    {
+        Node[] nodes = stops.toArray(new Node[0]);
+        double[] xs = new double[nodes.length], ys = new double[nodes.length];
+        for(int stop = 0; stop < nodes.length; stop++)
+        {
+            xs[stop] = nodes[stop].getCoordinate().x;
+            ys[stop] = nodes[stop].getCoordinate().y;
+        }
+        List<Link> links = new ArrayList<>();
+        this.generate(xs, ys, (stop, otherStop, lengthInM) -> {
+            String id = nodes[stop].getId() + ':' + nodes[otherStop].getId();
+            Link link = new Link(id, nodes[stop], nodes[otherStop], true, this.walkSpeedInMS, CAPACITY_PER_HOUR, lengthInM);
+            link.setMode(Mode.WALK);
+            links.add(link);
+        });
+        return links;
+    }
+}
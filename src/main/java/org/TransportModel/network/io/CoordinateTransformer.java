@@ -0,0 +1,133 @@
+package org.TransportModel.network.io;
+
+import org.TransportModel.metrics.Metrics;
+import org.geotools.referencing.CRS;
+import org.geotools.referencing.GeodeticCalculator;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LinearRing;
+import org.locationtech.jts.geom.MultiPolygon;
+import org.locationtech.jts.geom.Polygon;
+import org.opengis.referencing.FactoryException;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+import org.opengis.referencing.operation.MathTransform;
+import org.opengis.referencing.operation.TransformException;
+
+///////////////////////////////////////////////////////////////////////////////////////////////////
+/** CoordinateTransformer converts coordinates between two CRS with a MathTransform decoded once.
+ * Coordinates are always given and returned with x = easting/longitude and y = northing/latitude,
+ * whatever the axis order of the CRS. Transformations and distances are thread safe */
+///////////////////////////////////////////////////////////////////////////////////////////////////
+public class CoordinateTransformer
+{
+    public static final String LAMBERT_93 = "EPSG:2154", WGS_84 = "EPSG:4326";
+    private static final String TRANSFORM_TIME = "crs.transform.timeInNs", TRANSFORMED_POINTS = "crs.transform.pointsNbr";
+    private static final ThreadLocal<GeodeticCalculator> CALCULATORS = ThreadLocal.withInitial(GeodeticCalculator::new);
+    private static CoordinateTransformer lambert93ToWGS84;
+    private final MathTransform transform;
+    private final boolean swapSource, swapTarget;
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Decodes two CRS and finds the transform between them
+     * @param sourceCode the EPSG code of the source CRS, "EPSG:2154" for example
+     * @param targetCode the EPSG code of the target CRS */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public CoordinateTransformer(String sourceCode, String targetCode) throws FactoryException
+    {
+        this(CRS.decode(sourceCode), CRS.decode(targetCode));
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Finds the transform between two CRS
+     * @param sourceCRS the CRS of the coordinates to transform
+     * @param targetCRS the CRS of the transformed coordinates */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public CoordinateTransformer(CoordinateReferenceSystem sourceCRS, CoordinateReferenceSystem targetCRS) throws FactoryException
+    {
+        this.transform = CRS.findMathTransform(sourceCRS, targetCRS, true);
+        this.swapSource = CRS.getAxisOrder(sourceCRS) == CRS.AxisOrder.NORTH_EAST;
+        this.swapTarget = CRS.getAxisOrder(targetCRS) == CRS.AxisOrder.NORTH_EAST;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Returns the shared Lambert-93 to WGS84 transformer of the BDTOPO files, decoded on first use */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public static synchronized CoordinateTransformer lambert93ToWGS84() throws FactoryException
+    {
+        if(lambert93ToWGS84 == null)
+            lambert93ToWGS84 = new CoordinateTransformer(LAMBERT_93, WGS_84);
+        return lambert93ToWGS84;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Transforms one coordinate
+     * @return a new coordinate in the target CRS */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public Coordinate transform(Coordinate coordinate) throws TransformException
+    {
+        return this.transform(new Coordinate[]{coordinate})[0];
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Transforms an array of coordinates with a single call to the math transform, timed by the
+     * crs.transform.timeInNs distribution of the metrics on every thread
+     * @return new coordinates in the target CRS, in the same order */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public Coordinate[] transform(Coordinate[] coordinates) throws TransformException
+    {
+        double[] ordinates = new double[coordinates.length * 2];
+        for(int index = 0; index < coordinates.length; index++)
+        {
+            ordinates[2 * index] = this.swapSource ? coordinates[index].y : coordinates[index].x;
+            ordinates[2 * index + 1] = this.swapSource ? coordinates[index].x : coordinates[index].y;
+        }
+        long startNs = System.nanoTime();
+        this.transform.transform(ordinates, 0, ordinates, 0, coordinates.length);
+        Metrics.record(TRANSFORM_TIME, System.nanoTime() - startNs);
+        Metrics.count(TRANSFORMED_POINTS, coordinates.length);
+        Coordinate[] transformedCoordinates = new Coordinate[coordinates.length];
+        for(int index = 0; index < coordinates.length; index++)
+        {
+            double first = ordinates[2 * index], second = ordinates[2 * index + 1];
+            transformedCoordinates[index] = this.swapTarget ? new Coordinate(second, first) : new Coordinate(first, second);
+        }
+        return transformedCoordinates;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Transforms the rings of every polygon of a multi polygon
+     * @return a new multi polygon in the target CRS, built by the factory of the original one */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public MultiPolygon transform(MultiPolygon multiPolygon) throws TransformException
+    {
+        GeometryFactory factory = multiPolygon.getFactory();
+        Polygon[] polygons = new Polygon[multiPolygon.getNumGeometries()];
+        for(int polygonIndex = 0; polygonIndex < polygons.length; polygonIndex++)
+        {
+            Polygon polygon = (Polygon) multiPolygon.getGeometryN(polygonIndex);
+            LinearRing shell = factory.createLinearRing(this.transform(polygon.getExteriorRing().getCoordinates()));
+            LinearRing[] holes = new LinearRing[polygon.getNumInteriorRing()];
+            for(int holeIndex = 0; holeIndex < holes.length; holeIndex++)
+                holes[holeIndex] = factory.createLinearRing(this.transform(polygon.getInteriorRingN(holeIndex).getCoordinates()));
+            polygons[polygonIndex] = factory.createPolygon(shell, holes);
+        }
+        return factory.createMultiPolygon(polygons);
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Calculates the geodesic distance between two WGS84 coordinates, reusing the calculator of the
+     * current thread
+     * @return The distance in meters between the two coordinates */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public static double distanceInM(Coordinate coordinate1, Coordinate coordinate2)
+    {
+        GeodeticCalculator calculator = CALCULATORS.get();
+        calculator.setStartingGeographicPoint(coordinate1.x, coordinate1.y);
+        calculator.setDestinationGeographicPoint(coordinate2.x, coordinate2.y);
+        return calculator.getOrthodromicDistance();
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Calculates the geodesic length of a line of WGS84 coordinates
+     * @return The sum of the distances in meters between consecutive coordinates */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public static double lengthInM(Coordinate[] coordinates)
+    {
+        double lengthInM = 0;
+        for(int index = 0; index < coordinates.length - 1; index++)
+            lengthInM += distanceInM(coordinates[index], coordinates[index + 1]);
+        return lengthInM;
+    }
+}
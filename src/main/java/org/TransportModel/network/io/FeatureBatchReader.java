@@ -0,0 +1,135 @@
+package org.TransportModel.network.io;
+
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.opengis.feature.simple.SimpleFeature;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+///////////////////////////////////////////////////////////////////////////////////////////////////
+/** FeatureBatchReader reads the features of a shapefile on the calling thread and converts them on
+ * the fork/join pool by batches. The number of batches being converted is bounded so that the
+ * reading doesn't get ahead of the conversion, and the results are merged on the calling thread in
+ * the order of the features, so the result is the same as a sequential read
+ * The reader counts the features read and rejected and times the iteration of the shapefile, on the
+ * reading thread, apart from the conversions, for the metrics of the phase reading it */
+///////////////////////////////////////////////////////////////////////////////////////////////////
+public class FeatureBatchReader<E,R>
+{
+    public static final int DEFAULT_BATCH_SIZE = 1024;
+    private final Function<SimpleFeature,E> extractor;
+    private final Converter<E,R> converter;
+    private final Consumer<R> merger;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private int maxBatchesInFlight = 2 * ForkJoinPool.getCommonPoolParallelism() + 1;
+    private boolean parallel = true;
+    //Metrics
+    private long featuresNbr, rejectedFeaturesNbr, iterationTimeInNs;
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Converts an extracted feature, called by the workers */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public interface Converter<E,R>
+    {
+        R convert(E extractedFeature) throws Exception;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Creates a reader from the three steps of the processing of a feature
+     * @param extractor copies the needed values of a feature on the reading thread, null to skip it
+     * @param converter converts the extracted values on a worker thread, it must be thread safe
+     * @param merger adds the converted values to the result on the calling thread, in feature order */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public FeatureBatchReader(Function<SimpleFeature,E> extractor, Converter<E,R> converter, Consumer<R> merger)
+    {
+        this.extractor = extractor;
+        this.converter = converter;
+        this.merger = merger;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /**                                          Setters                                             */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public void setBatchSize(int batchSize){this.batchSize = Math.max(1, batchSize);}
+    public void setMaxBatchesInFlight(int maxBatchesInFlight){this.maxBatchesInFlight = Math.max(1, maxBatchesInFlight);}
+    public void setParallel(boolean parallel){this.parallel = parallel;}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /**                                          Getters                                             */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public long getFeaturesNbr(){return this.featuresNbr;}
+    public long getRejectedFeaturesNbr(){return this.rejectedFeaturesNbr;}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Returns the time spent reading the features and extracting their values, on the reading thread */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public long getIterationTimeInNs(){return this.iterationTimeInNs;}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Reads every remaining feature of an iterator
+     * @param featureIterator the features of the shapefile, closed by the caller
+     * @throws Exception the first exception of a conversion, in feature order */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public void read(SimpleFeatureIterator featureIterator) throws Exception
+    {
+        ArrayDeque<CompletableFuture<List<R>>> batchesInFlight = new ArrayDeque<>();
+        List<E> batch = new ArrayList<>(this.batchSize);
+        long iterationStartNs = System.nanoTime();
+        while(featureIterator.hasNext())
+        {
+            E extractedFeature = this.extractor.apply(featureIterator.next());
+            this.featuresNbr++;
+            this.iterationTimeInNs += System.nanoTime() - iterationStartNs;
+            if(extractedFeature == null)
+                this.rejectedFeaturesNbr++;
+            else if(!this.parallel)
+                this.merger.accept(this.converter.convert(extractedFeature));
+            else {
+                batch.add(extractedFeature);
+                if(batch.size() == this.batchSize) {
+                    if(batchesInFlight.size() == this.maxBatchesInFlight)
+                        this.merge(batchesInFlight.poll());
+                    batchesInFlight.add(this.submit(batch));
+                    batch = new ArrayList<>(this.batchSize);
+                }
+            }
+            iterationStartNs = System.nanoTime();
+        }
+        if(!batch.isEmpty())
+            batchesInFlight.add(this.submit(batch));
+        while(!batchesInFlight.isEmpty())
+            this.merge(batchesInFlight.poll());
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Converts a batch on the fork/join pool */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private CompletableFuture<List<R>> submit(List<E> batch)
+    {
+        return CompletableFuture.supplyAsync(() -> {
+            List<R> results = new ArrayList<>(batch.size());
+            try {
+                for(E extractedFeature : batch)
+                    results.add(this.converter.convert(extractedFeature));
+            }
+            catch(Exception e) {
+                throw new CompletionException(e);
+            }
+            return results;
+        }, ForkJoinPool.commonPool());
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Waits for a batch and merges its results */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private void merge(CompletableFuture<List<R>> batchInFlight) throws Exception
+    {
+        List<R> results;
+        try {
+            results = batchInFlight.join();
+        }
+        catch(CompletionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+        for(R result : results)
+            this.merger.accept(result);
+    }
+}
@@ -0,0 +1,236 @@
+package org.TransportModel.network.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+///////////////////////////////////////////////////////////////////////////////////////////////////
+/** GTFSFileReader streams the rows of a GTFS file (RFC-4180 CSV, optionally starting with a UTF-8
+ * byte order mark) through a reusable byte buffer, so files larger than the heap can be read.
+ * Quoted fields may contain commas, line breaks and doubled quotes.
+ * The header is read once, the column indices are resolved by the caller before the rows are
+ * handed to a callback as a GTFSRow, whose fields are only decoded on demand */
+///////////////////////////////////////////////////////////////////////////////////////////////////
+public class GTFSFileReader implements Closeable
+{
+    private static final int BUFFER_SIZE = 1 << 20;
+    private final Path filePath;
+    private final FileChannel channel;
+    private final List<String> headers;
+    private final long dataOffset;
+    private long endOffset = Long.MAX_VALUE;
+    private byte[] buffer = new byte[BUFFER_SIZE];
+    private long bufferOffset;
+    private int position, limit;
+    private boolean endOfFile;
+    private long rowsNbr;
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Handles the rows of a file, the row is only valid during the call */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public interface RowHandler
+    {
+        void handle(GTFSRow row) throws IOException;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Opens a GTFS file and reads its header
+     * @param filePath the path to the file */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public GTFSFileReader(Path filePath) throws IOException
+    {
+        this(filePath, 0, Long.MAX_VALUE);
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Opens a part of a GTFS file and reads its header, to read a big file by chunks
+     * @param filePath the path to the file
+     * @param startOffset the byte offset of the first row to read, at the beginning of a row
+     * @param endOffset the byte offset after which no row starts, the last row being read entirely */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public GTFSFileReader(Path filePath, long startOffset, long endOffset) throws IOException
+    {
+        this.filePath = filePath;
+        this.channel = FileChannel.open(filePath, StandardOpenOption.READ);//If file don't exist:error
+        try {
+            this.fill();
+            if(this.limit >= 3 && this.buffer[0] == (byte) 0xEF && this.buffer[1] == (byte) 0xBB && this.buffer[2] == (byte) 0xBF)
+                this.position = 3;
+            GTFSRow headerRow = new GTFSRow();
+            if(!this.readRow(headerRow))
+                throw new RuntimeException("Headers missing: " + filePath);
+            List<String> headers = new ArrayList<>(headerRow.getFieldsNbr());
+            for(int column = 0; column < headerRow.getFieldsNbr(); column++)
+                headers.add(headerRow.getString(column).trim());
+            this.headers = Collections.unmodifiableList(headers);
+            this.dataOffset = this.bufferOffset + this.position;
+        }
+        catch(IOException | RuntimeException e) {
+            this.channel.close();
+            throw e;
+        }
+        if(startOffset > this.dataOffset) {
+            this.bufferOffset = startOffset;
+            this.position = this.limit = 0;
+            this.endOfFile = false;
+        }
+        this.endOffset = endOffset;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /**                                          Getters                                             */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public Path getFilePath(){return this.filePath;}
+    public List<String> getHeaders(){return this.headers;}
+    public long getDataOffset(){return this.dataOffset;}
+    public long getFileSize() throws IOException{return this.channel.size();}
+    public long getRowsNbr(){return this.rowsNbr;}
+    public long getDataRowsNbr(){return Math.max(0, this.rowsNbr - 1);}
+    public boolean hasColumn(String header){return this.headers.contains(header);}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Resolves the index of a column
+     * @param header the name of the column
+     * @return the index of the column in the rows */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public int getColumn(String header)
+    {
+        int column = this.headers.indexOf(header);
+        if(column < 0)//If header don't exist: error
+            throw new RuntimeException("Header missing: " + header + " in " + this.filePath);
+        return column;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Reads every remaining row of the file
+     * @param handler the callback receiving the rows
+     * @throws RuntimeException if a row doesn't have as many fields as the header */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public void forEachRow(RowHandler handler) throws IOException
+    {
+        GTFSRow row = new GTFSRow();
+        while(this.readRow(row))
+        {
+            if(row.getFieldsNbr() != this.headers.size())//If delimiter in data: error
+                throw new RuntimeException("Wrong number of fields in " + this.filePath + ": " + row.getLine());
+            handler.handle(row);
+        }
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Closes the file */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    @Override
+    public void close() throws IOException
+    {
+        this.channel.close();
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Reads the next non-empty row starting before the end offset
+     * @return false at the end of the file or of the part */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private boolean readRow(GTFSRow row) throws IOException
+    {
+        while(true)
+        {
+            int rowEnd = this.findRowEnd();
+            if(rowEnd < 0) {
+                if(!this.endOfFile) {
+                    this.fill();
+                    continue;
+                }
+                if(this.position == this.limit)
+                    return false;
+                rowEnd = this.limit;
+            }
+            long rowOffset = this.bufferOffset + this.position;
+            if(rowOffset >= this.endOffset)
+                return false;
+            int rowStart = this.position;
+            this.position = rowEnd;
+            if(rowEnd < this.limit && this.buffer[rowEnd] == '\r' && rowEnd + 1 < this.limit && this.buffer[rowEnd + 1] == '\n')
+                this.position += 2;
+            else if(rowEnd < this.limit)
+                this.position += 1;
+            if(rowEnd == rowStart)//Skip empty lines
+                continue;
+            row.reset(this.buffer, rowStart, rowEnd, rowOffset, ++this.rowsNbr);
+            this.parseFields(row, rowStart, rowEnd);
+            return true;
+        }
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Finds the line break ending the row at the current position, ignoring quoted line breaks
+     * @return the index of the line break in the buffer, -1 if it isn't buffered yet */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private int findRowEnd()
+    {
+        boolean quoted = false;
+        for(int index = this.position; index < this.limit; index++)
+        {
+            byte character = this.buffer[index];
+            if(character == '"')
+                quoted = !quoted;
+            else if(!quoted && (character == '\n' || character == '\r'))
+                return index;
+        }
+        return -1;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Splits a row into fields, unquoting the quoted fields in place */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private void parseFields(GTFSRow row, int start, int end)
+    {
+        int index = start;
+        while(true)
+        {
+            if(index < end && this.buffer[index] == '"') {
+                int fieldStart = index + 1, write = fieldStart;
+                index = fieldStart;
+                while(index < end)
+                {
+                    byte character = this.buffer[index++];
+                    if(character == '"') {
+                        if(index < end && this.buffer[index] == '"')
+                            index++;
+                        else
+                            break;
+                    }
+                    this.buffer[write++] = character;
+                }
+                row.addField(fieldStart, write);
+                while(index < end && this.buffer[index] != ',')//Ignore characters after the closing quote
+                    index++;
+            }
+            else {
+                int fieldStart = index;
+                while(index < end && this.buffer[index] != ',')
+                    index++;
+                row.addField(fieldStart, index);
+            }
+            if(index >= end)
+                return;
+            index++;
+        }
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Moves the current row to the beginning of the buffer, growing it if the row fills it, and
+     * reads the next bytes of the file after it */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private void fill() throws IOException
+    {
+        if(this.position > 0) {
+            System.arraycopy(this.buffer, this.position, this.buffer, 0, this.limit - this.position);
+            this.bufferOffset += this.position;
+            this.limit -= this.position;
+            this.position = 0;
+        }
+        if(this.limit == this.buffer.length)
+            this.buffer = Arrays.copyOf(this.buffer, this.buffer.length * 2);
+        int readBytes = this.channel.read(ByteBuffer.wrap(this.buffer, this.limit, this.buffer.length - this.limit), this.bufferOffset + this.limit);
+        if(readBytes < 0)
+            this.endOfFile = true;
+        else
+            this.limit += readBytes;
+    }
+}
@@ -0,0 +1,156 @@
+package org.TransportModel.network.io;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+///////////////////////////////////////////////////////////////////////////////////////////////////
+/** GTFSRow is a view of the current row of a GTFSFileReader: its fields are byte ranges of the
+ * reader buffer, decoded only when asked. The object is reused for every row of the file */
+///////////////////////////////////////////////////////////////////////////////////////////////////
+public class GTFSRow
+{
+    private static final double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+    private byte[] buffer;
+    private int[] fieldStarts = new int[16], fieldEnds = new int[16];
+    private int fieldsNbr, rowStart, rowEnd;
+    private long offset, number;
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /**                                      Package Modifiers                                       */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    void reset(byte[] buffer, int rowStart, int rowEnd, long offset, long number)
+    {
+        this.buffer = buffer;
+        this.rowStart = rowStart;
+        this.rowEnd = rowEnd;
+        this.offset = offset;
+        this.number = number;
+        this.fieldsNbr = 0;
+    }
+    void addField(int start, int end)
+    {
+        if(this.fieldsNbr == this.fieldStarts.length) {
+            this.fieldStarts = Arrays.copyOf(this.fieldStarts, this.fieldsNbr * 2);
+            this.fieldEnds = Arrays.copyOf(this.fieldEnds, this.fieldsNbr * 2);
+        }
+        this.fieldStarts[this.fieldsNbr] = start;
+        this.fieldEnds[this.fieldsNbr++] = end;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /**                                          Getters                                             */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public int getFieldsNbr(){return this.fieldsNbr;}
+    public long getOffset(){return this.offset;}
+    public long getNumber(){return this.number;}
+    public boolean isEmpty(int column){return this.fieldEnds[column] == this.fieldStarts[column];}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Returns the raw text of the row, for error messages */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public String getLine(){return new String(this.buffer, this.rowStart, this.rowEnd - this.rowStart, StandardCharsets.UTF_8);}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Decodes a field as a string */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public String getString(int column)
+    {
+        int start = this.fieldStarts[column];
+        return new String(this.buffer, start, this.fieldEnds[column] - start, StandardCharsets.UTF_8);
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Compares a field to a string without decoding it */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public boolean equals(int column, String value)
+    {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        int start = this.fieldStarts[column];
+        if(this.fieldEnds[column] - start != bytes.length)
+            return false;
+        for(int index = 0; index < bytes.length; index++)
+            if(this.buffer[start + index] != bytes[index])
+                return false;
+        return true;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Parses a field as an int
+     * @throws NumberFormatException if the field is empty or is not an integer */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public int getInt(int column)
+    {
+        int position = this.fieldStarts[column], end = this.fieldEnds[column];
+        boolean negative = position < end && this.buffer[position] == '-';
+        if(negative || (position < end && this.buffer[position] == '+'))
+            position++;
+        if(position == end || end - position > 9)
+            return Integer.parseInt(this.getString(column).trim());
+        int value = 0;
+        for(; position < end; position++)
+        {
+            int digit = this.buffer[position] - '0';
+            if(digit < 0 || digit > 9)
+                return Integer.parseInt(this.getString(column).trim());
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Parses a field as a double, plain decimals of up to 15 digits are parsed without allocation
+     * and give exactly the same value as Double.parseDouble
+     * @throws NumberFormatException if the field is empty or is not a number */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public double getDouble(int column)
+    {
+        int position = this.fieldStarts[column], end = this.fieldEnds[column];
+        boolean negative = position < end && this.buffer[position] == '-';
+        if(negative || (position < end && this.buffer[position] == '+'))
+            position++;
+        long mantissa = 0;
+        int digitsNbr = 0, decimalsNbr = -1;
+        for(; position < end; position++)
+        {
+            byte character = this.buffer[position];
+            if(character == '.' && decimalsNbr < 0)
+                decimalsNbr = 0;
+            else if(character >= '0' && character <= '9' && digitsNbr < 15) {
+                mantissa = mantissa * 10 + (character - '0');
+                digitsNbr++;
+                if(decimalsNbr >= 0)
+                    decimalsNbr++;
+            }
+            else
+                return Double.parseDouble(this.getString(column));
+        }
+        if(digitsNbr == 0)
+            return Double.parseDouble(this.getString(column));
+        //A mantissa below 2^53 divided by an exact power of ten is correctly rounded
+        double value = decimalsNbr > 0 ? mantissa / POWERS_OF_TEN[decimalsNbr] : mantissa;
+        return negative ? -value : value;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Parses a field of format H:MM:SS or HH:MM:SS, hours may exceed 24 for trips after midnight
+     * @return the time in seconds since the beginning of the service day */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public int getTimeInS(int column)
+    {
+        int position = this.fieldStarts[column], end = this.fieldEnds[column];
+        int hours = 0, minutes = 0, seconds = 0, partIndex = 0, partDigits = 0;
+        for(; position < end; position++)
+        {
+            byte character = this.buffer[position];
+            if(character == ':' && partIndex < 2 && partDigits > 0) {
+                partIndex++;
+                partDigits = 0;
+            }
+            else if(character >= '0' && character <= '9') {
+                int digit = character - '0';
+                if(partIndex == 0) hours = hours * 10 + digit;
+                else if(partIndex == 1) minutes = minutes * 10 + digit;
+                else seconds = seconds * 10 + digit;
+                partDigits++;
+            }
+            else
+                throw new NumberFormatException("Wrong time format: " + this.getString(column));
+        }
+        if(partIndex != 2 || partDigits == 0)
+            throw new NumberFormatException("Wrong time format: " + this.getString(column));
+        return hours * 3600 + minutes * 60 + seconds;
+    }
+}
@@ -1,53 +1,112 @@
 package org.TransportModel.network.io;
 
+import org.TransportModel.metrics.Metrics;
 import org.TransportModel.network.Link;
 import org.TransportModel.network.Network;
 import org.TransportModel.network.Node;
+import org.TransportModel.network.TopologyBuilder;
 import org.geotools.data.shapefile.ShapefileDataStore;
 import org.geotools.data.simple.SimpleFeatureIterator;
 import org.geotools.data.simple.SimpleFeatureSource;
-import org.geotools.geometry.DirectPosition2D;
-import org.geotools.referencing.CRS;
-import org.geotools.referencing.GeodeticCalculator;
 import org.locationtech.jts.geom.Coordinate;
 import org.locationtech.jts.geom.LineString;
 import org.locationtech.jts.geom.MultiLineString;
 import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.referencing.FactoryException;
-import org.opengis.referencing.crs.CoordinateReferenceSystem;
-import org.opengis.referencing.operation.MathTransform;
 import org.opengis.referencing.operation.TransformException;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 ///////////////////////////////////////////////////////////////////////////////////////////////////
 /** BDTOPOReader is a class that reads BDTOPO Files and fill a network */
 ///////////////////////////////////////////////////////////////////////////////////////////////////
 public class NetworkReaderBDTOPO
 {
+    private boolean parallel = true;
+    private TopologyBuilder topologyBuilder;
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /**                                          Setters                                             */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public void setParallel(boolean parallel){this.parallel = parallel;}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Sets how the segments read are snapped and contracted, null (the default) to keep a link per
+     * segment, the ends of the segments being then merged only when their ids are equal */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public void setTopologyBuilder(TopologyBuilder topologyBuilder){this.topologyBuilder = topologyBuilder;}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Describes the options changing the network read, to fingerprint its snapshot with its sources */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public String getConfiguration()
+    {
+        TopologyBuilder topologyBuilder = this.topologyBuilder;
+        return "bdtopo|topology=" + (topologyBuilder == null ? "none"
+                : topologyBuilder.getSnapToleranceInM() + "," + topologyBuilder.isChainsContracted());
+    }
     ///////////////////////////////////////////////////////////////////////////////////////////////////
     /** Imports a shapefile of BDTOPO format and creates links from the features
+     * The features are read sequentially and converted by batches on all the cores, the links being
+     * added in the order of the features so that the network is the same as with a sequential read.
+     * If a topology builder is set, the segments are then cleaned: their ends are snapped and the
+     * chains of segments of the same road attributes are contracted
+     * The read and the cleaning are the bdtopo.read and bdtopo.topology phases of the metrics, the
+     * time spent iterating the shapefile being bdtopo.read.iterationTimeInNs
      * @param shpFilePath The path to the shapefile to import
-     * @param network The network to add the created links to */
+     * @param network The network to add the created links to
+     * @throws IOException if the shapefile can't be read or a feature can't be converted */
     ///////////////////////////////////////////////////////////////////////////////////////////////////
     public void readBDTOPOFile(Network network, String shpFilePath) throws IOException
     {
         File shapeFile = new File(shpFilePath);
         ShapefileDataStore dataStore = new ShapefileDataStore(shapeFile.toURI().toURL());
         SimpleFeatureSource featureSource = dataStore.getFeatureSource(dataStore.getTypeNames()[0]);
-        try(SimpleFeatureIterator featureIterator = featureSource.getFeatures().features()){
-            while (featureIterator.hasNext())
-                this.addFeatureLinks(network, featureIterator.next());
+        Network segments = this.topologyBuilder == null ? network : new Network();
+        try(Metrics.Phase phase = Metrics.startPhase("bdtopo.read");
+            SimpleFeatureIterator featureIterator = featureSource.getFeatures().features()){
+            int linksNbr = segments.getLinksNbr();
+            CoordinateTransformer transformer = CoordinateTransformer.lambert93ToWGS84();
+            FeatureBatchReader<Road,List<Link>> reader = new FeatureBatchReader<>(this::extractRoad,
+                    road -> this.createLinks(road, transformer), links -> links.forEach(segments::addLink));
+            reader.setParallel(this.parallel);
+            try {
+                reader.read(featureIterator);
+            }
+            finally {
+                phase.addRows(reader.getFeaturesNbr());
+                phase.addRejectedRows(reader.getRejectedFeaturesNbr());
+                phase.addCreated(segments.getLinksNbr() - linksNbr);
+                phase.record("iterationTimeInNs", reader.getIterationTimeInNs());
+            }
+        }
+        catch(IOException | RuntimeException e){
+            throw e;
+        }
+        //If a conversion failed:error, a partial network must not be cleaned nor saved
+        catch(Exception e){
+            throw new IOException("Failed to read " + shpFilePath, e);
+        }
+        finally {
+            dataStore.dispose();
+        }
+        //Clean the segments
+        if(segments == network)
+            return;
+        try(Metrics.Phase phase = Metrics.startPhase("bdtopo.topology"))
+        {
+            int linksNbr = network.getLinksNbr();
+            this.topologyBuilder.build(segments).getLinks().forEach(network::addLink);
+            phase.addRows(segments.getLinksNbr());
+            phase.addCreated(network.getLinksNbr() - linksNbr);
         }
-        catch(Exception e){e.printStackTrace();}
     }
     ///////////////////////////////////////////////////////////////////////////////////////////////////
-    /** Create and adds feature links to the network
-     * @param network The network to which the feature links will be added
-     * @param feature The SimpleFeature containing the information for creating the links */
+    /** Gets the values of a feature needed to create its links, on the reading thread
+     * @param feature The SimpleFeature containing the information for creating the links
+     * @return the road of the feature, null if it isn't open to vehicles or lacks values */
     ///////////////////////////////////////////////////////////////////////////////////////////////////
-    private void addFeatureLinks(Network network, SimpleFeature feature) throws FactoryException, TransformException
+    private Road extractRoad(SimpleFeature feature)
     {
         //Get values
         Object access = feature.getAttribute(ATTRIBUTES.ACCESS);
@@ -56,56 +115,65 @@ public class NetworkReaderBDTOPO
         Object direction = feature.getAttribute(ATTRIBUTES.DIRECTION);
         //Convert
         if (!access.equals(VALUES.FREE) || lanes_nbr == null || speed == null || direction == null)
-            return;
-        boolean bidirectional = direction.equals(VALUES.BIDIRECTIONAL);
-        double speedInKMH = (Integer) feature.getAttribute(ATTRIBUTES.SPEED);
-        double speedInMS = speedInKMH * (1000.0 / 3600.0);
-        int lanes_Nbr = (Integer) feature.getAttribute(ATTRIBUTES.LANES_NBR);
-        double maxCapacity = lanes_Nbr * 1800;
-        //Create nodes and links
-        MultiLineString multiLineString = (MultiLineString) feature.getDefaultGeometry();
-        for (int lineStringIndex = 0; lineStringIndex < multiLineString.getNumGeometries(); lineStringIndex++)
+            return null;
+        Road road = new Road();
+        road.bidirectional = direction.equals(VALUES.BIDIRECTIONAL);
+        road.inverse = direction.equals(VALUES.INVERSE);
+        double speedInKMH = (Integer) speed;
+        road.speedInMS = speedInKMH * (1000.0 / 3600.0);
+        int lanes_Nbr = (Integer) lanes_nbr;
+        road.maxCapacity = lanes_Nbr * 1800;
+        road.multiLineString = (MultiLineString) feature.getDefaultGeometry();
+        return road;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Creates the links of a road, on a worker thread
+     * @param road The values of the feature
+     * @param transformer The Lambert-93 to WGS84 transformer
+     * @return the links of the lines of the road, in order, their inner points being their shape points */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private List<Link> createLinks(Road road, CoordinateTransformer transformer) throws TransformException
+    {
+        List<Link> links = new ArrayList<>(road.multiLineString.getNumGeometries());
+        for (int lineStringIndex = 0; lineStringIndex < road.multiLineString.getNumGeometries(); lineStringIndex++)
         {
-            LineString lineString = (LineString) multiLineString.getGeometryN(lineStringIndex);
-            Coordinate[] lambertCoords = lineString.getCoordinates();
-            Coordinate[] coords = new Coordinate[lambertCoords.length];
-            for(int i = 0; i < lambertCoords.length;i++)
-                coords[i]=this.convertLambert93ToDegrees(lambertCoords[i]);
+            LineString lineString = (LineString) road.multiLineString.getGeometryN(lineStringIndex);
+            Coordinate[] coords = transformer.transform(lineString.getCoordinates());
             //From
-            Coordinate fromCoordinate = (direction.equals(VALUES.INVERSE)) ? coords[coords.length - 1] : coords[0];
+            Coordinate fromCoordinate = road.inverse ? coords[coords.length - 1] : coords[0];
             String fromNodeId = fromCoordinate.getX() + ":" + fromCoordinate.getY();
             Node fromNode = new Node(fromNodeId, fromCoordinate);
             //To
-            Coordinate toCoordinate = (direction.equals(VALUES.INVERSE)) ? coords[0] : coords[coords.length - 1];
+            Coordinate toCoordinate = road.inverse ? coords[0] : coords[coords.length - 1];
             String toNodeId = toCoordinate.getX() + ":" + toCoordinate.getY();
             Node toNode = new Node(toNodeId, toCoordinate);
             //Link
             String LinkId = fromNode.getId() + ":" + toNode.getId();
-            double totalLength = 0;
-            for(int coordinateIndex = 0; coordinateIndex <coords.length-1;coordinateIndex++)
-               totalLength += this.calculateDistance(coords[coordinateIndex],coords[coordinateIndex+1]);
-            Link link = new Link(LinkId, fromNode, toNode, bidirectional, speedInMS, maxCapacity, totalLength);
-            network.addLink(link);
+            double totalLength = CoordinateTransformer.lengthInM(coords);
+            Link link = new Link(LinkId, fromNode, toNode, road.bidirectional, road.speedInMS, road.maxCapacity, totalLength);
+            //Shape: the inner points, from the from node
+            if(coords.length > 2) {
+                double[] shapePoints = new double[2 * (coords.length - 2)];
+                for(int point = 0; point < coords.length - 2; point++)
+                {
+                    Coordinate coordinate = coords[road.inverse ? coords.length - 2 - point : point + 1];
+                    shapePoints[2 * point] = coordinate.getX();
+                    shapePoints[2 * point + 1] = coordinate.getY();
+                }
+                link.setShapePoints(shapePoints);
+            }
+            links.add(link);
         }
+        return links;
     }
     ///////////////////////////////////////////////////////////////////////////////////////////////////
     /** Converts Lambert-93 coordinates to degrees (latitude and longitude)
      * @param lambertCoordinate The Lambert-93 coordinate to be converted
-     * @return A Coordinate object representing the converted latitude and longitude in degrees */
+     * @return A Coordinate object representing the converted longitude (x) and latitude (y) in degrees */
     ///////////////////////////////////////////////////////////////////////////////////////////////////
     public Coordinate convertLambert93ToDegrees(Coordinate lambertCoordinate) throws FactoryException, TransformException
     {
-        //Lambert-93
-        CoordinateReferenceSystem sourceCRS = CRS.decode("EPSG:2154");
-        //WGS84
-        CoordinateReferenceSystem targetCRS = CRS.decode("EPSG:4326");
-        MathTransform transform = CRS.findMathTransform(sourceCRS, targetCRS, true);
-        DirectPosition2D sourcePosition = new DirectPosition2D(sourceCRS, lambertCoordinate.getX(), lambertCoordinate.getY());
-        DirectPosition2D targetPosition = new DirectPosition2D();
-        transform.transform(sourcePosition, targetPosition);
-        double latitude = targetPosition.getY();
-        double longitude = targetPosition.getX();
-        return new Coordinate(latitude, longitude);
+        return CoordinateTransformer.lambert93ToWGS84().transform(lambertCoordinate);
     }
     ///////////////////////////////////////////////////////////////////////////////////////////////////
     /** Calculates the distance in meters between two coordinates
@@ -115,10 +183,16 @@ public class NetworkReaderBDTOPO
     ///////////////////////////////////////////////////////////////////////////////////////////////////
     public double calculateDistance(Coordinate coordinate1, Coordinate coordinate2)
     {
-        GeodeticCalculator calculator = new GeodeticCalculator();
-        calculator.setStartingGeographicPoint(coordinate1.getX(), coordinate1.getY());
-        calculator.setDestinationGeographicPoint(coordinate2.getX(), coordinate2.getY());
-        return calculator.getOrthodromicDistance();
+        return CoordinateTransformer.distanceInM(coordinate1, coordinate2);
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Values of a road feature passed from the reading thread to a worker */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private static class Road
+    {
+        private boolean bidirectional, inverse;
+        private double speedInMS, maxCapacity;
+        private MultiLineString multiLineString;
     }
 }
 ///////////////////////////////////////////////////////////////////////////////////////////////////
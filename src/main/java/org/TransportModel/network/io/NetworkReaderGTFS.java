@@ -1,24 +1,39 @@
 package org.TransportModel.network.io;
 
+import org.TransportModel.metrics.Metrics;
 import org.TransportModel.network.Link;
+import org.TransportModel.network.Mode;
 import org.TransportModel.network.Network;
 import org.TransportModel.network.Node;
-import org.geotools.referencing.GeodeticCalculator;
+import org.TransportModel.network.TransferGenerator;
 import org.locationtech.jts.geom.Coordinate;
 
 import java.io.*;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.stream.Collectors;
 
 ///////////////////////////////////////////////////////////////////////////////////////////////////
 /** GTFSReader is a class that reads GTFS (General Transit Feed Specification) to fill a network */
 ///////////////////////////////////////////////////////////////////////////////////////////////////
 public class NetworkReaderGTFS
 {
+    private TransferGenerator transferGenerator = new TransferGenerator();
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Sets the generator of the walking transfers of the feeds without transfers file */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public void setTransferGenerator(TransferGenerator transferGenerator){this.transferGenerator = transferGenerator;}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Describes the options changing the network read, to fingerprint its snapshot with its sources */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public String getConfiguration()
+    {
+        return "gtfs|transfers=" + this.transferGenerator.getRadiusInM() + "," + this.transferGenerator.getWalkSpeedInMS();
+    }
     ///////////////////////////////////////////////////////////////////////////////////////////////////
     /** Reads a GTFS folder and fill the network with data
+     * Every file is read as a phase of the metrics: gtfs.stops, gtfs.routeSections, gtfs.pathways...
      * @param network the network to fill
      * @param folderPath the path to the GTFS folder
      * @throws FileNotFoundException if a required GTFS file is not found */
@@ -28,40 +43,44 @@ public class NetworkReaderGTFS
         //If Custom route_sections file don't exist, create it
         if(!new File(folderPath + GTFS_FILES.ROUTE_SECTIONS).exists())
             this.createRouteSectionsFile(folderPath);
-        //If Optional pathways file don't exist, toDo create it
-        if(!new File(folderPath + GTFS_FILES.PATHWAYS).exists())
-            throw new RuntimeException("File missing");
-        //If Optional transfers file don't exist, toDo create it
-        if (!new File(folderPath + GTFS_FILES.TRANSFERS).exists())
-            throw new RuntimeException("File missing");
         this.readStopFile(network, folderPath);
         this.readRouteSectionsFile(network,folderPath);
-        this.readPathwayFile(network, folderPath);
-        this.readTransfersFile(network, folderPath);
+        //If Optional pathways file don't exist, skip it: the stops are only linked by the transfers
+        if(new File(folderPath + GTFS_FILES.PATHWAYS).exists())
+            this.readPathwayFile(network, folderPath);
+        //If Optional transfers file don't exist, generate walking transfers between close stops
+        if(new File(folderPath + GTFS_FILES.TRANSFERS).exists())
+            this.readTransfersFile(network, folderPath);
+        else
+            this.generateTransfers(network);
     }
     ///////////////////////////////////////////////////////////////////////////////////////////////////
     /** For each stop, create a node object and add it to the network
      * @param network the network to populate with nodes
      * @param folderPath the path to the GTFS folder */
     ///////////////////////////////////////////////////////////////////////////////////////////////////
-    private void readStopFile(Network network, String folderPath) throws IOException
+    void readStopFile(Network network, String folderPath) throws IOException
     {
         Path filePath = Paths.get(folderPath, GTFS_FILES.STOPS);
-        List<String> lines = Files.readAllLines(filePath);//If file don't exist:error
-        List<String> headers = Arrays.asList(lines.remove(0).split(",", -1));
-        for (String dataLine : lines)
+        try(Metrics.Phase phase = Metrics.startPhase("gtfs.stops");
+            GTFSFileReader reader = new GTFSFileReader(filePath))//If file don't exist:error
         {
-            String[] values = dataLine.split(",", -1);
-            if(values.length != headers.size())//If delimiter in data: error
-                throw new RuntimeException("Delimiter in data: "+ dataLine);
-            String stop_id = values[headers.indexOf(STOPS.ID)];//If header don't exist: error
-            String lon_string = values[headers.indexOf(STOPS.LON)];
-            String lat_string = values[headers.indexOf(STOPS.LAT)];
-            double lon = Double.parseDouble(lon_string);//If wrong format or empty data:error
-            double lat = Double.parseDouble(lat_string);
-            Coordinate coordinate = new Coordinate(lon,lat);
-            Node node = new Node(stop_id, coordinate);
-            network.addNode(node);
+            int idColumn = reader.getColumn(STOPS.ID);//If header don't exist: error
+            int lonColumn = reader.getColumn(STOPS.LON);
+            int latColumn = reader.getColumn(STOPS.LAT);
+            int nodesNbr = network.getNodesNbr();
+            reader.forEachRow(row -> {
+                String stop_id = row.getString(idColumn);
+                double lon = row.getDouble(lonColumn);//If wrong format or empty data:error
+                double lat = row.getDouble(latColumn);
+                Coordinate coordinate = new Coordinate(lon,lat);
+                Node node = new Node(stop_id, coordinate);
+                network.addNode(node);
+            });
+            //Rows of an existing stop id are ignored
+            phase.addRows(reader.getDataRowsNbr());
+            phase.addCreated(network.getNodesNbr() - nodesNbr);
+            phase.addRejectedRows(reader.getDataRowsNbr() - (network.getNodesNbr() - nodesNbr));
         }
     }
     ///////////////////////////////////////////////////////////////////////////////////////////////////
@@ -70,36 +89,43 @@ public class NetworkReaderGTFS
      * @param network the network to populate with links
      * @param folderPath the path to the GTFS folder */
     ///////////////////////////////////////////////////////////////////////////////////////////////////
-    private void readRouteSectionsFile(Network network, String folderPath) throws IOException
+    void readRouteSectionsFile(Network network, String folderPath) throws IOException
     {
         Path filePath = Paths.get(folderPath, GTFS_FILES.ROUTE_SECTIONS);
-        List<String> lines = Files.readAllLines(filePath);//If file don't exist:error
-        List<String> headers = Arrays.asList(lines.remove(0).split(",", -1));
-        for (String dataLine : lines)
+        try(Metrics.Phase phase = Metrics.startPhase("gtfs.routeSections");
+            GTFSFileReader reader = new GTFSFileReader(filePath))//If file don't exist:error
         {
-            String[] values = dataLine.split(",", -1);
-            if(values.length != headers.size())//If delimiter in data: error
-                throw new RuntimeException("Delimiter in data: "+dataLine);
-            String route_id = values[headers.indexOf(SECTIONS.ROUTE_ID)];//If header don't exist: error
-            String type_string = values[headers.indexOf(SECTIONS.ROUTE_TYPE)];
-            String from_id = values[headers.indexOf(SECTIONS.FROM_ID)];
-            String to_id = values[headers.indexOf(SECTIONS.TO_ID)];
-            String time_string = values[headers.indexOf(SECTIONS.TIME)];
-            String frequency_string = values[headers.indexOf(SECTIONS.FREQUENCY)];
-            double timeInS = Double.parseDouble(time_string);//If wrong format or empty data:error
-            double frequencyInS = Double.parseDouble(frequency_string);
-            int route_type = Integer.parseInt(type_string);
-            if(!network.containsNode(from_id)||!network.containsNode(to_id))//If NodeId not found in the network:error
-                throw new RuntimeException("Stop not found: "+dataLine);
-            Node fromNode = network.getNode(from_id);
-            Node toNode = network.getNode(to_id);
-            String section_id = route_id+":"+from_id+":"+to_id;
-            double lengthInM = this.calculateDistance(fromNode.getCoordinate(),toNode.getCoordinate());
-            double speedInMS = lengthInM / timeInS;
-            int maxCapacity = this.getMaxCapacity(route_type);
-            double capacityPerHour = maxCapacity / frequencyInS / 3600;
-            Link link = new Link(section_id, fromNode, toNode, false, speedInMS, capacityPerHour, lengthInM);
-            network.addLink(link);
+            int linksNbr = network.getLinksNbr();
+            int routeIdColumn = reader.getColumn(SECTIONS.ROUTE_ID);//If header don't exist: error
+            int typeColumn = reader.getColumn(SECTIONS.ROUTE_TYPE);
+            int fromIdColumn = reader.getColumn(SECTIONS.FROM_ID);
+            int toIdColumn = reader.getColumn(SECTIONS.TO_ID);
+            int timeColumn = reader.getColumn(SECTIONS.TIME);
+            int frequencyColumn = reader.getColumn(SECTIONS.FREQUENCY);
+            reader.forEachRow(row -> {
+                String route_id = row.getString(routeIdColumn);
+                String from_id = row.getString(fromIdColumn);
+                String to_id = row.getString(toIdColumn);
+                double timeInS = row.getDouble(timeColumn);//If wrong format or empty data:error
+                double frequencyInS = row.getDouble(frequencyColumn);
+                int route_type = row.getInt(typeColumn);
+                if(!network.containsNode(from_id)||!network.containsNode(to_id))//If NodeId not found in the network:error
+                    throw new RuntimeException("Stop not found: "+row.getLine());
+                Node fromNode = network.getNode(from_id);
+                Node toNode = network.getNode(to_id);
+                String section_id = route_id+":"+from_id+":"+to_id;
+                double lengthInM = this.calculateDistance(fromNode.getCoordinate(),toNode.getCoordinate());
+                double speedInMS = lengthInM / timeInS;
+                int maxCapacity = this.getMaxCapacity(route_type);
+                //If no frequency:capacity of a single vehicle, as if it passed once an hour
+                double capacityPerHour = frequencyInS > 0 ? maxCapacity * 3600 / frequencyInS : maxCapacity;
+                Link link = new Link(section_id, fromNode, toNode, false, speedInMS, capacityPerHour, lengthInM);
+                link.setMode(Mode.TRANSIT);
+                link.setLine(route_id, frequencyInS);
+                network.addLink(link);
+            });
+            phase.addRows(reader.getDataRowsNbr());
+            phase.addCreated(network.getLinksNbr() - linksNbr);
         }
     }
     ///////////////////////////////////////////////////////////////////////////////////////////////////
@@ -111,27 +137,46 @@ public class NetworkReaderGTFS
     public void readTransfersFile(Network network, String folderPath) throws IOException
     {
         Path filePath = Paths.get(folderPath, GTFS_FILES.TRANSFERS);
-        List<String> lines = Files.readAllLines(filePath);//If file don't exist:error
-        List<String> headers = Arrays.asList(lines.remove(0).split(",", -1));
-        for (String dataLine : lines)
+        try(Metrics.Phase phase = Metrics.startPhase("gtfs.transfers");
+            GTFSFileReader reader = new GTFSFileReader(filePath))//If file don't exist:error
+        {
+            int linksNbr = network.getLinksNbr();
+            int fromIdColumn = reader.getColumn(TRANSFERS.FROM_ID);//If header don't exist: error
+            int toIdColumn = reader.getColumn(TRANSFERS.TO_ID);
+            int timeColumn = reader.getColumn(TRANSFERS.TIME);
+            reader.forEachRow(row -> {
+                String from_id = row.getString(fromIdColumn);
+                String to_id = row.getString(toIdColumn);
+                double timeInS = row.getDouble(timeColumn);//If wrong format or empty data:error
+                String id = from_id+':'+to_id;
+                if(!network.containsNode(from_id)||!network.containsNode(to_id))//If NodeId not found in the network:error
+                    throw new RuntimeException("Stop not found: "+row.getLine());
+                Node fromNode = network.getNode(from_id);
+                Node toNode = network.getNode(to_id);
+                double lengthInM = this.calculateDistance(fromNode.getCoordinate(),toNode.getCoordinate());
+                double speedInMS = lengthInM / timeInS;
+                double capacityPerHour = 10000000;
+                Link link = new Link(id, fromNode, toNode, true, speedInMS, capacityPerHour, lengthInM);
+                link.setMode(Mode.WALK);
+                network.addLink(link);
+            });
+            phase.addRows(reader.getDataRowsNbr());
+            phase.addCreated(network.getLinksNbr() - linksNbr);
+        }
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Creates the walking transfers between the stops of the network closer than the radius of the
+     * transfer generator, as bidirectional links
+     * @param network the network to populate with links, its nodes being the stops */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public void generateTransfers(Network network)
+    {
+        try(Metrics.Phase phase = Metrics.startPhase("gtfs.generatedTransfers"))
         {
-            String[] values = dataLine.split(",", -1);
-            if(values.length != headers.size())//If delimiter in data: error
-                throw new RuntimeException("Delimiter in data: "+dataLine);
-            String from_id = values[headers.indexOf(TRANSFERS.FROM_ID)];//If header don't exist: error
-            String to_id = values[headers.indexOf(TRANSFERS.TO_ID)];
-            String time_string = values[headers.indexOf(TRANSFERS.TIME)];
-            double timeInS = Double.parseDouble(time_string);//If wrong format or empty data:error
-            String id = from_id+':'+to_id;
-            if(!network.containsNode(from_id)||!network.containsNode(to_id))//If NodeId not found in the network:error
-                throw new RuntimeException("Stop not found: "+dataLine);
-            Node fromNode = network.getNode(from_id);
-            Node toNode = network.getNode(to_id);
-            double lengthInM = this.calculateDistance(fromNode.getCoordinate(),toNode.getCoordinate());
-            double speedInMS = lengthInM / timeInS;
-            double capacityPerHour = 10000000;
-            Link link = new Link(id, fromNode, toNode, true, speedInMS, capacityPerHour, lengthInM);
-            network.addLink(link);
+            int linksNbr = network.getLinksNbr();
+            for(Link link : this.transferGenerator.generateLinks(new ArrayList<>(network.getNodes())))
+                network.addLink(link);
+            phase.addCreated(network.getLinksNbr() - linksNbr);
         }
     }
     ///////////////////////////////////////////////////////////////////////////////////////////////////
@@ -143,30 +188,35 @@ public class NetworkReaderGTFS
     public void readPathwayFile(Network network, String folderPath) throws IOException
     {
         Path filePath = Paths.get(folderPath, GTFS_FILES.PATHWAYS);
-        List<String> lines = Files.readAllLines(filePath);//If file don't exist:error
-        List<String> headers = Arrays.asList(lines.remove(0).split(",", -1));
-        for (String dataLine : lines)
+        try(Metrics.Phase phase = Metrics.startPhase("gtfs.pathways");
+            GTFSFileReader reader = new GTFSFileReader(filePath))//If file don't exist:error
         {
-            String[] values = dataLine.split(",", -1);
-            if(values.length != headers.size())//If delimiter in data: error
-                throw new RuntimeException("Delimiter in data: "+dataLine);
-            String id = values[headers.indexOf(PATHWAYS.ID)];//If header don't exist: error
-            String from_id = values[headers.indexOf(PATHWAYS.FROM_ID)];
-            String to_id = values[headers.indexOf(PATHWAYS.TO_ID)];
-            String time_string = values[headers.indexOf(PATHWAYS.TIME)];
-            String length_string = values[headers.indexOf(PATHWAYS.LENGTH)];
-            String bidirectional_string = values[headers.indexOf(PATHWAYS.BIDIRECTIONAL)];
-            double timeInS = Double.parseDouble(time_string);//If wrong format or empty data:error
-            if(!network.containsNode(from_id)||!network.containsNode(to_id))//If NodeId not found in the network:error
-                throw new RuntimeException("Stop not found: "+dataLine);
-            Node fromNode = network.getNode(from_id);
-            Node toNode = network.getNode(to_id);
-            double lengthInM = Double.parseDouble(length_string);
-            double speedInMS = lengthInM / timeInS;
-            double capacityPerHour = 10000000;
-            boolean bidirectional =  bidirectional_string.equals("1");
-            Link link = new Link(id, fromNode, toNode, bidirectional, speedInMS, capacityPerHour, lengthInM);
-            network.addLink(link);
+            int linksNbr = network.getLinksNbr();
+            int idColumn = reader.getColumn(PATHWAYS.ID);//If header don't exist: error
+            int fromIdColumn = reader.getColumn(PATHWAYS.FROM_ID);
+            int toIdColumn = reader.getColumn(PATHWAYS.TO_ID);
+            int timeColumn = reader.getColumn(PATHWAYS.TIME);
+            int lengthColumn = reader.getColumn(PATHWAYS.LENGTH);
+            int bidirectionalColumn = reader.getColumn(PATHWAYS.BIDIRECTIONAL);
+            reader.forEachRow(row -> {
+                String id = row.getString(idColumn);
+                String from_id = row.getString(fromIdColumn);
+                String to_id = row.getString(toIdColumn);
+                double timeInS = row.getDouble(timeColumn);//If wrong format or empty data:error
+                if(!network.containsNode(from_id)||!network.containsNode(to_id))//If NodeId not found in the network:error
+                    throw new RuntimeException("Stop not found: "+row.getLine());
+                Node fromNode = network.getNode(from_id);
+                Node toNode = network.getNode(to_id);
+                double lengthInM = row.getDouble(lengthColumn);
+                double speedInMS = lengthInM / timeInS;
+                double capacityPerHour = 10000000;
+                boolean bidirectional = row.equals(bidirectionalColumn, "1");
+                Link link = new Link(id, fromNode, toNode, bidirectional, speedInMS, capacityPerHour, lengthInM);
+                link.setMode(Mode.WALK);
+                network.addLink(link);
+            });
+            phase.addRows(reader.getDataRowsNbr());
+            phase.addCreated(network.getLinksNbr() - linksNbr);
         }
     }
     ///////////////////////////////////////////////////////////////////////////////////////////////////
@@ -175,40 +225,86 @@ public class NetworkReaderGTFS
      * It contains for each route section: route_id,route_type,from_stop_id,to_stop_id,time,frequency
      * The frequency correspond to the average frequency of passages of every trip of the route
      * The time correspond to the average travel time between the two section points of every trip of the route
+     * stop_times is read by chunks in parallel and the routes are aggregated in parallel, in the order of the routes
      * @param folderPath the path to the GTFS folder */
     ///////////////////////////////////////////////////////////////////////////////////////////////////
-    private void createRouteSectionsFile(String folderPath) throws IOException
+    void createRouteSectionsFile(String folderPath) throws IOException
     {
-        //Extract data from existing files
-        HashMap<String,HashMap<String,Integer>> tripStops = this.readStopTimesFile(folderPath);//<TripId,<StopIds,Times>>
-        HashMap<String,List<String>> routeTrips = this.readTripsFile(folderPath);//<RouteId,TripIds>
-        HashMap<String,String> routesTypes = this.readRoutesFile(folderPath);//<RouteId,RouteType>
-        //Fus data
-        List<HashMap<String,String>> lines = new ArrayList<>();
-        for(Map.Entry<String, String> routes:routesTypes.entrySet())
+        try(Metrics.Phase phase = Metrics.startPhase("gtfs.routeSectionsGeneration"))
         {
-            String routeId = routes.getKey();
-            String routeType = routes.getValue();
-            List<String> tripsIds = routeTrips.get(routeId);
-            int routeFrequency = this.getAverageFrequency(tripsIds,tripStops);
-            HashMap<String,String> sections = this.getSections(tripStops.get(tripsIds.get(0)));
-            for(Map.Entry<String, String> stopsId:sections.entrySet())
+            //Extract data from existing files
+            StopTimesTable stopTimes = StopTimesTable.read(Paths.get(folderPath, GTFS_FILES.STOP_TIMES));
+            HashMap<String,List<String>> routeTrips = this.readTripsFile(folderPath);//<RouteId,TripIds>
+            HashMap<String,String> routesTypes = this.readRoutesFile(folderPath);//<RouteId,RouteType>
+            //Fus data
+            ThreadLocal<TripStopTimes> tripStopTimes = ThreadLocal.withInitial(() -> new TripStopTimes(stopTimes.getStopsNbr()));
+            List<HashMap<String,String>> lines = new ArrayList<>(routesTypes.entrySet()).parallelStream()
+                    .map(route -> this.getRouteSections(route.getKey(), route.getValue(), routeTrips.get(route.getKey()), stopTimes, tripStopTimes.get()))
+                    .flatMap(List::stream)
+                    .collect(Collectors.toList());
+            //Write route sections file
+            this.writeRouteSectionsFile(folderPath,lines);
+            phase.addRows(stopTimes.getRowsNbr());
+            phase.addCreated(lines.size());
+        }
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Computes the sections of a route in one pass over its trips
+     * The sections are those of the first trip, in the order of the original HashMap of its stops
+     * @param tripsIds the trips of the route, the first one giving the sections
+     * @param stopTimes the stop times of every trip
+     * @param tripStopTimes the arrays of the current thread receiving the times of a trip
+     * @return the lines of the route sections file, as hashMap<Header,Value> */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private List<HashMap<String,String>> getRouteSections(String routeId, String routeType, List<String> tripsIds,
+                                                          StopTimesTable stopTimes, TripStopTimes tripStopTimes)
+    {
+        if(tripsIds == null)//If route without trip: error
+            throw new RuntimeException("No trip for route: "+routeId);
+        int[] trips = new int[tripsIds.size()];
+        for(int index = 0; index < trips.length; index++)
+        {
+            trips[index] = stopTimes.getTripIndex(tripsIds.get(index));
+            if(trips[index] < 0)//If trip without stop times: error
+                throw new RuntimeException("No stop times for trip: "+tripsIds.get(index));
+        }
+        HashMap<String,String> sections = this.getSections(this.getStopsArrivalTimes(stopTimes, trips[0]));
+        List<Map.Entry<String,String>> sectionsIds = new ArrayList<>(sections.entrySet());
+        int[] fromStops = new int[sectionsIds.size()], toStops = new int[sectionsIds.size()];
+        for(int section = 0; section < fromStops.length; section++)
+        {
+            fromStops[section] = stopTimes.getStopIndex(sectionsIds.get(section).getKey());
+            toStops[section] = stopTimes.getStopIndex(sectionsIds.get(section).getValue());
+        }
+        //Sum departures and traversal times over the trips
+        int firstDeparture = Integer.MAX_VALUE, lastDeparture = Integer.MIN_VALUE;
+        int[] totalTraversalTimes = new int[fromStops.length];
+        for(int trip : trips)
+        {
+            tripStopTimes.load(stopTimes, trip);
+            firstDeparture = Math.min(firstDeparture, tripStopTimes.getDeparture());
+            lastDeparture = Math.max(lastDeparture, tripStopTimes.getDeparture());
+            for(int section = 0; section < fromStops.length; section++)
             {
-                String fromId = stopsId.getKey();
-                String toId = stopsId.getValue();
-                int traversalTime = this.getAverageTime(tripsIds,tripStops,fromId,toId);
-                HashMap<String,String> line = new HashMap<>();
-                line.put(SECTIONS.ROUTE_ID,routeId);
-                line.put(SECTIONS.ROUTE_TYPE,routeType);
-                line.put(SECTIONS.FREQUENCY,""+routeFrequency);
-                line.put(SECTIONS.FROM_ID,fromId);
-                line.put(SECTIONS.TO_ID,toId);
-                line.put(SECTIONS.TIME,""+traversalTime);
-                lines.add(line);
+                if(!tripStopTimes.isServed(fromStops[section]) || !tripStopTimes.isServed(toStops[section]))//If section not served by a trip: error
+                    throw new RuntimeException("Section "+sectionsIds.get(section)+" not served by trip: "+stopTimes.getTripId(trip));
+                totalTraversalTimes[section] += tripStopTimes.getTime(toStops[section]) - tripStopTimes.getTime(fromStops[section]);
             }
         }
-        //Write route sections file
-        this.writeRouteSectionsFile(folderPath,lines);
+        int routeFrequency = (lastDeparture-firstDeparture)/trips.length;
+        List<HashMap<String,String>> lines = new ArrayList<>(fromStops.length);
+        for(int section = 0; section < fromStops.length; section++)
+        {
+            HashMap<String,String> line = new HashMap<>();
+            line.put(SECTIONS.ROUTE_ID,routeId);
+            line.put(SECTIONS.ROUTE_TYPE,routeType);
+            line.put(SECTIONS.FREQUENCY,""+routeFrequency);
+            line.put(SECTIONS.FROM_ID,sectionsIds.get(section).getKey());
+            line.put(SECTIONS.TO_ID,sectionsIds.get(section).getValue());
+            line.put(SECTIONS.TIME,""+totalTraversalTimes[section]/trips.length);
+            lines.add(line);
+        }
+        return lines;
     }
     ///////////////////////////////////////////////////////////////////////////////////////////////////
     /** Writes the custom route sections file to the specified folder path
@@ -218,68 +314,59 @@ public class NetworkReaderGTFS
     ///////////////////////////////////////////////////////////////////////////////////////////////////
     private void writeRouteSectionsFile(String folderPath, List<HashMap<String,String>> lines) throws IOException
     {
-        BufferedWriter writer = new BufferedWriter(new FileWriter(folderPath + GTFS_FILES.ROUTE_SECTIONS));
-        writer.write(String.join(",", SECTIONS.ROUTE_ID, SECTIONS.ROUTE_TYPE,
-                SECTIONS.FROM_ID, SECTIONS.TO_ID, SECTIONS.TIME, SECTIONS.FREQUENCY));
-        writer.newLine();
-        for(HashMap<String,String> line: lines)
+        try(BufferedWriter writer = new BufferedWriter(new FileWriter(folderPath + GTFS_FILES.ROUTE_SECTIONS)))
         {
-            writer.write(String.join(",", line.get(SECTIONS.ROUTE_ID),line.get(SECTIONS.ROUTE_TYPE),
-                    line.get(SECTIONS.FROM_ID), line.get( SECTIONS.TO_ID), line.get(SECTIONS.TIME), line.get(SECTIONS.FREQUENCY)));
+            writer.write(String.join(",", SECTIONS.ROUTE_ID, SECTIONS.ROUTE_TYPE,
+                    SECTIONS.FROM_ID, SECTIONS.TO_ID, SECTIONS.TIME, SECTIONS.FREQUENCY));
             writer.newLine();
+            for(HashMap<String,String> line: lines)
+            {
+                writer.write(String.join(",", line.get(SECTIONS.ROUTE_ID),line.get(SECTIONS.ROUTE_TYPE),
+                        line.get(SECTIONS.FROM_ID), line.get( SECTIONS.TO_ID), line.get(SECTIONS.TIME), line.get(SECTIONS.FREQUENCY)));
+                writer.newLine();
+            }
         }
     }
     ///////////////////////////////////////////////////////////////////////////////////////////////////
-    /** For each trip, get all the stops and their associated arrival time
-     * @param folderPath the path to the GTFS folder
-     * @return a trip-stops HashMap <tripId,<stopId,arrivalTime>> */
+    /** Rebuilds the stops of a trip with their arrival time, inserted in file order like the file rows
+     * so that the HashMap iterates its stops in the same order as when it was filled from the file
+     * @param stopTimes the stop times of every trip
+     * @param trip the index of the trip
+     * @return a stopTimes HashMap <stopId,arrivalTime>, the last row of a stop visited twice winning */
     ///////////////////////////////////////////////////////////////////////////////////////////////////
-    private HashMap<String,HashMap<String,Integer>> readStopTimesFile(String folderPath) throws IOException
+    private HashMap<String,Integer> getStopsArrivalTimes(StopTimesTable stopTimes, int trip)
     {
-        HashMap<String,HashMap<String,Integer>> tripStops = new HashMap<>();
-        Path filePath = Paths.get(folderPath, GTFS_FILES.STOP_TIMES);
-        List<String> lines = Files.readAllLines(filePath);//If file don't exist:error
-        List<String> headers = Arrays.asList(lines.remove(0).split(",", -1));
-        for (String dataLine : lines)
+        int start = stopTimes.getTripStart(trip), end = stopTimes.getTripEnd(trip);
+        long[] rowPositions = new long[end - start];
+        for(int position = start; position < end; position++)
+            rowPositions[position - start] = ((long) stopTimes.getRow(position) << 32) | position;
+        Arrays.sort(rowPositions);
+        HashMap<String,Integer> stopsArrivalTimes = new HashMap<>();
+        for(long rowPosition : rowPositions)
         {
-            String[] values = dataLine.split(",", -1);
-            if(values.length != headers.size())//If delimiter in data: error
-                throw new RuntimeException("Delimiter in data: "+dataLine);
-            String stop_id = values[headers.indexOf(TIMES.STOP_ID)];//If header don't exist: error
-            String time_string = values[headers.indexOf(TIMES.ARRIVAL_TIME)];
-            String trip_id = values[headers.indexOf(TIMES.TRIP_ID)];
-            String[] time_strings = time_string.split(":");
-            int hours = Integer.parseInt(time_strings[0]);//If wrong format or empty data:error
-            int minutes = Integer.parseInt(time_strings[1]);
-            int seconds = Integer.parseInt(time_strings[2]);
-            int arrivalTimeInS = (hours * 3600) + (minutes * 60) + seconds;
-            if(!tripStops.containsKey(trip_id))
-                tripStops.put(trip_id, new HashMap<>());
-            tripStops.get(trip_id).put(stop_id,arrivalTimeInS);
+            int position = (int) rowPosition;
+            stopsArrivalTimes.put(stopTimes.getStopId(stopTimes.getStop(position)), stopTimes.getArrivalTimeInS(position));
         }
-        return tripStops;
+        return stopsArrivalTimes;
     }
     ///////////////////////////////////////////////////////////////////////////////////////////////////
     /** For each routeId, get all the tripsIds
      * @param folderPath the path to the GTFS folder
      * @return A route-trips HashMap <routeId,tripsIds> */
     ///////////////////////////////////////////////////////////////////////////////////////////////////
-    private HashMap<String,List<String>> readTripsFile(String folderPath) throws IOException
+    HashMap<String,List<String>> readTripsFile(String folderPath) throws IOException
     {
         HashMap<String,List<String>> routeTrips = new HashMap<>();
         Path filePath = Paths.get(folderPath, GTFS_FILES.TRIPS);
-        List<String> lines = Files.readAllLines(filePath);//If file don't exist:error
-        List<String> headers = Arrays.asList(lines.remove(0).split(",", -1));
-        for (String dataLine : lines)
+        try(GTFSFileReader reader = new GTFSFileReader(filePath))//If file don't exist:error
         {
-            String[] values = dataLine.split(",", -1);
-            if(values.length != headers.size())//If delimiter in data: error
-                throw new RuntimeException("Delimiter in data: "+dataLine);
-            String trip_id = values[headers.indexOf(TRIPS.ID)];//If header don't exist: error
-            String route_id = values[headers.indexOf(TRIPS.ROUTE_ID)];
-            if(!routeTrips.containsKey(route_id))
-                routeTrips.put(route_id,new ArrayList<>());
-            routeTrips.get(route_id).add(trip_id);
+            int tripIdColumn = reader.getColumn(TRIPS.ID);//If header don't exist: error
+            int routeIdColumn = reader.getColumn(TRIPS.ROUTE_ID);
+            reader.forEachRow(row -> {
+                String trip_id = row.getString(tripIdColumn);
+                String route_id = row.getString(routeIdColumn);
+                routeTrips.computeIfAbsent(route_id, routeId -> new ArrayList<>()).add(trip_id);
+            });
         }
         return routeTrips;
     }
@@ -288,41 +375,19 @@ public class NetworkReaderGTFS
      * @param folderPath the path to the GTFS folder
      * @return A route-type HashMap <routeId,routeType> */
     ///////////////////////////////////////////////////////////////////////////////////////////////////
-    private HashMap<String, String>  readRoutesFile(String folderPath) throws IOException
+    HashMap<String, String>  readRoutesFile(String folderPath) throws IOException
     {
         HashMap<String, String> routesTypes = new HashMap<>();
         Path filePath = Paths.get(folderPath, GTFS_FILES.ROUTES);
-        List<String> lines = Files.readAllLines(filePath);//If file don't exist:error
-        List<String> headers = Arrays.asList(lines.remove(0).split(",", -1));
-        for (String dataLine : lines)
+        try(GTFSFileReader reader = new GTFSFileReader(filePath))//If file don't exist:error
         {
-            String[] values = dataLine.split(",", -1);
-            if(values.length != headers.size())//If delimiter in data: error
-                throw new RuntimeException("Delimiter in data: "+dataLine);
-            String route_id = values[headers.indexOf(ROUTES.ID)];//If header don't exist: error
-            String route_type = values[headers.indexOf(ROUTES.TYPE)];
-            routesTypes.put(route_id,route_type);
+            int routeIdColumn = reader.getColumn(ROUTES.ID);//If header don't exist: error
+            int typeColumn = reader.getColumn(ROUTES.TYPE);
+            reader.forEachRow(row -> routesTypes.put(row.getString(routeIdColumn),row.getString(typeColumn)));
         }
         return routesTypes;
     }
     ///////////////////////////////////////////////////////////////////////////////////////////////////
-    /** Calculates the average departure frequency of the trips in parameter
-     * @param tripsIds A list of trip IDs for which to calculate the average departure frequency
-     * @param tripStops a trip-stops HashMap <tripId,<stopId,arrivalTime>>
-     * @return the average departure frequency in seconds */
-    ///////////////////////////////////////////////////////////////////////////////////////////////////
-    public int getAverageFrequency(List<String> tripsIds, HashMap<String,HashMap<String,Integer>> tripStops)
-    {
-        List<Integer> departures = new ArrayList<>();
-        for(String tripId:tripsIds)
-            departures.add(Collections.min(tripStops.get(tripId).values()));
-        //Compute frequency
-        int firstDeparture = Collections.min(departures);
-        int lastDeparture = Collections.max(departures);
-        int passagesNumbers = tripsIds.size();
-        return (lastDeparture-firstDeparture)/passagesNumbers;
-    }
-    ///////////////////////////////////////////////////////////////////////////////////////////////////
     /** Returns a HashMap containing sections (= two consecutive stops) based on the arrival times
      * @param stopsArrivalTimes A stopTimes HashMap <stopId,arrivalTime>
      * @return the sections HashMap <fromId,toId>*/
@@ -341,28 +406,6 @@ public class NetworkReaderGTFS
         return sections;
     }
     ///////////////////////////////////////////////////////////////////////////////////////////////////
-    /** Returns the average traversal time between two stops for a list of trips
-     * @param tripsIds A list of trip IDs for which to calculate the average traversal time
-     * @param tripStops a trip-stops HashMap <tripId,<stopId,arrivalTime>>
-     * @param fromId The ID of the starting stop
-     * @param toId The ID of the destination stop
-     * @return The average traversal time in minutes between the specified stops for the given trips */
-    ///////////////////////////////////////////////////////////////////////////////////////////////////
-    private int getAverageTime(List<String> tripsIds, HashMap<String,HashMap<String,Integer>> tripStops, String fromId, String toId)
-    {
-        int totalTraversalTimes = 0;
-        int passageNumbers = 0;
-        for(String tripId:tripsIds) {
-            HashMap<String,Integer> stopsTimes = tripStops.get(tripId);
-            int fromTime = stopsTimes.get(fromId);
-            int toTime = stopsTimes.get(toId);
-            int traversalTime = toTime - fromTime;
-            totalTraversalTimes+=traversalTime;
-            passageNumbers++;
-        }
-        return totalTraversalTimes/passageNumbers;
-    }
-    ///////////////////////////////////////////////////////////////////////////////////////////////////
     /** Returns the maximum capacity for a given route type
      @param route_type The route type identifier
      @return The maximum capacity value corresponding to the given route type */
@@ -385,10 +428,45 @@ public class NetworkReaderGTFS
     ///////////////////////////////////////////////////////////////////////////////////////////////////
     public double calculateDistance(Coordinate coordinate1, Coordinate coordinate2)
     {
-        GeodeticCalculator calculator = new GeodeticCalculator();
-        calculator.setStartingGeographicPoint(coordinate1.x, coordinate1.y);
-        calculator.setDestinationGeographicPoint(coordinate2.x, coordinate2.y);
-        return calculator.getOrthodromicDistance();
+        return CoordinateTransformer.distanceInM(coordinate1, coordinate2);
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Arrival times of the stops of one trip, indexed by stop and invalidated by a stamp between trips
+     * A stop visited twice keeps the time of its last row in the file */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private static class TripStopTimes
+    {
+        private final int[] times, rows, stamps;
+        private int stamp, departure;
+        TripStopTimes(int stopsNbr)
+        {
+            this.times = new int[stopsNbr];
+            this.rows = new int[stopsNbr];
+            this.stamps = new int[stopsNbr];
+        }
+        void load(StopTimesTable stopTimes, int trip)
+        {
+            if(++this.stamp == 0) {
+                Arrays.fill(this.stamps, 0);
+                this.stamp = 1;
+            }
+            int start = stopTimes.getTripStart(trip), end = stopTimes.getTripEnd(trip);
+            for(int position = start; position < end; position++)
+            {
+                int stop = stopTimes.getStop(position), row = stopTimes.getRow(position);
+                if(this.stamps[stop] != this.stamp || row > this.rows[stop]) {
+                    this.stamps[stop] = this.stamp;
+                    this.rows[stop] = row;
+                    this.times[stop] = stopTimes.getArrivalTimeInS(position);
+                }
+            }
+            this.departure = Integer.MAX_VALUE;
+            for(int position = start; position < end; position++)
+                this.departure = Math.min(this.departure, this.times[stopTimes.getStop(position)]);
+        }
+        boolean isServed(int stop){return this.stamps[stop] == this.stamp;}
+        int getTime(int stop){return this.times[stop];}
+        int getDeparture(){return this.departure;}
     }
 }
 ///////////////////////////////////////////////////////////////////////////////////////////////////
@@ -406,7 +484,8 @@ class SECTIONS {
             TO_ID = "to_stop_id", TIME = "time",FREQUENCY = "frequency";
 }
 class TRANSFERS {
-    public static final String FROM_ID = "from_stop_id", TO_ID = "to_stop_id", TIME = "min_transfer_time";
+    public static final String FROM_ID = "from_stop_id", TO_ID = "to_stop_id", TIME = "min_transfer_time",
+            TYPE = "transfer_type", NOT_POSSIBLE = "3";
 }
 class PATHWAYS {
     public static final String ID = "pathway_id",FROM_ID = "from_stop_id",TO_ID = "to_stop_id",
@@ -419,7 +498,8 @@ class ROUTES {
     public static final String ID = "route_id",TYPE = "route_type";
 }
 class TIMES {
-    public static final String TRIP_ID = "trip_id",ARRIVAL_TIME = "arrival_time",STOP_ID = "stop_id";
+    public static final String TRIP_ID = "trip_id",ARRIVAL_TIME = "arrival_time",STOP_ID = "stop_id",
+            STOP_SEQUENCE = "stop_sequence", DEPARTURE_TIME = "departure_time";
 }
 class MAX_CAPACITY
 {
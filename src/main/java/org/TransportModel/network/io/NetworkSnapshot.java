@@ -0,0 +1,353 @@
+package org.TransportModel.network.io;
+
+import org.TransportModel.metrics.Metrics;
+import org.TransportModel.network.CompactGraph;
+import org.TransportModel.network.Link;
+import org.TransportModel.network.Mode;
+import org.TransportModel.network.Network;
+import org.TransportModel.network.Node;
+import org.locationtech.jts.geom.Coordinate;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+///////////////////////////////////////////////////////////////////////////////////////////////////
+/** NetworkSnapshot saves a network in a versioned binary file read back through a memory mapping,
+ * to skip the parsing of the source files at startup.
+ * Layout (big endian): magic, version, fingerprint of the sources and options, numbers of strings, nodes
+ * and links, then the dictionary of the ids (length + UTF-8 bytes), the nodes (id, x, y), the links
+ * (id, from node, to node, flags, length, speed, capacity, line id or -1, headway, number of shape
+ * points and their x y), the flags holding the bidirectional bit and the mode of the link above it,
+ * and a CRC32 of everything before it.
+ * A snapshot whose fingerprint doesn't match its sources or the options of their reading is rebuilt
+ * by load
+ * Reading and writing are the snapshot.read and snapshot.write phases of the metrics */
+///////////////////////////////////////////////////////////////////////////////////////////////////
+public class NetworkSnapshot
+{
+    private static final int MAGIC = 0x4E534E50, VERSION = 5, HEADER_SIZE = 28, TRAILER_SIZE = 8;
+    private static final int BIDIRECTIONAL_FLAG = 1, MODE_SHIFT = 1;
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Fills a network from its source files, when the snapshot is missing or outdated */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public interface NetworkBuilder
+    {
+        void build(Network network) throws IOException;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Reads a network from its snapshot if it is up to date, otherwise builds it from its sources
+     * and writes its snapshot for the next time, only once the builder returned: a builder failing
+     * must throw rather than leave a partial network, which would be saved as up to date
+     * @param snapshotFile the snapshot of the network
+     * @param configuration the options of the readers and builders changing the network, see fingerprint
+     * @param builder fills the network from the sources
+     * @param sources the files or folders the network is built from */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public static Network load(File snapshotFile, String configuration, NetworkBuilder builder, File... sources) throws IOException
+    {
+        long fingerprint = fingerprint(configuration, sources);
+        if(isUpToDate(snapshotFile, fingerprint))
+            return readNetwork(snapshotFile);
+        Network network = new Network();
+        builder.build(network);
+        write(network, snapshotFile, fingerprint);
+        return network;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Computes the fingerprint of source files from their paths, sizes and modification times
+     * A folder stands for its files (except the generated route sections of a GTFS folder) and a
+     * shapefile for all the files sharing its name (.dbf, .shx, .prj...)
+     * @param configuration the options the network is built with (tolerances, radii...), a snapshot
+     *                      made with other options being outdated like one of modified sources */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public static long fingerprint(String configuration, File... sources)
+    {
+        List<File> files = new ArrayList<>();
+        for(File source : sources)
+        {
+            File[] siblings = null;
+            if(source.isDirectory())
+                siblings = source.listFiles(file -> file.isFile() && !("/" + file.getName()).equals(GTFS_FILES.ROUTE_SECTIONS));
+            else if(source.getName().toLowerCase().endsWith(".shp") && source.getAbsoluteFile().getParentFile() != null) {
+                String baseName = source.getName().substring(0, source.getName().length() - 4) + ".";
+                siblings = source.getAbsoluteFile().getParentFile().listFiles(file -> file.isFile() && file.getName().startsWith(baseName)
+                        && !file.getName().endsWith(".snapshot"));
+            }
+            if(siblings == null)
+                files.add(source);
+            else {
+                Arrays.sort(siblings);
+                files.addAll(Arrays.asList(siblings));
+            }
+        }
+        CRC32 crc = new CRC32();
+        crc.update((configuration + "\n").getBytes(StandardCharsets.UTF_8));
+        for(File file : files)
+            crc.update((file.getPath() + "|" + file.length() + "|" + file.lastModified() + "\n").getBytes(StandardCharsets.UTF_8));
+        return (long) files.size() << 32 | crc.getValue();
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Checks that a snapshot exists, has the current version and was made from the given sources
+     * @param fingerprint the fingerprint of the sources */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public static boolean isUpToDate(File snapshotFile, long fingerprint)
+    {
+        if(!snapshotFile.isFile() || snapshotFile.length() < HEADER_SIZE + TRAILER_SIZE)
+            return false;
+        try(FileChannel channel = FileChannel.open(snapshotFile.toPath(), StandardOpenOption.READ))
+        {
+            ByteBuffer header = ByteBuffer.allocate(16);
+            while(header.hasRemaining() && channel.read(header) >= 0);
+            return header.getInt(0) == MAGIC && header.getInt(4) == VERSION && header.getLong(8) == fingerprint;
+        }
+        catch(IOException e) {
+            return false;
+        }
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Writes the snapshot of a network, through a temporary file replacing the snapshot at the end
+     * @param fingerprint the fingerprint of the sources of the network */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public static void write(Network network, File snapshotFile, long fingerprint) throws IOException
+    {
+        try(Metrics.Phase phase = Metrics.startPhase("snapshot.write"))
+        {
+            writeFile(network, snapshotFile, fingerprint);
+            phase.addCreated(network.getNodesNbr() + network.getLinksNbr());
+        }
+    }
+    private static void writeFile(Network network, File snapshotFile, long fingerprint) throws IOException
+    {
+        //Intern the ids
+        List<String> strings = new ArrayList<>();
+        HashMap<String,Integer> stringIndices = new HashMap<>();
+        Node[] nodes = network.getNodes().toArray(new Node[0]);
+        Link[] links = network.getLinks().toArray(new Link[0]);
+        for(Node node : nodes)
+            intern(node.getId(), strings, stringIndices);
+        for(Link link : links)
+        {
+            intern(link.getId(), strings, stringIndices);
+            if(link.getLineId() != null)
+                intern(link.getLineId(), strings, stringIndices);
+        }
+        //Write
+        File directory = snapshotFile.getAbsoluteFile().getParentFile();
+        File temporaryFile = File.createTempFile(snapshotFile.getName(), ".tmp", directory);
+        try {
+            CRC32 crc = new CRC32();
+            try(DataOutputStream output = new DataOutputStream(new CheckedOutputStream(new BufferedOutputStream(new FileOutputStream(temporaryFile), 1 << 16), crc)))
+            {
+                output.writeInt(MAGIC);
+                output.writeInt(VERSION);
+                output.writeLong(fingerprint);
+                output.writeInt(strings.size());
+                output.writeInt(nodes.length);
+                output.writeInt(links.length);
+                for(String string : strings)
+                {
+                    byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+                    output.writeInt(bytes.length);
+                    output.write(bytes);
+                }
+                for(Node node : nodes)
+                {
+                    output.writeInt(stringIndices.get(node.getId()));
+                    output.writeDouble(node.getCoordinate().x);
+                    output.writeDouble(node.getCoordinate().y);
+                }
+                for(Link link : links)
+                {
+                    output.writeInt(stringIndices.get(link.getId()));
+                    output.writeInt(network.getNodeHandle(link.getFromNode()));
+                    output.writeInt(network.getNodeHandle(link.getToNode()));
+                    output.writeByte((link.isBidirectional() ? BIDIRECTIONAL_FLAG : 0) | link.getMode().ordinal() << MODE_SHIFT);
+                    output.writeDouble(link.getLengthInM());
+                    output.writeDouble(link.getNormalSpeedInMS());
+                    output.writeDouble(link.getCapacityPerHour());
+                    output.writeInt(link.getLineId() == null ? -1 : stringIndices.get(link.getLineId()));
+                    output.writeDouble(link.getHeadwayInS());
+                    output.writeInt(link.getShapePointsNbr());
+                    for(int coordinate = 0; coordinate < 2 * link.getShapePointsNbr(); coordinate++)
+                        output.writeDouble(link.getShapePoints()[coordinate]);
+                }
+                output.writeLong(crc.getValue());
+            }
+            Files.move(temporaryFile.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        finally {
+            Files.deleteIfExists(temporaryFile.toPath());
+        }
+    }
+    private static void intern(String string, List<String> strings, HashMap<String,Integer> stringIndices)
+    {
+        if(!stringIndices.containsKey(string)) {
+            stringIndices.put(string, strings.size());
+            strings.add(string);
+        }
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Reads a snapshot into a network
+     * @throws IOException if the file isn't a snapshot of the current version or is corrupted */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public static Network readNetwork(File snapshotFile) throws IOException
+    {
+        Content content = read(snapshotFile);
+        Network network = new Network(content.nodeIds.length, content.linkIds.length);
+        Node[] nodes = new Node[content.nodeIds.length];
+        for(int node = 0; node < nodes.length; node++)
+        {
+            nodes[node] = new Node(content.nodeIds[node], new Coordinate(content.nodeX[node], content.nodeY[node]));
+            network.addNode(nodes[node]);
+        }
+        for(int link = 0; link < content.linkIds.length; link++)
+        {
+            Link newLink = new Link(content.linkIds[link], nodes[content.linkFrom[link]], nodes[content.linkTo[link]], content.linkBidirectional[link],
+                    content.linkSpeedInMS[link], content.linkCapacityPerHour[link], content.linkLengthInM[link]);
+            newLink.setMode(content.linkModes[link]);
+            if(content.linkLineIds[link] != null)
+                newLink.setLine(content.linkLineIds[link], content.linkHeadwayInS[link]);
+            newLink.setShapePoints(content.linkShapePoints[link]);
+            network.addLink(newLink);
+        }
+        return network;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Reads a snapshot directly into the compact graph of the network, without the network objects
+     * @throws IOException if the file isn't a snapshot of the current version or is corrupted */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public static CompactGraph readGraph(File snapshotFile) throws IOException
+    {
+        Content content = read(snapshotFile);
+        return new CompactGraph(content.nodeIds, content.nodeX, content.nodeY, content.linkIds, content.linkFrom, content.linkTo,
+                content.linkBidirectional, content.linkLengthInM, content.linkSpeedInMS, content.linkCapacityPerHour, content.linkModes, content.linkShapePoints);
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Maps a snapshot in memory, checks it and decodes its arrays */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private static Content read(File snapshotFile) throws IOException
+    {
+        try(Metrics.Phase phase = Metrics.startPhase("snapshot.read"))
+        {
+            Content content = readFile(snapshotFile);
+            phase.addRows(content.nodeIds.length + content.linkIds.length);
+            return content;
+        }
+    }
+    private static Content readFile(File snapshotFile) throws IOException
+    {
+        MappedByteBuffer buffer;
+        try(FileChannel channel = FileChannel.open(snapshotFile.toPath(), StandardOpenOption.READ))
+        {
+            if(channel.size() < HEADER_SIZE + TRAILER_SIZE || channel.size() > Integer.MAX_VALUE)
+                throw new IOException("Not a network snapshot: " + snapshotFile);
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        int dataSize = buffer.capacity() - TRAILER_SIZE;
+        if(buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION)
+            throw new IOException("Not a network snapshot of version " + VERSION + ": " + snapshotFile);
+        ByteBuffer data = buffer.duplicate();
+        ((Buffer) data).limit(dataSize);
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        if(crc.getValue() != buffer.getLong(dataSize))
+            throw new IOException("Corrupted network snapshot: " + snapshotFile);
+        ((Buffer) buffer).position(16);
+        Content content = new Content(buffer.getInt(), buffer.getInt(), buffer.getInt());
+        //Dictionary
+        String[] strings = new String[content.stringsNbr];
+        byte[] bytes = new byte[256];
+        for(int string = 0; string < strings.length; string++)
+        {
+            int length = buffer.getInt();
+            if(length > bytes.length)
+                bytes = new byte[Math.max(length, bytes.length * 2)];
+            buffer.get(bytes, 0, length);
+            strings[string] = new String(bytes, 0, length, StandardCharsets.UTF_8);
+        }
+        //Nodes
+        for(int node = 0; node < content.nodeIds.length; node++)
+        {
+            content.nodeIds[node] = strings[buffer.getInt()];
+            content.nodeX[node] = buffer.getDouble();
+            content.nodeY[node] = buffer.getDouble();
+        }
+        //Links
+        for(int link = 0; link < content.linkIds.length; link++)
+        {
+            content.linkIds[link] = strings[buffer.getInt()];
+            content.linkFrom[link] = buffer.getInt();
+            content.linkTo[link] = buffer.getInt();
+            int flags = buffer.get() & 0xFF;
+            if(flags >>> MODE_SHIFT >= Mode.values().length)
+                throw new IOException("Corrupted network snapshot: " + snapshotFile);
+            content.linkBidirectional[link] = (flags & BIDIRECTIONAL_FLAG) != 0;
+            content.linkModes[link] = Mode.of(flags >>> MODE_SHIFT);
+            content.linkLengthInM[link] = buffer.getDouble();
+            content.linkSpeedInMS[link] = buffer.getDouble();
+            content.linkCapacityPerHour[link] = buffer.getDouble();
+            int lineId = buffer.getInt();
+            content.linkLineIds[link] = lineId < 0 ? null : strings[lineId];
+            content.linkHeadwayInS[link] = buffer.getDouble();
+            int shapePointsNbr = buffer.getInt();
+            if(shapePointsNbr < 0 || shapePointsNbr > (dataSize - buffer.position()) / 16)
+                throw new IOException("Corrupted network snapshot: " + snapshotFile);
+            if(shapePointsNbr > 0) {
+                content.linkShapePoints[link] = new double[2 * shapePointsNbr];
+                buffer.asDoubleBuffer().get(content.linkShapePoints[link]);
+                ((Buffer) buffer).position(buffer.position() + 16 * shapePointsNbr);
+            }
+        }
+        if(buffer.position() != dataSize)
+            throw new IOException("Corrupted network snapshot: " + snapshotFile);
+        return content;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Decoded arrays of a snapshot */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private static class Content
+    {
+        private final int stringsNbr;
+        private final String[] nodeIds, linkIds, linkLineIds;
+        private final double[] nodeX, nodeY, linkLengthInM, linkSpeedInMS, linkCapacityPerHour, linkHeadwayInS;
+        private final int[] linkFrom, linkTo;
+        private final boolean[] linkBidirectional;
+        private final Mode[] linkModes;
+        private final double[][] linkShapePoints;
+        Content(int stringsNbr, int nodesNbr, int linksNbr)
+        {
+            this.stringsNbr = stringsNbr;
+            this.nodeIds = new String[nodesNbr];
+            this.nodeX = new double[nodesNbr];
+            this.nodeY = new double[nodesNbr];
+            this.linkIds = new String[linksNbr];
+            this.linkFrom = new int[linksNbr];
+            this.linkTo = new int[linksNbr];
+            this.linkBidirectional = new boolean[linksNbr];
+            this.linkModes = new Mode[linksNbr];
+            this.linkShapePoints = new double[linksNbr][];
+            this.linkLineIds = new String[linksNbr];
+            this.linkHeadwayInS = new double[linksNbr];
+            this.linkLengthInM = new double[linksNbr];
+            this.linkSpeedInMS = new double[linksNbr];
+            this.linkCapacityPerHour = new double[linksNbr];
+        }
+    }
+}
@@ -0,0 +1,286 @@
+package org.TransportModel.network.io;
+
+import org.TransportModel.metrics.Metrics;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+///////////////////////////////////////////////////////////////////////////////////////////////////
+/** StopTimesTable holds the rows of a GTFS stop_times file in primitive arrays, grouped by trip and
+ * ordered by stop_sequence inside each trip (then by file order for equal sequences).
+ * Trip and stop ids are interned to int indices, in order of first appearance in the file.
+ * The file is cut into line-aligned chunks parsed concurrently by the fork/join pool, so quoted
+ * fields of stop_times must not contain line breaks */
+///////////////////////////////////////////////////////////////////////////////////////////////////
+public class StopTimesTable
+{
+    private static final long MIN_CHUNK_SIZE = 8 << 20;
+    private final String[] tripIds, stopIds;
+    private final HashMap<String,Integer> tripIndices, stopIndices;
+    private final int[] tripStarts, stops, arrivalTimes, departureTimes, stopSequences, rows;
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /**                                        Constructor                                           */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private StopTimesTable(List<String> tripIds, List<String> stopIds, int[] tripStarts, int[] stops,
+                           int[] arrivalTimes, int[] departureTimes, int[] stopSequences, int[] rows)
+    {
+        this.tripIds = tripIds.toArray(new String[0]);
+        this.stopIds = stopIds.toArray(new String[0]);
+        this.tripIndices = indicesOf(this.tripIds);
+        this.stopIndices = indicesOf(this.stopIds);
+        this.tripStarts = tripStarts;
+        this.stops = stops;
+        this.arrivalTimes = arrivalTimes;
+        this.departureTimes = departureTimes;
+        this.stopSequences = stopSequences;
+        this.rows = rows;
+    }
+    private static HashMap<String,Integer> indicesOf(String[] ids)
+    {
+        HashMap<String,Integer> indices = new HashMap<>(ids.length * 2);
+        for(int index = 0; index < ids.length; index++)
+            indices.put(ids[index], index);
+        return indices;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /**                                          Getters                                             */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public int getTripsNbr(){return this.tripIds.length;}
+    public String getTripId(int trip){return this.tripIds[trip];}
+    public int getTripIndex(String tripId){Integer index = this.tripIndices.get(tripId);return index == null ? -1 : index;}
+    public int getStopsNbr(){return this.stopIds.length;}
+    public String getStopId(int stop){return this.stopIds[stop];}
+    public int getStopIndex(String stopId){Integer index = this.stopIndices.get(stopId);return index == null ? -1 : index;}
+    public int getRowsNbr(){return this.stops.length;}
+    public int getTripStart(int trip){return this.tripStarts[trip];}
+    public int getTripEnd(int trip){return this.tripStarts[trip + 1];}
+    public int getStop(int position){return this.stops[position];}
+    public int getArrivalTimeInS(int position){return this.arrivalTimes[position];}
+    public int getDepartureTimeInS(int position){return this.departureTimes[position];}
+    public int getStopSequence(int position){return this.stopSequences[position];}
+    public int getRow(int position){return this.rows[position];}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Reads a stop_times file in parallel, as the gtfs.stopTimes phase of the metrics
+     * @param filePath the path to the stop_times file
+     * @return the table of the rows, grouped by trip */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public static StopTimesTable read(Path filePath) throws IOException
+    {
+        try(Metrics.Phase phase = Metrics.startPhase("gtfs.stopTimes"))
+        {
+            StopTimesTable table = readTable(filePath);
+            phase.addRows(table.getRowsNbr());
+            return table;
+        }
+    }
+    private static StopTimesTable readTable(Path filePath) throws IOException
+    {
+        long[] boundaries = splitFile(filePath);
+        List<Chunk> chunks;
+        try {
+            chunks = IntStream.range(0, boundaries.length - 1).parallel()
+                    .mapToObj(chunk -> readChunk(filePath, boundaries[chunk], boundaries[chunk + 1]))
+                    .collect(Collectors.toList());
+        }
+        catch(UncheckedIOException e) {
+            throw e.getCause();
+        }
+        //Intern the ids of the chunks in file order
+        List<String> tripIds = new ArrayList<>(), stopIds = new ArrayList<>();
+        HashMap<String,Integer> tripIndices = new HashMap<>(), stopIndices = new HashMap<>();
+        int[] chunkStarts = new int[chunks.size() + 1];
+        for(int index = 0; index < chunks.size(); index++)
+        {
+            Chunk chunk = chunks.get(index);
+            chunk.tripMapping = intern(chunk.tripIds, tripIds, tripIndices);
+            chunk.stopMapping = intern(chunk.stopIds, stopIds, stopIndices);
+            chunkStarts[index + 1] = chunkStarts[index] + chunk.size;
+        }
+        //Count the rows of every trip to place them with a counting sort
+        int rowsNbr = chunkStarts[chunks.size()];
+        int[] tripStarts = new int[tripIds.size() + 1];
+        for(Chunk chunk : chunks)
+            for(int row = 0; row < chunk.size; row++)
+                tripStarts[chunk.tripMapping[chunk.trips[row]] + 1]++;
+        for(int trip = 0; trip < tripIds.size(); trip++)
+            tripStarts[trip + 1] += tripStarts[trip];
+        int[] stops = new int[rowsNbr], arrivalTimes = new int[rowsNbr], departureTimes = new int[rowsNbr];
+        int[] stopSequences = new int[rowsNbr], rows = new int[rowsNbr];
+        int[] nextPositions = Arrays.copyOf(tripStarts, tripIds.size());
+        for(int index = 0; index < chunks.size(); index++)
+        {
+            Chunk chunk = chunks.get(index);
+            for(int row = 0; row < chunk.size; row++)
+            {
+                int position = nextPositions[chunk.tripMapping[chunk.trips[row]]]++;
+                stops[position] = chunk.stopMapping[chunk.stops[row]];
+                arrivalTimes[position] = chunk.arrivalTimes[row];
+                departureTimes[position] = chunk.departureTimes[row];
+                stopSequences[position] = chunk.stopSequences[row];
+                rows[position] = chunkStarts[index] + row;
+            }
+        }
+        chunks.clear();
+        //Order every trip by stop sequence, the insertion sort keeping the file order of equal sequences
+        IntStream.range(0, tripIds.size()).parallel().forEach(trip ->
+                sortTrip(tripStarts[trip], tripStarts[trip + 1], stops, arrivalTimes, departureTimes, stopSequences, rows));
+        return new StopTimesTable(tripIds, stopIds, tripStarts, stops, arrivalTimes, departureTimes, stopSequences, rows);
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Cuts the data of a file into chunks starting at the beginning of a line
+     * @return the byte offsets of the chunks, followed by the size of the file */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private static long[] splitFile(Path filePath) throws IOException
+    {
+        long dataOffset, fileSize;
+        try(GTFSFileReader reader = new GTFSFileReader(filePath))//If file don't exist:error
+        {
+            dataOffset = reader.getDataOffset();
+            fileSize = reader.getFileSize();
+        }
+        long dataSize = Math.max(0, fileSize - dataOffset);
+        int chunksNbr = (int) Math.max(1, Math.min(ForkJoinPool.getCommonPoolParallelism() * 4L, dataSize / MIN_CHUNK_SIZE));
+        long[] boundaries = new long[chunksNbr + 1];
+        boundaries[0] = dataOffset;
+        boundaries[chunksNbr] = fileSize;
+        try(FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ))
+        {
+            ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+            for(int chunk = 1; chunk < chunksNbr; chunk++)
+                boundaries[chunk] = Math.max(boundaries[chunk - 1], nextLineStart(channel, buffer, dataOffset + dataSize * chunk / chunksNbr));
+        }
+        return boundaries;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Finds the first line starting at or after an offset */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private static long nextLineStart(FileChannel channel, ByteBuffer buffer, long offset) throws IOException
+    {
+        long position = offset - 1;
+        while(true)
+        {
+            buffer.clear();
+            int readBytes = channel.read(buffer, position);
+            if(readBytes <= 0)
+                return channel.size();
+            for(int index = 0; index < readBytes; index++)
+                if(buffer.get(index) == '\n')
+                    return position + index + 1;
+            position += readBytes;
+        }
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Parses the rows of a chunk with local ids */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private static Chunk readChunk(Path filePath, long startOffset, long endOffset)
+    {
+        Chunk chunk = new Chunk((int) Math.min(1 << 20, (endOffset - startOffset) / 32 + 16));
+        try(GTFSFileReader reader = new GTFSFileReader(filePath, startOffset, endOffset))
+        {
+            int tripIdColumn = reader.getColumn(TIMES.TRIP_ID);//If header don't exist: error
+            int stopIdColumn = reader.getColumn(TIMES.STOP_ID);
+            int timeColumn = reader.getColumn(TIMES.ARRIVAL_TIME);
+            int sequenceColumn = reader.getColumn(TIMES.STOP_SEQUENCE);
+            int departureColumn = reader.hasColumn(TIMES.DEPARTURE_TIME) ? reader.getColumn(TIMES.DEPARTURE_TIME) : timeColumn;
+            HashMap<String,Integer> tripIndices = new HashMap<>(), stopIndices = new HashMap<>();
+            reader.forEachRow(row -> {
+                int trip = localIndex(row.getString(tripIdColumn), chunk.tripIds, tripIndices);
+                int stop = localIndex(row.getString(stopIdColumn), chunk.stopIds, stopIndices);
+                int arrivalTime = row.getTimeInS(timeColumn);//If wrong format or empty data:error
+                int departureTime = row.isEmpty(departureColumn) ? arrivalTime : row.getTimeInS(departureColumn);
+                chunk.add(trip, stop, arrivalTime, departureTime, row.getInt(sequenceColumn));
+            });
+        }
+        catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return chunk;
+    }
+    private static int localIndex(String id, List<String> ids, HashMap<String,Integer> indices)
+    {
+        Integer index = indices.get(id);
+        if(index == null) {
+            index = ids.size();
+            indices.put(id, index);
+            ids.add(id);
+        }
+        return index;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Adds the local ids of a chunk to the global ids
+     * @return the global index of every local index */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private static int[] intern(List<String> localIds, List<String> ids, HashMap<String,Integer> indices)
+    {
+        int[] mapping = new int[localIds.size()];
+        for(int index = 0; index < mapping.length; index++)
+            mapping[index] = localIndex(localIds.get(index), ids, indices);
+        return mapping;
+    }
+    private static void sortTrip(int start, int end, int[] stops, int[] arrivalTimes, int[] departureTimes, int[] stopSequences, int[] rows)
+    {
+        for(int position = start + 1; position < end; position++)
+        {
+            int stop = stops[position], arrivalTime = arrivalTimes[position], departureTime = departureTimes[position];
+            int stopSequence = stopSequences[position], row = rows[position];
+            int index = position - 1;
+            for(; index >= start && stopSequences[index] > stopSequence; index--)
+            {
+                stops[index + 1] = stops[index];
+                arrivalTimes[index + 1] = arrivalTimes[index];
+                departureTimes[index + 1] = departureTimes[index];
+                stopSequences[index + 1] = stopSequences[index];
+                rows[index + 1] = rows[index];
+            }
+            stops[index + 1] = stop;
+            arrivalTimes[index + 1] = arrivalTime;
+            departureTimes[index + 1] = departureTime;
+            stopSequences[index + 1] = stopSequence;
+            rows[index + 1] = row;
+        }
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Rows of a chunk, with trip and stop indices local to the chunk */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private static class Chunk
+    {
+        private final List<String> tripIds = new ArrayList<>(), stopIds = new ArrayList<>();
+        private int[] trips, stops, arrivalTimes, departureTimes, stopSequences, tripMapping, stopMapping;
+        private int size;
+        Chunk(int capacity)
+        {
+            this.trips = new int[capacity];
+            this.stops = new int[capacity];
+            this.arrivalTimes = new int[capacity];
+            this.departureTimes = new int[capacity];
+            this.stopSequences = new int[capacity];
+        }
+        void add(int trip, int stop, int arrivalTime, int departureTime, int stopSequence)
+        {
+            if(this.size == this.trips.length) {
+                int capacity = this.size * 2;
+                this.trips = Arrays.copyOf(this.trips, capacity);
+                this.stops = Arrays.copyOf(this.stops, capacity);
+                this.arrivalTimes = Arrays.copyOf(this.arrivalTimes, capacity);
+                this.departureTimes = Arrays.copyOf(this.departureTimes, capacity);
+                this.stopSequences = Arrays.copyOf(this.stopSequences, capacity);
+            }
+            this.trips[this.size] = trip;
+            this.stops[this.size] = stop;
+            this.arrivalTimes[this.size] = arrivalTime;
+            this.departureTimes[this.size] = departureTime;
+            this.stopSequences[this.size++] = stopSequence;
+        }
+    }
+}
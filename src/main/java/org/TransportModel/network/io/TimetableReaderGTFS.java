@@ -0,0 +1,150 @@
+package org.TransportModel.network.io;
+
+import org.TransportModel.metrics.Metrics;
+import org.TransportModel.network.TransferGenerator;
+import org.TransportModel.routing.raptor.Timetable;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+///////////////////////////////////////////////////////////////////////////////////////////////////
+/** TimetableReaderGTFS reads the timetable of a GTFS folder for RAPTOR: the stop times of every
+ * trip, the route of every trip and the footpaths of the transfers file, generated between close
+ * stops if the feed has none. Unlike NetworkReaderGTFS it keeps every trip with its own times */
+///////////////////////////////////////////////////////////////////////////////////////////////////
+public class TimetableReaderGTFS
+{
+    private TransferGenerator transferGenerator = new TransferGenerator();
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Sets the generator of the footpaths of the feeds without transfers file */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public void setTransferGenerator(TransferGenerator transferGenerator){this.transferGenerator = transferGenerator;}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Reads a GTFS folder
+     * @param folderPath the path to the GTFS folder, the transfers file being optional
+     * @return the timetable of the trips of the stop_times file */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public Timetable readGTFSFolder(String folderPath) throws IOException
+    {
+        StopTimesTable stopTimes = StopTimesTable.read(Paths.get(folderPath, GTFS_FILES.STOP_TIMES));
+        String[] tripRouteIds = this.readTripsFile(folderPath, stopTimes);
+        Transfers transfers = new Transfers();
+        if(Files.exists(Paths.get(folderPath, GTFS_FILES.TRANSFERS)))
+            this.readTransfersFile(folderPath, stopTimes, transfers);
+        else
+            this.generateTransfers(folderPath, stopTimes, transfers);
+        return new Timetable(stopTimes, tripRouteIds, Arrays.copyOf(transfers.fromStops, transfers.size),
+                Arrays.copyOf(transfers.toStops, transfers.size), Arrays.copyOf(transfers.times, transfers.size));
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Reads the route of every trip of the stop times
+     * @return the route ids indexed like the trips of the stop times */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private String[] readTripsFile(String folderPath, StopTimesTable stopTimes) throws IOException
+    {
+        String[] tripRouteIds = new String[stopTimes.getTripsNbr()];
+        Path filePath = Paths.get(folderPath, GTFS_FILES.TRIPS);
+        try(Metrics.Phase phase = Metrics.startPhase("timetable.trips");
+            GTFSFileReader reader = new GTFSFileReader(filePath))//If file don't exist:error
+        {
+            int tripIdColumn = reader.getColumn(TRIPS.ID);//If header don't exist: error
+            int routeIdColumn = reader.getColumn(TRIPS.ROUTE_ID);
+            reader.forEachRow(row -> {
+                int trip = stopTimes.getTripIndex(row.getString(tripIdColumn));
+                if(trip >= 0)
+                    tripRouteIds[trip] = row.getString(routeIdColumn);
+            });
+            phase.addRows(reader.getDataRowsNbr());
+        }
+        for(int trip = 0; trip < tripRouteIds.length; trip++)
+            if(tripRouteIds[trip] == null)//If trip of stop_times not in trips: error
+                throw new RuntimeException("Trip not found: " + stopTimes.getTripId(trip));
+        return tripRouteIds;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Reads the footpaths between stops served by trips, skipping the impossible transfers and the
+     * transfers inside a stop */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private void readTransfersFile(String folderPath, StopTimesTable stopTimes, Transfers transfers) throws IOException
+    {
+        Path filePath = Paths.get(folderPath, GTFS_FILES.TRANSFERS);
+        try(Metrics.Phase phase = Metrics.startPhase("timetable.transfers");
+            GTFSFileReader reader = new GTFSFileReader(filePath))
+        {
+            int transfersNbr = transfers.size;
+            int fromIdColumn = reader.getColumn(TRANSFERS.FROM_ID);//If header don't exist: error
+            int toIdColumn = reader.getColumn(TRANSFERS.TO_ID);
+            int timeColumn = reader.hasColumn(TRANSFERS.TIME) ? reader.getColumn(TRANSFERS.TIME) : -1;
+            int typeColumn = reader.hasColumn(TRANSFERS.TYPE) ? reader.getColumn(TRANSFERS.TYPE) : -1;
+            reader.forEachRow(row -> {
+                if(typeColumn >= 0 && row.equals(typeColumn, TRANSFERS.NOT_POSSIBLE))
+                    return;
+                int fromStop = stopTimes.getStopIndex(row.getString(fromIdColumn));
+                int toStop = stopTimes.getStopIndex(row.getString(toIdColumn));
+                if(fromStop < 0 || toStop < 0 || fromStop == toStop)
+                    return;
+                int timeInS = timeColumn < 0 || row.isEmpty(timeColumn) ? 0 : row.getInt(timeColumn);//If wrong format:error
+                transfers.add(fromStop, toStop, timeInS);
+            });
+            phase.addRows(reader.getDataRowsNbr());
+            phase.addCreated(transfers.size - transfersNbr);
+            phase.addRejectedRows(reader.getDataRowsNbr() - (transfers.size - transfersNbr));
+        }
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Generates the footpaths, in both directions, between the stops served by trips closer than the
+     * radius of the transfer generator, from the coordinates of the stops file */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private void generateTransfers(String folderPath, StopTimesTable stopTimes, Transfers transfers) throws IOException
+    {
+        double[] xs = new double[stopTimes.getStopsNbr()], ys = new double[stopTimes.getStopsNbr()];
+        Arrays.fill(xs, Double.NaN);
+        Arrays.fill(ys, Double.NaN);
+        Path filePath = Paths.get(folderPath, GTFS_FILES.STOPS);
+        try(GTFSFileReader reader = new GTFSFileReader(filePath))//If file don't exist:error
+        {
+            int idColumn = reader.getColumn(STOPS.ID);//If header don't exist: error
+            int lonColumn = reader.getColumn(STOPS.LON);
+            int latColumn = reader.getColumn(STOPS.LAT);
+            reader.forEachRow(row -> {
+                int stop = stopTimes.getStopIndex(row.getString(idColumn));
+                if(stop < 0)
+                    return;
+                xs[stop] = row.getDouble(lonColumn);//If wrong format or empty data:error
+                ys[stop] = row.getDouble(latColumn);
+            });
+        }
+        try(Metrics.Phase phase = Metrics.startPhase("timetable.generatedTransfers"))
+        {
+            int transfersNbr = transfers.size;
+            this.transferGenerator.generate(xs, ys, (stop, otherStop, lengthInM) -> {
+                int timeInS = (int) Math.ceil(this.transferGenerator.getTimeInS(lengthInM));
+                transfers.add(stop, otherStop, timeInS);
+                transfers.add(otherStop, stop, timeInS);
+            });
+            phase.addCreated(transfers.size - transfersNbr);
+        }
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Footpaths read from the transfers file or generated */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private static class Transfers
+    {
+        private int[] fromStops = new int[1024], toStops = new int[1024], times = new int[1024];
+        private int size;
+        void add(int fromStop, int toStop, int time)
+        {
+            if(this.size == this.fromStops.length) {
+                this.fromStops = Arrays.copyOf(this.fromStops, this.size * 2);
+                this.toStops = Arrays.copyOf(this.toStops, this.size * 2);
+                this.times = Arrays.copyOf(this.times, this.size * 2);
+            }
+            this.fromStops[this.size] = fromStop;
+            this.toStops[this.size] = toStop;
+            this.times[this.size++] = time;
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package org.TransportModel.network.spatial;
+
+import org.TransportModel.network.CompactGraph;
+
+import java.util.stream.IntStream;
+
+///////////////////////////////////////////////////////////////////////////////////////////////////
+/** LinkIndex finds the links of a graph near a coordinate (x=lon, y=lat) and snaps points on them
+ * A link is the polyline from its from node through its shape points to its to node, indexed by its
+ * box in a PackedRTree, the queries return link indices of the graph */
+///////////////////////////////////////////////////////////////////////////////////////////////////
+public class LinkIndex
+{
+    private final CompactGraph graph;
+    private final int[] linkFrom, linkTo;
+    private final PackedRTree tree;
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /**                                        Constructor                                           */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public LinkIndex(CompactGraph graph)
+    {
+        this.graph = graph;
+        this.linkFrom = new int[graph.getLinksNbr()];
+        this.linkTo = new int[graph.getLinksNbr()];
+        //Every link has a forward arc
+        for(int arc = 0; arc < graph.getArcsNbr(); arc++)
+            if(!graph.isArcReversed(arc)) {
+                this.linkFrom[graph.getArcLinkIndex(arc)] = graph.getArcTail(arc);
+                this.linkTo[graph.getArcLinkIndex(arc)] = graph.getArcHead(arc);
+            }
+        double[] boxes = new double[4 * this.linkFrom.length];
+        for(int link = 0; link < this.linkFrom.length; link++)
+        {
+            boxes[4 * link] = boxes[4 * link + 1] = Double.POSITIVE_INFINITY;
+            boxes[4 * link + 2] = boxes[4 * link + 3] = Double.NEGATIVE_INFINITY;
+            for(int point = 0; point < this.getPointsNbr(link); point++)
+            {
+                double x = this.getPointX(link, point), y = this.getPointY(link, point);
+                boxes[4 * link] = Math.min(boxes[4 * link], x);
+                boxes[4 * link + 1] = Math.min(boxes[4 * link + 1], y);
+                boxes[4 * link + 2] = Math.max(boxes[4 * link + 2], x);
+                boxes[4 * link + 3] = Math.max(boxes[4 * link + 3], y);
+            }
+        }
+        this.tree = new PackedRTree(boxes);
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /**                                          Getters                                             */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public CompactGraph getGraph(){return this.graph;}
+    public int getLinkFromNode(int link){return this.linkFrom[link];}
+    public int getLinkToNode(int link){return this.linkTo[link];}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Returns the number of points of the polyline of a link, its nodes and its shape points */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public int getPointsNbr(int link){return 2 + this.graph.getLinkShapePointsNbr(link);}
+    public double getPointX(int link, int point)
+    {
+        if(point == 0)
+            return this.graph.getNodeX(this.linkFrom[link]);
+        return point == this.getPointsNbr(link) - 1 ? this.graph.getNodeX(this.linkTo[link]) : this.graph.getLinkShapePointX(link, point - 1);
+    }
+    public double getPointY(int link, int point)
+    {
+        if(point == 0)
+            return this.graph.getNodeY(this.linkFrom[link]);
+        return point == this.getPointsNbr(link) - 1 ? this.graph.getNodeY(this.linkTo[link]) : this.graph.getLinkShapePointY(link, point - 1);
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Projects a point on the nearest link
+     * @param maxDistanceInM the distance beyond which links are ignored, infinite for none
+     * @return the projection, null if no link is within the distance */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public LinkSnap snap(double x, double y, double maxDistanceInM)
+    {
+        int[] items = new int[1];
+        double[] distances = new double[1];
+        if(this.tree.nearest(x, y, 1, maxDistanceInM, this::getDistanceInM, items, distances) == 0)
+            return null;
+        int link = items[0];
+        int segment = this.getNearestSegment(link, x, y);
+        double segmentFraction = this.getFraction(link, segment, x, y);
+        double fromX = this.getPointX(link, segment), fromY = this.getPointY(link, segment);
+        double toX = this.getPointX(link, segment + 1), toY = this.getPointY(link, segment + 1);
+        double snapX = fromX + segmentFraction * (toX - fromX), snapY = fromY + segmentFraction * (toY - fromY);
+        //Fraction of the length of the polyline
+        double lengthBefore = 0, length = 0;
+        for(int point = 0; point < this.getPointsNbr(link) - 1; point++)
+        {
+            double segmentLength = PackedRTree.distanceInM(this.getPointX(link, point), this.getPointY(link, point),
+                    this.getPointX(link, point + 1), this.getPointY(link, point + 1));
+            if(point < segment)
+                lengthBefore += segmentLength;
+            else if(point == segment)
+                lengthBefore += segmentFraction * segmentLength;
+            length += segmentLength;
+        }
+        double fraction = length == 0 ? 0 : lengthBefore / length;
+        return new LinkSnap(link, fraction, snapX, snapY, distances[0]);
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Projects many points on their nearest link, spread over all the cores (geocoding)
+     * @return the projection of every point, null if no link is within the distance */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public LinkSnap[] snap(double[] xs, double[] ys, double maxDistanceInM)
+    {
+        if(xs.length != ys.length)
+            throw new IllegalArgumentException(xs.length + " x coordinates for " + ys.length + " y coordinates");
+        LinkSnap[] snaps = new LinkSnap[xs.length];
+        IntStream.range(0, xs.length).parallel().forEach(point -> snaps[point] = this.snap(xs[point], ys[point], maxDistanceInM));
+        return snaps;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Finds the links whose box intersects a bounding box, the visible ones for example
+     * @return the link indices, in no particular order */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public int[] getLinksIn(double minX, double minY, double maxX, double maxY)
+    {
+        NodeIndex.IntBuffer found = new NodeIndex.IntBuffer();
+        this.tree.search(minX, minY, maxX, maxY, found::add);
+        return found.toArray();
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Finds the segment of the polyline of a link nearest to a point
+     * @return the index of the first point of the segment */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private int getNearestSegment(int link, double x, double y)
+    {
+        int nearestSegment = 0;
+        double nearestDistance = Double.POSITIVE_INFINITY;
+        for(int segment = 0; segment < this.getPointsNbr(link) - 1; segment++)
+        {
+            double distance = this.getDistanceInM(link, segment, x, y);
+            if(distance < nearestDistance) {
+                nearestDistance = distance;
+                nearestSegment = segment;
+            }
+        }
+        return nearestSegment;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Locates the point of a segment of a link nearest to a point, on the projection around this point
+     * @param segment the index of the first point of the segment in the polyline of the link
+     * @return the fraction of the segment from its first point, between 0 and 1 */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private double getFraction(int link, int segment, double x, double y)
+    {
+        double scaleX = Math.cos(Math.toRadians(y));
+        double fromX = (this.getPointX(link, segment) - x) * scaleX, fromY = this.getPointY(link, segment) - y;
+        double dx = (this.getPointX(link, segment + 1) - x) * scaleX - fromX, dy = this.getPointY(link, segment + 1) - y - fromY;
+        double squaredLength = dx * dx + dy * dy;
+        //If the segment is a point:its first point is the nearest point
+        if(squaredLength == 0)
+            return 0;
+        return Math.max(0, Math.min(1, -(fromX * dx + fromY * dy) / squaredLength));
+    }
+    private double getDistanceInM(int link, int segment, double x, double y)
+    {
+        double fraction = this.getFraction(link, segment, x, y);
+        double fromX = this.getPointX(link, segment), fromY = this.getPointY(link, segment);
+        double toX = this.getPointX(link, segment + 1), toY = this.getPointY(link, segment + 1);
+        return PackedRTree.distanceInM(x, y, fromX + fraction * (toX - fromX), fromY + fraction * (toY - fromY));
+    }
+    private double getDistanceInM(int link, double x, double y)
+    {
+        return this.getDistanceInM(link, this.getNearestSegment(link, x, y), x, y);
+    }
+}
@@ -0,0 +1,31 @@
+package org.TransportModel.network.spatial;
+
+///////////////////////////////////////////////////////////////////////////////////////////////////
+/** LinkSnap is the projection of a point on the nearest link of a graph
+ * The fraction locates the projected point from the from node (0) to the to node (1) of the link,
+ * along the length of its polyline */
+///////////////////////////////////////////////////////////////////////////////////////////////////
+public class LinkSnap
+{
+    private final int linkIndex;
+    private final double fraction, x, y, distanceInM;
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /**                                        Constructor                                           */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public LinkSnap(int linkIndex, double fraction, double x, double y, double distanceInM)
+    {
+        this.linkIndex = linkIndex;
+        this.fraction = fraction;
+        this.x = x;
+        this.y = y;
+        this.distanceInM = distanceInM;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /**                                          Getters                                             */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public int getLinkIndex(){return this.linkIndex;}
+    public double getFraction(){return this.fraction;}
+    public double getX(){return this.x;}
+    public double getY(){return this.y;}
+    public double getDistanceInM(){return this.distanceInM;}
+}
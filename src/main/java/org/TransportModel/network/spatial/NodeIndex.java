@@ -0,0 +1,120 @@
+package org.TransportModel.network.spatial;
+
+import org.TransportModel.network.CompactGraph;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+
+///////////////////////////////////////////////////////////////////////////////////////////////////
+/** NodeIndex finds the nodes of a graph near a coordinate (x=lon, y=lat) without scanning them all
+ * The nodes are the points of a PackedRTree, the queries return node indices of the graph */
+///////////////////////////////////////////////////////////////////////////////////////////////////
+public class NodeIndex
+{
+    private final CompactGraph graph;
+    private final int[] nodes;
+    private final PackedRTree tree;
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Indexes all the nodes of a graph */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public NodeIndex(CompactGraph graph)
+    {
+        this(graph, node -> true);
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Indexes some nodes of a graph
+     * @param indexed tells if a node must be indexed, the nodes both left and reached by an arc for
+     *                the zone connectors for example */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public NodeIndex(CompactGraph graph, IntPredicate indexed)
+    {
+        this.graph = graph;
+        this.nodes = IntStream.range(0, graph.getNodesNbr()).filter(indexed).toArray();
+        double[] boxes = new double[4 * this.nodes.length];
+        for(int item = 0; item < this.nodes.length; item++)
+        {
+            boxes[4 * item] = boxes[4 * item + 2] = graph.getNodeX(this.nodes[item]);
+            boxes[4 * item + 1] = boxes[4 * item + 3] = graph.getNodeY(this.nodes[item]);
+        }
+        this.tree = new PackedRTree(boxes);
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /**                                          Getters                                             */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public CompactGraph getGraph(){return this.graph;}
+    public int getNodesNbr(){return this.nodes.length;}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Finds the indexed node nearest to a point
+     * @return the node index in the graph, -1 if no node is indexed */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public int getNearestNode(double x, double y)
+    {
+        int[] items = new int[1];
+        int found = this.tree.nearest(x, y, 1, Double.POSITIVE_INFINITY, null, items, new double[1]);
+        return found == 0 ? -1 : this.nodes[items[0]];
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Finds the k indexed nodes nearest to a point
+     * @param maxDistanceInM the distance beyond which nodes are ignored, infinite for none
+     * @return the node indices, nearest first, fewer than k if there are not enough nodes */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public int[] getNearestNodes(double x, double y, int k, double maxDistanceInM)
+    {
+        int[] items = new int[Math.min(k, this.nodes.length)];
+        int found = this.tree.nearest(x, y, items.length, maxDistanceInM, null, items, new double[items.length]);
+        int[] nearestNodes = new int[found];
+        for(int position = 0; position < found; position++)
+            nearestNodes[position] = this.nodes[items[position]];
+        return nearestNodes;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Finds the indexed nearest node of many points, spread over all the cores (geocoding)
+     * @param xs the x coordinates of the points
+     * @param ys the y coordinates of the points
+     * @return the node index of every point, -1 if no node is indexed */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public int[] getNearestNodes(double[] xs, double[] ys)
+    {
+        if(xs.length != ys.length)
+            throw new IllegalArgumentException(xs.length + " x coordinates for " + ys.length + " y coordinates");
+        int[] nearestNodes = new int[xs.length];
+        IntStream.range(0, xs.length).parallel().forEach(point -> nearestNodes[point] = this.getNearestNode(xs[point], ys[point]));
+        return nearestNodes;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Finds the indexed nodes within a distance of a point
+     * @return the node indices, in no particular order */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public int[] getNodesWithin(double x, double y, double radiusInM)
+    {
+        IntBuffer found = new IntBuffer();
+        this.tree.searchWithin(x, y, radiusInM, item -> found.add(this.nodes[item]));
+        return found.toArray();
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Finds the indexed nodes within a bounding box, the visible ones for example
+     * @return the node indices, in no particular order */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public int[] getNodesIn(double minX, double minY, double maxX, double maxY)
+    {
+        IntBuffer found = new IntBuffer();
+        this.tree.search(minX, minY, maxX, maxY, item -> found.add(this.nodes[item]));
+        return found.toArray();
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Growable array of the results of a query */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    static class IntBuffer
+    {
+        private int[] values = new int[16];
+        private int size;
+        void add(int value)
+        {
+            if(this.size == this.values.length)
+                this.values = Arrays.copyOf(this.values, this.size * 2);
+            this.values[this.size++] = value;
+        }
+        int[] toArray(){return Arrays.copyOf(this.values, this.size);}
+    }
+}
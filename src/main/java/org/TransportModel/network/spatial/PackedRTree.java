@@ -0,0 +1,280 @@
+package org.TransportModel.network.spatial;
+
+import org.TransportModel.routing.GreatCircle;
+import org.TransportModel.routing.IndexedMinHeap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+///////////////////////////////////////////////////////////////////////////////////////////////////
+/** PackedRTree is a static R-tree of boxes in degrees (x=lon, y=lat), packed in flat arrays
+ * The items are sorted along a Hilbert curve of their centers and grouped by NODE_SIZE, level by
+ * level up to the root, so that the tree is built in O(n log n) and holds no object per item.
+ * Distances are measured in meters on an equirectangular projection around the query point,
+ * accurate for the distances at which a network is snapped to (well under a percent at 50 km) */
+///////////////////////////////////////////////////////////////////////////////////////////////////
+public class PackedRTree
+{
+    public static final int NODE_SIZE = 16;
+    public static final double METERS_PER_DEGREE = GreatCircle.EARTH_RADIUS_IN_M * Math.PI / 180;
+    private final int itemsNbr;
+    //Boxes of the items first, then of the tree nodes level by level, the root last
+    private final double[] boxes;
+    //Item of a leaf entry, first child entry of a tree node
+    private final int[] indices;
+    //End (exclusive) of every level in entries
+    private final int[] levelEnds;
+    private final ThreadLocal<IndexedMinHeap> heaps;
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Computes the distance in meters between an item and a point, never less than the distance
+     * between the point and the box of the item */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public interface ItemDistance
+    {
+        double distanceInM(int item, double x, double y);
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Builds the tree of a set of boxes
+     * @param itemBoxes the boxes of the items, minX minY maxX maxY for each item in turn */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public PackedRTree(double[] itemBoxes)
+    {
+        this.itemsNbr = itemBoxes.length / 4;
+        //Levels sizes
+        List<Integer> levelEnds = new ArrayList<>();
+        int levelSize = this.itemsNbr, entriesNbr = this.itemsNbr;
+        levelEnds.add(entriesNbr);
+        //Up to a root entry, even above a single item
+        while(levelSize > 0)
+        {
+            levelSize = (levelSize + NODE_SIZE - 1) / NODE_SIZE;
+            entriesNbr += levelSize;
+            levelEnds.add(entriesNbr);
+            if(levelSize == 1)
+                break;
+        }
+        this.levelEnds = levelEnds.stream().mapToInt(Integer::intValue).toArray();
+        this.boxes = new double[entriesNbr * 4];
+        this.indices = new int[entriesNbr];
+        this.sortItems(itemBoxes);
+        this.buildLevels();
+        int capacity = entriesNbr + this.itemsNbr;
+        this.heaps = ThreadLocal.withInitial(() -> new IndexedMinHeap(capacity));
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Copies the boxes of the items in the order of the Hilbert values of their centers */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private void sortItems(double[] itemBoxes)
+    {
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for(int item = 0; item < this.itemsNbr; item++)
+        {
+            minX = Math.min(minX, itemBoxes[4 * item]);
+            minY = Math.min(minY, itemBoxes[4 * item + 1]);
+            maxX = Math.max(maxX, itemBoxes[4 * item + 2]);
+            maxY = Math.max(maxY, itemBoxes[4 * item + 3]);
+        }
+        double scaleX = maxX > minX ? 0xFFFF / (maxX - minX) : 0, scaleY = maxY > minY ? 0xFFFF / (maxY - minY) : 0;
+        //Hilbert value in the high bits, item in the low bits
+        long[] keys = new long[this.itemsNbr];
+        for(int item = 0; item < this.itemsNbr; item++)
+        {
+            double centerX = (itemBoxes[4 * item] + itemBoxes[4 * item + 2]) * 0.5;
+            double centerY = (itemBoxes[4 * item + 1] + itemBoxes[4 * item + 3]) * 0.5;
+            long hilbert = hilbert((int) ((centerX - minX) * scaleX), (int) ((centerY - minY) * scaleY)) & 0xFFFFFFFFL;
+            keys[item] = hilbert << 32 | item;
+        }
+        Arrays.parallelSort(keys);
+        for(int position = 0; position < this.itemsNbr; position++)
+        {
+            int item = (int) keys[position];
+            this.indices[position] = item;
+            System.arraycopy(itemBoxes, 4 * item, this.boxes, 4 * position, 4);
+        }
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Groups the entries of every level by NODE_SIZE into the entries of the next level */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private void buildLevels()
+    {
+        int parent = this.itemsNbr;
+        for(int level = 0; level < this.levelEnds.length - 1; level++)
+        {
+            int levelStart = level == 0 ? 0 : this.levelEnds[level - 1];
+            for(int child = levelStart; child < this.levelEnds[level]; child += NODE_SIZE, parent++)
+            {
+                double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+                double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+                for(int entry = child; entry < Math.min(child + NODE_SIZE, this.levelEnds[level]); entry++)
+                {
+                    minX = Math.min(minX, this.boxes[4 * entry]);
+                    minY = Math.min(minY, this.boxes[4 * entry + 1]);
+                    maxX = Math.max(maxX, this.boxes[4 * entry + 2]);
+                    maxY = Math.max(maxY, this.boxes[4 * entry + 3]);
+                }
+                this.boxes[4 * parent] = minX;
+                this.boxes[4 * parent + 1] = minY;
+                this.boxes[4 * parent + 2] = maxX;
+                this.boxes[4 * parent + 3] = maxY;
+                this.indices[parent] = child;
+            }
+        }
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /**                                          Getters                                             */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public int getItemsNbr(){return this.itemsNbr;}
+    private int getRoot(){return this.indices.length - 1;}
+    private int getChildrenEnd(int entry)
+    {
+        int firstChild = this.indices[entry];
+        for(int levelEnd : this.levelEnds)
+            if(firstChild < levelEnd)
+                return Math.min(firstChild + NODE_SIZE, levelEnd);
+        return firstChild;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Visits the items whose box intersects a box
+     * @param visitor called with every item found, in no particular order */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public void search(double minX, double minY, double maxX, double maxY, IntConsumer visitor)
+    {
+        this.visitLeaves(minX, minY, maxX, maxY, leaf -> visitor.accept(this.indices[leaf]));
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Visits the items whose box is within a distance of a point, the items themselves for points
+     * @param visitor called with every item found, in no particular order */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public void searchWithin(double x, double y, double radiusInM, IntConsumer visitor)
+    {
+        double metersPerDegreeX = METERS_PER_DEGREE * Math.cos(Math.toRadians(y));
+        double radiusX = radiusInM / metersPerDegreeX, radiusY = radiusInM / METERS_PER_DEGREE;
+        this.visitLeaves(x - radiusX, y - radiusY, x + radiusX, y + radiusY, leaf -> {
+            if(this.boxDistanceInM(leaf, x, y, metersPerDegreeX) <= radiusInM)
+                visitor.accept(this.indices[leaf]);
+        });
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Visits the leaf entries whose box intersects a box, going down the tree with a stack */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private void visitLeaves(double minX, double minY, double maxX, double maxY, IntConsumer visitor)
+    {
+        if(this.itemsNbr == 0)
+            return;
+        int[] stack = new int[64];
+        int stackSize = 0;
+        stack[stackSize++] = this.getRoot();
+        while(stackSize > 0)
+        {
+            int entry = stack[--stackSize];
+            for(int child = this.indices[entry]; child < this.getChildrenEnd(entry); child++)
+            {
+                if(this.boxes[4 * child] > maxX || this.boxes[4 * child + 1] > maxY || this.boxes[4 * child + 2] < minX || this.boxes[4 * child + 3] < minY)
+                    continue;
+                if(child < this.itemsNbr)
+                    visitor.accept(child);
+                else {
+                    if(stackSize == stack.length)
+                        stack = Arrays.copyOf(stack, stackSize * 2);
+                    stack[stackSize++] = child;
+                }
+            }
+        }
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Finds the items nearest to a point by a best-first traversal of the tree
+     * @param k the maximum number of items to find
+     * @param maxDistanceInM the distance beyond which items are ignored, infinite for none
+     * @param itemDistance the exact distance to an item, null if the items are points
+     * @param items filled with the items found, nearest first
+     * @param distancesInM filled with the distances of the items found
+     * @return the number of items found */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public int nearest(double x, double y, int k, double maxDistanceInM, ItemDistance itemDistance, int[] items, double[] distancesInM)
+    {
+        if(this.itemsNbr == 0 || k <= 0)
+            return 0;
+        double metersPerDegreeX = METERS_PER_DEGREE * Math.cos(Math.toRadians(y));
+        int entriesNbr = this.indices.length, found = 0;
+        //Heap ids: entries, then entries + item positions once the exact distance is known
+        IndexedMinHeap heap = this.heaps.get();
+        heap.clear();
+        heap.push(this.getRoot(), 0);
+        while(!heap.isEmpty() && found < k && heap.peekKey() <= maxDistanceInM)
+        {
+            double distance = heap.peekKey();
+            int id = heap.pop();
+            if(id >= entriesNbr) {
+                items[found] = this.indices[id - entriesNbr];
+                distancesInM[found++] = distance;
+            }
+            else if(id < this.itemsNbr) {
+                //If the box is the point itself:the distance is exact
+                if(itemDistance == null) {
+                    items[found] = this.indices[id];
+                    distancesInM[found++] = distance;
+                }
+                else
+                    heap.push(entriesNbr + id, itemDistance.distanceInM(this.indices[id], x, y));
+            }
+            else
+                for(int child = this.indices[id]; child < this.getChildrenEnd(id); child++)
+                    heap.push(child, this.boxDistanceInM(child, x, y, metersPerDegreeX));
+        }
+        heap.clear();
+        return found;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Computes the distance between a point and the nearest point of the box of an entry */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private double boxDistanceInM(int entry, double x, double y, double metersPerDegreeX)
+    {
+        double dx = Math.max(0, Math.max(this.boxes[4 * entry] - x, x - this.boxes[4 * entry + 2])) * metersPerDegreeX;
+        double dy = Math.max(0, Math.max(this.boxes[4 * entry + 1] - y, y - this.boxes[4 * entry + 3])) * METERS_PER_DEGREE;
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Computes the distance between two points on the projection used by the tree around (x,y) */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public static double distanceInM(double x, double y, double otherX, double otherY)
+    {
+        double dx = (otherX - x) * METERS_PER_DEGREE * Math.cos(Math.toRadians(y));
+        double dy = (otherY - y) * METERS_PER_DEGREE;
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Computes the position along the Hilbert curve of a point of a 65536 x 65536 grid */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private static int hilbert(int x, int y)
+    {
+        int a = x ^ y, b = 0xFFFF ^ a, c = 0xFFFF ^ (x | y), d = x & (y ^ 0xFFFF);
+        int A = a | (b >>> 1), B = (a >>> 1) ^ a, C = ((c >>> 1) ^ (b & (d >>> 1))) ^ c, D = ((a & (c >>> 1)) ^ (d >>> 1)) ^ d;
+        a = A; b = B; c = C; d = D;
+        A = (a & (a >>> 2)) ^ (b & (b >>> 2));
+        B = (a & (b >>> 2)) ^ (b & ((a ^ b) >>> 2));
+        C ^= (a & (c >>> 2)) ^ (b & (d >>> 2));
+        D ^= (b & (c >>> 2)) ^ ((a ^ b) & (d >>> 2));
+        a = A; b = B; c = C; d = D;
+        A = (a & (a >>> 4)) ^ (b & (b >>> 4));
+        B = (a & (b >>> 4)) ^ (b & ((a ^ b) >>> 4));
+        C ^= (a & (c >>> 4)) ^ (b & (d >>> 4));
+        D ^= (b & (c >>> 4)) ^ ((a ^ b) & (d >>> 4));
+        a = A; b = B; c = C; d = D;
+        C ^= (a & (c >>> 8)) ^ (b & (d >>> 8));
+        D ^= (b & (c >>> 8)) ^ ((a ^ b) & (d >>> 8));
+        a = C ^ (C >>> 1);
+        b = D ^ (D >>> 1);
+        int i0 = x ^ y, i1 = b | (0xFFFF ^ (i0 | a));
+        return interleave(i1) << 1 | interleave(i0);
+    }
+    private static int interleave(int value)
+    {
+        value = (value | (value << 8)) & 0x00FF00FF;
+        value = (value | (value << 4)) & 0x0F0F0F0F;
+        value = (value | (value << 2)) & 0x33333333;
+        return (value | (value << 1)) & 0x55555555;
+    }
+}
@@ -0,0 +1,22 @@
+package org.TransportModel.routing;
+
+///////////////////////////////////////////////////////////////////////////////////////////////////
+/** GreatCircle computes distances on the sphere between coordinates in degrees (x=lon, y=lat) */
+///////////////////////////////////////////////////////////////////////////////////////////////////
+public final class GreatCircle
+{
+    public static final double EARTH_RADIUS_IN_M = 6371008.8;
+    private GreatCircle(){}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Computes the haversine distance between two points
+     * @return the distance in meters */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public static double distanceInM(double lon1, double lat1, double lon2, double lat2)
+    {
+        double phi1 = Math.toRadians(lat1), phi2 = Math.toRadians(lat2);
+        double sinDPhi = Math.sin((phi2 - phi1) * 0.5);
+        double sinDLambda = Math.sin(Math.toRadians(lon2 - lon1) * 0.5);
+        double a = sinDPhi * sinDPhi + Math.cos(phi1) * Math.cos(phi2) * sinDLambda * sinDLambda;
+        return 2 * EARTH_RADIUS_IN_M * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+}
@@ -0,0 +1,116 @@
+package org.TransportModel.routing;
+
+import java.util.Arrays;
+
+///////////////////////////////////////////////////////////////////////////////////////////////////
+/** IndexedMinHeap is a binary heap of int ids (0..capacity-1) ordered by a double key
+ * The position of every id is tracked so that a key can be decreased in place */
+///////////////////////////////////////////////////////////////////////////////////////////////////
+public class IndexedMinHeap
+{
+    private final int[] heap;
+    private final double[] keys;
+    private final int[] positions;
+    private int size;
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /**                                        Constructor                                           */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public IndexedMinHeap(int capacity)
+    {
+        this.heap = new int[capacity];
+        this.keys = new double[capacity];
+        this.positions = new int[capacity];
+        Arrays.fill(this.positions, -1);
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /**                                          Getters                                             */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public boolean isEmpty(){return this.size == 0;}
+    public int size(){return this.size;}
+    public boolean contains(int id){return this.positions[id] >= 0;}
+    public int peek(){return this.heap[0];}
+    public double peekKey(){return this.keys[this.heap[0]];}
+    public int getCapacity(){return this.heap.length;}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Inserts an id or decreases its key if it is already in the heap with a greater key */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public void push(int id, double key)
+    {
+        int position = this.positions[id];
+        if(position < 0) {
+            position = this.size++;
+            this.heap[position] = id;
+            this.positions[id] = position;
+        }
+        else if(key >= this.keys[id])
+            return;
+        this.keys[id] = key;
+        this.siftUp(position);
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Removes the id with the smallest key
+     * @return the removed id */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public int pop()
+    {
+        int top = this.heap[0];
+        this.positions[top] = -1;
+        int last = this.heap[--this.size];
+        if(this.size > 0) {
+            this.heap[0] = last;
+            this.positions[last] = 0;
+            this.siftDown(0);
+        }
+        return top;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Empties the heap, in time proportional to its size and not to its capacity */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public void clear()
+    {
+        for(int position = 0; position < this.size; position++)
+            this.positions[this.heap[position]] = -1;
+        this.size = 0;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /**                                      Heap maintenance                                        */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private void siftUp(int position)
+    {
+        int id = this.heap[position];
+        double key = this.keys[id];
+        while(position > 0)
+        {
+            int parentPosition = (position - 1) >>> 1;
+            int parent = this.heap[parentPosition];
+            if(this.keys[parent] <= key)
+                break;
+            this.heap[position] = parent;
+            this.positions[parent] = position;
+            position = parentPosition;
+        }
+        this.heap[position] = id;
+        this.positions[id] = position;
+    }
+    private void siftDown(int position)
+    {
+        int id = this.heap[position];
+        double key = this.keys[id];
+        int half = this.size >>> 1;
+        while(position < half)
+        {
+            int childPosition = 2 * position + 1;
+            int child = this.heap[childPosition];
+            int rightPosition = childPosition + 1;
+            if(rightPosition < this.size && this.keys[this.heap[rightPosition]] < this.keys[child])
+                child = this.heap[childPosition = rightPosition];
+            if(key <= this.keys[child])
+                break;
+            this.heap[position] = child;
+            this.positions[child] = position;
+            position = childPosition;
+        }
+        this.heap[position] = id;
+        this.positions[id] = position;
+    }
+}
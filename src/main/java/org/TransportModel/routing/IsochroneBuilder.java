@@ -0,0 +1,420 @@
+package org.TransportModel.routing;
+
+import org.TransportModel.network.CompactGraph;
+import org.TransportModel.network.Mode;
+import org.TransportModel.network.Node;
+import org.TransportModel.network.TransferGenerator;
+import org.TransportModel.network.spatial.NodeIndex;
+import org.TransportModel.network.spatial.PackedRTree;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LinearRing;
+import org.locationtech.jts.geom.MultiPolygon;
+import org.locationtech.jts.geom.Polygon;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.stream.Collectors;
+
+///////////////////////////////////////////////////////////////////////////////////////////////////
+/** IsochroneBuilder computes the areas reachable from a point within time budgets (isochrones, or
+ * service areas of a station). A one-to-all search bounded by the largest budget only settles the
+ * nodes around the origin. The times of the settled nodes, and of points every cell along the arcs
+ * that can be left on the way (all but the transit sections), spread on foot over a grid of square
+ * cells around them, and the cells within each budget are traced into polygons.
+ * The grid is local to each query and the router keeps a search state per thread, so that many
+ * isochrones can be computed in parallel */
+///////////////////////////////////////////////////////////////////////////////////////////////////
+public class IsochroneBuilder
+{
+    public static final double DEFAULT_CELL_SIZE_IN_M = 100;
+    public static final double DEFAULT_MAX_WALK_LENGTH_IN_M = 300;
+    //Grid directions, counterclockwise: east, north, west, south
+    private static final int[] DIRECTION_X = {1, 0, -1, 0}, DIRECTION_Y = {0, 1, 0, -1};
+    private final Router router;
+    private final NodeIndex nodeIndex;
+    private final GeometryFactory factory = new GeometryFactory();
+    private double cellSizeInM = DEFAULT_CELL_SIZE_IN_M;
+    private double maxWalkLengthInM = DEFAULT_MAX_WALK_LENGTH_IN_M;
+    private double walkSpeedInMS = TransferGenerator.DEFAULT_WALK_SPEED_IN_MS;
+    private boolean banded;
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Prepares the isochrones of a router, the origins being snapped to the nearest node that can
+     * be left with its modes
+     * @param router the search, its costs being times in seconds */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public IsochroneBuilder(Router router)
+    {
+        CompactGraph graph = router.getGraph();
+        this.router = router;
+        this.nodeIndex = new NodeIndex(graph, node -> graph.hasOutArc(node, router.getModeMask()));
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /**                                          Setters                                             */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Sets the side of the grid cells, the resolution of the polygons */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public void setCellSizeInM(double cellSizeInM){this.cellSizeInM = cellSizeInM;}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Sets how far from the network, and from the origin, the area is walked */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public void setMaxWalkLengthInM(double maxWalkLengthInM){this.maxWalkLengthInM = maxWalkLengthInM;}
+    public void setWalkSpeedInMS(double walkSpeedInMS){this.walkSpeedInMS = walkSpeedInMS;}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Makes each polygon the band between the previous budget and its own, instead of all the area
+     * within its budget */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public void setBanded(boolean banded){this.banded = banded;}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Computes the isochrones of a node
+     * @param budgetsInS the increasing time budgets
+     * @return a MultiPolygon per budget, empty if nothing is reached */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public MultiPolygon[] getIsochrones(Node node, double... budgetsInS)
+    {
+        int source = this.router.getGraph().getNodeIndex(node);
+        //If node not in the graph:error
+        if(source < 0)
+            throw new IllegalArgumentException("Node not in the graph: " + node.getId());
+        Coordinate coordinate = node.getCoordinate();
+        return this.getIsochrones(coordinate.x, coordinate.y, source, 0, budgetsInS);
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Computes the isochrones of a point (x=lon, y=lat), walked to the nearest node
+     * @param budgetsInS the increasing time budgets
+     * @return a MultiPolygon per budget, empty if nothing is reached */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public MultiPolygon[] getIsochrones(double x, double y, double... budgetsInS)
+    {
+        CompactGraph graph = this.router.getGraph();
+        int source = this.nodeIndex.getNearestNode(x, y);
+        double accessTime = source < 0 ? Double.POSITIVE_INFINITY
+                : PackedRTree.distanceInM(x, y, graph.getNodeX(source), graph.getNodeY(source)) / this.walkSpeedInMS;
+        return this.getIsochrones(x, y, source, accessTime, budgetsInS);
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Computes the isochrones of many points, spread over all the cores
+     * @return the isochrones of each point, in the order of the points */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public List<MultiPolygon[]> getIsochrones(List<Coordinate> points, double... budgetsInS)
+    {
+        checkBudgets(budgetsInS);
+        return points.parallelStream().map(point -> this.getIsochrones(point.x, point.y, budgetsInS)).collect(Collectors.toList());
+    }
+    private static void checkBudgets(double[] budgetsInS)
+    {
+        //If no budget or budgets not increasing:error
+        if(budgetsInS.length == 0)
+            throw new IllegalArgumentException("No time budget");
+        for(int budget = 0; budget < budgetsInS.length; budget++)
+            if(!(budgetsInS[budget] > (budget == 0 ? 0 : budgetsInS[budget - 1])) || Double.isInfinite(budgetsInS[budget]))
+                throw new IllegalArgumentException("Time budgets must be finite, positive and increasing: " + Arrays.toString(budgetsInS));
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Searches from a node up to the largest budget, spreads the times on a grid and traces it
+     * @param accessTime the time to walk from the origin to the node */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private MultiPolygon[] getIsochrones(double x, double y, int source, double accessTime, double[] budgetsInS)
+    {
+        checkBudgets(budgetsInS);
+        double maxBudget = budgetsInS[budgetsInS.length - 1];
+        //Points with their time: the origin, the settled nodes and points along the arcs left
+        Points points = new Points();
+        points.add(x, y, 0);
+        if(accessTime < maxBudget)
+            this.addReachedPoints(source, accessTime, maxBudget, points);
+        Grid grid = new Grid(points, x, y);
+        for(int point = 0; point < points.size; point++)
+            grid.spread(points.xs[point], points.ys[point], points.times[point], maxBudget);
+        MultiPolygon[] isochrones = new MultiPolygon[budgetsInS.length];
+        for(int budget = 0; budget < budgetsInS.length; budget++)
+            isochrones[budget] = grid.trace(this.banded && budget > 0 ? budgetsInS[budget - 1] : Double.NEGATIVE_INFINITY, budgetsInS[budget]);
+        return isochrones;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Adds the nodes settled within the budget, and points every cell along the arcs they leave
+     * where the arc can be left (not a transit section) */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private void addReachedPoints(int source, double accessTime, double maxBudget, Points points)
+    {
+        CompactGraph graph = this.router.getGraph();
+        double[] arcCosts = this.router.getArcCosts();
+        int leftModeMask = this.router.getModeMask() & ~Mode.TRANSIT.getMask();
+        SearchState state = this.router.search(source, maxBudget - accessTime);
+        for(int position = 0; position < state.getSettledNodesNbr(); position++)
+        {
+            int node = state.getSettledNode(position);
+            double time = accessTime + state.getDistance(node);
+            double nodeX = graph.getNodeX(node), nodeY = graph.getNodeY(node);
+            points.add(nodeX, nodeY, time);
+            for(int arc = graph.getOutArcsStart(node); arc < graph.getOutArcsEnd(node); arc++)
+            {
+                if(!graph.isArcIn(arc, leftModeMask))
+                    continue;
+                int head = graph.getArcHead(arc);
+                double headX = graph.getNodeX(head), headY = graph.getNodeY(head);
+                double lengthInM = PackedRTree.distanceInM(nodeX, nodeY, headX, headY);
+                for(int step = 1; step * this.cellSizeInM < lengthInM; step++)
+                {
+                    double fraction = step * this.cellSizeInM / lengthInM;
+                    double pointTime = time + fraction * arcCosts[arc];
+                    if(pointTime > maxBudget)
+                        break;
+                    points.add(nodeX + fraction * (headX - nodeX), nodeY + fraction * (headY - nodeY), pointTime);
+                }
+            }
+        }
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Growable arrays of timed points */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private static class Points
+    {
+        private double[] xs = new double[64], ys = new double[64], times = new double[64];
+        private int size;
+        void add(double x, double y, double time)
+        {
+            if(this.size == this.xs.length) {
+                this.xs = Arrays.copyOf(this.xs, this.size * 2);
+                this.ys = Arrays.copyOf(this.ys, this.size * 2);
+                this.times = Arrays.copyOf(this.times, this.size * 2);
+            }
+            this.xs[this.size] = x;
+            this.ys[this.size] = y;
+            this.times[this.size++] = time;
+        }
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Grid of cells covering the points and their walk, cell (i,j) having its south west corner
+     * at vertex (i,j), with the earliest time at which its center is reached */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private class Grid
+    {
+        private final double minX, minY, cellX, cellY, metersPerDegreeX;
+        private final int width, height;
+        private final float[] times;
+        ///////////////////////////////////////////////////////////////////////////////////////////////////
+        /** Covers the points and the walk around them, the cells being square at the origin latitude */
+        ///////////////////////////////////////////////////////////////////////////////////////////////////
+        Grid(Points points, double originX, double originY)
+        {
+            this.metersPerDegreeX = PackedRTree.METERS_PER_DEGREE * Math.cos(Math.toRadians(originY));
+            this.cellX = cellSizeInM / this.metersPerDegreeX;
+            this.cellY = cellSizeInM / PackedRTree.METERS_PER_DEGREE;
+            double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+            double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+            for(int point = 0; point < points.size; point++)
+            {
+                minX = Math.min(minX, points.xs[point]);
+                minY = Math.min(minY, points.ys[point]);
+                maxX = Math.max(maxX, points.xs[point]);
+                maxY = Math.max(maxY, points.ys[point]);
+            }
+            //One more cell on each side, so that no cell on the border is reached
+            double marginX = maxWalkLengthInM / this.metersPerDegreeX + this.cellX;
+            double marginY = maxWalkLengthInM / PackedRTree.METERS_PER_DEGREE + this.cellY;
+            this.minX = minX - marginX;
+            this.minY = minY - marginY;
+            this.width = (int) Math.ceil((maxX + marginX - this.minX) / this.cellX) + 1;
+            this.height = (int) Math.ceil((maxY + marginY - this.minY) / this.cellY) + 1;
+            this.times = new float[this.width * this.height];
+            Arrays.fill(this.times, Float.POSITIVE_INFINITY);
+        }
+        ///////////////////////////////////////////////////////////////////////////////////////////////////
+        /** Lowers the times of the cells walked to from a point before the largest budget, the cell of
+         * the point always taking its time */
+        ///////////////////////////////////////////////////////////////////////////////////////////////////
+        void spread(double x, double y, double time, double maxBudget)
+        {
+            int pointI = (int) ((x - this.minX) / this.cellX), pointJ = (int) ((y - this.minY) / this.cellY);
+            this.lower(pointI, pointJ, time);
+            double radiusInM = Math.min(maxWalkLengthInM, (maxBudget - time) * walkSpeedInMS);
+            int minI = Math.max(0, (int) ((x - radiusInM / this.metersPerDegreeX - this.minX) / this.cellX));
+            int maxI = Math.min(this.width - 1, (int) ((x + radiusInM / this.metersPerDegreeX - this.minX) / this.cellX));
+            int minJ = Math.max(0, (int) ((y - radiusInM / PackedRTree.METERS_PER_DEGREE - this.minY) / this.cellY));
+            int maxJ = Math.min(this.height - 1, (int) ((y + radiusInM / PackedRTree.METERS_PER_DEGREE - this.minY) / this.cellY));
+            for(int j = minJ; j <= maxJ; j++)
+            {
+                double dy = (this.minY + (j + 0.5) * this.cellY - y) * PackedRTree.METERS_PER_DEGREE;
+                for(int i = minI; i <= maxI; i++)
+                {
+                    double dx = (this.minX + (i + 0.5) * this.cellX - x) * this.metersPerDegreeX;
+                    double distanceInM = Math.sqrt(dx * dx + dy * dy);
+                    if(distanceInM <= radiusInM)
+                        this.lower(i, j, time + distanceInM / walkSpeedInMS);
+                }
+            }
+        }
+        private void lower(int i, int j, double time)
+        {
+            int cell = j * this.width + i;
+            if(time < this.times[cell])
+                this.times[cell] = (float) time;
+        }
+        private boolean isIn(int i, int j, double minTime, double maxTime)
+        {
+            if(i < 0 || j < 0 || i >= this.width || j >= this.height)
+                return false;
+            float time = this.times[j * this.width + i];
+            return time > minTime && time <= maxTime;
+        }
+        ///////////////////////////////////////////////////////////////////////////////////////////////////
+        /** Traces the outlines of the cells reached in a time interval: every side between a cell in
+         * and a cell out becomes an edge leaving the cell on its left, and the edges are chained into
+         * rings. The counterclockwise rings are the shells and the clockwise ones their holes
+         * @param minTime the time the cells must exceed, -infinity for all the cells reached
+         * @param maxTime the time within which the cells must be reached */
+        ///////////////////////////////////////////////////////////////////////////////////////////////////
+        MultiPolygon trace(double minTime, double maxTime)
+        {
+            //Edges leaving each vertex, a bit per direction
+            int verticesWidth = this.width + 1;
+            byte[] edges = new byte[verticesWidth * (this.height + 1)];
+            for(int j = 0; j < this.height; j++)
+                for(int i = 0; i < this.width; i++)
+                {
+                    if(!this.isIn(i, j, minTime, maxTime))
+                        continue;
+                    if(!this.isIn(i, j - 1, minTime, maxTime))
+                        edges[j * verticesWidth + i] |= 1;
+                    if(!this.isIn(i + 1, j, minTime, maxTime))
+                        edges[j * verticesWidth + i + 1] |= 1 << 1;
+                    if(!this.isIn(i, j + 1, minTime, maxTime))
+                        edges[(j + 1) * verticesWidth + i + 1] |= 1 << 2;
+                    if(!this.isIn(i - 1, j, minTime, maxTime))
+                        edges[(j + 1) * verticesWidth + i] |= 1 << 3;
+                }
+            List<Ring> rings = new ArrayList<>();
+            for(int start = 0; start < edges.length; start++)
+                if(edges[start] != 0)
+                    traceRings(edges, verticesWidth, start, rings);
+            //Holes in the smallest shell around them
+            List<Ring> shells = new ArrayList<>();
+            for(Ring ring : rings)
+                if(ring.area > 0)
+                    shells.add(ring);
+            List<List<LinearRing>> shellHoles = new ArrayList<>();
+            for(int shell = 0; shell < shells.size(); shell++)
+                shellHoles.add(new ArrayList<>());
+            for(Ring hole : rings)
+            {
+                if(hole.area > 0)
+                    continue;
+                int bestShell = -1;
+                for(int shell = 0; shell < shells.size(); shell++)
+                    if((bestShell < 0 || shells.get(shell).area < shells.get(bestShell).area) && shells.get(shell).contains(hole.insideX, hole.insideY, verticesWidth))
+                        bestShell = shell;
+                if(bestShell >= 0)
+                    shellHoles.get(bestShell).add(this.toLinearRing(hole.corners, verticesWidth));
+            }
+            Polygon[] polygons = new Polygon[shells.size()];
+            for(int shell = 0; shell < shells.size(); shell++)
+                polygons[shell] = factory.createPolygon(this.toLinearRing(shells.get(shell).corners, verticesWidth), shellHoles.get(shell).toArray(new LinearRing[0]));
+            return factory.createMultiPolygon(polygons);
+        }
+        private LinearRing toLinearRing(int[] corners, int verticesWidth)
+        {
+            Coordinate[] coordinates = new Coordinate[corners.length + 1];
+            for(int corner = 0; corner < corners.length; corner++)
+                coordinates[corner] = new Coordinate(this.minX + corners[corner] % verticesWidth * this.cellX, this.minY + corners[corner] / verticesWidth * this.cellY);
+            coordinates[corners.length] = coordinates[0];
+            return factory.createLinearRing(coordinates);
+        }
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Follows the edges from a vertex, turning left first, removing them as they are used. Where
+     * two cells only touch by a corner, the walk may come back to a vertex it went through: the loop
+     * since that vertex is then cut off as a ring of its own, so that every ring is simple */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private static void traceRings(byte[] edges, int verticesWidth, int start, List<Ring> rings)
+    {
+        int[] path = new int[64];
+        byte[] directions = new byte[64];
+        int size = 0;
+        //Vertices of the path left with an edge, by position in the path
+        HashMap<Integer,Integer> branches = new HashMap<>();
+        int vertex = start, direction = 0;
+        while(true)
+        {
+            Integer position = branches.get(vertex);
+            if(position != null) {
+                rings.add(new Ring(path, directions, position, size, verticesWidth));
+                for(int loop = position + 1; loop < size; loop++)
+                    branches.remove(path[loop]);
+                size = position;
+                if(edges[vertex] == 0)
+                    return;
+            }
+            //Next edge: left, straight or right
+            int nextDirection = Integer.numberOfTrailingZeros(edges[vertex]);
+            if(size > 0)
+                for(int turn : new int[]{1, 0, 3})
+                    if((edges[vertex] >> ((direction + turn) & 3) & 1) != 0) {
+                        nextDirection = (direction + turn) & 3;
+                        break;
+                    }
+            edges[vertex] &= ~(1 << nextDirection);
+            if(edges[vertex] != 0 || vertex == start)
+                branches.put(vertex, size);
+            if(size == path.length) {
+                path = Arrays.copyOf(path, size * 2);
+                directions = Arrays.copyOf(directions, size * 2);
+            }
+            path[size] = vertex;
+            directions[size++] = (byte) nextDirection;
+            direction = nextDirection;
+            vertex += DIRECTION_X[direction] + DIRECTION_Y[direction] * verticesWidth;
+        }
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** A closed ring of grid vertices, kept by its corners */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private static class Ring
+    {
+        private final int[] corners;
+        //Signed area in cells, positive if counterclockwise
+        private final double area;
+        //Center of the cell right of the first edge, inside the ring if it is a hole
+        private final double insideX, insideY;
+        ///////////////////////////////////////////////////////////////////////////////////////////////////
+        /** Keeps the vertices of a path from a position to its end where the direction changes */
+        ///////////////////////////////////////////////////////////////////////////////////////////////////
+        Ring(int[] path, byte[] directions, int from, int to, int verticesWidth)
+        {
+            int[] corners = new int[to - from];
+            int cornersNbr = 0;
+            for(int position = from; position < to; position++)
+                if(directions[position] != directions[position == from ? to - 1 : position - 1])
+                    corners[cornersNbr++] = path[position];
+            this.corners = Arrays.copyOf(corners, cornersNbr);
+            long doubleArea = 0;
+            for(int corner = 0; corner < cornersNbr; corner++)
+            {
+                int vertex = corners[corner], next = corners[(corner + 1) % cornersNbr];
+                doubleArea += (long) (vertex % verticesWidth) * (next / verticesWidth) - (long) (next % verticesWidth) * (vertex / verticesWidth);
+            }
+            this.area = doubleArea / 2.0;
+            int dx = DIRECTION_X[directions[from]], dy = DIRECTION_Y[directions[from]];
+            this.insideX = path[from] % verticesWidth + 0.5 * (dx + dy);
+            this.insideY = path[from] / verticesWidth + 0.5 * (dy - dx);
+        }
+        ///////////////////////////////////////////////////////////////////////////////////////////////////
+        /** Tells if a point off the grid lines is inside the ring, by counting the crossings of a ray */
+        ///////////////////////////////////////////////////////////////////////////////////////////////////
+        boolean contains(double x, double y, int verticesWidth)
+        {
+            boolean inside = false;
+            for(int corner = 0; corner < this.corners.length; corner++)
+            {
+                int vertex = this.corners[corner], next = this.corners[(corner + 1) % this.corners.length];
+                double x1 = vertex % verticesWidth, y1 = vertex / verticesWidth;
+                double x2 = next % verticesWidth, y2 = next / verticesWidth;
+                if((y1 > y) != (y2 > y) && x < x1 + (y - y1) * (x2 - x1) / (y2 - y1))
+                    inside = !inside;
+            }
+            return inside;
+        }
+    }
+}
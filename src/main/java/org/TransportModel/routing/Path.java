@@ -0,0 +1,75 @@
+package org.TransportModel.routing;
+
+import org.TransportModel.network.CompactGraph;
+import org.TransportModel.network.Link;
+import org.TransportModel.network.Network;
+
+import java.util.ArrayList;
+import java.util.List;
+
+///////////////////////////////////////////////////////////////////////////////////////////////////
+/** Path is the result of a point-to-point query: an ordered list of arcs of a CompactGraph */
+///////////////////////////////////////////////////////////////////////////////////////////////////
+public class Path
+{
+    private final CompactGraph graph;
+    private final int source, target;
+    private final int[] arcs;
+    private final double cost;
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /**                                        Constructor                                           */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public Path(CompactGraph graph, int source, int target, int[] arcs, double cost)
+    {
+        this.graph = graph;
+        this.source = source;
+        this.target = target;
+        this.arcs = arcs;
+        this.cost = cost;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /**                                          Getters                                             */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public int getSource(){return this.source;}
+    public int getTarget(){return this.target;}
+    public int[] getArcs(){return this.arcs;}
+    public double getCost(){return this.cost;}
+    public boolean isFound(){return this.cost != Double.POSITIVE_INFINITY;}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Returns the ids of the links followed by the path, in order */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public List<String> getLinkIds()
+    {
+        List<String> linkIds = new ArrayList<>(this.arcs.length);
+        for(int arc : this.arcs)
+            linkIds.add(this.graph.getArcLinkId(arc));
+        return linkIds;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Returns the links followed by the path, in order
+     * @param network the network the graph was built from */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public List<Link> getLinks(Network network)
+    {
+        List<Link> links = new ArrayList<>(this.arcs.length);
+        for(int arc : this.arcs)
+            links.add(network.getLink(this.graph.getArcLinkId(arc)));
+        return links;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Builds the path ending at a target from the predecessor arcs of a search
+     * @return the path, not found if the target was not reached */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    static Path fromState(CompactGraph graph, SearchState state, int source, int target)
+    {
+        if(!state.isReached(target))
+            return new Path(graph, source, target, new int[0], Double.POSITIVE_INFINITY);
+        int arcsNbr = 0;
+        for(int node = target; node != source; node = graph.getArcTail(state.getPredecessorArc(node)))
+            arcsNbr++;
+        int[] arcs = new int[arcsNbr];
+        for(int node = target; node != source; node = graph.getArcTail(arcs[arcsNbr]))
+            arcs[--arcsNbr] = state.getPredecessorArc(node);
+        return new Path(graph, source, target, arcs, state.getDistance(target));
+    }
+}
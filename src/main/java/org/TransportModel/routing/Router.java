@@ -0,0 +1,235 @@
+package org.TransportModel.routing;
+
+import org.TransportModel.metrics.Metrics;
+import org.TransportModel.network.CompactGraph;
+import org.TransportModel.network.Mode;
+import org.TransportModel.network.Node;
+
+///////////////////////////////////////////////////////////////////////////////////////////////////
+/** Router computes shortest paths on a CompactGraph with Dijkstra (one-to-all) and A* (one-to-one)
+ * The costs are the free flow travel times in seconds unless other arc costs are given.
+ * A router can be restricted to some modes of a multimodal graph, the arcs of the other modes
+ * being skipped by the searches: the restricted routers share the graph, the costs and the states.
+ * A Router is thread safe: every thread reuses its own SearchState between queries
+ * The searches are the router.search and router.searchTarget queries of the metrics */
+///////////////////////////////////////////////////////////////////////////////////////////////////
+public class Router
+{
+    private static final Metrics.QueryType SEARCH = Metrics.queryType("router.search"), SEARCH_TARGET = Metrics.queryType("router.searchTarget");
+    private final CompactGraph graph;
+    private final double[] arcCosts;
+    private final double maxSpeedInMS;
+    private final int modeMask;
+    private final ThreadLocal<SearchState> states;
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Creates a router minimizing the free flow travel time
+     * @param graph the graph to search */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public Router(CompactGraph graph)
+    {
+        this(graph, graph.getArcTimes());
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Creates a router minimizing custom arc costs
+     * @param graph the graph to search
+     * @param arcCosts the non-negative cost of each arc, read at query time: the costs may be updated
+     *                 between queries (congested times for example) but never below their initial value */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public Router(CompactGraph graph, double[] arcCosts)
+    {
+        if(arcCosts.length != graph.getArcsNbr())
+            throw new IllegalArgumentException("One cost per arc expected: " + arcCosts.length);
+        this.graph = graph;
+        this.arcCosts = arcCosts;
+        this.maxSpeedInMS = this.computeMaxSpeed();
+        this.modeMask = Mode.ALL;
+        this.states = ThreadLocal.withInitial(() -> new SearchState(graph.getNodesNbr()));
+    }
+    private Router(Router router, int modeMask)
+    {
+        this.graph = router.graph;
+        this.arcCosts = router.arcCosts;
+        this.maxSpeedInMS = router.maxSpeedInMS;
+        this.modeMask = modeMask;
+        this.states = router.states;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Creates a router using only the arcs of some modes, without copying the graph. The A* heuristic
+     * stays scaled on the fastest arc of all the modes
+     * @param modes the modes that can be used, road and access to the transit for example
+     * @return a router sharing the graph, the costs and the search states of this one */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public Router withModes(Mode... modes)
+    {
+        return this.withModes(Mode.mask(modes));
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Creates a router using only the arcs of the modes of a mask, without copying the graph
+     * @param modeMask the bits of the modes that can be used, see Mode.getMask */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public Router withModes(int modeMask)
+    {
+        return modeMask == this.modeMask ? this : new Router(this, modeMask);
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Computes the highest ratio distance/cost of the graph, used to scale the A* heuristic
+     * @return the speed in m/s, infinite if a positive distance can be covered at no cost */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private double computeMaxSpeed()
+    {
+        double maxSpeed = 0;
+        for(int arc = 0; arc < this.graph.getArcsNbr(); arc++)
+        {
+            int tail = this.graph.getArcTail(arc), head = this.graph.getArcHead(arc);
+            double distance = GreatCircle.distanceInM(this.graph.getNodeX(tail), this.graph.getNodeY(tail),
+                    this.graph.getNodeX(head), this.graph.getNodeY(head));
+            double cost = this.arcCosts[arc];
+            if(distance > 0 && cost < Double.POSITIVE_INFINITY)
+                maxSpeed = Math.max(maxSpeed, cost > 0 ? distance / cost : Double.POSITIVE_INFINITY);
+        }
+        return maxSpeed;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /**                                          Getters                                             */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public CompactGraph getGraph(){return this.graph;}
+    public double[] getArcCosts(){return this.arcCosts;}
+    public int getModeMask(){return this.modeMask;}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Returns the search state of the current thread, as left by its last query */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public SearchState getState(){return this.states.get();}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Computes the shortest path between two nodes of the network
+     * @return the path, not found if a node is not in the graph or is unreachable */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public Path getPath(Node from, Node to)
+    {
+        int source = this.graph.getNodeIndex(from);
+        int target = this.graph.getNodeIndex(to);
+        if(source < 0 || target < 0)
+            return new Path(this.graph, source, target, new int[0], Double.POSITIVE_INFINITY);
+        return this.getPath(source, target);
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Computes the shortest path between two nodes with A*
+     * @return the path, not found if the target is unreachable */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public Path getPath(int source, int target)
+    {
+        SearchState state = this.searchTarget(source, target);
+        return Path.fromState(this.graph, state, source, target);
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Computes the shortest path cost between two nodes with A*
+     * @return the cost, infinite if the target is unreachable */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public double getCost(int source, int target)
+    {
+        return this.searchTarget(source, target).getDistance(target);
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Computes the costs from one node to every node of the graph with Dijkstra
+     * @return the costs indexed by node, infinite for unreachable nodes */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public double[] getCosts(int source)
+    {
+        double[] costs = new double[this.graph.getNodesNbr()];
+        this.getCosts(source, Double.POSITIVE_INFINITY, costs);
+        return costs;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Computes the costs from one node to every node reachable within a budget
+     * @param maxCost nodes farther than this budget are not explored, their cost is infinite
+     * @param costs the array to fill, indexed by node */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public void getCosts(int source, double maxCost, double[] costs)
+    {
+        SearchState state = this.search(source, maxCost);
+        for(int node = 0; node < costs.length; node++)
+            costs[node] = state.getDistance(node) <= maxCost ? state.getDistance(node) : Double.POSITIVE_INFINITY;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Runs a one-to-all Dijkstra search from a node
+     * @param maxCost the search stops once every node within this budget is settled
+     * @return the search state of the current thread, valid until its next query */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public SearchState search(int source, double maxCost)
+    {
+        Metrics.Query query = SEARCH.start();
+        SearchState state = this.states.get();
+        state.reset();
+        IndexedMinHeap heap = state.getHeap();
+        state.setLabel(source, 0, -1);
+        heap.push(source, 0);
+        while(!heap.isEmpty())
+        {
+            if(heap.peekKey() > maxCost)
+                break;
+            int node = heap.pop();
+            state.settle(node);
+            double distance = state.getDistance(node);
+            for(int arc = this.graph.getOutArcsStart(node); arc < this.graph.getOutArcsEnd(node); arc++)
+            {
+                if(this.modeMask != Mode.ALL && !this.graph.isArcIn(arc, this.modeMask))
+                    continue;
+                int head = this.graph.getArcHead(arc);
+                double newDistance = distance + this.arcCosts[arc];
+                if(newDistance < state.getDistance(head)) {
+                    state.setLabel(head, newDistance, arc);
+                    heap.push(head, newDistance);
+                }
+            }
+        }
+        query.end(state.getSettledNodesNbr());
+        return state;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Runs an A* search from a node until a target is settled
+     * @return the search state of the current thread, valid until its next query */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public SearchState searchTarget(int source, int target)
+    {
+        Metrics.Query query = SEARCH_TARGET.start();
+        SearchState state = this.states.get();
+        state.reset();
+        IndexedMinHeap heap = state.getHeap();
+        state.setLabel(source, 0, -1);
+        heap.push(source, this.estimate(state, source, target));
+        while(!heap.isEmpty())
+        {
+            int node = heap.pop();
+            state.settle(node);
+            if(node == target)
+                break;
+            double distance = state.getDistance(node);
+            for(int arc = this.graph.getOutArcsStart(node); arc < this.graph.getOutArcsEnd(node); arc++)
+            {
+                if(this.modeMask != Mode.ALL && !this.graph.isArcIn(arc, this.modeMask))
+                    continue;
+                int head = this.graph.getArcHead(arc);
+                double newDistance = distance + this.arcCosts[arc];
+                if(newDistance < state.getDistance(head)) {
+                    state.setLabel(head, newDistance, arc);
+                    heap.push(head, newDistance + this.estimate(state, head, target));
+                }
+            }
+        }
+        query.end(state.getSettledNodesNbr());
+        return state;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Returns the great circle lower bound of the cost from a node to the target, cached per query */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private double estimate(SearchState state, int node, int target)
+    {
+        if(this.maxSpeedInMS == Double.POSITIVE_INFINITY || this.maxSpeedInMS == 0)
+            return 0;
+        if(!state.hasEstimate(node)) {
+            double distance = GreatCircle.distanceInM(this.graph.getNodeX(node), this.graph.getNodeY(node),
+                    this.graph.getNodeX(target), this.graph.getNodeY(target));
+            state.setEstimate(node, distance / this.maxSpeedInMS);
+        }
+        return state.getEstimate(node);
+    }
+}
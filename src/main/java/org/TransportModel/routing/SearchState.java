@@ -0,0 +1,87 @@
+package org.TransportModel.routing;
+
+import java.util.Arrays;
+
+///////////////////////////////////////////////////////////////////////////////////////////////////
+/** SearchState holds the labels of a shortest path search so that they can be reused between
+ * queries: a label is only valid if its stamp equals the stamp of the current query, so starting
+ * a new query costs O(1) instead of clearing arrays as large as the graph */
+///////////////////////////////////////////////////////////////////////////////////////////////////
+public class SearchState
+{
+    private final double[] distances, estimates;
+    private final int[] predecessorArcs, stamps, estimateStamps, settledStamps, settledNodes;
+    private final IndexedMinHeap heap;
+    private int stamp, settledNodesNbr;
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /**                                        Constructor                                           */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public SearchState(int nodesNbr)
+    {
+        this.distances = new double[nodesNbr];
+        this.estimates = new double[nodesNbr];
+        this.predecessorArcs = new int[nodesNbr];
+        this.stamps = new int[nodesNbr];
+        this.estimateStamps = new int[nodesNbr];
+        this.settledStamps = new int[nodesNbr];
+        this.settledNodes = new int[nodesNbr];
+        this.heap = new IndexedMinHeap(nodesNbr);
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Invalidates every label of the previous query */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    void reset()
+    {
+        this.heap.clear();
+        this.settledNodesNbr = 0;
+        if(++this.stamp == 0) {
+            //Stamps wrapped around: clear them once every 2^32 queries
+            Arrays.fill(this.stamps, 0);
+            Arrays.fill(this.estimateStamps, 0);
+            Arrays.fill(this.settledStamps, 0);
+            this.stamp = 1;
+        }
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /**                                      Package Modifiers                                       */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    void setLabel(int node, double distance, int predecessorArc)
+    {
+        this.distances[node] = distance;
+        this.predecessorArcs[node] = predecessorArc;
+        this.stamps[node] = this.stamp;
+    }
+    void setEstimate(int node, double estimate)
+    {
+        this.estimates[node] = estimate;
+        this.estimateStamps[node] = this.stamp;
+    }
+    boolean hasEstimate(int node){return this.estimateStamps[node] == this.stamp;}
+    double getEstimate(int node){return this.estimates[node];}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Records a node popped from the heap, only the first time: A* may reopen a node when its
+     * heuristic is inconsistent under rounding, and the order must list every node once */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    void settle(int node)
+    {
+        //If node already settled by this query:skip
+        if(this.settledStamps[node] == this.stamp)
+            return;
+        this.settledStamps[node] = this.stamp;
+        this.settledNodes[this.settledNodesNbr++] = node;
+    }
+    IndexedMinHeap getHeap(){return this.heap;}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /**                                          Getters                                             */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public int getNodesNbr(){return this.distances.length;}
+    public boolean isReached(int node){return this.stamps[node] == this.stamp;}
+    public double getDistance(int node){return this.isReached(node) ? this.distances[node] : Double.POSITIVE_INFINITY;}
+    public int getPredecessorArc(int node){return this.isReached(node) ? this.predecessorArcs[node] : -1;}
+    public int getSettledNodesNbr(){return this.settledNodesNbr;}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Returns a node settled by the query, the nodes being settled by increasing distance
+     * @param position the rank of the node in the settle order, below getSettledNodesNbr() */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public int getSettledNode(int position){return this.settledNodes[position];}
+}
@@ -0,0 +1,362 @@
+package org.TransportModel.routing.ch;
+
+import org.TransportModel.metrics.Metrics;
+import org.TransportModel.network.CompactGraph;
+import org.TransportModel.routing.IndexedMinHeap;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+///////////////////////////////////////////////////////////////////////////////////////////////////
+/** CHPreprocessor contracts the nodes of a CompactGraph to build a ContractionHierarchy
+ * Every round selects the remaining nodes whose priority (edge difference, contracted neighbours and
+ * level) is a local minimum: these nodes form an independent set, so they are contracted in parallel.
+ * A witness path must be strictly shorter than the path through the contracted node, so witnesses of
+ * a round can't rely on each other in a cycle and the nodes of a round may share witness paths */
+///////////////////////////////////////////////////////////////////////////////////////////////////
+public class CHPreprocessor
+{
+    private static final int CONTRACTION_SETTLED_LIMIT = 500, SIMULATION_SETTLED_LIMIT = 100;
+    private final CompactGraph graph;
+    //Edges: original arcs then shortcuts
+    private int edgesNbr;
+    private int[] edgeTail, edgeHead, edgeArc, edgeChild1, edgeChild2;
+    private double[] edgeWeight;
+    //Remaining graph: edges between non contracted nodes
+    private final int[][] outEdges, inEdges;
+    private final int[] outSizes, inSizes;
+    //Contraction state
+    private final int[] ranks, contractedNeighbours, levels;
+    private final boolean[] contracted, selected, dirty;
+    private final double[] priorities;
+    private final ThreadLocal<WitnessSearch> searches;
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /**                                        Constructor                                           */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public CHPreprocessor(CompactGraph graph)
+    {
+        int nodesNbr = graph.getNodesNbr();
+        this.graph = graph;
+        this.outEdges = new int[nodesNbr][];
+        this.inEdges = new int[nodesNbr][];
+        this.outSizes = new int[nodesNbr];
+        this.inSizes = new int[nodesNbr];
+        this.ranks = new int[nodesNbr];
+        this.contractedNeighbours = new int[nodesNbr];
+        this.levels = new int[nodesNbr];
+        this.contracted = new boolean[nodesNbr];
+        this.selected = new boolean[nodesNbr];
+        this.dirty = new boolean[nodesNbr];
+        this.priorities = new double[nodesNbr];
+        this.searches = ThreadLocal.withInitial(() -> new WitnessSearch(nodesNbr));
+        int capacity = Math.max(16, graph.getArcsNbr() * 2);
+        this.edgeTail = new int[capacity];
+        this.edgeHead = new int[capacity];
+        this.edgeArc = new int[capacity];
+        this.edgeChild1 = new int[capacity];
+        this.edgeChild2 = new int[capacity];
+        this.edgeWeight = new double[capacity];
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Contracts every node of the graph, as the ch.preprocessing phase of the metrics whose created
+     * objects are the shortcuts
+     * @return the hierarchy, whose queries give the same costs as a Dijkstra on the free flow times */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public ContractionHierarchy build()
+    {
+        try(Metrics.Phase phase = Metrics.startPhase("ch.preprocessing"))
+        {
+            ContractionHierarchy hierarchy = this.contract();
+            phase.addRows(hierarchy.getNodesNbr());
+            phase.addCreated(hierarchy.getShortcutsNbr());
+            return hierarchy;
+        }
+    }
+    private ContractionHierarchy contract()
+    {
+        int nodesNbr = this.graph.getNodesNbr();
+        for(int node = 0; node < nodesNbr; node++)
+        {
+            this.outEdges[node] = new int[Math.max(2, this.graph.getOutDegree(node))];
+            this.inEdges[node] = new int[Math.max(2, this.graph.getInDegree(node))];
+        }
+        for(int arc = 0; arc < this.graph.getArcsNbr(); arc++)
+        {
+            int tail = this.graph.getArcTail(arc), head = this.graph.getArcHead(arc);
+            double time = this.graph.getArcTimeInS(arc);
+            if(tail != head && time < Double.POSITIVE_INFINITY)
+                this.addEdge(tail, head, time, arc, -1, -1);
+        }
+        int[] remaining = IntStream.range(0, nodesNbr).toArray();
+        IntStream.of(remaining).parallel().forEach(node -> this.priorities[node] = this.computePriority(node));
+        int nextRank = 0;
+        while(remaining.length > 0)
+        {
+            //Select an independent set of nodes with locally minimal priorities
+            int[] candidates = remaining;
+            IntStream.of(candidates).parallel().forEach(node -> this.selected[node] = this.isLocalMinimum(node));
+            int[] round = IntStream.of(candidates).filter(node -> this.selected[node]).toArray();
+            //Compute their shortcuts in parallel then apply them in node order
+            Shortcuts[] shortcuts = new Shortcuts[round.length];
+            IntStream.range(0, round.length).parallel().forEach(index -> shortcuts[index] = this.contract(round[index], CONTRACTION_SETTLED_LIMIT));
+            for(int index = 0; index < round.length; index++)
+                this.applyContraction(round[index], shortcuts[index], nextRank++);
+            //Update the priorities of the neighbours of the contracted nodes
+            remaining = IntStream.of(candidates).filter(node -> !this.contracted[node]).toArray();
+            int[] updated = IntStream.of(remaining).filter(node -> this.dirty[node]).toArray();
+            IntStream.of(updated).parallel().forEach(node -> {
+                this.priorities[node] = this.computePriority(node);
+                this.dirty[node] = false;
+            });
+        }
+        return new ContractionHierarchy(this.graph, this.ranks, Arrays.copyOf(this.edgeTail, this.edgesNbr),
+                Arrays.copyOf(this.edgeHead, this.edgesNbr), Arrays.copyOf(this.edgeWeight, this.edgesNbr),
+                Arrays.copyOf(this.edgeArc, this.edgesNbr), Arrays.copyOf(this.edgeChild1, this.edgesNbr),
+                Arrays.copyOf(this.edgeChild2, this.edgesNbr));
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Checks if the priority of a node is lower than the priorities of all its remaining neighbours,
+     * ties being broken by node index */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private boolean isLocalMinimum(int node)
+    {
+        for(int position = 0; position < this.outSizes[node]; position++)
+            if(this.hasPriorityOver(this.edgeHead[this.outEdges[node][position]], node))
+                return false;
+        for(int position = 0; position < this.inSizes[node]; position++)
+            if(this.hasPriorityOver(this.edgeTail[this.inEdges[node][position]], node))
+                return false;
+        return true;
+    }
+    private boolean hasPriorityOver(int node, int other)
+    {
+        return this.priorities[node] < this.priorities[other] || (this.priorities[node] == this.priorities[other] && node < other);
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Simulates the contraction of a node
+     * @return the edge difference plus the number of contracted neighbours and the level of the node */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private double computePriority(int node)
+    {
+        Shortcuts shortcuts = this.contract(node, SIMULATION_SETTLED_LIMIT);
+        int edgeDifference = shortcuts.size - this.outSizes[node] - this.inSizes[node];
+        return 2 * edgeDifference + this.contractedNeighbours[node] + this.levels[node];
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Finds the shortcuts needed to contract a node: an in edge (u,v) and an out edge (v,w) need a
+     * shortcut unless a witness path from u to w avoiding v is strictly shorter
+     * @param settledLimit the number of nodes a witness search may settle, a shortcut being added if
+     *                     no witness was found within this limit */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private Shortcuts contract(int node, int settledLimit)
+    {
+        Shortcuts shortcuts = new Shortcuts();
+        int[] ins = this.bestEdges(this.inEdges[node], this.inSizes[node], this.edgeTail);
+        int[] outs = this.bestEdges(this.outEdges[node], this.outSizes[node], this.edgeHead);
+        WitnessSearch search = this.searches.get();
+        for(int inEdge : ins)
+        {
+            int from = this.edgeTail[inEdge];
+            double maxWeight = -1;
+            for(int outEdge : outs)
+                if(this.edgeHead[outEdge] != from)
+                    maxWeight = Math.max(maxWeight, this.edgeWeight[inEdge] + this.edgeWeight[outEdge]);
+            if(maxWeight < 0)
+                continue;
+            search.run(from, node, outs, maxWeight, settledLimit);
+            for(int outEdge : outs)
+            {
+                int to = this.edgeHead[outEdge];
+                double weight = this.edgeWeight[inEdge] + this.edgeWeight[outEdge];
+                if(to != from && search.getDistance(to) >= weight)
+                    shortcuts.add(inEdge, outEdge, weight);
+            }
+        }
+        return shortcuts;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Keeps the lightest of the parallel edges of an edges list
+     * @param ends the array giving the neighbour at the other end of an edge */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private int[] bestEdges(int[] edges, int size, int[] ends)
+    {
+        int[] best = new int[size];
+        int bestNbr = 0;
+        for(int position = 0; position < size; position++)
+        {
+            int edge = edges[position], index = 0;
+            while(index < bestNbr && ends[best[index]] != ends[edge])
+                index++;
+            if(index == bestNbr)
+                best[bestNbr++] = edge;
+            else if(this.edgeWeight[edge] < this.edgeWeight[best[index]])
+                best[index] = edge;
+        }
+        return Arrays.copyOf(best, bestNbr);
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Removes a node from the remaining graph and adds its shortcuts */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private void applyContraction(int node, Shortcuts shortcuts, int rank)
+    {
+        this.ranks[node] = rank;
+        this.contracted[node] = true;
+        this.selected[node] = false;
+        for(int index = 0; index < shortcuts.size; index++)
+        {
+            int inEdge = shortcuts.inEdges[index], outEdge = shortcuts.outEdges[index];
+            this.addEdge(this.edgeTail[inEdge], this.edgeHead[outEdge], shortcuts.weights[index], -1, inEdge, outEdge);
+        }
+        for(int position = 0; position < this.outSizes[node]; position++)
+        {
+            int edge = this.outEdges[node][position], head = this.edgeHead[edge];
+            this.removeFromList(this.inEdges, this.inSizes, head, edge);
+            this.contractedNeighbours[head]++;
+            this.levels[head] = Math.max(this.levels[head], this.levels[node] + 1);
+            this.dirty[head] = true;
+        }
+        for(int position = 0; position < this.inSizes[node]; position++)
+        {
+            int edge = this.inEdges[node][position], tail = this.edgeTail[edge];
+            this.removeFromList(this.outEdges, this.outSizes, tail, edge);
+            this.contractedNeighbours[tail]++;
+            this.levels[tail] = Math.max(this.levels[tail], this.levels[node] + 1);
+            this.dirty[tail] = true;
+        }
+        this.outEdges[node] = null;
+        this.inEdges[node] = null;
+        this.outSizes[node] = this.inSizes[node] = 0;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Adds an edge to the remaining graph, unless a parallel edge is at least as light; a heavier
+     * parallel edge is removed from the remaining graph but kept in the hierarchy */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private void addEdge(int tail, int head, double weight, int arc, int child1, int child2)
+    {
+        for(int position = 0; position < this.outSizes[tail]; position++)
+        {
+            int edge = this.outEdges[tail][position];
+            if(this.edgeHead[edge] != head)
+                continue;
+            if(this.edgeWeight[edge] <= weight)
+                return;
+            this.removeFromList(this.outEdges, this.outSizes, tail, edge);
+            this.removeFromList(this.inEdges, this.inSizes, head, edge);
+            break;
+        }
+        if(this.edgesNbr == this.edgeTail.length) {
+            int capacity = this.edgesNbr * 2;
+            this.edgeTail = Arrays.copyOf(this.edgeTail, capacity);
+            this.edgeHead = Arrays.copyOf(this.edgeHead, capacity);
+            this.edgeArc = Arrays.copyOf(this.edgeArc, capacity);
+            this.edgeChild1 = Arrays.copyOf(this.edgeChild1, capacity);
+            this.edgeChild2 = Arrays.copyOf(this.edgeChild2, capacity);
+            this.edgeWeight = Arrays.copyOf(this.edgeWeight, capacity);
+        }
+        int edge = this.edgesNbr++;
+        this.edgeTail[edge] = tail;
+        this.edgeHead[edge] = head;
+        this.edgeWeight[edge] = weight;
+        this.edgeArc[edge] = arc;
+        this.edgeChild1[edge] = child1;
+        this.edgeChild2[edge] = child2;
+        this.addToList(this.outEdges, this.outSizes, tail, edge);
+        this.addToList(this.inEdges, this.inSizes, head, edge);
+    }
+    private void addToList(int[][] lists, int[] sizes, int node, int edge)
+    {
+        if(sizes[node] == lists[node].length)
+            lists[node] = Arrays.copyOf(lists[node], lists[node].length * 2);
+        lists[node][sizes[node]++] = edge;
+    }
+    private void removeFromList(int[][] lists, int[] sizes, int node, int edge)
+    {
+        int[] list = lists[node];
+        for(int position = 0; position < sizes[node]; position++)
+            if(list[position] == edge) {
+                list[position] = list[--sizes[node]];
+                return;
+            }
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Shortcuts found by the contraction of a node */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private static class Shortcuts
+    {
+        int size;
+        int[] inEdges = new int[4], outEdges = new int[4];
+        double[] weights = new double[4];
+        void add(int inEdge, int outEdge, double weight)
+        {
+            if(this.size == this.weights.length) {
+                this.inEdges = Arrays.copyOf(this.inEdges, this.size * 2);
+                this.outEdges = Arrays.copyOf(this.outEdges, this.size * 2);
+                this.weights = Arrays.copyOf(this.weights, this.size * 2);
+            }
+            this.inEdges[this.size] = inEdge;
+            this.outEdges[this.size] = outEdge;
+            this.weights[this.size++] = weight;
+        }
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Bounded Dijkstra on the remaining graph, reused by a thread between witness searches */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private class WitnessSearch
+    {
+        private final double[] distances;
+        private final int[] stamps, targetStamps;
+        private final IndexedMinHeap heap;
+        private int stamp;
+        WitnessSearch(int nodesNbr)
+        {
+            this.distances = new double[nodesNbr];
+            this.stamps = new int[nodesNbr];
+            this.targetStamps = new int[nodesNbr];
+            this.heap = new IndexedMinHeap(nodesNbr);
+        }
+        double getDistance(int node){return this.stamps[node] == this.stamp ? this.distances[node] : Double.POSITIVE_INFINITY;}
+        void run(int source, int ignoredNode, int[] targetEdges, double maxDistance, int settledLimit)
+        {
+            this.heap.clear();
+            if(++this.stamp == 0) {
+                Arrays.fill(this.stamps, 0);
+                Arrays.fill(this.targetStamps, 0);
+                this.stamp = 1;
+            }
+            //The search stops early once every target is settled
+            int targetsNbr = 0;
+            for(int edge : targetEdges)
+            {
+                int target = CHPreprocessor.this.edgeHead[edge];
+                if(target != source && this.targetStamps[target] != this.stamp) {
+                    this.targetStamps[target] = this.stamp;
+                    targetsNbr++;
+                }
+            }
+            this.distances[source] = 0;
+            this.stamps[source] = this.stamp;
+            this.heap.push(source, 0);
+            int settled = 0;
+            while(targetsNbr > 0 && !this.heap.isEmpty() && this.heap.peekKey() < maxDistance && settled++ < settledLimit)
+            {
+                int node = this.heap.pop();
+                if(this.targetStamps[node] == this.stamp)
+                    targetsNbr--;
+                double distance = this.distances[node];
+                int[] edges = CHPreprocessor.this.outEdges[node];
+                for(int position = 0; position < CHPreprocessor.this.outSizes[node]; position++)
+                {
+                    int edge = edges[position], head = CHPreprocessor.this.edgeHead[edge];
+                    if(head == ignoredNode)
+                        continue;
+                    double newDistance = distance + CHPreprocessor.this.edgeWeight[edge];
+                    if(newDistance < this.getDistance(head)) {
+                        this.distances[head] = newDistance;
+                        this.stamps[head] = this.stamp;
+                        this.heap.push(head, newDistance);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package org.TransportModel.routing.ch;
+
+import org.TransportModel.metrics.Metrics;
+import org.TransportModel.network.Node;
+import org.TransportModel.routing.IndexedMinHeap;
+import org.TransportModel.routing.Path;
+
+import java.util.Arrays;
+
+///////////////////////////////////////////////////////////////////////////////////////////////////
+/** CHRouter answers point-to-point queries on a ContractionHierarchy with a bidirectional Dijkstra
+ * that only follows edges towards higher ranked nodes, then unpacks the shortcuts of the best path.
+ * A CHRouter is thread safe: every thread reuses its own search labels between queries
+ * The searches are the ch.search queries of the metrics, settling the nodes of both directions */
+///////////////////////////////////////////////////////////////////////////////////////////////////
+public class CHRouter
+{
+    private static final Metrics.QueryType SEARCH = Metrics.queryType("ch.search");
+    private final ContractionHierarchy hierarchy;
+    private final ThreadLocal<Labels[]> labels;
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /**                                        Constructor                                           */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public CHRouter(ContractionHierarchy hierarchy)
+    {
+        this.hierarchy = hierarchy;
+        int nodesNbr = hierarchy.getNodesNbr();
+        this.labels = ThreadLocal.withInitial(() -> new Labels[]{new Labels(nodesNbr), new Labels(nodesNbr)});
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /**                                          Getters                                             */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public ContractionHierarchy getHierarchy(){return this.hierarchy;}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Computes the shortest path between two nodes of the network
+     * @return the path, not found if a node is not in the graph or is unreachable */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public Path getPath(Node from, Node to)
+    {
+        int source = this.hierarchy.getGraph().getNodeIndex(from);
+        int target = this.hierarchy.getGraph().getNodeIndex(to);
+        if(source < 0 || target < 0)
+            return new Path(this.hierarchy.getGraph(), source, target, new int[0], Double.POSITIVE_INFINITY);
+        return this.getPath(source, target);
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Computes the shortest free flow travel time between two nodes
+     * @return the time in seconds, infinite if the target is unreachable */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public double getCost(int source, int target)
+    {
+        Labels[] labels = this.labels.get();
+        int meetingNode = this.search(source, target, labels[0], labels[1]);
+        return meetingNode < 0 ? Double.POSITIVE_INFINITY : labels[0].getDistance(meetingNode) + labels[1].getDistance(meetingNode);
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Computes the shortest path between two nodes, made of arcs of the original graph
+     * @return the path, not found if the target is unreachable */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public Path getPath(int source, int target)
+    {
+        Labels[] labels = this.labels.get();
+        Labels forward = labels[0], backward = labels[1];
+        int meetingNode = this.search(source, target, forward, backward);
+        if(meetingNode < 0)
+            return new Path(this.hierarchy.getGraph(), source, target, new int[0], Double.POSITIVE_INFINITY);
+        //Count the arcs of the path
+        int arcsNbr = 0;
+        for(int node = meetingNode; node != source; node = this.hierarchy.getEdgeTail(forward.getPredecessor(node)))
+            arcsNbr += this.hierarchy.getArcsNbr(forward.getPredecessor(node));
+        int forwardArcsNbr = arcsNbr;
+        for(int node = meetingNode; node != target; node = this.hierarchy.getEdgeHead(backward.getPredecessor(node)))
+            arcsNbr += this.hierarchy.getArcsNbr(backward.getPredecessor(node));
+        //Unpack the forward half from its end and the backward half from its start
+        int[] arcs = new int[arcsNbr];
+        int position = forwardArcsNbr;
+        for(int node = meetingNode; node != source; node = this.hierarchy.getEdgeTail(forward.getPredecessor(node)))
+        {
+            int edge = forward.getPredecessor(node);
+            position -= this.hierarchy.getArcsNbr(edge);
+            this.hierarchy.unpack(edge, arcs, position);
+        }
+        position = forwardArcsNbr;
+        for(int node = meetingNode; node != target; node = this.hierarchy.getEdgeHead(backward.getPredecessor(node)))
+            position = this.hierarchy.unpack(backward.getPredecessor(node), arcs, position);
+        double cost = forward.getDistance(meetingNode) + backward.getDistance(meetingNode);
+        return new Path(this.hierarchy.getGraph(), source, target, arcs, cost);
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Runs the forward upward search from the source and the backward upward search from the target,
+     * alternately, until neither can improve the best meeting node
+     * @return the meeting node of the shortest path, -1 if the target is unreachable */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private int search(int source, int target, Labels forward, Labels backward)
+    {
+        Metrics.Query query = SEARCH.start();
+        int settledNodesNbr = 0;
+        forward.reset();
+        backward.reset();
+        forward.setLabel(source, 0, -1);
+        forward.heap.push(source, 0);
+        backward.setLabel(target, 0, -1);
+        backward.heap.push(target, 0);
+        double best = Double.POSITIVE_INFINITY;
+        int meetingNode = -1;
+        boolean forwardTurn = true;
+        while(true)
+        {
+            boolean forwardActive = !forward.heap.isEmpty() && forward.heap.peekKey() < best;
+            boolean backwardActive = !backward.heap.isEmpty() && backward.heap.peekKey() < best;
+            if(!forwardActive && !backwardActive)
+                break;
+            boolean isForward = forwardActive && (forwardTurn || !backwardActive);
+            forwardTurn = !forwardTurn;
+            Labels labels = isForward ? forward : backward, opposite = isForward ? backward : forward;
+            int node = labels.heap.pop();
+            settledNodesNbr++;
+            double distance = labels.getDistance(node);
+            if(opposite.isReached(node) && distance + opposite.getDistance(node) < best) {
+                best = distance + opposite.getDistance(node);
+                meetingNode = node;
+            }
+            if(this.isStalled(node, distance, labels, isForward))
+                continue;
+            int start = isForward ? this.hierarchy.getUpStart(node) : this.hierarchy.getDownStart(node);
+            int end = isForward ? this.hierarchy.getUpEnd(node) : this.hierarchy.getDownEnd(node);
+            for(int position = start; position < end; position++)
+            {
+                int edge = isForward ? this.hierarchy.getUpEdge(position) : this.hierarchy.getDownEdge(position);
+                int neighbour = isForward ? this.hierarchy.getEdgeHead(edge) : this.hierarchy.getEdgeTail(edge);
+                double newDistance = distance + this.hierarchy.getEdgeWeight(edge);
+                if(newDistance < labels.getDistance(neighbour)) {
+                    labels.setLabel(neighbour, newDistance, edge);
+                    labels.heap.push(neighbour, newDistance);
+                }
+            }
+        }
+        query.end(settledNodesNbr);
+        return meetingNode;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Stall-on-demand: a node reached with a higher distance than through an edge coming from a
+     * higher ranked node is not on a shortest up-path, so its edges don't need to be relaxed */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private boolean isStalled(int node, double distance, Labels labels, boolean isForward)
+    {
+        int start = isForward ? this.hierarchy.getDownStart(node) : this.hierarchy.getUpStart(node);
+        int end = isForward ? this.hierarchy.getDownEnd(node) : this.hierarchy.getUpEnd(node);
+        for(int position = start; position < end; position++)
+        {
+            int edge = isForward ? this.hierarchy.getDownEdge(position) : this.hierarchy.getUpEdge(position);
+            int neighbour = isForward ? this.hierarchy.getEdgeTail(edge) : this.hierarchy.getEdgeHead(edge);
+            if(labels.getDistance(neighbour) + this.hierarchy.getEdgeWeight(edge) < distance)
+                return true;
+        }
+        return false;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Labels of one direction of the search, invalidated by a stamp between queries */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private static class Labels
+    {
+        private final double[] distances;
+        private final int[] predecessors, stamps;
+        private final IndexedMinHeap heap;
+        private int stamp;
+        Labels(int nodesNbr)
+        {
+            this.distances = new double[nodesNbr];
+            this.predecessors = new int[nodesNbr];
+            this.stamps = new int[nodesNbr];
+            this.heap = new IndexedMinHeap(nodesNbr);
+        }
+        void reset()
+        {
+            this.heap.clear();
+            if(++this.stamp == 0) {
+                Arrays.fill(this.stamps, 0);
+                this.stamp = 1;
+            }
+        }
+        void setLabel(int node, double distance, int predecessor)
+        {
+            this.distances[node] = distance;
+            this.predecessors[node] = predecessor;
+            this.stamps[node] = this.stamp;
+        }
+        boolean isReached(int node){return this.stamps[node] == this.stamp;}
+        double getDistance(int node){return this.isReached(node) ? this.distances[node] : Double.POSITIVE_INFINITY;}
+        int getPredecessor(int node){return this.predecessors[node];}
+    }
+}
@@ -0,0 +1,205 @@
+package org.TransportModel.routing.ch;
+
+import org.TransportModel.network.CompactGraph;
+
+import java.io.*;
+import java.util.Arrays;
+
+///////////////////////////////////////////////////////////////////////////////////////////////////
+/** ContractionHierarchy is the result of the contraction of a CompactGraph: a rank per node and a
+ * set of edges made of the original arcs and of the shortcuts added during the contraction.
+ * A shortcut replaces two edges (u,v) and (v,w) where v has a lower rank than u and w.
+ * Edges are split into an upward forward star and a downward backward star for the queries */
+///////////////////////////////////////////////////////////////////////////////////////////////////
+public class ContractionHierarchy
+{
+    private static final int MAGIC = 0x43484731, VERSION = 1;
+    private final CompactGraph graph;
+    private final int[] ranks;
+    //Edges: edgeArc >= 0 for an original arc, -1 for a shortcut of edgeChild1 then edgeChild2
+    private final int[] edgeTail, edgeHead, edgeArc, edgeChild1, edgeChild2;
+    private final double[] edgeWeight;
+    //Upward edges leaving a node, downward edges entering a node (both from the lower ranked node)
+    private final int[] firstUp, upEdges, firstDown, downEdges;
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /**                                        Constructor                                           */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    ContractionHierarchy(CompactGraph graph, int[] ranks, int[] edgeTail, int[] edgeHead, double[] edgeWeight,
+                         int[] edgeArc, int[] edgeChild1, int[] edgeChild2)
+    {
+        this.graph = graph;
+        this.ranks = ranks;
+        this.edgeTail = edgeTail;
+        this.edgeHead = edgeHead;
+        this.edgeWeight = edgeWeight;
+        this.edgeArc = edgeArc;
+        this.edgeChild1 = edgeChild1;
+        this.edgeChild2 = edgeChild2;
+        int nodesNbr = ranks.length;
+        this.firstUp = new int[nodesNbr + 1];
+        this.firstDown = new int[nodesNbr + 1];
+        for(int edge = 0; edge < edgeTail.length; edge++)
+        {
+            if(this.isUpward(edge))
+                this.firstUp[edgeTail[edge] + 1]++;
+            else
+                this.firstDown[edgeHead[edge] + 1]++;
+        }
+        for(int node = 0; node < nodesNbr; node++)
+        {
+            this.firstUp[node + 1] += this.firstUp[node];
+            this.firstDown[node + 1] += this.firstDown[node];
+        }
+        this.upEdges = new int[this.firstUp[nodesNbr]];
+        this.downEdges = new int[this.firstDown[nodesNbr]];
+        int[] nextUp = new int[nodesNbr], nextDown = new int[nodesNbr];
+        System.arraycopy(this.firstUp, 0, nextUp, 0, nodesNbr);
+        System.arraycopy(this.firstDown, 0, nextDown, 0, nodesNbr);
+        for(int edge = 0; edge < edgeTail.length; edge++)
+        {
+            if(this.isUpward(edge))
+                this.upEdges[nextUp[edgeTail[edge]]++] = edge;
+            else
+                this.downEdges[nextDown[edgeHead[edge]]++] = edge;
+        }
+    }
+    private boolean isUpward(int edge){return this.ranks[this.edgeTail[edge]] < this.ranks[this.edgeHead[edge]];}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /**                                          Getters                                             */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public CompactGraph getGraph(){return this.graph;}
+    public int getNodesNbr(){return this.ranks.length;}
+    public int getRank(int node){return this.ranks[node];}
+    public int getEdgesNbr(){return this.edgeTail.length;}
+    public int getShortcutsNbr(){int shortcuts = 0;for(int arc : this.edgeArc) if(arc < 0) shortcuts++;return shortcuts;}
+    public int getEdgeTail(int edge){return this.edgeTail[edge];}
+    public int getEdgeHead(int edge){return this.edgeHead[edge];}
+    public double getEdgeWeight(int edge){return this.edgeWeight[edge];}
+    public boolean isShortcut(int edge){return this.edgeArc[edge] < 0;}
+    int getUpStart(int node){return this.firstUp[node];}
+    int getUpEnd(int node){return this.firstUp[node + 1];}
+    int getUpEdge(int position){return this.upEdges[position];}
+    int getDownStart(int node){return this.firstDown[node];}
+    int getDownEnd(int node){return this.firstDown[node + 1];}
+    int getDownEdge(int position){return this.downEdges[position];}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Replaces an edge by the original arcs it stands for
+     * @param edge the edge to unpack
+     * @param arcs the array receiving the arcs, in path order, from the given position
+     * @return the position following the last written arc */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    int unpack(int edge, int[] arcs, int position)
+    {
+        int[] stack = new int[16];
+        int size = 0;
+        stack[size++] = edge;
+        while(size > 0)
+        {
+            int current = stack[--size];
+            if(this.edgeArc[current] >= 0) {
+                arcs[position++] = this.edgeArc[current];
+                continue;
+            }
+            if(size + 2 > stack.length)
+                stack = Arrays.copyOf(stack, stack.length * 2);
+            //Second child pushed first so that the first one is unpacked first
+            stack[size++] = this.edgeChild2[current];
+            stack[size++] = this.edgeChild1[current];
+        }
+        return position;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Counts the original arcs an edge stands for */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    int getArcsNbr(int edge)
+    {
+        int[] stack = new int[16];
+        int size = 0, arcsNbr = 0;
+        stack[size++] = edge;
+        while(size > 0)
+        {
+            int current = stack[--size];
+            if(this.edgeArc[current] >= 0) {
+                arcsNbr++;
+                continue;
+            }
+            if(size + 2 > stack.length)
+                stack = Arrays.copyOf(stack, stack.length * 2);
+            stack[size++] = this.edgeChild2[current];
+            stack[size++] = this.edgeChild1[current];
+        }
+        return arcsNbr;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Computes a signature of the structure and travel times of a graph, used to check that a saved
+     * hierarchy is loaded with the graph it was built from */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public static long signature(CompactGraph graph)
+    {
+        long signature = 31L * graph.getNodesNbr() + graph.getArcsNbr();
+        for(int arc = 0; arc < graph.getArcsNbr(); arc++)
+        {
+            signature = signature * 0x9E3779B97F4A7C15L + graph.getArcTail(arc);
+            signature = signature * 0x9E3779B97F4A7C15L + graph.getArcHead(arc);
+            signature = signature * 0x9E3779B97F4A7C15L + Double.doubleToLongBits(graph.getArcTimeInS(arc));
+        }
+        return signature;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Writes the hierarchy to a binary file
+     * @param file the file to create or replace */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public void write(File file) throws IOException
+    {
+        try(DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeLong(signature(this.graph));
+            output.writeInt(this.ranks.length);
+            for(int rank : this.ranks)
+                output.writeInt(rank);
+            output.writeInt(this.edgeTail.length);
+            for(int edge = 0; edge < this.edgeTail.length; edge++)
+            {
+                output.writeInt(this.edgeTail[edge]);
+                output.writeInt(this.edgeHead[edge]);
+                output.writeDouble(this.edgeWeight[edge]);
+                output.writeInt(this.edgeArc[edge]);
+                output.writeInt(this.edgeChild1[edge]);
+                output.writeInt(this.edgeChild2[edge]);
+            }
+        }
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Reads a hierarchy written by write
+     * @param file the file to read
+     * @param graph the graph the hierarchy was built from
+     * @throws IOException if the file is not a hierarchy of this graph */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public static ContractionHierarchy read(File file, CompactGraph graph) throws IOException
+    {
+        try(DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+            if(input.readInt() != MAGIC || input.readInt() != VERSION)
+                throw new IOException("Not a contraction hierarchy file: " + file);
+            if(input.readLong() != signature(graph) || input.readInt() != graph.getNodesNbr())
+                throw new IOException("Contraction hierarchy built from another graph: " + file);
+            int[] ranks = new int[graph.getNodesNbr()];
+            for(int node = 0; node < ranks.length; node++)
+                ranks[node] = input.readInt();
+            int edgesNbr = input.readInt();
+            int[] tails = new int[edgesNbr], heads = new int[edgesNbr], arcs = new int[edgesNbr];
+            int[] children1 = new int[edgesNbr], children2 = new int[edgesNbr];
+            double[] weights = new double[edgesNbr];
+            for(int edge = 0; edge < edgesNbr; edge++)
+            {
+                tails[edge] = input.readInt();
+                heads[edge] = input.readInt();
+                weights[edge] = input.readDouble();
+                arcs[edge] = input.readInt();
+                children1[edge] = input.readInt();
+                children2[edge] = input.readInt();
+            }
+            return new ContractionHierarchy(graph, ranks, tails, heads, weights, arcs, children1, children2);
+        }
+    }
+}
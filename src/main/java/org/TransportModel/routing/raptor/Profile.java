@@ -0,0 +1,74 @@
+package org.TransportModel.routing.raptor;
+
+///////////////////////////////////////////////////////////////////////////////////////////////////
+/** Profile holds the result of a range query: for every stop, the journeys from the source leaving
+ * within the window, sorted by departure time. A journey is only kept if it arrives strictly
+ * earlier than every journey leaving later, so the arrival times are sorted too. The stops reached
+ * by walking from the source are reachable at any time and keep their walking time aside */
+///////////////////////////////////////////////////////////////////////////////////////////////////
+public class Profile
+{
+    private final int[] stopStarts, departures, arrivals, walkTimes;
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /**                                        Constructor                                           */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    Profile(int[] stopStarts, int[] departures, int[] arrivals, int[] walkTimes)
+    {
+        this.walkTimes = walkTimes;
+        this.stopStarts = stopStarts;
+        this.departures = departures;
+        this.arrivals = arrivals;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /**                                          Getters                                             */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public int getStopsNbr(){return this.stopStarts.length - 1;}
+    public int getJourneysNbr(int stop){return this.stopStarts[stop + 1] - this.stopStarts[stop];}
+    public int getDepartureTimeInS(int stop, int journey){return this.departures[this.stopStarts[stop] + journey];}
+    public int getArrivalTimeInS(int stop, int journey){return this.arrivals[this.stopStarts[stop] + journey];}
+    public int getWalkTimeInS(int stop){return this.walkTimes[stop];}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Finds the earliest arrival at a stop when being ready to leave the source at a given time
+     * @return the arrival time in seconds, UNREACHED if the stop can't be walked to and no journey of
+     *         the window leaves after this time */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public int getEarliestArrival(int stop, int departureTimeInS)
+    {
+        int low = this.stopStarts[stop], high = this.stopStarts[stop + 1];
+        while(low < high)
+        {
+            int middle = (low + high) >>> 1;
+            if(this.departures[middle] < departureTimeInS)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        int arrivalTime = low < this.stopStarts[stop + 1] ? this.arrivals[low] : RaptorRouter.UNREACHED;
+        //If the stop is walked to from the source:can leave at any time
+        if(this.walkTimes[stop] != RaptorRouter.UNREACHED)
+            arrivalTime = Math.min(arrivalTime, departureTimeInS + this.walkTimes[stop]);
+        return arrivalTime;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Averages the travel time to a stop, waiting time at the source included, over regular
+     * departure times, as a departure-time-dependent transit skim
+     * @param startInS the first departure time
+     * @param endInS the departure times are before this time
+     * @param stepInS the interval between two departure times
+     * @return the average travel time in seconds, infinite if the stop can't be reached from one of
+     *         the departure times */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public double getAverageTravelTime(int stop, int startInS, int endInS, int stepInS)
+    {
+        long totalTime = 0;
+        int departuresNbr = 0;
+        for(int departureTime = startInS; departureTime < endInS; departureTime += stepInS, departuresNbr++)
+        {
+            int arrivalTime = this.getEarliestArrival(stop, departureTime);
+            if(arrivalTime == RaptorRouter.UNREACHED)
+                return Double.POSITIVE_INFINITY;
+            totalTime += arrivalTime - departureTime;
+        }
+        return departuresNbr == 0 ? Double.POSITIVE_INFINITY : (double) totalTime / departuresNbr;
+    }
+}
@@ -0,0 +1,314 @@
+package org.TransportModel.routing.raptor;
+
+import org.TransportModel.metrics.Metrics;
+
+import java.util.Arrays;
+
+///////////////////////////////////////////////////////////////////////////////////////////////////
+/** RaptorRouter computes earliest arrival times on a Timetable with RAPTOR (Delling, Pajor and
+ * Werneck): round k scans, route by route, the routes serving the stops improved by round k-1,
+ * and gives the earliest arrivals with at most k trips. The range queries run RAPTOR for every
+ * departure of a window, from the latest to the earliest, keeping the labels between runs so that
+ * each run only explores what an earlier departure improves (rRAPTOR).
+ * Times are in seconds since midnight of the service day. A RaptorRouter is thread safe: every
+ * thread reuses its own labels between queries
+ * The queries are the raptor.query and raptor.profile queries of the metrics, their settled nodes
+ * being the stops whose arrival improved */
+///////////////////////////////////////////////////////////////////////////////////////////////////
+public class RaptorRouter
+{
+    public static final int UNREACHED = Integer.MAX_VALUE;
+    public static final int DEFAULT_MAX_TRIPS = 8;
+    private static final Metrics.QueryType QUERY = Metrics.queryType("raptor.query"), PROFILE = Metrics.queryType("raptor.profile");
+    private final Timetable timetable;
+    private final int maxTrips;
+    private final ThreadLocal<RaptorState> states;
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Creates a router allowing journeys of up to 8 trips
+     * @param timetable the timetable to search */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public RaptorRouter(Timetable timetable)
+    {
+        this(timetable, DEFAULT_MAX_TRIPS);
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Creates a router
+     * @param maxTrips the maximum number of trips of a journey, the number of RAPTOR rounds */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public RaptorRouter(Timetable timetable, int maxTrips)
+    {
+        this.timetable = timetable;
+        this.maxTrips = Math.max(1, maxTrips);
+        this.states = ThreadLocal.withInitial(() -> new RaptorState(timetable, this.maxTrips));
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /**                                          Getters                                             */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public Timetable getTimetable(){return this.timetable;}
+    public int getMaxTrips(){return this.maxTrips;}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Computes the earliest arrival at a stop when leaving a stop at a given time
+     * @return the arrival time in seconds, UNREACHED if the target can't be reached */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public int getEarliestArrival(int sourceStop, int targetStop, int departureTimeInS)
+    {
+        Metrics.Query query = QUERY.start();
+        RaptorState state = this.states.get();
+        state.reset();
+        this.run(state, sourceStop, departureTimeInS, targetStop);
+        query.end(state.improvedStopsNbr);
+        return state.bestArrivals[targetStop];
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Computes the earliest arrival at every stop when leaving a stop at a given time
+     * @return the arrival times in seconds indexed by stop, UNREACHED for unreachable stops */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public int[] getEarliestArrivals(int sourceStop, int departureTimeInS)
+    {
+        Metrics.Query query = QUERY.start();
+        RaptorState state = this.states.get();
+        state.reset();
+        this.run(state, sourceStop, departureTimeInS, -1);
+        query.end(state.improvedStopsNbr);
+        return state.bestArrivals.clone();
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Computes, for every stop, the journeys from a stop leaving within a time window that aren't
+     * dominated by a journey leaving later and arriving as early
+     * @param windowStartInS the earliest departure time from the source
+     * @param windowEndInS the latest departure time from the source
+     * @return the profile of every stop */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public Profile getProfile(int sourceStop, int windowStartInS, int windowEndInS)
+    {
+        Metrics.Query query = PROFILE.start();
+        RaptorState state = this.states.get();
+        state.reset();
+        int[] departureTimes = this.getDepartureTimes(sourceStop, windowStartInS, windowEndInS);
+        ProfileLog log = new ProfileLog();
+        for(int index = departureTimes.length - 1; index >= 0; index--)
+        {
+            state.startRun();
+            this.run(state, sourceStop, departureTimes[index], -1);
+            for(int improved = 0; improved < state.improvedStopsNbr; improved++)
+            {
+                int stop = state.improvedStops[improved];
+                log.add(stop, departureTimes[index], state.bestArrivals[stop]);
+            }
+        }
+        int[] walkTimes = new int[this.timetable.getStopsNbr()];
+        Arrays.fill(walkTimes, UNREACHED);
+        walkTimes[sourceStop] = 0;
+        for(int transfer = this.timetable.getTransfersStart(sourceStop); transfer < this.timetable.getTransfersEnd(sourceStop); transfer++)
+            walkTimes[this.timetable.getTransferStop(transfer)] = this.timetable.getTransferTimeInS(transfer);
+        query.end(log.size);
+        return log.toProfile(walkTimes);
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Finds the times at which leaving a stop allows to catch a trip, at the stop or after a
+     * footpath, within a window
+     * @return the distinct departure times from the stop, sorted */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private int[] getDepartureTimes(int sourceStop, int windowStartInS, int windowEndInS)
+    {
+        int[] departureTimes = new int[16];
+        int departuresNbr = 0;
+        Timetable timetable = this.timetable;
+        for(int transfer = timetable.getTransfersStart(sourceStop) - 1; transfer < timetable.getTransfersEnd(sourceStop); transfer++)
+        {
+            boolean walking = transfer >= timetable.getTransfersStart(sourceStop);
+            int stop = walking ? timetable.getTransferStop(transfer) : sourceStop;
+            int walkTime = walking ? timetable.getTransferTimeInS(transfer) : 0;
+            for(int index = timetable.getStopRoutesStart(stop); index < timetable.getStopRoutesEnd(stop); index++)
+            {
+                int route = timetable.getStopRoute(index), position = timetable.getStopRoutePosition(index);
+                if(position == timetable.getRouteStopsNbr(route) - 1)
+                    continue;
+                for(int trip = 0; trip < timetable.getRouteTripsNbr(route); trip++)
+                {
+                    int departureTime = timetable.getDepartureTimeInS(route, trip, position) - walkTime;
+                    if(departureTime < windowStartInS || departureTime > windowEndInS)
+                        continue;
+                    if(departuresNbr == departureTimes.length)
+                        departureTimes = Arrays.copyOf(departureTimes, departuresNbr * 2);
+                    departureTimes[departuresNbr++] = departureTime;
+                }
+            }
+        }
+        return Arrays.stream(departureTimes, 0, departuresNbr).sorted().distinct().toArray();
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Runs the rounds of RAPTOR from a departure, on labels reset or left by a later departure
+     * @param targetStop the stop whose arrival prunes the search, -1 to search every stop */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private void run(RaptorState state, int sourceStop, int departureTimeInS, int targetStop)
+    {
+        Timetable timetable = this.timetable;
+        state.clearMarks();
+        state.improve(0, sourceStop, departureTimeInS, targetStop);
+        this.walk(state, 0, targetStop);
+        for(int round = 1; round <= this.maxTrips && state.markedStopsNbr > 0; round++)
+        {
+            //Queue the routes of the marked stops, from the first marked stop of each route
+            for(int marked = 0; marked < state.markedStopsNbr; marked++)
+            {
+                int stop = state.markedStops[marked];
+                for(int index = timetable.getStopRoutesStart(stop); index < timetable.getStopRoutesEnd(stop); index++)
+                    state.queueRoute(timetable.getStopRoute(index), timetable.getStopRoutePosition(index));
+            }
+            state.clearMarks();
+            int[] previousArrivals = state.arrivals[round - 1], arrivals = state.arrivals[round];
+            for(int stop = 0; stop < arrivals.length; stop++)
+                arrivals[stop] = Math.min(arrivals[stop], previousArrivals[stop]);
+            //Scan the queued routes
+            for(int queued = 0; queued < state.queuedRoutesNbr; queued++)
+            {
+                int route = state.queuedRoutes[queued];
+                int trip = -1;
+                for(int position = state.queuedPositions[route]; position < timetable.getRouteStopsNbr(route); position++)
+                {
+                    int stop = timetable.getRouteStop(route, position);
+                    if(trip >= 0)
+                        state.improve(round, stop, timetable.getArrivalTimeInS(route, trip, position), targetStop);
+                    int boardingTime = previousArrivals[stop];
+                    if(boardingTime == UNREACHED)
+                        continue;
+                    if(trip < 0)
+                        trip = timetable.getFirstTrip(route, position, boardingTime);
+                    else
+                        while(trip > 0 && timetable.getDepartureTimeInS(route, trip - 1, position) >= boardingTime)
+                            trip--;
+                }
+                state.queuedPositions[route] = -1;
+            }
+            state.queuedRoutesNbr = 0;
+            this.walk(state, round, targetStop);
+        }
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Relaxes the footpaths of the stops marked in a round, the footpaths not being chained */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private void walk(RaptorState state, int round, int targetStop)
+    {
+        Timetable timetable = this.timetable;
+        int markedStopsNbr = state.markedStopsNbr;
+        for(int marked = 0; marked < markedStopsNbr; marked++)
+        {
+            int stop = state.markedStops[marked];
+            int arrivalTime = state.arrivals[round][stop];
+            for(int transfer = timetable.getTransfersStart(stop); transfer < timetable.getTransfersEnd(stop); transfer++)
+                state.improve(round, timetable.getTransferStop(transfer), arrivalTime + timetable.getTransferTimeInS(transfer), targetStop);
+        }
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** The labels of the queries of a thread */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private static class RaptorState
+    {
+        private final int[][] arrivals;
+        private final int[] bestArrivals, markedStops, queuedRoutes, queuedPositions, improvedStops, markStamps, runStamps;
+        private int markedStopsNbr, queuedRoutesNbr, improvedStopsNbr, markStamp, runStamp;
+        RaptorState(Timetable timetable, int maxTrips)
+        {
+            int stopsNbr = timetable.getStopsNbr();
+            this.arrivals = new int[maxTrips + 1][stopsNbr];
+            this.bestArrivals = new int[stopsNbr];
+            this.markedStops = new int[stopsNbr];
+            this.improvedStops = new int[stopsNbr];
+            this.markStamps = new int[stopsNbr];
+            this.runStamps = new int[stopsNbr];
+            this.queuedRoutes = new int[timetable.getRoutesNbr()];
+            this.queuedPositions = new int[timetable.getRoutesNbr()];
+            Arrays.fill(this.queuedPositions, -1);
+        }
+        void reset()
+        {
+            for(int[] roundArrivals : this.arrivals)
+                Arrays.fill(roundArrivals, UNREACHED);
+            Arrays.fill(this.bestArrivals, UNREACHED);
+            this.startRun();
+        }
+        void startRun()
+        {
+            this.improvedStopsNbr = 0;
+            if(++this.runStamp == 0) {
+                Arrays.fill(this.runStamps, 0);
+                this.runStamp = 1;
+            }
+        }
+        void clearMarks()
+        {
+            this.markedStopsNbr = 0;
+            if(++this.markStamp == 0) {
+                Arrays.fill(this.markStamps, 0);
+                this.markStamp = 1;
+            }
+        }
+        ///////////////////////////////////////////////////////////////////////////////////////////////////
+        /** Sets the arrival at a stop in a round if it is earlier than every known arrival at the stop
+         * and at the target, and marks the stop */
+        ///////////////////////////////////////////////////////////////////////////////////////////////////
+        void improve(int round, int stop, int arrivalTime, int targetStop)
+        {
+            if(arrivalTime >= this.bestArrivals[stop] || (targetStop >= 0 && arrivalTime >= this.bestArrivals[targetStop]))
+                return;
+            this.arrivals[round][stop] = arrivalTime;
+            this.bestArrivals[stop] = arrivalTime;
+            if(this.markStamps[stop] != this.markStamp) {
+                this.markStamps[stop] = this.markStamp;
+                this.markedStops[this.markedStopsNbr++] = stop;
+            }
+            if(this.runStamps[stop] != this.runStamp) {
+                this.runStamps[stop] = this.runStamp;
+                this.improvedStops[this.improvedStopsNbr++] = stop;
+            }
+        }
+        void queueRoute(int route, int position)
+        {
+            if(this.queuedPositions[route] < 0)
+                this.queuedRoutes[this.queuedRoutesNbr++] = route;
+            if(this.queuedPositions[route] < 0 || position < this.queuedPositions[route])
+                this.queuedPositions[route] = position;
+        }
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** The journeys found by a range query, in the order of the runs */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private static class ProfileLog
+    {
+        private int[] stops = new int[1024], departures = new int[1024], arrivals = new int[1024];
+        private int size;
+        void add(int stop, int departureTime, int arrivalTime)
+        {
+            if(this.size == this.stops.length) {
+                this.stops = Arrays.copyOf(this.stops, this.size * 2);
+                this.departures = Arrays.copyOf(this.departures, this.size * 2);
+                this.arrivals = Arrays.copyOf(this.arrivals, this.size * 2);
+            }
+            this.stops[this.size] = stop;
+            this.departures[this.size] = departureTime;
+            this.arrivals[this.size++] = arrivalTime;
+        }
+        ///////////////////////////////////////////////////////////////////////////////////////////////////
+        /** Groups the journeys by stop, the runs going from the latest departure to the earliest */
+        ///////////////////////////////////////////////////////////////////////////////////////////////////
+        Profile toProfile(int[] walkTimes)
+        {
+            int stopsNbr = walkTimes.length;
+            int[] stopStarts = new int[stopsNbr + 1];
+            for(int journey = 0; journey < this.size; journey++)
+                stopStarts[this.stops[journey] + 1]++;
+            for(int stop = 0; stop < stopsNbr; stop++)
+                stopStarts[stop + 1] += stopStarts[stop];
+            int[] departures = new int[this.size], arrivals = new int[this.size];
+            int[] nextJourneys = Arrays.copyOfRange(stopStarts, 1, stopsNbr + 1);
+            for(int journey = 0; journey < this.size; journey++)
+            {
+                int index = --nextJourneys[this.stops[journey]];
+                departures[index] = this.departures[journey];
+                arrivals[index] = this.arrivals[journey];
+            }
+            return new Profile(stopStarts, departures, arrivals, walkTimes);
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package org.TransportModel.routing.raptor;
+
+import org.TransportModel.network.io.StopTimesTable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+///////////////////////////////////////////////////////////////////////////////////////////////////
+/** Timetable holds the trips of a GTFS feed in the flat arrays scanned by RAPTOR.
+ * The trips are grouped in routes of trips serving the same stops in the same order and never
+ * overtaking each other, so that the trips of a route are sorted by time at every stop. A GTFS
+ * route with several stop patterns, or whose trips overtake, gives several routes.
+ * The stop times of a route are stored trip after trip, and every stop knows the routes serving
+ * it and its footpaths. Calendars are not read: every trip is considered to run */
+///////////////////////////////////////////////////////////////////////////////////////////////////
+public class Timetable
+{
+    private final String[] stopIds, routeIds, tripIds;
+    private final HashMap<String,Integer> stopIndices;
+    private final int[] routeStopsStarts, routeStops, routeTripsStarts, routeTimesStarts, arrivals, departures;
+    private final int[] stopRoutesStarts, stopRoutes, stopRoutePositions;
+    private final int[] transfersStarts, transferStops, transferTimes;
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Builds the routes from the stop times of the trips
+     * @param stopTimes the stop times of every trip, giving the stops of the timetable
+     * @param tripRouteIds the GTFS route of every trip, indexed like the trips of the stop times
+     * @param transferFromStops the departure stop of every footpath, indexed like the stop times stops
+     * @param transferToStops the arrival stop of every footpath
+     * @param transferTimesInS the walking time of every footpath */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public Timetable(StopTimesTable stopTimes, String[] tripRouteIds, int[] transferFromStops, int[] transferToStops, int[] transferTimesInS)
+    {
+        //Stops
+        int stopsNbr = stopTimes.getStopsNbr();
+        this.stopIds = new String[stopsNbr];
+        this.stopIndices = new HashMap<>(stopsNbr * 2);
+        for(int stop = 0; stop < stopsNbr; stop++)
+        {
+            this.stopIds[stop] = stopTimes.getStopId(stop);
+            this.stopIndices.put(this.stopIds[stop], stop);
+        }
+        //Group the trips by GTFS route and stop pattern, then split the groups into routes without overtaking
+        LinkedHashMap<Pattern,List<Integer>> patterns = new LinkedHashMap<>();
+        for(int trip = 0; trip < stopTimes.getTripsNbr(); trip++)
+        {
+            if(stopTimes.getTripEnd(trip) - stopTimes.getTripStart(trip) < 2)
+                continue;
+            patterns.computeIfAbsent(new Pattern(tripRouteIds[trip], stopTimes, trip), pattern -> new ArrayList<>()).add(trip);
+        }
+        List<String> routeIds = new ArrayList<>();
+        List<int[]> routes = new ArrayList<>();
+        for(Map.Entry<Pattern,List<Integer>> pattern : patterns.entrySet())
+            for(int[] trips : splitOvertakingTrips(stopTimes, pattern.getValue()))
+            {
+                routeIds.add(pattern.getKey().routeId);
+                routes.add(trips);
+            }
+        //Routes arrays
+        int routesNbr = routes.size();
+        this.routeIds = routeIds.toArray(new String[0]);
+        this.routeStopsStarts = new int[routesNbr + 1];
+        this.routeTripsStarts = new int[routesNbr + 1];
+        this.routeTimesStarts = new int[routesNbr + 1];
+        for(int route = 0; route < routesNbr; route++)
+        {
+            int[] trips = routes.get(route);
+            int routeStopsNbr = stopTimes.getTripEnd(trips[0]) - stopTimes.getTripStart(trips[0]);
+            this.routeStopsStarts[route + 1] = this.routeStopsStarts[route] + routeStopsNbr;
+            this.routeTripsStarts[route + 1] = this.routeTripsStarts[route] + trips.length;
+            this.routeTimesStarts[route + 1] = this.routeTimesStarts[route] + routeStopsNbr * trips.length;
+        }
+        this.routeStops = new int[this.routeStopsStarts[routesNbr]];
+        this.tripIds = new String[this.routeTripsStarts[routesNbr]];
+        this.arrivals = new int[this.routeTimesStarts[routesNbr]];
+        this.departures = new int[this.routeTimesStarts[routesNbr]];
+        for(int route = 0; route < routesNbr; route++)
+        {
+            int[] trips = routes.get(route);
+            int firstRow = stopTimes.getTripStart(trips[0]);
+            for(int position = 0; position < this.getRouteStopsNbr(route); position++)
+                this.routeStops[this.routeStopsStarts[route] + position] = stopTimes.getStop(firstRow + position);
+            int time = this.routeTimesStarts[route];
+            for(int trip = 0; trip < trips.length; trip++)
+            {
+                this.tripIds[this.routeTripsStarts[route] + trip] = stopTimes.getTripId(trips[trip]);
+                for(int row = stopTimes.getTripStart(trips[trip]); row < stopTimes.getTripEnd(trips[trip]); row++, time++)
+                {
+                    this.arrivals[time] = stopTimes.getArrivalTimeInS(row);
+                    this.departures[time] = stopTimes.getDepartureTimeInS(row);
+                }
+            }
+        }
+        //Routes of every stop
+        this.stopRoutesStarts = new int[stopsNbr + 1];
+        for(int stop : this.routeStops)
+            this.stopRoutesStarts[stop + 1]++;
+        for(int stop = 0; stop < stopsNbr; stop++)
+            this.stopRoutesStarts[stop + 1] += this.stopRoutesStarts[stop];
+        this.stopRoutes = new int[this.routeStops.length];
+        this.stopRoutePositions = new int[this.routeStops.length];
+        int[] nextStopRoutes = Arrays.copyOf(this.stopRoutesStarts, stopsNbr);
+        for(int route = 0; route < routesNbr; route++)
+            for(int position = 0; position < this.getRouteStopsNbr(route); position++)
+            {
+                int index = nextStopRoutes[this.getRouteStop(route, position)]++;
+                this.stopRoutes[index] = route;
+                this.stopRoutePositions[index] = position;
+            }
+        //Footpaths of every stop
+        this.transfersStarts = new int[stopsNbr + 1];
+        for(int fromStop : transferFromStops)
+            this.transfersStarts[fromStop + 1]++;
+        for(int stop = 0; stop < stopsNbr; stop++)
+            this.transfersStarts[stop + 1] += this.transfersStarts[stop];
+        this.transferStops = new int[transferFromStops.length];
+        this.transferTimes = new int[transferFromStops.length];
+        int[] nextTransfers = Arrays.copyOf(this.transfersStarts, stopsNbr);
+        for(int transfer = 0; transfer < transferFromStops.length; transfer++)
+        {
+            int index = nextTransfers[transferFromStops[transfer]]++;
+            this.transferStops[index] = transferToStops[transfer];
+            this.transferTimes[index] = transferTimesInS[transfer];
+        }
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Splits trips of the same pattern into groups where no trip overtakes another
+     * @return the groups, each sorted by time at every stop */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private static List<int[]> splitOvertakingTrips(StopTimesTable stopTimes, List<Integer> trips)
+    {
+        trips.sort((trip1, trip2) -> Integer.compare(stopTimes.getDepartureTimeInS(stopTimes.getTripStart(trip1)),
+                stopTimes.getDepartureTimeInS(stopTimes.getTripStart(trip2))));
+        List<List<Integer>> groups = new ArrayList<>();
+        for(int trip : trips)
+        {
+            List<Integer> tripGroup = null;
+            for(List<Integer> group : groups)
+                if(isNotBefore(stopTimes, trip, group.get(group.size() - 1))) {
+                    tripGroup = group;
+                    break;
+                }
+            if(tripGroup == null)
+                groups.add(tripGroup = new ArrayList<>());
+            tripGroup.add(trip);
+        }
+        List<int[]> routes = new ArrayList<>(groups.size());
+        for(List<Integer> group : groups)
+            routes.add(group.stream().mapToInt(Integer::intValue).toArray());
+        return routes;
+    }
+    private static boolean isNotBefore(StopTimesTable stopTimes, int trip, int previousTrip)
+    {
+        int row = stopTimes.getTripStart(trip), previousRow = stopTimes.getTripStart(previousTrip);
+        for(; row < stopTimes.getTripEnd(trip); row++, previousRow++)
+            if(stopTimes.getArrivalTimeInS(row) < stopTimes.getArrivalTimeInS(previousRow)
+                    || stopTimes.getDepartureTimeInS(row) < stopTimes.getDepartureTimeInS(previousRow))
+                return false;
+        return true;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /**                                       Stops Getters                                          */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public int getStopsNbr(){return this.stopIds.length;}
+    public String getStopId(int stop){return this.stopIds[stop];}
+    public int getStopIndex(String stopId){Integer index = this.stopIndices.get(stopId);return index == null ? -1 : index;}
+    public int getStopRoutesStart(int stop){return this.stopRoutesStarts[stop];}
+    public int getStopRoutesEnd(int stop){return this.stopRoutesStarts[stop + 1];}
+    public int getStopRoute(int index){return this.stopRoutes[index];}
+    public int getStopRoutePosition(int index){return this.stopRoutePositions[index];}
+    public int getTransfersStart(int stop){return this.transfersStarts[stop];}
+    public int getTransfersEnd(int stop){return this.transfersStarts[stop + 1];}
+    public int getTransferStop(int index){return this.transferStops[index];}
+    public int getTransferTimeInS(int index){return this.transferTimes[index];}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /**                                       Routes Getters                                         */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public int getRoutesNbr(){return this.routeIds.length;}
+    public String getRouteId(int route){return this.routeIds[route];}
+    public int getRouteStopsNbr(int route){return this.routeStopsStarts[route + 1] - this.routeStopsStarts[route];}
+    public int getRouteStop(int route, int position){return this.routeStops[this.routeStopsStarts[route] + position];}
+    public int getRouteTripsNbr(int route){return this.routeTripsStarts[route + 1] - this.routeTripsStarts[route];}
+    public String getTripId(int route, int trip){return this.tripIds[this.routeTripsStarts[route] + trip];}
+    public int getArrivalTimeInS(int route, int trip, int position){return this.arrivals[this.getTimeIndex(route, trip, position)];}
+    public int getDepartureTimeInS(int route, int trip, int position){return this.departures[this.getTimeIndex(route, trip, position)];}
+    private int getTimeIndex(int route, int trip, int position){return this.routeTimesStarts[route] + trip * this.getRouteStopsNbr(route) + position;}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Finds the first trip of a route leaving a stop of the route at or after a time
+     * @param position the position of the stop in the route
+     * @return the trip, -1 if every trip has left */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public int getFirstTrip(int route, int position, int timeInS)
+    {
+        int low = 0, high = this.getRouteTripsNbr(route);
+        while(low < high)
+        {
+            int middle = (low + high) >>> 1;
+            if(this.getDepartureTimeInS(route, middle, position) < timeInS)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low < this.getRouteTripsNbr(route) ? low : -1;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** A GTFS route with the ordered stops of a trip */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private static class Pattern
+    {
+        private final String routeId;
+        private final int[] stops;
+        private final int hash;
+        Pattern(String routeId, StopTimesTable stopTimes, int trip)
+        {
+            this.routeId = routeId;
+            this.stops = new int[stopTimes.getTripEnd(trip) - stopTimes.getTripStart(trip)];
+            for(int position = 0; position < this.stops.length; position++)
+                this.stops[position] = stopTimes.getStop(stopTimes.getTripStart(trip) + position);
+            this.hash = 31 * routeId.hashCode() + Arrays.hashCode(this.stops);
+        }
+        @Override
+        public int hashCode(){return this.hash;}
+        @Override
+        public boolean equals(Object object)
+        {
+            if(!(object instanceof Pattern))
+                return false;
+            Pattern pattern = (Pattern) object;
+            return this.routeId.equals(pattern.routeId) && Arrays.equals(this.stops, pattern.stops);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package org.TransportModel.skim;
+
+import org.TransportModel.Generation.Zone;
+import org.TransportModel.metrics.Metrics;
+import org.TransportModel.network.CompactGraph;
+import org.TransportModel.network.spatial.NodeIndex;
+import org.TransportModel.routing.GreatCircle;
+import org.TransportModel.routing.Router;
+import org.TransportModel.routing.SearchState;
+import org.locationtech.jts.geom.Coordinate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+///////////////////////////////////////////////////////////////////////////////////////////////////
+/** SkimBuilder computes the zone-to-zone travel time matrix of a set of zones on a network
+ * Each zone is connected to the network node nearest to its center, the access and egress times
+ * between the center and this node being covered at a connector speed. On a multimodal graph the
+ * zones are connected to the nodes left and reached by the modes of the router.
+ * The one-to-all searches of the origins are spread over all the cores by the fork/join pool */
+///////////////////////////////////////////////////////////////////////////////////////////////////
+public class SkimBuilder
+{
+    public static final double DEFAULT_CONNECTOR_SPEED_IN_MS = 5 * (1000.0 / 3600.0);
+    private final Router router;
+    private final List<Zone> zones;
+    private final int[] zoneNodes;
+    private final double[] connectorTimes;
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Connects the zones to the graph of a router at the default connector speed
+     * @param router the router giving the travel times between nodes
+     * @param zones the zones of the matrix, in row and column order */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public SkimBuilder(Router router, List<Zone> zones)
+    {
+        this(router, zones, DEFAULT_CONNECTOR_SPEED_IN_MS);
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Connects the zones to the graph of a router
+     * @param connectorSpeedInMS the speed between a zone center and its node, infinite to ignore it */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public SkimBuilder(Router router, List<Zone> zones, double connectorSpeedInMS)
+    {
+        this.router = router;
+        this.zones = new ArrayList<>(zones);
+        this.zoneNodes = new int[zones.size()];
+        this.connectorTimes = new double[zones.size()];
+        CompactGraph graph = router.getGraph();
+        int modeMask = router.getModeMask();
+        NodeIndex nodeIndex = new NodeIndex(graph, node -> graph.hasOutArc(node, modeMask) && graph.hasInArc(node, modeMask));
+        IntStream.range(0, zones.size()).parallel().forEach(zone -> this.connectZone(zone, nodeIndex, connectorSpeedInMS));
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Finds the node nearest to the center of a zone among the nodes that can be left and reached */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private void connectZone(int zone, NodeIndex nodeIndex, double connectorSpeedInMS)
+    {
+        CompactGraph graph = nodeIndex.getGraph();
+        Coordinate center = this.zones.get(zone).getCenter();
+        int nearestNode = nodeIndex.getNearestNode(center.x, center.y);
+        double nearestDistance = nearestNode < 0 ? Double.POSITIVE_INFINITY : GreatCircle.distanceInM(center.x, center.y, graph.getNodeX(nearestNode), graph.getNodeY(nearestNode));
+        this.zoneNodes[zone] = nearestNode;
+        this.connectorTimes[zone] = connectorSpeedInMS == Double.POSITIVE_INFINITY ? 0 : nearestDistance / connectorSpeedInMS;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /**                                          Getters                                             */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public List<Zone> getZones(){return this.zones;}
+    public int getZoneNode(int zone){return this.zoneNodes[zone];}
+    public int[] getZoneNodes(){return this.zoneNodes;}
+    public double getConnectorTime(int zone){return this.connectorTimes[zone];}
+    public List<String> getZoneIds()
+    {
+        List<String> zoneIds = new ArrayList<>(this.zones.size());
+        for(Zone zone : this.zones)
+            zoneIds.add(zone.getId());
+        return zoneIds;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Computes the travel time matrix in direct memory
+     * @return the matrix of travel times in seconds, infinite between unconnected zones */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public SkimMatrix build()
+    {
+        SkimMatrix skim = SkimMatrix.allocateDirect(this.getZoneIds());
+        this.build(skim);
+        return skim;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Computes the travel time matrix into an existing matrix (a memory-mapped one for example), as
+     * the skim.build phase of the metrics, a row per origin zone
+     * @param skim a matrix with the zones of the builder, in the same order */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public void build(SkimMatrix skim)
+    {
+        if(skim.getZonesNbr() != this.zones.size())
+            throw new IllegalArgumentException("Skim matrix of " + skim.getZonesNbr() + " zones for " + this.zones.size() + " zones");
+        try(Metrics.Phase phase = Metrics.startPhase("skim.build"))
+        {
+            IntStream.range(0, this.zones.size()).parallel().forEach(origin -> skim.setRow(origin, this.computeRow(origin)));
+            phase.addRows(this.zones.size());
+        }
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Computes the travel times from one zone to every zone
+     * @return the times in seconds, indexed by destination zone */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public float[] computeRow(int origin)
+    {
+        float[] row = new float[this.zones.size()];
+        int originNode = this.zoneNodes[origin];
+        if(originNode < 0) {
+            Arrays.fill(row, Float.POSITIVE_INFINITY);
+            return row;
+        }
+        SearchState state = this.router.search(originNode, Double.POSITIVE_INFINITY);
+        for(int destination = 0; destination < row.length; destination++)
+        {
+            int destinationNode = this.zoneNodes[destination];
+            double time = destinationNode < 0 ? Double.POSITIVE_INFINITY : state.getDistance(destinationNode);
+            row[destination] = (float) (this.connectorTimes[origin] + time + this.connectorTimes[destination]);
+        }
+        return row;
+    }
+}
@@ -0,0 +1,132 @@
+package org.TransportModel.skim;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.List;
+
+///////////////////////////////////////////////////////////////////////////////////////////////////
+/** SkimMatrix is a dense zone-to-zone matrix of floats stored outside of the java heap, either in
+ * direct memory or in a memory-mapped file. Cells are stored row by row (origin then destination).
+ * Different threads may write different cells concurrently */
+///////////////////////////////////////////////////////////////////////////////////////////////////
+public class SkimMatrix implements Closeable
+{
+    private final String[] zoneIds;
+    private final HashMap<String,Integer> zoneIndices;
+    private final ByteBuffer bytes;
+    private final FloatBuffer values;
+    private final RandomAccessFile file;
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /**                                        Constructor                                           */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private SkimMatrix(List<String> zoneIds, ByteBuffer bytes, RandomAccessFile file)
+    {
+        this.zoneIds = zoneIds.toArray(new String[0]);
+        this.zoneIndices = new HashMap<>(zoneIds.size() * 2);
+        for(int index = 0; index < this.zoneIds.length; index++)
+            this.zoneIndices.put(this.zoneIds[index], index);
+        this.bytes = bytes;
+        this.values = bytes.order(ByteOrder.nativeOrder()).asFloatBuffer();
+        this.file = file;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Creates a matrix in direct memory, released when the matrix is garbage collected
+     * @param zoneIds the ids of the zones, in row and column order */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public static SkimMatrix allocateDirect(List<String> zoneIds)
+    {
+        return new SkimMatrix(zoneIds, ByteBuffer.allocateDirect(byteSize(zoneIds.size())), null);
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Creates or opens a matrix stored in a file mapped in memory, the operating system paging the
+     * cells in and out as needed. An existing file of the right size keeps its values
+     * @param file the file holding the cells, in native byte order
+     * @param zoneIds the ids of the zones, in row and column order */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public static SkimMatrix map(File file, List<String> zoneIds) throws IOException
+    {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            long size = byteSize(zoneIds.size());
+            randomAccessFile.setLength(size);
+            MappedByteBuffer buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+            return new SkimMatrix(zoneIds, buffer, randomAccessFile);
+        }
+        catch(IOException | RuntimeException e) {
+            randomAccessFile.close();
+            throw e;
+        }
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Computes the number of bytes of a matrix, a buffer being limited to 2GB (about 23000 zones) */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private static int byteSize(int zonesNbr)
+    {
+        long size = (long) zonesNbr * zonesNbr * Float.BYTES;
+        if(size > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Too many zones for a skim matrix: " + zonesNbr);
+        return (int) size;
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /**                                          Getters                                             */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public int getZonesNbr(){return this.zoneIds.length;}
+    public String getZoneId(int index){return this.zoneIds[index];}
+    public int getZoneIndex(String zoneId){Integer index = this.zoneIndices.get(zoneId);return index == null ? -1 : index;}
+    public float get(int origin, int destination){return this.values.get(origin * this.zoneIds.length + destination);}
+    public float get(String origin, String destination){return this.get(this.zoneIndices.get(origin), this.zoneIndices.get(destination));}
+    public boolean isMapped(){return this.file != null;}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Copies a row of the matrix
+     * @param row the array receiving the values from the origin to every destination */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public void getRow(int origin, float[] row)
+    {
+        FloatBuffer view = this.values.duplicate();
+        ((Buffer) view).position(origin * this.zoneIds.length);
+        view.get(row, 0, this.zoneIds.length);
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /**                                          Setters                                             */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public void set(int origin, int destination, float value){this.values.put(origin * this.zoneIds.length + destination, value);}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Replaces a row of the matrix
+     * @param row the values from the origin to every destination */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public void setRow(int origin, float[] row)
+    {
+        FloatBuffer view = this.values.duplicate();
+        ((Buffer) view).position(origin * this.zoneIds.length);
+        view.put(row, 0, this.zoneIds.length);
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Writes the modified cells of a mapped matrix to its file */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public void flush()
+    {
+        if(this.bytes instanceof MappedByteBuffer)
+            ((MappedByteBuffer) this.bytes).force();
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Flushes a mapped matrix and closes its file, the mapping itself is released by the garbage
+     * collector so the matrix must not be used afterwards */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    @Override
+    public void close() throws IOException
+    {
+        if(this.file != null) {
+            this.flush();
+            this.file.close();
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package org.TransportModel.assignment;
+
+import org.TransportModel.Generation.Zone;
+import org.TransportModel.network.CompactGraph;
+import org.TransportModel.network.Link;
+import org.TransportModel.network.Mode;
+import org.TransportModel.network.Network;
+import org.TransportModel.network.Node;
+import org.TransportModel.skim.SkimMatrix;
+import org.junit.Before;
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+///////////////////////////////////////////////////////////////////////////////////////////////////
+/** TrafficAssignmentTest loads 3000 vehicles per hour between two zones linked by a fast and a slow
+ * road of the same capacity, and a faster transit line the vehicles must not use: at equilibrium
+ * both roads carry traffic with equal congested times */
+///////////////////////////////////////////////////////////////////////////////////////////////////
+public class TrafficAssignmentTest
+{
+    private static final double DEMAND = 3000;
+    private CompactGraph graph;
+    private List<Zone> zones;
+    private SkimMatrix demand;
+    private int origin, fast, slow, destination;
+    @Before
+    public void setUp()
+    {
+        Node nodeO = new Node("O", new Coordinate(2.300, 48.800)), nodeD = new Node("D", new Coordinate(2.320, 48.800));
+        Node nodeFast = new Node("F", new Coordinate(2.310, 48.802)), nodeSlow = new Node("S", new Coordinate(2.310, 48.795));
+        Network network = new Network();
+        network.addLink(new Link("OF", nodeO, nodeFast, true, 25, 1000, 750));
+        network.addLink(new Link("FD", nodeFast, nodeD, true, 25, 1000, 750));
+        network.addLink(new Link("OS", nodeO, nodeSlow, true, 25, 1000, 1125));
+        network.addLink(new Link("SD", nodeSlow, nodeD, true, 25, 1000, 1125));
+        Link line = new Link("OD", nodeO, nodeD, false, 50, 100, 1500);
+        line.setMode(Mode.TRANSIT);
+        network.addLink(line);
+        this.graph = new CompactGraph(network);
+        this.origin = this.graph.getNodeIndex("O");
+        this.fast = this.graph.getNodeIndex("F");
+        this.slow = this.graph.getNodeIndex("S");
+        this.destination = this.graph.getNodeIndex("D");
+        Zone zoneO = new Zone("ZO", null), zoneD = new Zone("ZD", null);
+        zoneO.setCenter(nodeO.getCoordinate());
+        zoneD.setCenter(nodeD.getCoordinate());
+        this.zones = Arrays.asList(zoneO, zoneD);
+        this.demand = SkimMatrix.allocateDirect(Arrays.asList("ZO", "ZD"));
+        this.demand.set(0, 1, (float) DEMAND);
+    }
+    @Test
+    public void reachesTheUserEquilibrium()
+    {
+        for(TrafficAssignment.Algorithm algorithm : TrafficAssignment.Algorithm.values())
+        {
+            TrafficAssignment assignment = new TrafficAssignment(this.graph, this.zones, this.demand);
+            assignment.setAlgorithm(algorithm);
+            assignment.setMaxIterations(500);
+            assignment.setTargetRelativeGap(1e-5);
+            assignment.run();
+            assertTrue(algorithm + " gap " + assignment.getRelativeGap(), assignment.getRelativeGap() <= 1e-5);
+            double fastVolume = assignment.getArcVolume(this.graph.findArc(this.origin, this.fast));
+            double slowVolume = assignment.getArcVolume(this.graph.findArc(this.origin, this.slow));
+            assertEquals(DEMAND, fastVolume + slowVolume, 1e-6 * DEMAND);
+            assertTrue(slowVolume > 0 && slowVolume < fastVolume);
+            double fastTime = this.getRouteTime(assignment, this.fast), slowTime = this.getRouteTime(assignment, this.slow);
+            assertEquals(fastTime, slowTime, 1e-3 * fastTime);
+        }
+    }
+    @Test
+    public void keepsTheVehiclesOffTheTransitArcs()
+    {
+        TrafficAssignment assignment = new TrafficAssignment(this.graph, this.zones, this.demand);
+        assignment.run();
+        assertEquals(0, assignment.getArcVolume(this.graph.findArc(this.origin, this.destination)), 0);
+        assertEquals(0, assignment.getUnassignedDemand(), 0);
+    }
+    @Test
+    public void decreasesTheRelativeGap()
+    {
+        TrafficAssignment assignment = new TrafficAssignment(this.graph, this.zones, this.demand);
+        assignment.setAlgorithm(TrafficAssignment.Algorithm.FRANK_WOLFE);
+        assignment.setMaxIterations(20);
+        assignment.setTargetRelativeGap(0);
+        assignment.run();
+        double[] gaps = assignment.getRelativeGaps();
+        assertEquals(20, gaps.length);
+        assertTrue(gaps[gaps.length - 1] < gaps[0]);
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Returns the congested time from the origin to the destination through a middle node */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private double getRouteTime(TrafficAssignment assignment, int middle)
+    {
+        return assignment.getArcTime(this.graph.findArc(this.origin, middle)) + assignment.getArcTime(this.graph.findArc(middle, this.destination));
+    }
+}
@@ -0,0 +1,95 @@
+package org.TransportModel.network;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+///////////////////////////////////////////////////////////////////////////////////////////////////
+/** CompactGraphTest checks the CSR view of a small hand-built network: a one-way link A->B, a
+ * bidirectional link B-C with a shape point and a transit link C->D */
+///////////////////////////////////////////////////////////////////////////////////////////////////
+public class CompactGraphTest
+{
+    private Network network;
+    private CompactGraph graph;
+    private int a, b, c, d;
+    @Before
+    public void setUp()
+    {
+        Node nodeA = new Node("A", new Coordinate(2.30, 48.80)), nodeB = new Node("B", new Coordinate(2.31, 48.80));
+        Node nodeC = new Node("C", new Coordinate(2.31, 48.81)), nodeD = new Node("D", new Coordinate(2.32, 48.81));
+        this.network = new Network();
+        this.network.addLink(new Link("AB", nodeA, nodeB, false, 10, 1000, 700));
+        Link linkBC = new Link("BC", nodeB, nodeC, true, 20, 2000, 1200);
+        linkBC.setShapePoints(new double[]{2.312, 48.805});
+        this.network.addLink(linkBC);
+        Link linkCD = new Link("CD", nodeC, nodeD, false, 15, 500, 750);
+        linkCD.setMode(Mode.TRANSIT);
+        this.network.addLink(linkCD);
+        this.graph = new CompactGraph(this.network);
+        this.a = this.graph.getNodeIndex("A");
+        this.b = this.graph.getNodeIndex("B");
+        this.c = this.graph.getNodeIndex("C");
+        this.d = this.graph.getNodeIndex("D");
+    }
+    @Test
+    public void expandsBidirectionalLinksIntoTwoArcs()
+    {
+        assertEquals(4, this.graph.getNodesNbr());
+        assertEquals(3, this.graph.getLinksNbr());
+        assertEquals(4, this.graph.getArcsNbr());
+        int forward = this.graph.findArc(this.b, this.c), backward = this.graph.findArc(this.c, this.b);
+        assertEquals(this.graph.getArcLinkIndex(forward), this.graph.getArcLinkIndex(backward));
+        assertFalse(this.graph.isArcReversed(forward));
+        assertTrue(this.graph.isArcReversed(backward));
+        assertEquals(-1, this.graph.findArc(this.b, this.a));
+    }
+    @Test
+    public void keepsTheArcsOfANodeContiguous()
+    {
+        for(int node = 0; node < this.graph.getNodesNbr(); node++)
+            for(int arc = this.graph.getOutArcsStart(node); arc < this.graph.getOutArcsEnd(node); arc++)
+                assertEquals(node, this.graph.getArcTail(arc));
+        assertEquals(2, this.graph.getOutDegree(this.c));
+        assertEquals(2, this.graph.getInDegree(this.b));
+        assertEquals(0, this.graph.getOutDegree(this.d));
+        for(int node = 0; node < this.graph.getNodesNbr(); node++)
+            for(int position = this.graph.getInArcsStart(node); position < this.graph.getInArcsEnd(node); position++)
+                assertEquals(node, this.graph.getArcHead(this.graph.getInArc(position)));
+    }
+    @Test
+    public void copiesTheLinkAttributesOnTheArcs()
+    {
+        int arc = this.graph.findArc(this.a, this.b);
+        assertEquals(700, this.graph.getArcLengthInM(arc), 0);
+        assertEquals(10, this.graph.getArcSpeedInMS(arc), 0);
+        assertEquals(1000, this.graph.getArcCapacityPerHour(arc), 0);
+        assertEquals(70, this.graph.getArcTimeInS(arc), 1e-9);
+        assertEquals("AB", this.graph.getArcLinkId(arc));
+        assertEquals(Mode.TRANSIT, this.graph.getArcMode(this.graph.findArc(this.c, this.d)));
+        assertTrue(this.graph.hasOutArc(this.c, Mode.TRANSIT.getMask()));
+        assertFalse(this.graph.hasOutArc(this.b, Mode.TRANSIT.getMask()));
+        int linkBC = this.graph.getArcLinkIndex(this.graph.findArc(this.b, this.c));
+        assertEquals(1, this.graph.getLinkShapePointsNbr(linkBC));
+        assertEquals(2.312, this.graph.getLinkShapePointX(linkBC, 0), 0);
+        assertEquals(48.805, this.graph.getLinkShapePointY(linkBC, 0), 0);
+    }
+    @Test
+    public void findsTheNodesByHandleOrId()
+    {
+        assertEquals(this.b, this.graph.getNodeIndex(this.network.getNode("B")));
+        assertEquals(this.b, this.graph.getNodeIndex(new Node("B", new Coordinate(0, 0))));
+        assertEquals(-1, this.graph.getNodeIndex(new Node("E", new Coordinate(0, 0))));
+        assertEquals(-1, this.graph.getNodeIndex("E"));
+    }
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsDuplicateNodeIds()
+    {
+        new CompactGraph(new String[]{"A", "A"}, new double[2], new double[2], new String[0], new int[0], new int[0],
+                new boolean[0], new double[0], new double[0], new double[0]);
+    }
+}
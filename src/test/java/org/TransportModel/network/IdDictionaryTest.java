@@ -0,0 +1,77 @@
+package org.TransportModel.network;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+///////////////////////////////////////////////////////////////////////////////////////////////////
+/** IdDictionaryTest checks the handles of ASCII and non-ASCII ids through the growth of the
+ * dictionary, and the lookups comparing bytes: between dictionaries and by prefix */
+///////////////////////////////////////////////////////////////////////////////////////////////////
+public class IdDictionaryTest
+{
+    private static final int IDS_NBR = 5000;
+    @Test
+    public void givesBackTheIdsOfTheHandles()
+    {
+        IdDictionary ids = new IdDictionary();
+        for(int index = 0; index < IDS_NBR; index++)
+            assertEquals(index, ids.add(id(index)));
+        assertEquals(IDS_NBR, ids.size());
+        assertEquals(IDS_NBR, ids.add(""));
+        for(int index = 0; index < IDS_NBR; index++)
+        {
+            assertEquals(id(index), ids.getId(index));
+            assertEquals(index, ids.getHandle(id(index)));
+            assertEquals(index, ids.add(id(index)));
+        }
+        assertEquals("", ids.getId(IDS_NBR));
+        assertEquals(IDS_NBR + 1, ids.size());
+        assertEquals(-1, ids.getHandle("Arrêt 1"));
+        assertFalse(ids.contains("TRONROUT" + IDS_NBR));
+    }
+    @Test
+    public void findsTheHandlesOfAnotherDictionary()
+    {
+        IdDictionary ids = new IdDictionary(IDS_NBR), others = new IdDictionary();
+        for(int index = 0; index < IDS_NBR; index++)
+            ids.add(id(index));
+        for(int index = IDS_NBR - 1; index >= 0; index -= 2)
+            others.add(id(index));
+        others.add("Arrêt absent");
+        for(int otherHandle = 0; otherHandle < others.size(); otherHandle++)
+        {
+            int handle = ids.getHandle(others, otherHandle);
+            assertEquals(ids.getHandle(others.getId(otherHandle)), handle);
+        }
+        assertEquals(-1, ids.getHandle(others, others.size() - 1));
+        assertEquals(7, ids.getHandle(ids, 7));
+    }
+    @Test
+    public void comparesThePrefixesOfTheIds()
+    {
+        IdDictionary ids = new IdDictionary();
+        int stop = ids.add("Arrêt Mairie"), node = ids.add("ZONE_42");
+        assertTrue(ids.startsWith(stop, "Arrêt"));
+        assertFalse(ids.startsWith(stop, "Arret"));
+        assertTrue(ids.startsWith(node, "ZONE_"));
+        assertTrue(ids.startsWith(node, ""));
+        assertFalse(ids.startsWith(node, "ZONE_42_"));
+    }
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void rejectsUnknownHandles()
+    {
+        IdDictionary ids = new IdDictionary();
+        ids.add("A");
+        ids.getId(1);
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Returns the id of an index, ASCII or with 2, 3 byte UTF-8 chars */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private static String id(int index)
+    {
+        return index % 3 == 0 ? "Arrêt " + index : index % 3 == 1 ? "TRONROUT" + index : "駅" + index + "€";
+    }
+}
@@ -0,0 +1,156 @@
+package org.TransportModel.network.io;
+
+import org.TransportModel.network.CompactGraph;
+import org.TransportModel.network.Link;
+import org.TransportModel.network.Mode;
+import org.TransportModel.network.Network;
+import org.TransportModel.network.Node;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+///////////////////////////////////////////////////////////////////////////////////////////////////
+/** NetworkSnapshotTest writes a small multimodal network with non-ASCII ids, a transit line and
+ * shape points, and checks that it reads back identical, that a corrupted byte is detected by the
+ * CRC and that the fingerprint follows the sources and the configuration */
+///////////////////////////////////////////////////////////////////////////////////////////////////
+public class NetworkSnapshotTest
+{
+    private Network network;
+    private File snapshotFile, sourceFile;
+    @Before
+    public void setUp() throws IOException
+    {
+        Node station = new Node("Gare d'Évry", new Coordinate(2.4297, 48.6240)), crossing = new Node("R1", new Coordinate(2.4310, 48.6251));
+        Node stop = new Node("Arrêt Mairie", new Coordinate(2.4402, 48.6305));
+        this.network = new Network();
+        Link road = new Link("R1-Gare", crossing, station, true, 13.9, 1800, 160);
+        road.setShapePoints(new double[]{2.4301, 48.6249, 2.4299, 48.6244});
+        this.network.addLink(road);
+        Link section = new Link("Ligne 402:Gare-Mairie", station, stop, false, 8, 600, 1100);
+        section.setMode(Mode.TRANSIT);
+        section.setLine("Ligne 402", 600);
+        this.network.addLink(section);
+        this.snapshotFile = File.createTempFile("network", ".snapshot");
+        this.sourceFile = File.createTempFile("network", ".csv");
+        Files.write(this.sourceFile.toPath(), "id\n".getBytes(StandardCharsets.UTF_8));
+    }
+    @After
+    public void tearDown()
+    {
+        this.snapshotFile.delete();
+        this.sourceFile.delete();
+    }
+    @Test
+    public void readsBackTheNetwork() throws IOException
+    {
+        NetworkSnapshot.write(this.network, this.snapshotFile, 42);
+        Network read = NetworkSnapshot.readNetwork(this.snapshotFile);
+        assertEquals(this.network.getNodesNbr(), read.getNodesNbr());
+        assertEquals(this.network.getLinksNbr(), read.getLinksNbr());
+        for(Node node : this.network.getNodes())
+        {
+            Node readNode = read.getNode(node.getId());
+            assertEquals(node.getCoordinate().x, readNode.getCoordinate().x, 0);
+            assertEquals(node.getCoordinate().y, readNode.getCoordinate().y, 0);
+        }
+        for(Link link : this.network.getLinks())
+        {
+            Link readLink = read.getLink(link.getId());
+            assertEquals(link.getFromNode().getId(), readLink.getFromNode().getId());
+            assertEquals(link.getToNode().getId(), readLink.getToNode().getId());
+            assertEquals(link.isBidirectional(), readLink.isBidirectional());
+            assertEquals(link.getMode(), readLink.getMode());
+            assertEquals(link.getLengthInM(), readLink.getLengthInM(), 0);
+            assertEquals(link.getNormalSpeedInMS(), readLink.getNormalSpeedInMS(), 0);
+            assertEquals(link.getCapacityPerHour(), readLink.getCapacityPerHour(), 0);
+            assertEquals(link.getLineId(), readLink.getLineId());
+            assertEquals(link.getShapePointsNbr(), readLink.getShapePointsNbr());
+        }
+        assertArrayEquals(new double[]{2.4301, 48.6249, 2.4299, 48.6244}, read.getLink("R1-Gare").getShapePoints(), 0);
+        assertEquals(600, read.getLink("Ligne 402:Gare-Mairie").getHeadwayInS(), 0);
+        assertNull(read.getLink("R1-Gare").getLineId());
+    }
+    @Test
+    public void readsTheGraphWithoutTheNetwork() throws IOException
+    {
+        NetworkSnapshot.write(this.network, this.snapshotFile, 42);
+        CompactGraph expected = new CompactGraph(this.network), graph = NetworkSnapshot.readGraph(this.snapshotFile);
+        assertEquals(expected.getNodesNbr(), graph.getNodesNbr());
+        assertEquals(expected.getArcsNbr(), graph.getArcsNbr());
+        for(int arc = 0; arc < expected.getArcsNbr(); arc++)
+        {
+            String tail = expected.getNodeId(expected.getArcTail(arc)), head = expected.getNodeId(expected.getArcHead(arc));
+            int readArc = graph.findArc(graph.getNodeIndex(tail), graph.getNodeIndex(head));
+            assertEquals(expected.getArcLinkId(arc), graph.getArcLinkId(readArc));
+            assertEquals(expected.getArcTimeInS(arc), graph.getArcTimeInS(readArc), 0);
+            assertEquals(expected.getArcMode(arc), graph.getArcMode(readArc));
+        }
+    }
+    @Test
+    public void detectsACorruptedByte() throws IOException
+    {
+        NetworkSnapshot.write(this.network, this.snapshotFile, 42);
+        try(RandomAccessFile file = new RandomAccessFile(this.snapshotFile, "rw")) {
+            long position = file.length() / 2;
+            file.seek(position);
+            int value = file.read();
+            file.seek(position);
+            file.write(value ^ 0x10);
+        }
+        try {
+            NetworkSnapshot.readGraph(this.snapshotFile);
+            fail("Corrupted snapshot read");
+        }
+        catch(IOException e) {
+            assertTrue(e.getMessage().startsWith("Corrupted network snapshot"));
+        }
+    }
+    @Test
+    public void fingerprintsTheSourcesAndTheConfiguration() throws IOException
+    {
+        long fingerprint = NetworkSnapshot.fingerprint("bdtopo|topology=none", this.sourceFile);
+        assertEquals(fingerprint, NetworkSnapshot.fingerprint("bdtopo|topology=none", this.sourceFile));
+        assertNotEquals(fingerprint, NetworkSnapshot.fingerprint("bdtopo|topology=1.0,true", this.sourceFile));
+        NetworkSnapshot.write(this.network, this.snapshotFile, fingerprint);
+        assertTrue(NetworkSnapshot.isUpToDate(this.snapshotFile, fingerprint));
+        Files.write(this.sourceFile.toPath(), "id\nR1\n".getBytes(StandardCharsets.UTF_8));
+        long modifiedFingerprint = NetworkSnapshot.fingerprint("bdtopo|topology=none", this.sourceFile);
+        assertNotEquals(fingerprint, modifiedFingerprint);
+        assertFalse(NetworkSnapshot.isUpToDate(this.snapshotFile, modifiedFingerprint));
+    }
+    @Test
+    public void buildsTheNetworkOnlyWhenTheSnapshotIsOutdated() throws IOException
+    {
+        int[] buildsNbr = new int[1];
+        NetworkSnapshot.NetworkBuilder builder = network -> {
+            buildsNbr[0]++;
+            for(Link link : this.network.getLinks())
+                network.addLink(new Link(link.getId(), new Node(link.getFromNode().getId(), link.getFromNode().getCoordinate()),
+                        new Node(link.getToNode().getId(), link.getToNode().getCoordinate()), link.isBidirectional(),
+                        link.getNormalSpeedInMS(), link.getCapacityPerHour(), link.getLengthInM()));
+        };
+        this.snapshotFile.delete();
+        Network built = NetworkSnapshot.load(this.snapshotFile, "gtfs|transfers=300,1.4", builder, this.sourceFile);
+        Network read = NetworkSnapshot.load(this.snapshotFile, "gtfs|transfers=300,1.4", builder, this.sourceFile);
+        assertEquals(1, buildsNbr[0]);
+        assertEquals(built.getLinksNbr(), read.getLinksNbr());
+        NetworkSnapshot.load(this.snapshotFile, "gtfs|transfers=500,1.4", builder, this.sourceFile);
+        assertEquals(2, buildsNbr[0]);
+    }
+}
@@ -0,0 +1,52 @@
+package org.TransportModel.routing;
+
+import org.TransportModel.network.Link;
+import org.TransportModel.network.Network;
+import org.TransportModel.network.Node;
+import org.locationtech.jts.geom.Coordinate;
+
+import java.util.Random;
+
+///////////////////////////////////////////////////////////////////////////////////////////////////
+/** GridNetworks builds the random grid networks shared by the routing tests: nodes about 100 m
+ * apart, links to the right and top neighbours with random speeds, lengths at least as long as
+ * the great circle distance and one link out of four one-way */
+///////////////////////////////////////////////////////////////////////////////////////////////////
+public final class GridNetworks
+{
+    private GridNetworks(){}
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Builds a grid of columnsNbr x rowsNbr nodes named "x,y"
+     * @param seed the seed of the speeds, lengths and directions, for reproducible tests */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    public static Network grid(int columnsNbr, int rowsNbr, long seed)
+    {
+        Random random = new Random(seed);
+        Node[][] nodes = new Node[columnsNbr][rowsNbr];
+        for(int x = 0; x < columnsNbr; x++)
+            for(int y = 0; y < rowsNbr; y++)
+                nodes[x][y] = new Node(x + "," + y, new Coordinate(2.30 + x * 0.0013, 48.80 + y * 0.0009));
+        Network network = new Network();
+        for(int x = 0; x < columnsNbr; x++)
+            for(int y = 0; y < rowsNbr; y++)
+            {
+                if(x + 1 < columnsNbr)
+                    network.addLink(link(random, nodes[x][y], nodes[x + 1][y]));
+                if(y + 1 < rowsNbr)
+                    network.addLink(link(random, nodes[x][y], nodes[x][y + 1]));
+            }
+        return network;
+    }
+    private static Link link(Random random, Node from, Node to)
+    {
+        double distance = GreatCircle.distanceInM(from.getCoordinate().x, from.getCoordinate().y,
+                to.getCoordinate().x, to.getCoordinate().y);
+        double lengthInM = distance * (1 + random.nextDouble() * 0.5);
+        double speedInMS = 5 + random.nextInt(26);
+        boolean bidirectional = random.nextInt(4) != 0;
+        //If one-way:random direction
+        if(!bidirectional && random.nextBoolean())
+            return new Link(to.getId() + "-" + from.getId(), to, from, false, speedInMS, 1000, lengthInM);
+        return new Link(from.getId() + "-" + to.getId(), from, to, bidirectional, speedInMS, 1000, lengthInM);
+    }
+}
@@ -0,0 +1,69 @@
+package org.TransportModel.routing;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+///////////////////////////////////////////////////////////////////////////////////////////////////
+/** IndexedMinHeapTest checks the pop order, the decrease-key in place and the reuse after clear */
+///////////////////////////////////////////////////////////////////////////////////////////////////
+public class IndexedMinHeapTest
+{
+    @Test
+    public void popsTheIdsByIncreasingKey()
+    {
+        Random random = new Random(42);
+        IndexedMinHeap heap = new IndexedMinHeap(200);
+        for(int id = 0; id < 200; id++)
+            heap.push(id, random.nextDouble() * 100);
+        assertEquals(200, heap.size());
+        double previousKey = Double.NEGATIVE_INFINITY;
+        while(!heap.isEmpty())
+        {
+            double key = heap.peekKey();
+            assertTrue(key >= previousKey);
+            int id = heap.peek();
+            assertEquals(id, heap.pop());
+            assertFalse(heap.contains(id));
+            previousKey = key;
+        }
+    }
+    @Test
+    public void decreasesAKeyInPlace()
+    {
+        IndexedMinHeap heap = new IndexedMinHeap(4);
+        heap.push(0, 5);
+        heap.push(1, 3);
+        heap.push(2, 4);
+        heap.push(0, 1);
+        assertEquals(3, heap.size());
+        assertEquals(0, heap.peek());
+        assertEquals(1, heap.peekKey(), 0);
+        //A greater key is ignored
+        heap.push(2, 10);
+        heap.pop();
+        assertEquals(1, heap.pop());
+        assertEquals(2, heap.peek());
+        assertEquals(4, heap.peekKey(), 0);
+    }
+    @Test
+    public void canBeReusedAfterClear()
+    {
+        IndexedMinHeap heap = new IndexedMinHeap(3);
+        heap.push(0, 2);
+        heap.push(1, 1);
+        heap.clear();
+        assertTrue(heap.isEmpty());
+        assertFalse(heap.contains(0));
+        assertFalse(heap.contains(1));
+        heap.push(0, 7);
+        heap.push(2, 6);
+        assertEquals(2, heap.pop());
+        assertEquals(0, heap.pop());
+        assertTrue(heap.isEmpty());
+    }
+}
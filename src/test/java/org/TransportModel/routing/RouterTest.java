@@ -0,0 +1,161 @@
+package org.TransportModel.routing;
+
+import org.TransportModel.network.CompactGraph;
+import org.TransportModel.network.Link;
+import org.TransportModel.network.Mode;
+import org.TransportModel.network.Network;
+import org.TransportModel.network.Node;
+import org.junit.Before;
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+///////////////////////////////////////////////////////////////////////////////////////////////////
+/** RouterTest checks Dijkstra and A* on a hand-built network, where the direct road A->C is slower
+ * than the detour through B and D is only reached by transit, and against a Bellman-Ford reference
+ * on random grids */
+///////////////////////////////////////////////////////////////////////////////////////////////////
+public class RouterTest
+{
+    private CompactGraph graph;
+    private Router router;
+    private int a, b, c, d;
+    @Before
+    public void setUp()
+    {
+        Node nodeA = new Node("A", new Coordinate(2.300, 48.800)), nodeB = new Node("B", new Coordinate(2.301, 48.8005));
+        Node nodeC = new Node("C", new Coordinate(2.302, 48.800)), nodeD = new Node("D", new Coordinate(2.303, 48.800));
+        Network network = new Network();
+        network.addLink(new Link("AB", nodeA, nodeB, false, 10, 1000, 100));
+        network.addLink(new Link("BC", nodeB, nodeC, false, 10, 1000, 100));
+        network.addLink(new Link("AC", nodeA, nodeC, true, 10, 1000, 300));
+        Link linkCD = new Link("CD", nodeC, nodeD, false, 10, 1000, 80);
+        linkCD.setMode(Mode.TRANSIT);
+        network.addLink(linkCD);
+        this.graph = new CompactGraph(network);
+        this.router = new Router(this.graph);
+        this.a = this.graph.getNodeIndex("A");
+        this.b = this.graph.getNodeIndex("B");
+        this.c = this.graph.getNodeIndex("C");
+        this.d = this.graph.getNodeIndex("D");
+    }
+    @Test
+    public void findsTheShortestPath()
+    {
+        Path path = this.router.getPath(this.a, this.d);
+        assertTrue(path.isFound());
+        assertEquals(28, path.getCost(), 1e-9);
+        assertEquals(Arrays.asList("AB", "BC", "CD"), path.getLinkIds());
+        assertEquals(30, this.router.getCost(this.c, this.a), 1e-9);
+    }
+    @Test
+    public void computesTheCostsToEveryNode()
+    {
+        double[] costs = this.router.getCosts(this.a);
+        assertEquals(0, costs[this.a], 0);
+        assertEquals(10, costs[this.b], 1e-9);
+        assertEquals(20, costs[this.c], 1e-9);
+        assertEquals(28, costs[this.d], 1e-9);
+        double[] costsFromB = this.router.getCosts(this.b);
+        assertEquals(40, costsFromB[this.a], 1e-9);
+        costs = new double[this.graph.getNodesNbr()];
+        this.router.getCosts(this.a, 15, costs);
+        assertEquals(10, costs[this.b], 1e-9);
+        assertEquals(Double.POSITIVE_INFINITY, costs[this.c], 0);
+    }
+    @Test
+    public void reportsUnreachableTargets()
+    {
+        Path path = this.router.getPath(this.d, this.a);
+        assertFalse(path.isFound());
+        assertEquals(0, path.getArcs().length);
+        assertEquals(Double.POSITIVE_INFINITY, this.router.getCost(this.d, this.a), 0);
+        assertFalse(this.router.getPath(new Node("A", null), new Node("E", null)).isFound());
+    }
+    @Test
+    public void usesOnlyTheArcsOfTheAllowedModes()
+    {
+        Router roadRouter = this.router.withModes(Mode.ROAD);
+        assertEquals(Double.POSITIVE_INFINITY, roadRouter.getCost(this.a, this.d), 0);
+        assertEquals(20, roadRouter.getCost(this.a, this.c), 1e-9);
+        assertTrue(this.router.withModes(Mode.ROAD, Mode.TRANSIT).getPath(this.a, this.d).isFound());
+        assertTrue(this.router == this.router.withModes(Mode.ALL));
+    }
+    @Test
+    public void settlesEveryNodeOnceByIncreasingDistance()
+    {
+        SearchState state = this.router.search(this.a, Double.POSITIVE_INFINITY);
+        assertEquals(4, state.getSettledNodesNbr());
+        boolean[] settled = new boolean[this.graph.getNodesNbr()];
+        double previousDistance = 0;
+        for(int position = 0; position < state.getSettledNodesNbr(); position++)
+        {
+            int node = state.getSettledNode(position);
+            assertFalse(settled[node]);
+            settled[node] = true;
+            assertTrue(state.getDistance(node) >= previousDistance);
+            previousDistance = state.getDistance(node);
+        }
+        assertEquals(this.c, this.graph.getArcTail(state.getPredecessorArc(this.d)));
+    }
+    @Test
+    public void matchesBellmanFordOnRandomGrids()
+    {
+        for(long seed = 1; seed <= 5; seed++)
+        {
+            CompactGraph grid = new CompactGraph(GridNetworks.grid(9, 7, seed));
+            Router gridRouter = new Router(grid);
+            for(int source = 0; source < grid.getNodesNbr(); source += 5)
+            {
+                double[] expected = bellmanFord(grid, source);
+                assertArrayEquals(expected, gridRouter.getCosts(source), 1e-6);
+                for(int target = 0; target < grid.getNodesNbr(); target += 3)
+                {
+                    Path path = gridRouter.getPath(source, target);
+                    assertEquals(expected[target], path.getCost(), 1e-6);
+                    double pathCost = 0;
+                    int node = source;
+                    for(int arc : path.getArcs())
+                    {
+                        assertEquals(node, grid.getArcTail(arc));
+                        pathCost += grid.getArcTimeInS(arc);
+                        node = grid.getArcHead(arc);
+                    }
+                    if(path.isFound()) {
+                        assertEquals(target, node);
+                        assertEquals(expected[target], pathCost, 1e-6);
+                    }
+                }
+            }
+        }
+    }
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    /** Computes the reference costs from a node by relaxing every arc until nothing changes */
+    ///////////////////////////////////////////////////////////////////////////////////////////////////
+    private static double[] bellmanFord(CompactGraph graph, int source)
+    {
+        double[] costs = new double[graph.getNodesNbr()];
+        Arrays.fill(costs, Double.POSITIVE_INFINITY);
+        costs[source] = 0;
+        boolean changed = true;
+        while(changed)
+        {
+            changed = false;
+            for(int arc = 0; arc < graph.getArcsNbr(); arc++)
+            {
+                double cost = costs[graph.getArcTail(arc)] + graph.getArcTimeInS(arc);
+                if(cost < costs[graph.getArcHead(arc)]) {
+                    costs[graph.getArcHead(arc)] = cost;
+                    changed = true;
+                }
+            }
+        }
+        return costs;
+    }
+}
@@ -0,0 +1,116 @@
+package org.TransportModel.routing.ch;
+
+import org.TransportModel.network.CompactGraph;
+import org.TransportModel.routing.GridNetworks;
+import org.TransportModel.routing.Path;
+import org.TransportModel.routing.Router;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+///////////////////////////////////////////////////////////////////////////////////////////////////
+/** CHRouterTest checks that the queries of a contraction hierarchy give the Dijkstra costs on
+ * random grids with one-way links, that the unpacked paths follow original arcs and that a saved
+ * hierarchy is only loaded with its own graph */
+///////////////////////////////////////////////////////////////////////////////////////////////////
+public class CHRouterTest
+{
+    private CompactGraph graph;
+    private ContractionHierarchy hierarchy;
+    private File file;
+    @Before
+    public void setUp() throws IOException
+    {
+        this.graph = new CompactGraph(GridNetworks.grid(10, 8, 7));
+        this.hierarchy = new CHPreprocessor(this.graph).build();
+        this.file = File.createTempFile("hierarchy", ".ch");
+    }
+    @After
+    public void tearDown()
+    {
+        this.file.delete();
+    }
+    @Test
+    public void ranksEveryNodeOnce()
+    {
+        boolean[] ranked = new boolean[this.graph.getNodesNbr()];
+        for(int node = 0; node < this.graph.getNodesNbr(); node++)
+        {
+            int rank = this.hierarchy.getRank(node);
+            assertFalse(ranked[rank]);
+            ranked[rank] = true;
+        }
+        assertEquals(this.graph.getArcsNbr() + this.hierarchy.getShortcutsNbr(), this.hierarchy.getEdgesNbr());
+    }
+    @Test
+    public void givesTheDijkstraCosts()
+    {
+        for(long seed = 1; seed <= 4; seed++)
+        {
+            CompactGraph grid = seed == 1 ? this.graph : new CompactGraph(GridNetworks.grid(10, 8, seed));
+            CHRouter chRouter = new CHRouter(seed == 1 ? this.hierarchy : new CHPreprocessor(grid).build());
+            Router router = new Router(grid);
+            for(int source = 0; source < grid.getNodesNbr(); source += 3)
+            {
+                double[] costs = router.getCosts(source);
+                for(int target = 0; target < grid.getNodesNbr(); target++)
+                    assertEquals(costs[target], chRouter.getCost(source, target), 1e-6);
+            }
+        }
+    }
+    @Test
+    public void unpacksThePathsIntoOriginalArcs()
+    {
+        CHRouter chRouter = new CHRouter(this.hierarchy);
+        Router router = new Router(this.graph);
+        for(int source = 0; source < this.graph.getNodesNbr(); source += 7)
+            for(int target = 0; target < this.graph.getNodesNbr(); target += 5)
+            {
+                Path path = chRouter.getPath(source, target);
+                assertEquals(router.getCost(source, target), path.getCost(), 1e-6);
+                if(!path.isFound())
+                    continue;
+                int node = source;
+                double cost = 0;
+                for(int arc : path.getArcs())
+                {
+                    assertEquals(node, this.graph.getArcTail(arc));
+                    cost += this.graph.getArcTimeInS(arc);
+                    node = this.graph.getArcHead(arc);
+                }
+                assertEquals(target, node);
+                assertEquals(path.getCost(), cost, 1e-6);
+            }
+    }
+    @Test
+    public void readsBackAWrittenHierarchy() throws IOException
+    {
+        this.hierarchy.write(this.file);
+        ContractionHierarchy read = ContractionHierarchy.read(this.file, this.graph);
+        assertEquals(this.hierarchy.getEdgesNbr(), read.getEdgesNbr());
+        CHRouter chRouter = new CHRouter(this.hierarchy), readRouter = new CHRouter(read);
+        for(int source = 0; source < this.graph.getNodesNbr(); source += 9)
+            for(int target = 0; target < this.graph.getNodesNbr(); target += 4)
+                assertEquals(chRouter.getCost(source, target), readRouter.getCost(source, target), 0);
+    }
+    @Test
+    public void rejectsAHierarchyOfAnotherGraph() throws IOException
+    {
+        this.hierarchy.write(this.file);
+        try {
+            ContractionHierarchy.read(this.file, new CompactGraph(GridNetworks.grid(10, 8, 8)));
+            fail("Hierarchy of another graph loaded");
+        }
+        catch(IOException e) {
+            assertTrue(e.getMessage().contains("another graph"));
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package org.TransportModel.routing.raptor;
+
+import org.TransportModel.network.io.StopTimesTable;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+
+///////////////////////////////////////////////////////////////////////////////////////////////////
+/** RaptorRouterTest runs RAPTOR on a hand-built timetable: a line A-B-C every 30 minutes, a line
+ * B-D leaving B 5 minutes after each train of the first line, a slow direct line A-D and a
+ * footpath from C to E, E being only served by a trip of a single stop. Going from A to D is
+ * faster with a transfer at B than with the direct line */
+///////////////////////////////////////////////////////////////////////////////////////////////////
+public class RaptorRouterTest
+{
+    private static final String STOP_TIMES = "trip_id,arrival_time,departure_time,stop_id,stop_sequence\n"
+            + "T1,08:00:00,08:00:00,A,1\nT1,08:10:00,08:10:00,B,2\nT1,08:20:00,08:20:00,C,3\n"
+            + "T2,08:30:00,08:30:00,A,1\nT2,08:40:00,08:40:00,B,2\nT2,08:50:00,08:50:00,C,3\n"
+            + "T3,08:15:00,08:15:00,B,1\nT3,08:25:00,08:25:00,D,2\n"
+            + "T4,08:45:00,08:45:00,B,1\nT4,08:55:00,08:55:00,D,2\n"
+            + "T5,08:00:00,08:00:00,A,1\nT5,09:00:00,09:00:00,D,2\n"
+            + "T6,10:00:00,10:00:00,E,1\n";
+    private RaptorRouter router;
+    private int a, b, c, d, e;
+    @Before
+    public void setUp() throws IOException
+    {
+        File file = File.createTempFile("stop_times", ".txt");
+        StopTimesTable stopTimes;
+        try {
+            Files.write(file.toPath(), STOP_TIMES.getBytes(StandardCharsets.UTF_8));
+            stopTimes = StopTimesTable.read(file.toPath());
+        }
+        finally {
+            file.delete();
+        }
+        String[] tripRouteIds = new String[stopTimes.getTripsNbr()];
+        for(int trip = 0; trip < tripRouteIds.length; trip++)
+        {
+            String tripId = stopTimes.getTripId(trip);
+            tripRouteIds[trip] = tripId.equals("T1") || tripId.equals("T2") ? "L1" : tripId.equals("T5") ? "L3" : "L2";
+        }
+        int[] fromStops = {stopTimes.getStopIndex("C")}, toStops = {stopTimes.getStopIndex("E")}, times = {120};
+        this.router = new RaptorRouter(new Timetable(stopTimes, tripRouteIds, fromStops, toStops, times));
+        Timetable timetable = this.router.getTimetable();
+        this.a = timetable.getStopIndex("A");
+        this.b = timetable.getStopIndex("B");
+        this.c = timetable.getStopIndex("C");
+        this.d = timetable.getStopIndex("D");
+        this.e = timetable.getStopIndex("E");
+    }
+    @Test
+    public void groupsTheTripsIntoRoutes()
+    {
+        Timetable timetable = this.router.getTimetable();
+        //The single stop trip T6 gives no route
+        assertEquals(3, timetable.getRoutesNbr());
+        for(int route = 0; route < timetable.getRoutesNbr(); route++)
+            if(timetable.getRouteId(route).equals("L1")) {
+                assertEquals(3, timetable.getRouteStopsNbr(route));
+                assertEquals(2, timetable.getRouteTripsNbr(route));
+                assertEquals(1, timetable.getFirstTrip(route, 1, time(8, 11)));
+            }
+    }
+    @Test
+    public void findsTheEarliestArrivals()
+    {
+        int[] arrivals = this.router.getEarliestArrivals(this.a, time(7, 55));
+        assertEquals(time(7, 55), arrivals[this.a]);
+        assertEquals(time(8, 10), arrivals[this.b]);
+        assertEquals(time(8, 20), arrivals[this.c]);
+        assertEquals(time(8, 25), arrivals[this.d]);
+        assertEquals(time(8, 22), arrivals[this.e]);
+        assertEquals(time(8, 55), this.router.getEarliestArrival(this.a, this.d, time(8, 1)));
+        assertEquals(RaptorRouter.UNREACHED, this.router.getEarliestArrival(this.a, this.d, time(8, 31)));
+        assertEquals(RaptorRouter.UNREACHED, this.router.getEarliestArrival(this.d, this.a, time(7, 0)));
+    }
+    @Test
+    public void limitsTheNumberOfTrips()
+    {
+        RaptorRouter directRouter = new RaptorRouter(this.router.getTimetable(), 1);
+        assertEquals(time(9, 0), directRouter.getEarliestArrival(this.a, this.d, time(7, 55)));
+        assertEquals(time(8, 20), directRouter.getEarliestArrival(this.a, this.c, time(7, 55)));
+    }
+    @Test
+    public void keepsTheParetoJourneysOfAWindow()
+    {
+        Profile profile = this.router.getProfile(this.a, time(7, 50), time(8, 40));
+        assertEquals(2, profile.getJourneysNbr(this.d));
+        assertEquals(time(8, 0), profile.getDepartureTimeInS(this.d, 0));
+        assertEquals(time(8, 25), profile.getArrivalTimeInS(this.d, 0));
+        assertEquals(time(8, 30), profile.getDepartureTimeInS(this.d, 1));
+        assertEquals(time(8, 55), profile.getArrivalTimeInS(this.d, 1));
+        assertEquals(RaptorRouter.UNREACHED, profile.getWalkTimeInS(this.e));
+        assertEquals(0, profile.getWalkTimeInS(this.a));
+        assertEquals(35 * 60, profile.getAverageTravelTime(this.d, time(7, 50), time(8, 30), 600), 0);
+        //A departure of the window gives the same arrival as a single query
+        for(int departure = time(7, 50); departure <= time(8, 40); departure += 60)
+            for(int stop : new int[]{this.b, this.c, this.d, this.e})
+                assertEquals(this.router.getEarliestArrival(this.a, stop, departure), profile.getEarliestArrival(stop, departure));
+    }
+    private static int time(int hours, int minutes)
+    {
+        return hours * 3600 + minutes * 60;
+    }
+}